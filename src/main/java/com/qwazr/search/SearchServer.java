@@ -61,7 +61,8 @@ public class SearchServer implements BaseServer {
 		indexManager = new IndexManager(IndexManager.checkIndexesDirectory(configuration.dataDirectory.toPath()),
 				executorService).registerContextAttribute(builder)
 				.registerWebService(webServices)
-				.registerShutdownListener(builder);
+				.registerShutdownListener(builder)
+				.startIndexes();
 
 		builder.getWebServiceContext().jaxrs(webServices);
 		serviceBuilder = new IndexServiceBuilder(clusterManager, indexManager);
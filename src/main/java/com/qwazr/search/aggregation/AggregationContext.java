@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.qwazr.search.field.FieldTypeInterface;
+import com.qwazr.search.index.FieldMap;
+import com.qwazr.search.index.QueryContext;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SortField;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Query scoped state used while the aggregator factories are built.
+ * Only used by the request thread, the factories are then shared read-only by the slices.
+ */
+final class AggregationContext {
+
+	final QueryContext queryContext;
+	final IndexSearcher indexSearcher;
+	final FieldMap fieldMap;
+
+	private final Map<String, GlobalOrdinals> globalOrdinals;
+
+	AggregationContext(final QueryContext queryContext) {
+		this.queryContext = queryContext;
+		this.indexSearcher = queryContext.getIndexSearcher();
+		this.fieldMap = queryContext.getFieldMap();
+		this.globalOrdinals = new HashMap<>();
+	}
+
+	LinkedHashMap<String, AggregatorFactory> newFactories(final Map<String, AggregationDefinition> definitions,
+			final int depth) throws IOException, ParseException, QueryNodeException, ReflectiveOperationException {
+		if (definitions == null || definitions.isEmpty())
+			return null;
+		if (depth > AggregationDefinition.MAX_DEPTH)
+			throw new IllegalArgumentException(
+					"Too many nested aggregations. The maximum depth is " + AggregationDefinition.MAX_DEPTH);
+		final LinkedHashMap<String, AggregatorFactory> factories = new LinkedHashMap<>();
+		for (Map.Entry<String, AggregationDefinition> entry : definitions.entrySet())
+			factories.put(entry.getKey(), entry.getValue().newFactory(this, depth));
+		return factories;
+	}
+
+	private SortField getSortField(final String fieldName) {
+		if (fieldName == null)
+			throw new IllegalArgumentException("The aggregation field is missing");
+		final FieldTypeInterface fieldType = fieldMap == null ? null : fieldMap.getFieldType(null, fieldName);
+		if (fieldType == null)
+			throw new IllegalArgumentException("Unknown aggregation field: " + fieldName);
+		return fieldType.getSortField(fieldName, null);
+	}
+
+	GlobalOrdinals getGlobalOrdinals(final String fieldName) throws IOException {
+		GlobalOrdinals ordinals = globalOrdinals.get(fieldName);
+		if (ordinals != null)
+			return ordinals;
+		final SortField sortField = getSortField(fieldName);
+		ordinals = GlobalOrdinals.of(indexSearcher.getIndexReader(),
+				sortField == null ? fieldName : sortField.getField());
+		globalOrdinals.put(fieldName, ordinals);
+		return ordinals;
+	}
+
+	boolean isNumeric(final String fieldName) {
+		return NumericValues.getNumericType(getSortField(fieldName)) != null;
+	}
+
+	NumericValues getNumericValues(final String fieldName) throws IOException {
+		return NumericValues.of(indexSearcher.getIndexReader(), fieldName, getSortField(fieldName));
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.qwazr.utils.Equalizer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+
+import java.io.IOException;
+
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+@JsonSubTypes({ @JsonSubTypes.Type(value = CardinalityAggregation.class, name = "cardinality"),
+		@JsonSubTypes.Type(value = DateHistogramAggregation.class, name = "date_histogram"),
+		@JsonSubTypes.Type(value = FilterAggregation.class, name = "filter"),
+		@JsonSubTypes.Type(value = HistogramAggregation.class, name = "histogram"),
+		@JsonSubTypes.Type(value = PercentileRanksAggregation.class, name = "percentile_ranks"),
+		@JsonSubTypes.Type(value = PercentilesAggregation.class, name = "percentiles"),
+		@JsonSubTypes.Type(value = StatsAggregation.class, name = "stats"),
+		@JsonSubTypes.Type(value = TermsAggregation.class, name = "terms") })
+public abstract class AggregationDefinition<T extends AggregationDefinition> extends Equalizer<T> {
+
+	/**
+	 * The maximum nesting level of the sub-aggregations
+	 */
+	public final static int MAX_DEPTH = 5;
+
+	protected AggregationDefinition(final Class<T> aggregationClass) {
+		super(aggregationClass);
+	}
+
+	/**
+	 * Prepare everything that can be shared by the slices (weights, global ordinals, field types).
+	 * Called once per query, before the search starts.
+	 */
+	abstract AggregatorFactory newFactory(final AggregationContext context, final int depth)
+			throws IOException, ParseException, QueryNodeException, ReflectiveOperationException;
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The partial result of one slice. The partial results are merged, then converted to plain maps and numbers.
+ */
+public abstract class AggregationResult {
+
+	/**
+	 * Merge the partial result of another slice into this one.
+	 */
+	abstract void merge(final AggregationResult result);
+
+	abstract Object toOutput();
+
+	static void merge(final Map<String, AggregationResult> target, final Map<String, AggregationResult> source) {
+		if (source == null)
+			return;
+		source.forEach((name, result) -> {
+			final AggregationResult targetResult = target.putIfAbsent(name, result);
+			if (targetResult != null)
+				targetResult.merge(result);
+		});
+	}
+
+	static void toOutput(final Map<String, AggregationResult> results, final Map<String, Object> output) {
+		if (results != null)
+			results.forEach((name, result) -> output.put(name, result.toOutput()));
+	}
+
+	static LinkedHashMap<String, Object> toOutput(final Map<String, AggregationResult> results) {
+		if (results == null)
+			return null;
+		final LinkedHashMap<String, Object> output = new LinkedHashMap<>();
+		toOutput(results, output);
+		return output;
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.qwazr.search.index.QueryContext;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The aggregations of one query. The factories are prepared once, then each slice gets its own collector.
+ * The partial results of the slices are merged by the reduce step.
+ */
+public final class Aggregations {
+
+	private final LinkedHashMap<String, AggregatorFactory> factories;
+
+	public Aggregations(final QueryContext queryContext, final Map<String, AggregationDefinition> definitions)
+			throws IOException, ParseException, QueryNodeException, ReflectiveOperationException {
+		this.factories = new AggregationContext(queryContext).newFactories(definitions, 1);
+	}
+
+	public AggregationsCollector newCollector() {
+		return new AggregationsCollector(new Aggregators(factories));
+	}
+
+	public static LinkedHashMap<String, Object> toOutput(final Map<String, AggregationResult> results) {
+		return AggregationResult.toOutput(results);
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.qwazr.search.collector.BaseCollector;
+import com.qwazr.search.collector.ConcurrentCollector;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+public final class AggregationsCollector extends BaseCollector<LinkedHashMap<String, AggregationResult>>
+		implements ConcurrentCollector<LinkedHashMap<String, AggregationResult>> {
+
+	private final Aggregators aggregators;
+
+	AggregationsCollector(final Aggregators aggregators) {
+		super("aggregations");
+		this.aggregators = aggregators;
+	}
+
+	@Override
+	public final LeafCollector getLeafCollector(final LeafReaderContext context) {
+		return new LeafCollector() {
+
+			@Override
+			public void setScorer(final Scorer scorer) {
+			}
+
+			@Override
+			public void collect(final int doc) throws IOException {
+				aggregators.collect(context, doc);
+			}
+		};
+	}
+
+	@Override
+	public final LinkedHashMap<String, AggregationResult> getResult() {
+		return aggregators.getResults();
+	}
+
+	@Override
+	public final LinkedHashMap<String, AggregationResult> getReducedResult(
+			final Collection<BaseCollector<LinkedHashMap<String, AggregationResult>>> collectors) {
+		final LinkedHashMap<String, AggregationResult> results = new LinkedHashMap<>();
+		for (BaseCollector<LinkedHashMap<String, AggregationResult>> collector : collectors)
+			AggregationResult.merge(results, collector.getResult());
+		return results;
+	}
+}
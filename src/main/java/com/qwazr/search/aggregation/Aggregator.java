@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import java.io.IOException;
+
+/**
+ * Collects the documents of one slice (or one bucket of one slice).
+ * The doc values of a segment are only loaded when the first document of that segment is collected.
+ */
+abstract class Aggregator {
+
+	private LeafReaderContext leaf;
+
+	final void collect(final LeafReaderContext context, final int doc) throws IOException {
+		if (context != leaf) {
+			leaf = context;
+			setLeaf(context);
+		}
+		collectDoc(doc);
+	}
+
+	final LeafReaderContext getLeaf() {
+		return leaf;
+	}
+
+	abstract void setLeaf(final LeafReaderContext context) throws IOException;
+
+	abstract void collectDoc(final int doc) throws IOException;
+
+	abstract AggregationResult getResult();
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A named set of aggregators fed with the same documents.
+ */
+final class Aggregators {
+
+	private final String[] names;
+	private final Aggregator[] aggregators;
+
+	Aggregators(final LinkedHashMap<String, AggregatorFactory> factories) {
+		names = new String[factories.size()];
+		aggregators = new Aggregator[factories.size()];
+		int i = 0;
+		for (Map.Entry<String, AggregatorFactory> entry : factories.entrySet()) {
+			names[i] = entry.getKey();
+			aggregators[i++] = entry.getValue().newAggregator();
+		}
+	}
+
+	final void collect(final LeafReaderContext context, final int doc) throws IOException {
+		for (Aggregator aggregator : aggregators)
+			aggregator.collect(context, doc);
+	}
+
+	final LinkedHashMap<String, AggregationResult> getResults() {
+		final LinkedHashMap<String, AggregationResult> results = new LinkedHashMap<>();
+		for (int i = 0; i < names.length; i++)
+			results.put(names[i], aggregators[i].getResult());
+		return results;
+	}
+}
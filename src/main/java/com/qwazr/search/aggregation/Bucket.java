@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import org.apache.lucene.index.LeafReaderContext;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+
+/**
+ * The document count of a bucket and its sub-aggregators.
+ */
+final class Bucket {
+
+	private long docCount;
+	private final Aggregators subAggregators;
+
+	Bucket(final LinkedHashMap<String, AggregatorFactory> subFactories) {
+		this.subAggregators = subFactories == null ? null : new Aggregators(subFactories);
+	}
+
+	final void collect(final LeafReaderContext context, final int doc) throws IOException {
+		docCount++;
+		if (subAggregators != null)
+			subAggregators.collect(context, doc);
+	}
+
+	final Result getResult() {
+		return new Result(docCount, subAggregators == null ? null : subAggregators.getResults());
+	}
+
+	static final class Result extends AggregationResult {
+
+		long docCount;
+		final LinkedHashMap<String, AggregationResult> subResults;
+
+		Result(final long docCount, final LinkedHashMap<String, AggregationResult> subResults) {
+			this.docCount = docCount;
+			this.subResults = subResults;
+		}
+
+		@Override
+		final void merge(final AggregationResult result) {
+			final Result bucketResult = (Result) result;
+			docCount += bucketResult.docCount;
+			if (subResults != null)
+				AggregationResult.merge(subResults, bucketResult.subResults);
+		}
+
+		final void toOutput(final LinkedHashMap<String, Object> output) {
+			output.put("doc_count", docCount);
+			AggregationResult.toOutput(subResults, output);
+		}
+
+		@Override
+		final LinkedHashMap<String, Object> toOutput() {
+			final LinkedHashMap<String, Object> output = new LinkedHashMap<>();
+			toOutput(output);
+			return output;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.qwazr.utils.CollectionsUtils;
+
+import java.util.LinkedHashMap;
+
+/**
+ * An aggregation which splits the documents into buckets. Each bucket computes its own sub-aggregations.
+ */
+public abstract class BucketAggregation<T extends BucketAggregation> extends AggregationDefinition<T> {
+
+	final public LinkedHashMap<String, AggregationDefinition> aggregations;
+
+	protected BucketAggregation(final Class<T> aggregationClass,
+			final LinkedHashMap<String, AggregationDefinition> aggregations) {
+		super(aggregationClass);
+		this.aggregations = aggregations;
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final T a) {
+		return CollectionsUtils.equals(aggregations, a.aggregations);
+	}
+
+}
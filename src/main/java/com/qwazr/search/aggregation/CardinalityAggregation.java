@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongValues;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Approximate distinct count of the values of a sorted, sorted set or numeric doc values field.
+ * The count is exact below the precision threshold.
+ */
+public class CardinalityAggregation extends AggregationDefinition<CardinalityAggregation> {
+
+	public final static int DEFAULT_PRECISION_THRESHOLD = 3000;
+	public final static int MAX_PRECISION_THRESHOLD = 40000;
+
+	final public String field;
+
+	@JsonProperty("precision_threshold")
+	final public Integer precisionThreshold;
+
+	@JsonCreator
+	public CardinalityAggregation(@JsonProperty("field") final String field,
+			@JsonProperty("precision_threshold") final Integer precisionThreshold) {
+		super(CardinalityAggregation.class);
+		this.field = field;
+		this.precisionThreshold = precisionThreshold;
+	}
+
+	public CardinalityAggregation(final String field) {
+		this(field, null);
+	}
+
+	@JsonIgnore
+	public int getPrecisionThresholdValue() {
+		if (precisionThreshold == null)
+			return DEFAULT_PRECISION_THRESHOLD;
+		if (precisionThreshold < 1 || precisionThreshold > MAX_PRECISION_THRESHOLD)
+			throw new IllegalArgumentException(
+					"The precision threshold must be between 1 and " + MAX_PRECISION_THRESHOLD + ": " +
+							precisionThreshold);
+		return precisionThreshold;
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final CardinalityAggregation a) {
+		return Objects.equals(field, a.field) && Objects.equals(precisionThreshold, a.precisionThreshold);
+	}
+
+	@Override
+	final AggregatorFactory newFactory(final AggregationContext context, final int depth) throws IOException {
+		final int threshold = getPrecisionThresholdValue();
+		if (context.isNumeric(field)) {
+			final NumericValues numericValues = context.getNumericValues(field);
+			return () -> new NumericAggregator(numericValues, threshold);
+		}
+		final GlobalOrdinals ordinals = context.getGlobalOrdinals(field);
+		return () -> new OrdinalsAggregator(ordinals, threshold);
+	}
+
+	/**
+	 * The values are hashed as they are stored (the floating points are not decoded)
+	 */
+	static final class NumericAggregator extends Aggregator {
+
+		private final NumericValues numericValues;
+		private final Result result;
+		private SortedNumericDocValues values;
+
+		NumericAggregator(final NumericValues numericValues, final int threshold) {
+			this.numericValues = numericValues;
+			this.result = new Result(threshold);
+		}
+
+		@Override
+		final void setLeaf(final LeafReaderContext context) throws IOException {
+			values = numericValues.getSegmentValues(context);
+		}
+
+		@Override
+		final void collectDoc(final int doc) {
+			values.setDocument(doc);
+			final int count = values.count();
+			for (int i = 0; i < count; i++)
+				result.sketch.add(HyperLogLog.hash(values.valueAt(i)));
+		}
+
+		@Override
+		final AggregationResult getResult() {
+			return result;
+		}
+	}
+
+	/**
+	 * The global ordinals are shared by the slices, the ordinal identifies the term.
+	 * The segment ordinals are deduplicated in a bit set, then hashed once when the segment is done.
+	 */
+	static final class OrdinalsAggregator extends Aggregator {
+
+		private final GlobalOrdinals ordinals;
+		private final Result result;
+
+		private SortedSetDocValues segmentValues;
+		private LongValues globalOrds;
+		private FixedBitSet segmentOrds;
+
+		OrdinalsAggregator(final GlobalOrdinals ordinals, final int threshold) {
+			this.ordinals = ordinals;
+			this.result = new Result(threshold);
+		}
+
+		private void flush() {
+			if (segmentOrds == null)
+				return;
+			final int length = segmentOrds.length();
+			for (int segOrd = segmentOrds.nextSetBit(0); segOrd < length; ) {
+				result.sketch.add(HyperLogLog.hash(globalOrds.get(segOrd)));
+				segOrd = segOrd + 1 < length ? segmentOrds.nextSetBit(segOrd + 1) : length;
+			}
+			segmentOrds = null;
+		}
+
+		@Override
+		final void setLeaf(final LeafReaderContext context) throws IOException {
+			flush();
+			if (ordinals.isEmpty()) {
+				segmentValues = null;
+				return;
+			}
+			segmentValues = ordinals.getSegmentValues(context);
+			globalOrds = ordinals.getGlobalOrds(context);
+			final long valueCount = segmentValues.getValueCount();
+			segmentOrds = valueCount == 0 ? null : new FixedBitSet((int) valueCount);
+		}
+
+		@Override
+		final void collectDoc(final int doc) {
+			if (segmentOrds == null)
+				return;
+			segmentValues.setDocument(doc);
+			long segOrd;
+			while ((segOrd = segmentValues.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS)
+				segmentOrds.set((int) segOrd);
+		}
+
+		@Override
+		final AggregationResult getResult() {
+			flush();
+			return result;
+		}
+	}
+
+	static final class Result extends AggregationResult {
+
+		private final HyperLogLog sketch;
+
+		Result(final int threshold) {
+			sketch = new HyperLogLog(threshold);
+		}
+
+		@Override
+		final void merge(final AggregationResult result) {
+			sketch.merge(((Result) result).sketch);
+		}
+
+		@Override
+		final Map<String, Object> toOutput() {
+			return Collections.singletonMap("value", sketch.cardinality());
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Date buckets over a long field storing milliseconds since the epoch.
+ * Calendar intervals follow the local time of the time zone (days may last 23 or 25 hours, months vary in length).
+ * Fixed intervals are a number of milliseconds, aligned on the epoch plus the offset.
+ * The key of a bucket is its start in milliseconds, the key_as_string is the ISO 8601 date in the time zone.
+ */
+public class DateHistogramAggregation extends IntervalAggregation<DateHistogramAggregation> {
+
+	public enum CalendarInterval {
+		minute, hour, day, week, month, quarter, year
+	}
+
+	@JsonProperty("calendar_interval")
+	final public CalendarInterval calendarInterval;
+
+	@JsonProperty("fixed_interval")
+	final public String fixedInterval;
+
+	final public Long offset;
+
+	@JsonProperty("time_zone")
+	final public String timeZone;
+
+	@JsonCreator
+	public DateHistogramAggregation(@JsonProperty("field") final String field,
+			@JsonProperty("calendar_interval") final CalendarInterval calendarInterval,
+			@JsonProperty("fixed_interval") final String fixedInterval, @JsonProperty("offset") final Long offset,
+			@JsonProperty("time_zone") final String timeZone, @JsonProperty("min_doc_count") final Long minDocCount,
+			@JsonProperty("extended_bounds") final Bounds extendedBounds,
+			@JsonProperty("aggregations") final LinkedHashMap<String, AggregationDefinition> aggregations) {
+		super(DateHistogramAggregation.class, field, minDocCount, extendedBounds, aggregations);
+		this.calendarInterval = calendarInterval;
+		this.fixedInterval = fixedInterval;
+		this.offset = offset;
+		this.timeZone = timeZone;
+	}
+
+	public DateHistogramAggregation(final String field, final CalendarInterval calendarInterval,
+			final String timeZone) {
+		this(field, calendarInterval, null, null, timeZone, null, null, null);
+	}
+
+	public DateHistogramAggregation(final String field, final String fixedInterval) {
+		this(field, null, fixedInterval, null, null, null, null, null);
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final DateHistogramAggregation a) {
+		return super.isEqual(a) && Objects.equals(calendarInterval, a.calendarInterval) &&
+				Objects.equals(fixedInterval, a.fixedInterval) && Objects.equals(offset, a.offset) &&
+				Objects.equals(timeZone, a.timeZone);
+	}
+
+	private final static Pattern FIXED_INTERVAL_PATTERN = Pattern.compile("(\\d+)(ms|s|m|h|d)");
+
+	static long parseFixedInterval(final String fixedInterval) {
+		final Matcher matcher = FIXED_INTERVAL_PATTERN.matcher(fixedInterval.trim());
+		if (!matcher.matches())
+			throw new IllegalArgumentException(
+					"Wrong fixed interval: " + fixedInterval + " - Expected: a number followed by ms, s, m, h or d");
+		final long value = Long.parseLong(matcher.group(1));
+		final long millis;
+		switch (matcher.group(2)) {
+		case "s":
+			millis = value * 1000L;
+			break;
+		case "m":
+			millis = value * 60_000L;
+			break;
+		case "h":
+			millis = value * 3_600_000L;
+			break;
+		case "d":
+			millis = value * 86_400_000L;
+			break;
+		default:
+			millis = value;
+			break;
+		}
+		if (millis <= 0)
+			throw new IllegalArgumentException("The fixed interval must be greater than zero: " + fixedInterval);
+		return millis;
+	}
+
+	@Override
+	final Supplier<IntervalRounding> newRoundingSupplier() {
+		if ((calendarInterval == null) == (fixedInterval == null))
+			throw new IllegalArgumentException("Either calendar_interval or fixed_interval is required");
+		final ZoneId zoneId = timeZone == null ? ZoneOffset.UTC : ZoneId.of(timeZone);
+		if (fixedInterval != null) {
+			final long interval = parseFixedInterval(fixedInterval);
+			final long offsetValue = offset == null ? 0 : offset;
+			return () -> new FixedRounding(interval, offsetValue, zoneId);
+		}
+		return () -> new CalendarRounding(calendarInterval, zoneId);
+	}
+
+	private static abstract class DateRounding implements IntervalRounding {
+
+		final ZoneId zoneId;
+
+		private DateRounding(final ZoneId zoneId) {
+			this.zoneId = zoneId;
+		}
+
+		abstract long startMillis(final long index);
+
+		@Override
+		public final Object key(final long index) {
+			return startMillis(index);
+		}
+
+		@Override
+		public final String keyAsString(final long index) {
+			return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(
+					Instant.ofEpochMilli(startMillis(index)).atZone(zoneId));
+		}
+	}
+
+	private static final class FixedRounding extends DateRounding {
+
+		private final long interval;
+		private final long offset;
+
+		private FixedRounding(final long interval, final long offset, final ZoneId zoneId) {
+			super(zoneId);
+			this.interval = interval;
+			this.offset = offset;
+		}
+
+		@Override
+		public final long index(final double value) {
+			return Math.floorDiv((long) value - offset, interval);
+		}
+
+		@Override
+		final long startMillis(final long index) {
+			return index * interval + offset;
+		}
+	}
+
+	/**
+	 * The bucket number counts the calendar units since 1970-01-01 in local time.
+	 * A local start skipped by a daylight saving gap is moved forward (the bucket is then empty),
+	 * a local start repeated by an overlap takes the earlier offset (the bucket is then longer).
+	 * The range of the last bucket is cached: consecutive values usually fall in the same bucket.
+	 */
+	private static final class CalendarRounding extends DateRounding {
+
+		private final CalendarInterval unit;
+
+		private long cachedStart = Long.MAX_VALUE;
+		private long cachedEnd = Long.MIN_VALUE;
+		private long cachedIndex;
+
+		private CalendarRounding(final CalendarInterval unit, final ZoneId zoneId) {
+			super(zoneId);
+			this.unit = unit;
+		}
+
+		@Override
+		public final long index(final double value) {
+			final long millis = (long) value;
+			if (millis >= cachedStart && millis < cachedEnd)
+				return cachedIndex;
+			final LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zoneId);
+			final long index = localIndex(local);
+			cachedIndex = index;
+			cachedStart = startMillis(index);
+			cachedEnd = startMillis(index + 1);
+			return index;
+		}
+
+		private long localIndex(final LocalDateTime local) {
+			switch (unit) {
+			case minute:
+				return Math.floorDiv(local.toEpochSecond(ZoneOffset.UTC), 60);
+			case hour:
+				return Math.floorDiv(local.toEpochSecond(ZoneOffset.UTC), 3600);
+			case day:
+				return local.toLocalDate().toEpochDay();
+			case week:
+				// 1970-01-01 is a thursday, the weeks start on monday
+				return Math.floorDiv(local.toLocalDate().toEpochDay() + 3, 7);
+			case month:
+				return (local.getYear() - 1970) * 12L + local.getMonthValue() - 1;
+			case quarter:
+				return Math.floorDiv((local.getYear() - 1970) * 12L + local.getMonthValue() - 1, 3);
+			default:
+				return local.getYear() - 1970;
+			}
+		}
+
+		private LocalDateTime localStart(final long index) {
+			switch (unit) {
+			case minute:
+				return LocalDateTime.ofEpochSecond(index * 60, 0, ZoneOffset.UTC);
+			case hour:
+				return LocalDateTime.ofEpochSecond(index * 3600, 0, ZoneOffset.UTC);
+			case day:
+				return LocalDate.ofEpochDay(index).atStartOfDay();
+			case week:
+				return LocalDate.ofEpochDay(index * 7 - 3).atStartOfDay();
+			case month:
+				return LocalDate.of(1970, 1, 1).plusMonths(index).atStartOfDay();
+			case quarter:
+				return LocalDate.of(1970, 1, 1).plusMonths(index * 3).atStartOfDay();
+			default:
+				return LocalDate.of(1970, 1, 1).plusYears(index).atStartOfDay();
+			}
+		}
+
+		@Override
+		final long startMillis(final long index) {
+			return ZonedDateTime.ofLocal(localStart(index), zoneId, null)
+					.withEarlierOffsetAtOverlap()
+					.toInstant()
+					.toEpochMilli();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Base class of the aggregations computed from a t-digest of the values of a numeric doc values field.
+ * Each slice builds its own digest, the digests are merged by the reduce step.
+ */
+public abstract class DigestAggregation<T extends DigestAggregation> extends AggregationDefinition<T> {
+
+	public final static double DEFAULT_COMPRESSION = 100;
+	public final static double MIN_COMPRESSION = 10;
+	public final static double MAX_COMPRESSION = 1000;
+
+	final public String field;
+	final public Double compression;
+
+	protected DigestAggregation(final Class<T> aggregationClass, final String field, final Double compression) {
+		super(aggregationClass);
+		this.field = field;
+		this.compression = compression;
+	}
+
+	@JsonIgnore
+	public double getCompressionValue() {
+		if (compression == null)
+			return DEFAULT_COMPRESSION;
+		// The size of the digest grows with the compression, an unbounded value would exhaust the memory
+		if (compression.isNaN() || compression < MIN_COMPRESSION || compression > MAX_COMPRESSION)
+			throw new IllegalArgumentException(
+					"The compression must be between " + MIN_COMPRESSION + " and " + MAX_COMPRESSION + ": " +
+							compression);
+		return compression;
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final T a) {
+		return Objects.equals(field, a.field) && Objects.equals(compression, a.compression);
+	}
+
+	abstract LinkedHashMap<String, Object> toOutput(final TDigest digest);
+
+	@Override
+	final AggregatorFactory newFactory(final AggregationContext context, final int depth) throws IOException {
+		final double compressionValue = getCompressionValue();
+		final NumericValues numericValues = context.getNumericValues(field);
+		return () -> new DigestAggregator(numericValues, new Result(this, compressionValue));
+	}
+
+	static final class DigestAggregator extends Aggregator {
+
+		private final NumericValues numericValues;
+		private final Result result;
+		private SortedNumericDocValues values;
+
+		DigestAggregator(final NumericValues numericValues, final Result result) {
+			this.numericValues = numericValues;
+			this.result = result;
+		}
+
+		@Override
+		final void setLeaf(final LeafReaderContext context) throws IOException {
+			values = numericValues.getSegmentValues(context);
+		}
+
+		@Override
+		final void collectDoc(final int doc) {
+			values.setDocument(doc);
+			final int count = values.count();
+			for (int i = 0; i < count; i++)
+				result.digest.add(numericValues.toDouble(values.valueAt(i)));
+		}
+
+		@Override
+		final AggregationResult getResult() {
+			return result;
+		}
+	}
+
+	static final class Result extends AggregationResult {
+
+		private final DigestAggregation definition;
+		private final TDigest digest;
+
+		private Result(final DigestAggregation definition, final double compression) {
+			this.definition = definition;
+			this.digest = new TDigest(compression);
+		}
+
+		@Override
+		final void merge(final AggregationResult result) {
+			digest.merge(((Result) result).digest);
+		}
+
+		@Override
+		final LinkedHashMap<String, Object> toOutput() {
+			return definition.toOutput(digest);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.search.query.AbstractQuery;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * A single bucket containing the collected documents which also match the filter query.
+ */
+public class FilterAggregation extends BucketAggregation<FilterAggregation> {
+
+	final public AbstractQuery filter;
+
+	@JsonCreator
+	public FilterAggregation(@JsonProperty("filter") final AbstractQuery filter,
+			@JsonProperty("aggregations") final LinkedHashMap<String, AggregationDefinition> aggregations) {
+		super(FilterAggregation.class, aggregations);
+		this.filter = filter;
+	}
+
+	public FilterAggregation(final AbstractQuery filter) {
+		this(filter, null);
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final FilterAggregation a) {
+		return super.isEqual(a) && Objects.equals(filter, a.filter);
+	}
+
+	@Override
+	final AggregatorFactory newFactory(final AggregationContext context, final int depth)
+			throws IOException, ParseException, QueryNodeException, ReflectiveOperationException {
+		if (filter == null)
+			throw new IllegalArgumentException("The filter query is missing");
+		// The weight is thread safe, it is shared by every slice
+		final Weight weight =
+				context.indexSearcher.createNormalizedWeight(filter.getQuery(context.queryContext), false);
+		final LinkedHashMap<String, AggregatorFactory> subFactories = context.newFactories(aggregations, depth + 1);
+		return () -> new FilterAggregator(weight, subFactories);
+	}
+
+	static final class FilterAggregator extends Aggregator {
+
+		private final Weight weight;
+		private final Bucket bucket;
+		private DocIdSetIterator iterator;
+
+		FilterAggregator(final Weight weight, final LinkedHashMap<String, AggregatorFactory> subFactories) {
+			this.weight = weight;
+			this.bucket = new Bucket(subFactories);
+		}
+
+		@Override
+		final void setLeaf(final LeafReaderContext context) throws IOException {
+			final Scorer scorer = weight.scorer(context);
+			iterator = scorer == null ? null : scorer.iterator();
+		}
+
+		@Override
+		final void collectDoc(final int doc) throws IOException {
+			if (iterator == null)
+				return;
+			// The documents are collected in increasing order within a segment
+			int filterDoc = iterator.docID();
+			if (filterDoc < doc)
+				filterDoc = iterator.advance(doc);
+			if (filterDoc == doc)
+				bucket.collect(getLeaf(), doc);
+		}
+
+		@Override
+		final AggregationResult getResult() {
+			return bucket.getResult();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.packed.PackedInts;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the segment ordinals of a SORTED or SORTED_SET doc values field to ordinals shared by the whole reader.
+ * The mapping is built once per top level reader and field, it is shared by the queries and read concurrently by
+ * the slices. It is dropped when the reader is closed (after a refresh).
+ */
+final class GlobalOrdinals {
+
+	/**
+	 * The ordinal maps by top level reader key and field
+	 */
+	private final static Map<Object, Map<String, MultiDocValues.OrdinalMap>> ORDINAL_MAPS = new ConcurrentHashMap<>();
+
+	final String field;
+
+	private final SortedSetDocValues values;
+	private final MultiDocValues.OrdinalMap ordinalMap;
+
+	private GlobalOrdinals(final String field, final SortedSetDocValues values,
+			final MultiDocValues.OrdinalMap ordinalMap) {
+		this.field = field;
+		this.values = values;
+		this.ordinalMap = ordinalMap;
+	}
+
+	static GlobalOrdinals of(final IndexReader indexReader, final String field) throws IOException {
+		final FieldInfo fieldInfo = MultiFields.getMergedFieldInfos(indexReader).fieldInfo(field);
+		if (fieldInfo == null)
+			return new GlobalOrdinals(field, null, null);
+		switch (fieldInfo.getDocValuesType()) {
+		case SORTED:
+		case SORTED_SET:
+			break;
+		default:
+			throw new IllegalArgumentException("The field " + field + " has no sorted doc values");
+		}
+		final List<LeafReaderContext> leaves = indexReader.leaves();
+		if (leaves.isEmpty())
+			return new GlobalOrdinals(field, null, null);
+		// A SORTED field is read as a single valued SORTED_SET field
+		final SortedSetDocValues[] segmentValues = new SortedSetDocValues[leaves.size()];
+		final int[] docStarts = new int[leaves.size() + 1];
+		for (int i = 0; i < segmentValues.length; i++) {
+			final LeafReaderContext leaf = leaves.get(i);
+			segmentValues[i] = DocValues.getSortedSet(leaf.reader(), field);
+			docStarts[i] = leaf.docBase;
+		}
+		docStarts[segmentValues.length] = indexReader.maxDoc();
+		if (segmentValues.length == 1)
+			return new GlobalOrdinals(field, segmentValues[0], null);
+		final MultiDocValues.OrdinalMap ordinalMap = getOrdinalMap(indexReader, field, segmentValues);
+		return new GlobalOrdinals(field,
+				new MultiDocValues.MultiSortedSetDocValues(segmentValues, docStarts, ordinalMap), ordinalMap);
+	}
+
+	private static MultiDocValues.OrdinalMap getOrdinalMap(final IndexReader indexReader, final String field,
+			final SortedSetDocValues[] segmentValues) throws IOException {
+		final Object readerKey = indexReader.getCombinedCoreAndDeletesKey();
+		final Map<String, MultiDocValues.OrdinalMap> ordinalMaps = ORDINAL_MAPS.computeIfAbsent(readerKey, key -> {
+			indexReader.addReaderClosedListener(reader -> ORDINAL_MAPS.remove(key));
+			return new ConcurrentHashMap<>();
+		});
+		final MultiDocValues.OrdinalMap ordinalMap = ordinalMaps.get(field);
+		if (ordinalMap != null)
+			return ordinalMap;
+		// Concurrent queries may build the same map, the first one is kept
+		final MultiDocValues.OrdinalMap newOrdinalMap =
+				MultiDocValues.OrdinalMap.build(readerKey, segmentValues, PackedInts.DEFAULT);
+		final MultiDocValues.OrdinalMap previous = ordinalMaps.putIfAbsent(field, newOrdinalMap);
+		return previous == null ? newOrdinalMap : previous;
+	}
+
+	/**
+	 * @return the number of cached ordinal maps, for the tests
+	 */
+	static int getCachedOrdinalMaps(final IndexReader indexReader) {
+		final Map<String, MultiDocValues.OrdinalMap> ordinalMaps =
+				ORDINAL_MAPS.get(indexReader.getCombinedCoreAndDeletesKey());
+		return ordinalMaps == null ? 0 : ordinalMaps.size();
+	}
+
+	final boolean isEmpty() {
+		return values == null || values.getValueCount() == 0;
+	}
+
+	final long getValueCount() {
+		return values == null ? 0 : values.getValueCount();
+	}
+
+	final SortedSetDocValues getSegmentValues(final LeafReaderContext context) throws IOException {
+		return DocValues.getSortedSet(context.reader(), field);
+	}
+
+	final LongValues getGlobalOrds(final LeafReaderContext context) {
+		return ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(context.ord);
+	}
+
+	/**
+	 * Not thread safe: only called by the request thread when the results are built.
+	 */
+	final String lookup(final long globalOrd) {
+		return values.lookupOrd(globalOrd).utf8ToString();
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Fixed size buckets over a numeric field. The key of a bucket is: floor((value - offset) / interval) * interval + offset
+ */
+public class HistogramAggregation extends IntervalAggregation<HistogramAggregation> {
+
+	final public Double interval;
+	final public Double offset;
+
+	@JsonCreator
+	public HistogramAggregation(@JsonProperty("field") final String field,
+			@JsonProperty("interval") final Double interval, @JsonProperty("offset") final Double offset,
+			@JsonProperty("min_doc_count") final Long minDocCount,
+			@JsonProperty("extended_bounds") final Bounds extendedBounds,
+			@JsonProperty("aggregations") final LinkedHashMap<String, AggregationDefinition> aggregations) {
+		super(HistogramAggregation.class, field, minDocCount, extendedBounds, aggregations);
+		this.interval = interval;
+		this.offset = offset;
+	}
+
+	public HistogramAggregation(final String field, final double interval) {
+		this(field, interval, null, null, null, null);
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final HistogramAggregation a) {
+		return super.isEqual(a) && Objects.equals(interval, a.interval) && Objects.equals(offset, a.offset);
+	}
+
+	@Override
+	final Supplier<IntervalRounding> newRoundingSupplier() {
+		if (interval == null || !(interval > 0) || Double.isInfinite(interval))
+			throw new IllegalArgumentException("The histogram interval must be greater than zero: " + interval);
+		final double intervalValue = interval;
+		final double offsetValue = offset == null ? 0 : offset;
+		final IntervalRounding rounding = new IntervalRounding() {
+
+			@Override
+			public long index(final double value) {
+				return (long) Math.floor((value - offsetValue) / intervalValue);
+			}
+
+			@Override
+			public Object key(final long index) {
+				return index * intervalValue + offsetValue;
+			}
+
+			@Override
+			public String keyAsString(final long index) {
+				return null;
+			}
+		};
+		// Stateless, one instance is shared
+		return () -> rounding;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+/**
+ * HyperLogLog distinct count sketch using 64 bits hashes.
+ * The hashes are kept in a set (exact count) until the precision threshold is reached,
+ * the sketch then switches to 2^precision registers.
+ * Small cardinalities of the dense representation are estimated using linear counting.
+ * The empirical bias correction of HyperLogLog++ is not implemented: just above the linear counting range
+ * (2.5 to 5 times the number of registers) the estimate is slightly biased upwards.
+ */
+final class HyperLogLog {
+
+	final static int MIN_PRECISION = 4;
+	final static int MAX_PRECISION = 18;
+
+	private final int precision;
+	private final int threshold;
+
+	private LongOpenHashSet sparse;
+	private byte[] registers;
+
+	HyperLogLog(final int precisionThreshold) {
+		this.threshold = precisionThreshold;
+		this.precision = precisionFor(precisionThreshold);
+		this.sparse = new LongOpenHashSet();
+	}
+
+	/**
+	 * Four registers per expected distinct value keep the dense error around 1.6%.
+	 */
+	static int precisionFor(final int precisionThreshold) {
+		final int log2 = 64 - Long.numberOfLeadingZeros(Math.max(1, precisionThreshold) - 1);
+		return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, log2 + 2));
+	}
+
+	/**
+	 * MurmurHash3 64 bits finalizer
+	 */
+	static long hash(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	final void add(final long hash) {
+		if (sparse != null) {
+			sparse.add(hash);
+			if (sparse.size() > threshold)
+				toDense();
+		} else
+			addRegister(hash);
+	}
+
+	private void addRegister(final long hash) {
+		final int index = (int) (hash >>> (64 - precision));
+		final int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+		if (rank > registers[index])
+			registers[index] = (byte) rank;
+	}
+
+	private void toDense() {
+		registers = new byte[1 << precision];
+		final LongIterator iterator = sparse.iterator();
+		while (iterator.hasNext())
+			addRegister(iterator.nextLong());
+		sparse = null;
+	}
+
+	final void merge(final HyperLogLog other) {
+		if (other.sparse != null) {
+			final LongIterator iterator = other.sparse.iterator();
+			while (iterator.hasNext())
+				add(iterator.nextLong());
+			return;
+		}
+		if (sparse != null)
+			toDense();
+		for (int i = 0; i < registers.length; i++)
+			if (other.registers[i] > registers[i])
+				registers[i] = other.registers[i];
+	}
+
+	final long cardinality() {
+		if (sparse != null)
+			return sparse.size();
+		final int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte register : registers) {
+			sum += 1.0d / (1L << register);
+			if (register == 0)
+				zeros++;
+		}
+		final double alpha = 0.7213d / (1 + 1.079d / m);
+		final double estimate = alpha * m * m / sum;
+		if (estimate <= 2.5d * m && zeros > 0)
+			return Math.round(m * Math.log((double) m / zeros));
+		return Math.round(estimate);
+	}
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Base class of the histogram aggregations: each value of a numeric doc values field is rounded to a bucket.
+ */
+public abstract class IntervalAggregation<T extends IntervalAggregation> extends BucketAggregation<T> {
+
+	final public String field;
+
+	@JsonProperty("min_doc_count")
+	final public Long minDocCount;
+
+	@JsonProperty("extended_bounds")
+	final public Bounds extendedBounds;
+
+	protected IntervalAggregation(final Class<T> aggregationClass, final String field, final Long minDocCount,
+			final Bounds extendedBounds, final LinkedHashMap<String, AggregationDefinition> aggregations) {
+		super(aggregationClass, aggregations);
+		this.field = field;
+		this.minDocCount = minDocCount;
+		this.extendedBounds = extendedBounds;
+	}
+
+	@JsonIgnore
+	public long getMinDocCountValue() {
+		return minDocCount == null ? 0 : minDocCount;
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final T a) {
+		return super.isEqual(a) && Objects.equals(field, a.field) && Objects.equals(minDocCount, a.minDocCount) &&
+				Objects.equals(extendedBounds, a.extendedBounds);
+	}
+
+	/**
+	 * @return a supplier of rounding instances, the parameters are checked when it is built
+	 */
+	abstract Supplier<IntervalRounding> newRoundingSupplier();
+
+	@Override
+	final AggregatorFactory newFactory(final AggregationContext context, final int depth)
+			throws IOException, ParseException, QueryNodeException, ReflectiveOperationException {
+		final NumericValues numericValues = context.getNumericValues(field);
+		final Supplier<IntervalRounding> roundingSupplier = newRoundingSupplier();
+		final LinkedHashMap<String, AggregatorFactory> subFactories = context.newFactories(aggregations, depth + 1);
+		return () -> {
+			final IntervalRounding rounding = roundingSupplier.get();
+			return new IntervalAggregator(numericValues, rounding, subFactories,
+					new Result(rounding, getMinDocCountValue(), extendedBounds, subFactories != null));
+		};
+	}
+
+	public static class Bounds {
+
+		final public Double min;
+		final public Double max;
+
+		@JsonCreator
+		public Bounds(@JsonProperty("min") final Double min, @JsonProperty("max") final Double max) {
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (o == null || !(o instanceof Bounds))
+				return false;
+			if (o == this)
+				return true;
+			final Bounds b = (Bounds) o;
+			return Objects.equals(min, b.min) && Objects.equals(max, b.max);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(min, max);
+		}
+	}
+
+	/**
+	 * The counts are written directly in the result arrays.
+	 * With sub-aggregations, the arrays hold the buckets, which are replaced by their results at the end.
+	 */
+	static final class IntervalAggregator extends Aggregator {
+
+		private final NumericValues numericValues;
+		private final IntervalRounding rounding;
+		private final LinkedHashMap<String, AggregatorFactory> subFactories;
+		private final Result result;
+		private final IntervalBuckets<?> buckets;
+		private SortedNumericDocValues values;
+
+		IntervalAggregator(final NumericValues numericValues, final IntervalRounding rounding,
+				final LinkedHashMap<String, AggregatorFactory> subFactories, final Result result) {
+			this.numericValues = numericValues;
+			this.rounding = rounding;
+			this.subFactories = subFactories;
+			this.result = result;
+			this.buckets = result.buckets;
+		}
+
+		@Override
+		final void setLeaf(final LeafReaderContext context) throws IOException {
+			values = numericValues.getSegmentValues(context);
+		}
+
+		@Override
+		final void collectDoc(final int doc) throws IOException {
+			values.setDocument(doc);
+			final int count = values.count();
+			long previousIndex = 0;
+			for (int i = 0; i < count; i++) {
+				final long index = rounding.index(numericValues.toDouble(values.valueAt(i)));
+				// The values are sorted: a document is counted once per bucket
+				if (i > 0 && index == previousIndex)
+					continue;
+				previousIndex = index;
+				final int slot = buckets.slot(index);
+				buckets.counts[slot]++;
+				if (subFactories != null) {
+					Bucket bucket = (Bucket) buckets.objects[slot];
+					if (bucket == null) {
+						bucket = new Bucket(subFactories);
+						buckets.objects[slot] = bucket;
+					}
+					bucket.collect(getLeaf(), doc);
+				}
+			}
+		}
+
+		@Override
+		final AggregationResult getResult() {
+			final Object[] objects = buckets.objects;
+			if (objects != null)
+				for (int i = 0; i < objects.length; i++)
+					if (objects[i] instanceof Bucket)
+						objects[i] = ((Bucket) objects[i]).getResult();
+			return result;
+		}
+	}
+
+	static final class Result extends AggregationResult {
+
+		private final IntervalRounding rounding;
+		private final long minDocCount;
+		private final Bounds extendedBounds;
+		private final IntervalBuckets<Bucket.Result> buckets;
+
+		Result(final IntervalRounding rounding, final long minDocCount, final Bounds extendedBounds,
+				final boolean withSubResults) {
+			this.rounding = rounding;
+			this.minDocCount = minDocCount;
+			this.extendedBounds = extendedBounds;
+			this.buckets = new IntervalBuckets<>(withSubResults);
+		}
+
+		@Override
+		final void merge(final AggregationResult result) {
+			final IntervalBuckets<Bucket.Result> other = ((Result) result).buckets;
+			if (other.isEmpty())
+				return;
+			final long end = other.end();
+			for (long index = other.base; index < end; index++) {
+				final long count = other.count(index);
+				if (count == 0)
+					continue;
+				final int slot = buckets.slot(index);
+				buckets.counts[slot] += count;
+				if (buckets.objects == null)
+					continue;
+				final Bucket.Result bucketResult = (Bucket.Result) buckets.objects[slot];
+				if (bucketResult == null)
+					buckets.objects[slot] = other.object(index);
+				else
+					bucketResult.merge(other.object(index));
+			}
+		}
+
+		@Override
+		final LinkedHashMap<String, Object> toOutput() {
+			long first = Long.MAX_VALUE;
+			long last = Long.MIN_VALUE;
+			if (!buckets.isEmpty()) {
+				final long end = buckets.end();
+				for (long index = buckets.base; index < end; index++) {
+					if (buckets.count(index) == 0)
+						continue;
+					first = Math.min(first, index);
+					last = Math.max(last, index);
+				}
+			}
+			if (minDocCount == 0 && extendedBounds != null) {
+				if (extendedBounds.min != null)
+					first = Math.min(first, rounding.index(extendedBounds.min));
+				if (extendedBounds.max != null)
+					last = Math.max(last, rounding.index(extendedBounds.max));
+			}
+			final List<LinkedHashMap<String, Object>> bucketList = new ArrayList<>();
+			if (first <= last) {
+				if (minDocCount == 0)
+					IntervalBuckets.checkSpan(last - first + 1);
+				for (long index = first; index <= last; index++) {
+					final long count = buckets.count(index);
+					if (count < minDocCount)
+						continue;
+					final Object key = rounding.key(index);
+					// A bucket whose key does not advance is empty by construction (a local time skipped by DST)
+					if (count == 0 && key.equals(rounding.key(index + 1)))
+						continue;
+					final LinkedHashMap<String, Object> bucket = new LinkedHashMap<>();
+					bucket.put("key", key);
+					final String keyAsString = rounding.keyAsString(index);
+					if (keyAsString != null)
+						bucket.put("key_as_string", keyAsString);
+					final Bucket.Result bucketResult = buckets.object(index);
+					if (bucketResult != null)
+						bucketResult.toOutput(bucket);
+					else
+						bucket.put("doc_count", count);
+					bucketList.add(bucket);
+				}
+			}
+			final LinkedHashMap<String, Object> output = new LinkedHashMap<>();
+			output.put("buckets", bucketList);
+			return output;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+/**
+ * Histogram buckets stored in primitive arrays indexed by the bucket number.
+ * The arrays grow in both directions, the span is bounded by MAX_BUCKETS.
+ */
+final class IntervalBuckets<T> {
+
+	final static int MAX_BUCKETS = 1 << 16;
+
+	private final boolean withObjects;
+
+	long base;
+	long[] counts;
+	Object[] objects;
+
+	IntervalBuckets(final boolean withObjects) {
+		this.withObjects = withObjects;
+	}
+
+	final boolean isEmpty() {
+		return counts == null;
+	}
+
+	final long end() {
+		return base + counts.length;
+	}
+
+	final long count(final long index) {
+		return counts == null || index < base || index >= end() ? 0 : counts[(int) (index - base)];
+	}
+
+	final T object(final long index) {
+		return objects == null || index < base || index >= end() ? null : (T) objects[(int) (index - base)];
+	}
+
+	static void checkSpan(final long span) {
+		if (span > MAX_BUCKETS)
+			throw new IllegalArgumentException(
+					"Too many histogram buckets (" + span + "). The maximum is " + MAX_BUCKETS +
+							". Please increase the interval.");
+	}
+
+	/**
+	 * Return the position of the bucket in the arrays, growing the arrays if required
+	 */
+	final int slot(final long index) {
+		if (counts == null) {
+			base = index;
+			counts = new long[16];
+			if (withObjects)
+				objects = new Object[16];
+			return 0;
+		}
+		final long end = end();
+		if (index >= base && index < end)
+			return (int) (index - base);
+		final int length = counts.length;
+		final long newBase;
+		final long newEnd;
+		if (index < base) {
+			newEnd = end;
+			newBase = Math.max(newEnd - MAX_BUCKETS, Math.min(index, newEnd - (long) length * 2));
+		} else {
+			newBase = base;
+			newEnd = Math.min(newBase + MAX_BUCKETS, Math.max(index + 1, newBase + (long) length * 2));
+		}
+		checkSpan(Math.max(newEnd, index + 1) - Math.min(newBase, index));
+		final int newLength = (int) (newEnd - newBase);
+		final int shift = (int) (base - newBase);
+		final long[] newCounts = new long[newLength];
+		System.arraycopy(counts, 0, newCounts, shift, length);
+		counts = newCounts;
+		if (objects != null) {
+			final Object[] newObjects = new Object[newLength];
+			System.arraycopy(objects, 0, newObjects, shift, length);
+			objects = newObjects;
+		}
+		base = newBase;
+		return (int) (index - base);
+	}
+}
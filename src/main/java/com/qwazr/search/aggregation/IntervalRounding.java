@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+/**
+ * Maps a value to the number of its histogram bucket, and a bucket number to its key.
+ * An instance may cache the last bucket, it is used by one aggregator only.
+ */
+interface IntervalRounding {
+
+	long index(final double value);
+
+	Object key(final long index);
+
+	/**
+	 * @return the formatted key, or null if the key is not formatted
+	 */
+	String keyAsString(final long index);
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.util.NumericUtils;
+
+import java.io.IOException;
+
+/**
+ * Reads the values of a NUMERIC or SORTED_NUMERIC doc values field as doubles.
+ * The NUMERIC floating point fields store the raw bits (DoubleDocValuesField, FloatDocValuesField),
+ * the SORTED_NUMERIC ones store the sortable bits (NumericUtils.doubleToSortableLong, floatToSortableInt).
+ */
+final class NumericValues {
+
+	final String field;
+	final SortField.Type type;
+	final boolean sortableBits;
+
+	private NumericValues(final String field, final SortField.Type type, final boolean sortableBits) {
+		this.field = field;
+		this.type = type;
+		this.sortableBits = sortableBits;
+	}
+
+	/**
+	 * @return the numeric type of the sort field, or null if the field is not numeric
+	 */
+	static SortField.Type getNumericType(final SortField sortField) {
+		if (sortField == null)
+			return null;
+		final SortField.Type type = sortField instanceof SortedNumericSortField ?
+				((SortedNumericSortField) sortField).getNumericType() :
+				sortField.getType();
+		switch (type) {
+		case INT:
+		case LONG:
+		case FLOAT:
+		case DOUBLE:
+			return type;
+		default:
+			return null;
+		}
+	}
+
+	static NumericValues of(final IndexReader indexReader, final String fieldName, final SortField sortField)
+			throws IOException {
+		final SortField.Type type = getNumericType(sortField);
+		if (type == null)
+			throw new IllegalArgumentException("The field " + fieldName + " has no numeric doc values");
+		final FieldInfo fieldInfo = MultiFields.getMergedFieldInfos(indexReader).fieldInfo(sortField.getField());
+		// Not indexed yet: there is no value to decode
+		if (fieldInfo == null)
+			return new NumericValues(sortField.getField(), type, true);
+		final DocValuesType docValuesType = fieldInfo.getDocValuesType();
+		if (docValuesType != DocValuesType.NUMERIC && docValuesType != DocValuesType.SORTED_NUMERIC)
+			throw new IllegalArgumentException("The field " + fieldName + " has no numeric doc values");
+		return new NumericValues(sortField.getField(), type, docValuesType == DocValuesType.SORTED_NUMERIC);
+	}
+
+	final SortedNumericDocValues getSegmentValues(final LeafReaderContext context) throws IOException {
+		return DocValues.getSortedNumeric(context.reader(), field);
+	}
+
+	final boolean isFloatingPoint() {
+		return type == SortField.Type.DOUBLE || type == SortField.Type.FLOAT;
+	}
+
+	final double toDouble(final long value) {
+		switch (type) {
+		case DOUBLE:
+			return sortableBits ? NumericUtils.sortableLongToDouble(value) : Double.longBitsToDouble(value);
+		case FLOAT:
+			return sortableBits ?
+					NumericUtils.sortableIntToFloat((int) value) :
+					Float.intBitsToFloat((int) value);
+		default:
+			return value;
+		}
+	}
+}
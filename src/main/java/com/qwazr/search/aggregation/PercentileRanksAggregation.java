@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Estimated percentage (between 0 and 100) of the values which are lower or equal to each given value.
+ */
+public class PercentileRanksAggregation extends DigestAggregation<PercentileRanksAggregation> {
+
+	final public double[] values;
+
+	@JsonCreator
+	public PercentileRanksAggregation(@JsonProperty("field") final String field,
+			@JsonProperty("values") final double[] values, @JsonProperty("compression") final Double compression) {
+		super(PercentileRanksAggregation.class, field, compression);
+		this.values = values;
+	}
+
+	public PercentileRanksAggregation(final String field, final double... values) {
+		this(field, values, null);
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final PercentileRanksAggregation a) {
+		return super.isEqual(a) && Arrays.equals(values, a.values);
+	}
+
+	@Override
+	final LinkedHashMap<String, Object> toOutput(final TDigest digest) {
+		final LinkedHashMap<String, Object> ranks = new LinkedHashMap<>();
+		if (values != null) {
+			for (double value : values) {
+				final double rank = digest.cdf(value);
+				ranks.put(Double.toString(value), Double.isNaN(rank) ? null : rank * 100);
+			}
+		}
+		final LinkedHashMap<String, Object> output = new LinkedHashMap<>();
+		output.put("values", ranks);
+		return output;
+	}
+}
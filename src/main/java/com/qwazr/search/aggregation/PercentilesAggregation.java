@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Estimated values of the given percentiles (between 0 and 100).
+ */
+public class PercentilesAggregation extends DigestAggregation<PercentilesAggregation> {
+
+	public final static double[] DEFAULT_PERCENTS = { 1, 5, 25, 50, 75, 95, 99 };
+
+	final public double[] percents;
+
+	@JsonCreator
+	public PercentilesAggregation(@JsonProperty("field") final String field,
+			@JsonProperty("percents") final double[] percents, @JsonProperty("compression") final Double compression) {
+		super(PercentilesAggregation.class, field, compression);
+		this.percents = percents;
+	}
+
+	public PercentilesAggregation(final String field, final double... percents) {
+		this(field, percents, null);
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final PercentilesAggregation a) {
+		return super.isEqual(a) && Arrays.equals(percents, a.percents);
+	}
+
+	@Override
+	final LinkedHashMap<String, Object> toOutput(final TDigest digest) {
+		final LinkedHashMap<String, Object> values = new LinkedHashMap<>();
+		for (double percent : percents == null || percents.length == 0 ? DEFAULT_PERCENTS : percents) {
+			final double value = digest.quantile(percent / 100);
+			values.put(Double.toString(percent), Double.isNaN(value) ? null : value);
+		}
+		final LinkedHashMap<String, Object> output = new LinkedHashMap<>();
+		output.put("values", values);
+		return output;
+	}
+}
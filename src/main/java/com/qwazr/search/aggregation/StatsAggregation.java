@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Count, sum, min, max and average of a numeric doc values field.
+ */
+public class StatsAggregation extends AggregationDefinition<StatsAggregation> {
+
+	final public String field;
+
+	@JsonCreator
+	public StatsAggregation(@JsonProperty("field") final String field) {
+		super(StatsAggregation.class);
+		this.field = field;
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final StatsAggregation a) {
+		return Objects.equals(field, a.field);
+	}
+
+	@Override
+	final AggregatorFactory newFactory(final AggregationContext context, final int depth) throws IOException {
+		final NumericValues numericValues = context.getNumericValues(field);
+		return () -> new StatsAggregator(numericValues);
+	}
+
+	static final class StatsAggregator extends Aggregator {
+
+		private final NumericValues numericValues;
+		private final Result result;
+		private SortedNumericDocValues values;
+
+		StatsAggregator(final NumericValues numericValues) {
+			this.numericValues = numericValues;
+			this.result = new Result();
+		}
+
+		@Override
+		final void setLeaf(final LeafReaderContext context) throws IOException {
+			values = numericValues.getSegmentValues(context);
+		}
+
+		@Override
+		final void collectDoc(final int doc) {
+			values.setDocument(doc);
+			final int count = values.count();
+			for (int i = 0; i < count; i++)
+				result.add(numericValues.toDouble(values.valueAt(i)));
+		}
+
+		@Override
+		final AggregationResult getResult() {
+			return result;
+		}
+	}
+
+	static final class Result extends AggregationResult {
+
+		private long count;
+		private double sum;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+
+		private void add(final double value) {
+			count++;
+			sum += value;
+			if (value < min)
+				min = value;
+			if (value > max)
+				max = value;
+		}
+
+		@Override
+		final void merge(final AggregationResult result) {
+			final Result statsResult = (Result) result;
+			count += statsResult.count;
+			sum += statsResult.sum;
+			min = Math.min(min, statsResult.min);
+			max = Math.max(max, statsResult.max);
+		}
+
+		@Override
+		final LinkedHashMap<String, Object> toOutput() {
+			final LinkedHashMap<String, Object> output = new LinkedHashMap<>();
+			output.put("count", count);
+			if (count > 0) {
+				output.put("min", min);
+				output.put("max", max);
+				output.put("avg", sum / count);
+			}
+			output.put("sum", sum);
+			return output;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch (t-digest, merging variant).
+ * The values are buffered, then merged into centroids whose size is bounded by the arcsine scale function:
+ * the centroids are small near the tails and larger near the median.
+ */
+final class TDigest {
+
+	private final double compression;
+
+	private double[] means;
+	private long[] counts;
+	private int centroids;
+
+	private final double[] bufferMeans;
+	private final long[] bufferCounts;
+	private int buffered;
+
+	private long totalCount;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	TDigest(final double compression) {
+		this.compression = compression;
+		final int capacity = (int) Math.ceil(compression) + 1;
+		this.means = new double[capacity];
+		this.counts = new long[capacity];
+		this.bufferMeans = new double[capacity * 5];
+		this.bufferCounts = new long[capacity * 5];
+	}
+
+	final void add(final double value) {
+		add(value, 1);
+	}
+
+	private void add(final double mean, final long count) {
+		if (buffered == bufferMeans.length)
+			compress();
+		bufferMeans[buffered] = mean;
+		bufferCounts[buffered++] = count;
+		totalCount += count;
+		if (mean < min)
+			min = mean;
+		if (mean > max)
+			max = mean;
+	}
+
+	final void merge(final TDigest other) {
+		other.compress();
+		for (int i = 0; i < other.centroids; i++)
+			add(other.means[i], other.counts[i]);
+		if (other.min < min)
+			min = other.min;
+		if (other.max > max)
+			max = other.max;
+	}
+
+	private double scale(final double q) {
+		return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+	}
+
+	private double inverseScale(final double k) {
+		if (k >= compression / 4)
+			return 1;
+		return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+	}
+
+	private void compress() {
+		if (buffered == 0)
+			return;
+		final int size = centroids + buffered;
+		final double[] allMeans = Arrays.copyOf(means, size);
+		final long[] allCounts = Arrays.copyOf(counts, size);
+		System.arraycopy(bufferMeans, 0, allMeans, centroids, buffered);
+		System.arraycopy(bufferCounts, 0, allCounts, centroids, buffered);
+		buffered = 0;
+		sort(allMeans, allCounts, 0, size - 1);
+
+		final double[] newMeans = new double[size];
+		final long[] newCounts = new long[size];
+		int n = 0;
+		newMeans[0] = allMeans[0];
+		newCounts[0] = allCounts[0];
+		long countSoFar = 0;
+		double limit = totalCount * inverseScale(scale(0) + 1);
+		for (int i = 1; i < size; i++) {
+			final long proposed = newCounts[n] + allCounts[i];
+			if (countSoFar + proposed <= limit) {
+				newMeans[n] += (allMeans[i] - newMeans[n]) * allCounts[i] / proposed;
+				newCounts[n] = proposed;
+			} else {
+				countSoFar += newCounts[n];
+				limit = totalCount * inverseScale(scale((double) countSoFar / totalCount) + 1);
+				n++;
+				newMeans[n] = allMeans[i];
+				newCounts[n] = allCounts[i];
+			}
+		}
+		centroids = n + 1;
+		means = newMeans;
+		counts = newCounts;
+	}
+
+	/**
+	 * Sort both arrays by mean (quicksort on primitive arrays)
+	 */
+	private static void sort(final double[] means, final long[] counts, int low, int high) {
+		while (low < high) {
+			final double pivot = means[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (means[i] < pivot)
+					i++;
+				while (means[j] > pivot)
+					j--;
+				if (i <= j) {
+					final double mean = means[i];
+					means[i] = means[j];
+					means[j] = mean;
+					final long count = counts[i];
+					counts[i] = counts[j];
+					counts[j] = count;
+					i++;
+					j--;
+				}
+			}
+			if (j - low < high - i) {
+				sort(means, counts, low, j);
+				low = i;
+			} else {
+				sort(means, counts, i, high);
+				high = j;
+			}
+		}
+	}
+
+	final long size() {
+		return totalCount;
+	}
+
+	/**
+	 * @param q the quantile, between 0 and 1
+	 * @return the estimated value, or NaN if the digest is empty
+	 */
+	final double quantile(final double q) {
+		compress();
+		if (centroids == 0)
+			return Double.NaN;
+		if (q <= 0)
+			return min;
+		if (q >= 1)
+			return max;
+		if (centroids == 1)
+			return means[0];
+		final double index = q * totalCount;
+		double countSoFar = counts[0] / 2.0;
+		if (index < countSoFar)
+			return min + (means[0] - min) * index / countSoFar;
+		for (int i = 0; i < centroids - 1; i++) {
+			final double delta = (counts[i] + counts[i + 1]) / 2.0;
+			if (countSoFar + delta > index)
+				return means[i] + (means[i + 1] - means[i]) * (index - countSoFar) / delta;
+			countSoFar += delta;
+		}
+		final double last = counts[centroids - 1] / 2.0;
+		return means[centroids - 1] + (max - means[centroids - 1]) * Math.min(1, (index - countSoFar) / last);
+	}
+
+	/**
+	 * @param value the value
+	 * @return the estimated fraction of the values lower or equal to the given value, or NaN if the digest is empty
+	 */
+	final double cdf(final double value) {
+		compress();
+		if (centroids == 0)
+			return Double.NaN;
+		if (value < min)
+			return 0;
+		if (value >= max)
+			return 1;
+		if (centroids == 1)
+			return (value - min) / (max - min);
+		double countSoFar = counts[0] / 2.0;
+		if (value < means[0])
+			return countSoFar * (value - min) / (means[0] - min) / totalCount;
+		for (int i = 0; i < centroids - 1; i++) {
+			final double delta = (counts[i] + counts[i + 1]) / 2.0;
+			if (value < means[i + 1])
+				return (countSoFar + delta * (value - means[i]) / (means[i + 1] - means[i])) / totalCount;
+			countSoFar += delta;
+		}
+		final double last = counts[centroids - 1] / 2.0;
+		return (countSoFar + last * (value - means[centroids - 1]) / (max - means[centroids - 1])) / totalCount;
+	}
+}
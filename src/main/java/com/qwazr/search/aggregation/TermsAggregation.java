@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.PriorityQueue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One bucket per term of a SortedDocValues or SortedSetDocValues field.
+ * The terms are counted using the global ordinals, the terms are only resolved for the returned buckets.
+ */
+public class TermsAggregation extends BucketAggregation<TermsAggregation> {
+
+	public final static int DEFAULT_SIZE = 10;
+
+	final public String field;
+	final public Integer size;
+
+	@JsonCreator
+	public TermsAggregation(@JsonProperty("field") final String field, @JsonProperty("size") final Integer size,
+			@JsonProperty("aggregations") final LinkedHashMap<String, AggregationDefinition> aggregations) {
+		super(TermsAggregation.class, aggregations);
+		this.field = field;
+		this.size = size;
+	}
+
+	public TermsAggregation(final String field, final Integer size) {
+		this(field, size, null);
+	}
+
+	@JsonIgnore
+	public int getSizeValue() {
+		if (size == null)
+			return DEFAULT_SIZE;
+		if (size <= 0)
+			throw new IllegalArgumentException("The size must be greater than zero: " + size);
+		return size;
+	}
+
+	@Override
+	@JsonIgnore
+	protected boolean isEqual(final TermsAggregation a) {
+		return super.isEqual(a) && Objects.equals(field, a.field) && Objects.equals(size, a.size);
+	}
+
+	@Override
+	final AggregatorFactory newFactory(final AggregationContext context, final int depth)
+			throws IOException, ParseException, QueryNodeException, ReflectiveOperationException {
+		final int sizeValue = getSizeValue();
+		final GlobalOrdinals ordinals = context.getGlobalOrdinals(field);
+		final LinkedHashMap<String, AggregatorFactory> subFactories = context.newFactories(aggregations, depth + 1);
+		if (subFactories != null)
+			return () -> new BucketsAggregator(ordinals, sizeValue, subFactories);
+		// Only the top level aggregator can afford one counter per segment ordinal
+		final boolean dense = depth == 1;
+		return () -> new CountAggregator(ordinals, sizeValue, dense);
+	}
+
+	/**
+	 * Counts the documents only. At the top level the segment ordinals are counted in an array,
+	 * the counts are mapped to the global ordinals when the segment is done.
+	 */
+	static final class CountAggregator extends Aggregator {
+
+		private final GlobalOrdinals ordinals;
+		private final boolean dense;
+		private final Result result;
+
+		private SortedSetDocValues segmentValues;
+		private LongValues globalOrds;
+		private int[] segmentCounts;
+
+		CountAggregator(final GlobalOrdinals ordinals, final int size, final boolean dense) {
+			this.ordinals = ordinals;
+			this.dense = dense;
+			this.result = new Result(ordinals, size, false);
+		}
+
+		private void flush() {
+			if (segmentCounts == null)
+				return;
+			for (int segOrd = 0; segOrd < segmentCounts.length; segOrd++) {
+				final int count = segmentCounts[segOrd];
+				if (count > 0)
+					result.counts.addTo(globalOrds.get(segOrd), count);
+			}
+			segmentCounts = null;
+		}
+
+		@Override
+		final void setLeaf(final LeafReaderContext context) throws IOException {
+			flush();
+			if (ordinals.isEmpty()) {
+				segmentValues = null;
+				return;
+			}
+			segmentValues = ordinals.getSegmentValues(context);
+			globalOrds = ordinals.getGlobalOrds(context);
+			if (dense)
+				segmentCounts = new int[(int) segmentValues.getValueCount()];
+		}
+
+		@Override
+		final void collectDoc(final int doc) {
+			if (segmentValues == null)
+				return;
+			segmentValues.setDocument(doc);
+			long segOrd;
+			if (segmentCounts != null) {
+				while ((segOrd = segmentValues.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS)
+					segmentCounts[(int) segOrd]++;
+			} else {
+				while ((segOrd = segmentValues.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS)
+					result.counts.addTo(globalOrds.get(segOrd), 1);
+			}
+		}
+
+		@Override
+		final AggregationResult getResult() {
+			flush();
+			return result;
+		}
+	}
+
+	/**
+	 * One bucket per global ordinal, each bucket feeds its own sub-aggregators.
+	 */
+	static final class BucketsAggregator extends Aggregator {
+
+		private final GlobalOrdinals ordinals;
+		private final int size;
+		private final LinkedHashMap<String, AggregatorFactory> subFactories;
+		private final Long2ObjectOpenHashMap<Bucket> buckets;
+
+		private SortedSetDocValues segmentValues;
+		private LongValues globalOrds;
+
+		BucketsAggregator(final GlobalOrdinals ordinals, final int size,
+				final LinkedHashMap<String, AggregatorFactory> subFactories) {
+			this.ordinals = ordinals;
+			this.size = size;
+			this.subFactories = subFactories;
+			this.buckets = new Long2ObjectOpenHashMap<>();
+		}
+
+		@Override
+		final void setLeaf(final LeafReaderContext context) throws IOException {
+			if (ordinals.isEmpty()) {
+				segmentValues = null;
+				return;
+			}
+			segmentValues = ordinals.getSegmentValues(context);
+			globalOrds = ordinals.getGlobalOrds(context);
+		}
+
+		@Override
+		final void collectDoc(final int doc) throws IOException {
+			if (segmentValues == null)
+				return;
+			segmentValues.setDocument(doc);
+			long segOrd;
+			while ((segOrd = segmentValues.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+				final long globalOrd = globalOrds.get(segOrd);
+				Bucket bucket = buckets.get(globalOrd);
+				if (bucket == null) {
+					bucket = new Bucket(subFactories);
+					buckets.put(globalOrd, bucket);
+				}
+				bucket.collect(getLeaf(), doc);
+			}
+		}
+
+		@Override
+		final AggregationResult getResult() {
+			final Result result = new Result(ordinals, size, true);
+			for (Long2ObjectMap.Entry<Bucket> entry : buckets.long2ObjectEntrySet()) {
+				final Bucket.Result bucketResult = entry.getValue().getResult();
+				result.counts.put(entry.getLongKey(), bucketResult.docCount);
+				result.subResults.put(entry.getLongKey(), bucketResult);
+			}
+			return result;
+		}
+	}
+
+	static final class Result extends AggregationResult {
+
+		private final GlobalOrdinals ordinals;
+		private final int size;
+		private final Long2LongOpenHashMap counts;
+		private final Long2ObjectOpenHashMap<Bucket.Result> subResults;
+
+		Result(final GlobalOrdinals ordinals, final int size, final boolean withSubResults) {
+			this.ordinals = ordinals;
+			this.size = size;
+			this.counts = new Long2LongOpenHashMap();
+			this.subResults = withSubResults ? new Long2ObjectOpenHashMap<>() : null;
+		}
+
+		@Override
+		final void merge(final AggregationResult result) {
+			final Result termsResult = (Result) result;
+			for (Long2LongMap.Entry entry : termsResult.counts.long2LongEntrySet())
+				counts.addTo(entry.getLongKey(), entry.getLongValue());
+			if (subResults == null)
+				return;
+			for (Long2ObjectMap.Entry<Bucket.Result> entry : termsResult.subResults.long2ObjectEntrySet()) {
+				final Bucket.Result bucketResult = subResults.putIfAbsent(entry.getLongKey(), entry.getValue());
+				if (bucketResult != null)
+					bucketResult.merge(entry.getValue());
+			}
+		}
+
+		@Override
+		final LinkedHashMap<String, Object> toOutput() {
+			final TopOrds topOrds = new TopOrds(Math.min(size, counts.size()));
+			long totalCount = 0;
+			for (Long2LongMap.Entry entry : counts.long2LongEntrySet()) {
+				totalCount += entry.getLongValue();
+				if (size > 0)
+					topOrds.insertWithOverflow(new OrdCount(entry.getLongKey(), entry.getLongValue()));
+			}
+			final OrdCount[] ordCounts = new OrdCount[topOrds.size()];
+			for (int i = ordCounts.length - 1; i >= 0; i--)
+				ordCounts[i] = topOrds.pop();
+			final List<LinkedHashMap<String, Object>> buckets = new ArrayList<>(ordCounts.length);
+			long bucketsCount = 0;
+			for (OrdCount ordCount : ordCounts) {
+				final LinkedHashMap<String, Object> bucket = new LinkedHashMap<>();
+				bucket.put("key", ordinals.lookup(ordCount.ord));
+				bucketsCount += ordCount.count;
+				if (subResults != null)
+					subResults.get(ordCount.ord).toOutput(bucket);
+				else
+					bucket.put("doc_count", ordCount.count);
+				buckets.add(bucket);
+			}
+			final LinkedHashMap<String, Object> output = new LinkedHashMap<>();
+			output.put("buckets", buckets);
+			output.put("sum_other_doc_count", totalCount - bucketsCount);
+			return output;
+		}
+	}
+
+	private static final class OrdCount {
+
+		private final long ord;
+		private final long count;
+
+		private OrdCount(final long ord, final long count) {
+			this.ord = ord;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Keeps the biggest counts, ties are broken by term order.
+	 */
+	private static final class TopOrds extends PriorityQueue<OrdCount> {
+
+		private TopOrds(final int size) {
+			super(size);
+		}
+
+		@Override
+		protected boolean lessThan(final OrdCount a, final OrdCount b) {
+			if (a.count != b.count)
+				return a.count < b.count;
+			return a.ord > b.ord;
+		}
+	}
+}
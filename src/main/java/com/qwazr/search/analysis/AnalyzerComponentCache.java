@@ -0,0 +1,275 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.analysis;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.analysis.util.AbstractAnalysisFactory;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node wide cache of the tokenizer and filter factories used by the custom analyzers.
+ * A factory is shared when the class, the arguments and the content of every resource it has loaded
+ * (stop words, dictionaries, synonyms) are identical.
+ * The factories are reference counted: an entry is removed when the last analyzer using it is closed.
+ */
+public final class AnalyzerComponentCache {
+
+	/**
+	 * Implemented by the resource loaders which provide a component cache
+	 */
+	public interface Aware {
+
+		AnalyzerComponentCache getAnalyzerComponentCache();
+	}
+
+	private final Map<Key, List<Component<?>>> components;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+
+	public AnalyzerComponentCache() {
+		components = new HashMap<>();
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+	}
+
+	/**
+	 * Returns a shared factory, or build a new one.
+	 * The returned component must be released when the analyzer is closed.
+	 */
+	<T extends AbstractAnalysisFactory> Component<T> acquire(final Class<T> factoryClass,
+			final Map<String, String> args, final ResourceLoader resourceLoader)
+			throws IOException, ReflectiveOperationException {
+		final Key key = new Key(factoryClass, args);
+
+		final List<Component<?>> candidates;
+		synchronized (components) {
+			final List<Component<?>> list = components.get(key);
+			candidates = list == null ? Collections.emptyList() : new ArrayList<>(list);
+		}
+		for (Component<?> candidate : candidates) {
+			if (candidate.matches(resourceLoader) && acquire(candidate)) {
+				hits.incrementAndGet();
+				return cast(factoryClass, candidate);
+			}
+		}
+
+		misses.incrementAndGet();
+		final HashingResourceLoader hashingLoader = new HashingResourceLoader(resourceLoader);
+		final T factory = factoryClass.getConstructor(Map.class).newInstance(new HashMap<>(args));
+		if (factory instanceof ResourceLoaderAware)
+			((ResourceLoaderAware) factory).inform(hashingLoader);
+		final Component<T> component = new Component<>(key, factory, hashingLoader.hashes);
+
+		synchronized (components) {
+			final List<Component<?>> list = components.computeIfAbsent(key, k -> new ArrayList<>(1));
+			// Another thread may have built the same component concurrently
+			for (Component<?> existing : list) {
+				if (existing.hashes.equals(component.hashes)) {
+					existing.refCount++;
+					return cast(factoryClass, existing);
+				}
+			}
+			component.refCount = 1;
+			list.add(component);
+			return component;
+		}
+	}
+
+	/**
+	 * The single unchecked cast of the cache: the components of a key are built from the factory class
+	 * of the key, so they all hold a factory of that class (checked at runtime anyway).
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends AbstractAnalysisFactory> Component<T> cast(final Class<T> factoryClass,
+			final Component<?> component) {
+		factoryClass.cast(component.factory);
+		return (Component<T>) component;
+	}
+
+	private boolean acquire(final Component<?> component) {
+		synchronized (components) {
+			// The component may have been released meanwhile
+			if (component.refCount == 0)
+				return false;
+			component.refCount++;
+			return true;
+		}
+	}
+
+	void release(final Component<?> component) {
+		synchronized (components) {
+			if (--component.refCount > 0)
+				return;
+			final List<Component<?>> list = components.get(component.key);
+			if (list == null)
+				return;
+			list.remove(component);
+			if (list.isEmpty())
+				components.remove(component.key);
+		}
+	}
+
+	public int getComponents() {
+		synchronized (components) {
+			int count = 0;
+			for (List<Component<?>> list : components.values())
+				count += list.size();
+			return count;
+		}
+	}
+
+	public int getReferences() {
+		synchronized (components) {
+			int count = 0;
+			for (List<Component<?>> list : components.values())
+				for (Component<?> component : list)
+					count += component.refCount;
+			return count;
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * The factory class and an immutable copy of its arguments
+	 */
+	private final static class Key {
+
+		private final Class<? extends AbstractAnalysisFactory> factoryClass;
+		private final Map<String, String> args;
+		private final int hashCode;
+
+		private Key(final Class<? extends AbstractAnalysisFactory> factoryClass, final Map<String, String> args) {
+			this.factoryClass = factoryClass;
+			this.args = Collections.unmodifiableMap(new HashMap<>(args));
+			this.hashCode = Objects.hash(factoryClass, this.args);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key))
+				return false;
+			final Key key = (Key) o;
+			return factoryClass == key.factoryClass && args.equals(key.args);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	final static class Component<T extends AbstractAnalysisFactory> {
+
+		private final Key key;
+		final T factory;
+		private final Map<String, String> hashes;
+		private int refCount;
+
+		private Component(final Key key, final T factory, final Map<String, String> hashes) {
+			this.key = key;
+			this.factory = factory;
+			this.hashes = hashes;
+		}
+
+		/**
+		 * @return true if the resources loaded by the factory have the same content
+		 */
+		private boolean matches(final ResourceLoader resourceLoader) {
+			for (Map.Entry<String, String> entry : hashes.entrySet())
+				if (!Objects.equals(entry.getValue(), hash(resourceLoader, entry.getKey())))
+					return false;
+			return true;
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hash(final byte[] bytes) {
+		return Base64.getEncoder().encodeToString(newDigest().digest(bytes));
+	}
+
+	private static String hash(final ResourceLoader resourceLoader, final String resourceName) {
+		try (final InputStream input = resourceLoader.openResource(resourceName)) {
+			return hash(IOUtils.toByteArray(input));
+		} catch (IOException | RuntimeException e) {
+			// A missing resource does not match
+			return null;
+		}
+	}
+
+	/**
+	 * Records the content hash of each resource loaded by a factory
+	 */
+	private static final class HashingResourceLoader implements ResourceLoader {
+
+		private final ResourceLoader delegate;
+		private final Map<String, String> hashes;
+
+		private HashingResourceLoader(final ResourceLoader delegate) {
+			this.delegate = delegate;
+			this.hashes = new LinkedHashMap<>();
+		}
+
+		@Override
+		public InputStream openResource(final String resourceName) throws IOException {
+			final byte[] bytes;
+			try (final InputStream input = delegate.openResource(resourceName)) {
+				bytes = IOUtils.toByteArray(input);
+			}
+			hashes.put(resourceName, hash(bytes));
+			return new ByteArrayInputStream(bytes);
+		}
+
+		@Override
+		public <T> Class<? extends T> findClass(final String cname, final Class<T> expectedType) {
+			return delegate.findClass(cname, expectedType);
+		}
+
+		@Override
+		public <T> T newInstance(final String cname, final Class<T> expectedType) {
+			return delegate.newInstance(cname, expectedType);
+		}
+	}
+}
@@ -27,9 +27,15 @@ import org.apache.lucene.analysis.util.ResourceLoader;
 
 import javax.ws.rs.core.Response;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,50 +46,112 @@ public class AnalyzerContext {
 	public final Map<String, Analyzer> indexAnalyzerMap;
 	public final Map<String, Analyzer> queryAnalyzerMap;
 
+	private final Map<String, SharedAnalyzer> analyzers;
+	private boolean failures;
+	private int builtAnalyzers;
+
 	public AnalyzerContext(final ConstructorParametersImpl instanceFactory, final ResourceLoader resourceLoader,
 			final FieldMap fieldMap, final boolean failOnException,
 			final Map<String, ? extends AnalyzerFactory>... analyzerFactoryMaps) throws ServerException {
+		this(null, null, instanceFactory, resourceLoader, fieldMap, failOnException, analyzerFactoryMaps);
+	}
+
+	/**
+	 * Build the analyzers of the fields, reusing the analyzers of a previous context when their factory is equal
+	 * and none of the resources they have loaded has changed.
+	 *
+	 * @param previous         the context currently in use, or null to build every analyzer
+	 * @param changedResources the name of the resources which have been updated
+	 */
+	public AnalyzerContext(final AnalyzerContext previous, final Set<String> changedResources,
+			final ConstructorParametersImpl instanceFactory, final ResourceLoader resourceLoader,
+			final FieldMap fieldMap, final boolean failOnException,
+			final Map<String, ? extends AnalyzerFactory>... analyzerFactoryMaps) throws ServerException {
 
 		if (fieldMap == null || fieldMap.isEmpty()) {
 			this.indexAnalyzerMap = Collections.emptyMap();
 			this.queryAnalyzerMap = Collections.emptyMap();
+			this.analyzers = Collections.emptyMap();
 			return;
 		}
 
 		this.indexAnalyzerMap = new HashMap<>();
 		this.queryAnalyzerMap = new HashMap<>();
 
-		final AnalyzerMapBuilder builder = new AnalyzerMapBuilder(instanceFactory, resourceLoader, analyzerFactoryMaps);
+		final AnalyzerMapBuilder builder =
+				new AnalyzerMapBuilder(instanceFactory, resourceLoader, previous, changedResources,
+						analyzerFactoryMaps);
+		this.analyzers = builder.analyzerSingletonMap;
 
-		fieldMap.forEach((fieldName, fieldType) -> {
-			try {
-				final String queryFieldName = fieldType.getQueryFieldName(fieldName);
-				if (queryFieldName == null)
-					return;
-				final FieldDefinition fieldDefinition = fieldType.getDefinition();
+		try {
+			fieldMap.forEach((fieldName, fieldType) -> {
+				try {
+					final String queryFieldName = fieldType.getQueryFieldName(fieldName);
+					if (queryFieldName == null)
+						return;
+					final FieldDefinition fieldDefinition = fieldType.getDefinition();
 
-				if (fieldDefinition.analyzer != null) {
-					final Analyzer indexAnalyzer = builder.findAnalyzer(fieldDefinition.analyzer);
-					if (indexAnalyzer != null)
-						indexAnalyzerMap.put(queryFieldName, indexAnalyzer);
-				}
+					if (fieldDefinition.analyzer != null) {
+						final SharedAnalyzer indexAnalyzer = builder.findAnalyzer(fieldDefinition.analyzer);
+						if (indexAnalyzer != null)
+							indexAnalyzerMap.put(queryFieldName, indexAnalyzer.acquire());
+					}
 
-				final String queryAnalyzerName = fieldDefinition.queryAnalyzer == null ?
-						fieldDefinition.analyzer :
-						fieldDefinition.queryAnalyzer;
-				if (queryAnalyzerName != null) {
-					final Analyzer queryAnalyzer = builder.findAnalyzer(queryAnalyzerName);
-					if (queryAnalyzer != null)
-						queryAnalyzerMap.put(queryFieldName, queryAnalyzer);
+					final String queryAnalyzerName = fieldDefinition.queryAnalyzer == null ?
+							fieldDefinition.analyzer :
+							fieldDefinition.queryAnalyzer;
+					if (queryAnalyzerName != null) {
+						final SharedAnalyzer queryAnalyzer = builder.findAnalyzer(queryAnalyzerName);
+						if (queryAnalyzer != null)
+							queryAnalyzerMap.put(queryFieldName, queryAnalyzer.acquire());
+					}
+
+				} catch (ReflectiveOperationException | IOException e) {
+					final String msg = "Analyzer class not known for the field " + fieldName;
+					if (failOnException)
+						throw new ServerException(Response.Status.NOT_ACCEPTABLE, msg, e);
+					failures = true;
+					LOGGER.log(Level.WARNING, msg, e);
 				}
+			});
+		} catch (RuntimeException e) {
+			// Release the references taken by the analyzer maps, the context in use is unchanged
+			indexAnalyzerMap.values().forEach(Analyzer::close);
+			queryAnalyzerMap.values().forEach(Analyzer::close);
+			throw e;
+		} finally {
+			// The built analyzers which are not referenced by the analyzer maps are closed
+			builder.builtAnalyzers.forEach(Analyzer::close);
+		}
+		this.builtAnalyzers = builder.builtAnalyzers.size();
+	}
 
-			} catch (ReflectiveOperationException | IOException e) {
-				final String msg = "Analyzer class not known for the field " + fieldName;
-				if (failOnException)
-					throw new ServerException(Response.Status.NOT_ACCEPTABLE, msg, e);
-				LOGGER.log(Level.WARNING, msg, e);
-			}
-		});
+	/**
+	 * @return true if no analyzer has been built and the fields use the same analyzers than the given context
+	 */
+	public boolean hasSameAnalyzers(final AnalyzerContext context) {
+		return context != null && builtAnalyzers == 0 && indexAnalyzerMap.equals(context.indexAnalyzerMap) &&
+				queryAnalyzerMap.equals(context.queryAnalyzerMap);
+	}
+
+	/**
+	 * @return true if an analyzer has loaded the given resource, or if an analyzer could not be built
+	 */
+	public boolean dependsOn(final String resourceName) {
+		if (failures)
+			return true;
+		final Set<String> resourceNames = Collections.singleton(resourceName);
+		for (SharedAnalyzer analyzer : analyzers.values())
+			if (analyzer.dependsOn(resourceNames))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return the number of analyzers built by this context (the others have been reused)
+	 */
+	public int getBuiltAnalyzers() {
+		return builtAnalyzers;
 	}
 
 	@FunctionalInterface
@@ -98,41 +166,102 @@ public class AnalyzerContext {
 
 		private final ConstructorParametersImpl instanceFactory;
 		private final ResourceLoader resourceLoader;
+		private final AnalyzerContext previous;
+		private final Set<String> changedResources;
 		private final Map<String, ? extends AnalyzerFactory>[] analyzerFactoryMaps;
-		private final Map<String, Analyzer> analyzerSingletonMap;
+		private final Map<String, SharedAnalyzer> analyzerSingletonMap;
+		private final List<SharedAnalyzer> builtAnalyzers;
 
 		AnalyzerMapBuilder(final ConstructorParametersImpl instanceFactory, final ResourceLoader resourceLoader,
+				final AnalyzerContext previous, final Set<String> changedResources,
 				final Map<String, ? extends AnalyzerFactory>... analyzerFactoryMaps) {
 			this.instanceFactory = instanceFactory;
 			this.resourceLoader = resourceLoader;
+			this.previous = previous;
+			this.changedResources = changedResources;
 			this.analyzerFactoryMaps = analyzerFactoryMaps;
 			this.analyzerSingletonMap = new HashMap<>();
+			this.builtAnalyzers = new ArrayList<>();
 		}
 
-		public Analyzer findAnalyzer(final String analyzerName) throws ReflectiveOperationException, IOException {
-			Analyzer analyzer = analyzerSingletonMap.get(analyzerName);
+		SharedAnalyzer findAnalyzer(final String analyzerName) throws ReflectiveOperationException, IOException {
+			SharedAnalyzer analyzer = analyzerSingletonMap.get(analyzerName);
 			if (analyzer != null)
 				return analyzer;
-			analyzer = getFromFactory(analyzerName);
-			if (analyzer == null) {
-				final Class<Analyzer> analyzerClass = ClassLoaderUtils.findClass(analyzerName, analyzerClassPrefixes);
-				analyzer = instanceFactory.findBestMatchingConstructor(analyzerClass).newInstance();
+			final AnalyzerFactory factory = getFactory(analyzerName);
+			analyzer = previous == null ? null : previous.analyzers.get(analyzerName);
+			if (analyzer == null || !Objects.equals(analyzer.factory, factory) ||
+					analyzer.dependsOn(changedResources)) {
+				if (factory != null)
+					analyzer = createAnalyzer(factory);
+				else {
+					final Class<Analyzer> analyzerClass =
+							ClassLoaderUtils.findClass(analyzerName, analyzerClassPrefixes);
+					analyzer = new SharedAnalyzer(instanceFactory.findBestMatchingConstructor(analyzerClass)
+							.newInstance(), null, null);
+				}
+				// The builder holds a reference until the analyzer maps are complete
+				builtAnalyzers.add(analyzer.acquire());
 			}
 			analyzerSingletonMap.put(analyzerName, analyzer);
 			return analyzer;
 		}
 
-		Analyzer getFromFactory(final String analyzerName) throws IOException, ReflectiveOperationException {
+		private AnalyzerFactory getFactory(final String analyzerName) {
 			if (analyzerFactoryMaps == null)
 				return null;
 			for (final Map<String, ? extends AnalyzerFactory> analyzerFactoryMap : analyzerFactoryMaps) {
 				if (analyzerFactoryMap != null) {
 					final AnalyzerFactory factory = analyzerFactoryMap.get(analyzerName);
 					if (factory != null)
-						return factory.createAnalyzer(resourceLoader);
+						return factory;
 				}
 			}
 			return null;
 		}
+
+		private SharedAnalyzer createAnalyzer(final AnalyzerFactory factory)
+				throws IOException, ReflectiveOperationException {
+			final RecordingResourceLoader recordingLoader = new RecordingResourceLoader(resourceLoader);
+			return new SharedAnalyzer(factory.createAnalyzer(recordingLoader), factory,
+					recordingLoader.resourceNames);
+		}
+	}
+
+	/**
+	 * Records the name of the resources loaded while an analyzer is built
+	 */
+	private static final class RecordingResourceLoader implements ResourceLoader, AnalyzerComponentCache.Aware {
+
+		private final ResourceLoader delegate;
+		private final Set<String> resourceNames;
+
+		private RecordingResourceLoader(final ResourceLoader delegate) {
+			this.delegate = delegate;
+			this.resourceNames = new HashSet<>();
+		}
+
+		@Override
+		public InputStream openResource(final String resourceName) throws IOException {
+			resourceNames.add(resourceName);
+			return delegate.openResource(resourceName);
+		}
+
+		@Override
+		public <T> Class<? extends T> findClass(final String cname, final Class<T> expectedType) {
+			return delegate.findClass(cname, expectedType);
+		}
+
+		@Override
+		public <T> T newInstance(final String cname, final Class<T> expectedType) {
+			return delegate.newInstance(cname, expectedType);
+		}
+
+		@Override
+		public AnalyzerComponentCache getAnalyzerComponentCache() {
+			return delegate instanceof AnalyzerComponentCache.Aware ?
+					((AnalyzerComponentCache.Aware) delegate).getAnalyzerComponentCache() :
+					null;
+		}
 	}
 }
\ No newline at end of file
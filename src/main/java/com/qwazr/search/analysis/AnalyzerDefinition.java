@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Supplier;
 
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
@@ -51,6 +52,23 @@ public class AnalyzerDefinition {
 		this.filters = filters;
 	}
 
+	@Override
+	public boolean equals(final Object o) {
+		if (!(o instanceof AnalyzerDefinition))
+			return false;
+		if (o == this)
+			return true;
+		final AnalyzerDefinition a = (AnalyzerDefinition) o;
+		return Objects.equals(position_increment_gap, a.position_increment_gap) &&
+				Objects.equals(offset_gap, a.offset_gap) && Objects.equals(tokenizer, a.tokenizer) &&
+				Objects.equals(filters, a.filters);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(tokenizer, filters);
+	}
+
 	public final static TypeReference<LinkedHashMap<String, AnalyzerDefinition>> mapStringAnalyzerTypeRef =
 			new TypeReference<LinkedHashMap<String, AnalyzerDefinition>>() {
 			};
@@ -34,6 +34,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 final public class CustomAnalyzer extends Analyzer {
 
@@ -42,6 +43,9 @@ final public class CustomAnalyzer extends Analyzer {
 	private final TokenizerFactory tokenizerFactory;
 	private final List<TokenFilterFactory> tokenFilterFactories;
 
+	private final AnalyzerComponentCache componentCache;
+	private final List<AnalyzerComponentCache.Component<?>> components;
+
 	public CustomAnalyzer(final ResourceLoader resourceLoader, final AnalyzerDefinition analyzerDefinition)
 			throws IOException, ReflectiveOperationException {
 		super(GLOBAL_REUSE_STRATEGY);
@@ -49,13 +53,38 @@ final public class CustomAnalyzer extends Analyzer {
 				null :
 				new HashMap<>(analyzerDefinition.position_increment_gap);
 		offsetGap = analyzerDefinition.offset_gap == null ? null : new HashMap<>(analyzerDefinition.offset_gap);
-		tokenizerFactory = getFactory(resourceLoader, analyzerDefinition.tokenizer, KeywordTokenizerFactory.class);
-		if (analyzerDefinition.filters != null && !analyzerDefinition.filters.isEmpty()) {
-			tokenFilterFactories = new ArrayList<>(analyzerDefinition.filters.size());
-			for (LinkedHashMap<String, String> filterDef : analyzerDefinition.filters)
-				tokenFilterFactories.add(getFactory(resourceLoader, filterDef, null));
-		} else
-			tokenFilterFactories = null;
+		componentCache = resourceLoader instanceof AnalyzerComponentCache.Aware ?
+				((AnalyzerComponentCache.Aware) resourceLoader).getAnalyzerComponentCache() :
+				null;
+		components = componentCache == null ? null : new ArrayList<>();
+		try {
+			tokenizerFactory =
+					getFactory(resourceLoader, analyzerDefinition.tokenizer, KeywordTokenizerFactory.class);
+			if (analyzerDefinition.filters != null && !analyzerDefinition.filters.isEmpty()) {
+				tokenFilterFactories = new ArrayList<>(analyzerDefinition.filters.size());
+				for (LinkedHashMap<String, String> filterDef : analyzerDefinition.filters)
+					tokenFilterFactories.add(getFactory(resourceLoader, filterDef, null));
+			} else
+				tokenFilterFactories = null;
+		} catch (IOException | ReflectiveOperationException | RuntimeException e) {
+			releaseComponents();
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		releaseComponents();
+	}
+
+	private void releaseComponents() {
+		if (components == null)
+			return;
+		synchronized (components) {
+			components.forEach(componentCache::release);
+			components.clear();
+		}
 	}
 
 	@Override
@@ -83,7 +112,7 @@ final public class CustomAnalyzer extends Analyzer {
 		return new TokenStreamComponents(source, result);
 	}
 
-	private static <T extends AbstractAnalysisFactory> T getFactory(final ResourceLoader resourceLoader,
+	private <T extends AbstractAnalysisFactory> T getFactory(final ResourceLoader resourceLoader,
 			LinkedHashMap<String, String> args, final Class<T> defaultClass)
 			throws ReflectiveOperationException, IOException {
 		final String clazz;
@@ -95,6 +124,12 @@ final public class CustomAnalyzer extends Analyzer {
 		final Class<T> factoryClass = clazz == null ? defaultClass : getFactoryClass(clazz);
 		if (factoryClass == null)
 			throw new ClassNotFoundException("No class found for: " + clazz);
+		if (componentCache != null) {
+			final AnalyzerComponentCache.Component<T> component = componentCache.acquire(factoryClass,
+					args == null ? Collections.emptyMap() : args, resourceLoader);
+			components.add(component);
+			return component.factory;
+		}
 		final T factory =
 				factoryClass.getConstructor(Map.class).newInstance(args == null ? Collections.emptyMap() : args);
 		if (factory instanceof ResourceLoaderAware)
@@ -126,6 +161,21 @@ final public class CustomAnalyzer extends Analyzer {
 		public Analyzer createAnalyzer(ResourceLoader resourceLoader) throws IOException, ReflectiveOperationException {
 			return new CustomAnalyzer(resourceLoader, definition);
 		}
+
+		/**
+		 * Two factories having the same definition build the same analyzer
+		 */
+		@Override
+		public boolean equals(final Object o) {
+			if (o == null || !(o instanceof Factory))
+				return false;
+			return o == this || Objects.equals(definition, ((Factory) o).definition);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(definition);
+		}
 	}
 
 	public static LinkedHashMap<String, CustomAnalyzer.Factory> createFactoryMap(
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.DelegatingAnalyzerWrapper;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An analyzer which can be reused by several generations of the analyzer maps.
+ * Each map entry holds a reference, the wrapped analyzer is closed with the last one.
+ */
+final class SharedAnalyzer extends DelegatingAnalyzerWrapper {
+
+	final Analyzer analyzer;
+	final AnalyzerFactory factory;
+	final Set<String> resources;
+
+	private final AtomicInteger refCount;
+
+	SharedAnalyzer(final Analyzer analyzer, final AnalyzerFactory factory, final Set<String> resources) {
+		super(PER_FIELD_REUSE_STRATEGY);
+		this.analyzer = analyzer;
+		this.factory = factory;
+		this.resources = resources == null ? Collections.emptySet() : resources;
+		this.refCount = new AtomicInteger();
+	}
+
+	/**
+	 * @return true if the analyzer has loaded one of the given resources
+	 */
+	boolean dependsOn(final Set<String> resourceNames) {
+		if (resourceNames == null || resources.isEmpty())
+			return false;
+		for (String resourceName : resourceNames)
+			if (resources.contains(resourceName))
+				return true;
+		return false;
+	}
+
+	SharedAnalyzer acquire() {
+		refCount.incrementAndGet();
+		return this;
+	}
+
+	@Override
+	protected Analyzer getWrappedAnalyzer(final String fieldName) {
+		return analyzer;
+	}
+
+	@Override
+	public void close() {
+		if (refCount.decrementAndGet() > 0)
+			return;
+		analyzer.close();
+		super.close();
+	}
+}
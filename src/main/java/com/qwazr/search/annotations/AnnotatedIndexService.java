@@ -28,6 +28,8 @@ import com.qwazr.search.index.IndexCheckStatus;
 import com.qwazr.search.index.IndexServiceInterface;
 import com.qwazr.search.index.IndexSettingsDefinition;
 import com.qwazr.search.index.IndexStatus;
+import com.qwazr.search.index.MergeStatus;
+import com.qwazr.search.index.OnlineCheckStatus;
 import com.qwazr.search.index.PostDefinition;
 import com.qwazr.search.index.QueryDefinition;
 import com.qwazr.search.index.QueryDocumentsIterator;
@@ -224,6 +226,75 @@ public class AnnotatedIndexService<T> {
 		return indexService.checkIndex(schemaName, indexName);
 	}
 
+	/**
+	 * Start a check of the last commit on a background thread. The index keeps serving during the check.
+	 *
+	 * @param rateMbPerSec the maximum read rate in MB per second, 0 for no limit, null for the default rate
+	 * @return the status of the started check
+	 */
+	public OnlineCheckStatus startOnlineCheck(final Double rateMbPerSec) {
+		checkParameters();
+		return indexService.startOnlineCheck(schemaName, indexName, rateMbPerSec);
+	}
+
+	/**
+	 * @return the status of the running (or the last) online check
+	 */
+	public OnlineCheckStatus getOnlineCheck() {
+		checkParameters();
+		return indexService.getOnlineCheck(schemaName, indexName);
+	}
+
+	/**
+	 * Start a compaction on a background thread. The merges are throttled by the merge service of the node.
+	 *
+	 * @param type        force_merge (the default) or expunge_deletes
+	 * @param maxSegments the maximum number of segments of a force_merge, null for 1
+	 * @return the status of the started compaction
+	 */
+	public MergeStatus startCompaction(final String type, final Integer maxSegments) {
+		checkParameters();
+		return indexService.startCompaction(schemaName, indexName, type, maxSegments);
+	}
+
+	/**
+	 * @return the status of the running (or the last) compaction
+	 */
+	public MergeStatus getCompaction() {
+		checkParameters();
+		return indexService.getCompaction(schemaName, indexName);
+	}
+
+	/**
+	 * Abort the running merges of the compaction. The already merged segments are kept.
+	 *
+	 * @return the status of the cancelled compaction
+	 */
+	public MergeStatus cancelCompaction() {
+		checkParameters();
+		return indexService.cancelCompaction(schemaName, indexName);
+	}
+
+	/**
+	 * Merge the index into a single segment and reopen it read only. The writer and its caches are released.
+	 *
+	 * @return the status of the frozen index
+	 */
+	public IndexStatus freezeIndex() {
+		checkParameters();
+		return indexService.freezeIndex(schemaName, indexName);
+	}
+
+	/**
+	 * Reopen a frozen index with a writer
+	 *
+	 * @return the status of the index
+	 */
+	public IndexStatus unfreezeIndex() {
+		checkParameters();
+		return indexService.unfreezeIndex(schemaName, indexName);
+	}
+
 	public void deleteIndex() {
 		checkParameters();
 		indexService.deleteIndex(schemaName, indexName);
@@ -610,8 +681,12 @@ public class AnnotatedIndexService<T> {
 	}
 
 	public SortedMap<String, SortedMap<String, BackupStatus>> doBackup(final String backupName) {
+		return doBackup(backupName, false);
+	}
+
+	public SortedMap<String, SortedMap<String, BackupStatus>> doBackup(final String backupName, final boolean async) {
 		checkParameters();
-		return indexService.doBackup(schemaName, indexName, backupName);
+		return indexService.doBackup(schemaName, indexName, backupName, async);
 	}
 
 	public Integer deleteBackups(final String backupName) {
@@ -784,4 +859,27 @@ public class AnnotatedIndexService<T> {
 		checkParameters();
 		return indexService.mergeIndex(schemaName, indexName, mergedIndex, commitUserData);
 	}
+
+	/**
+	 * Create the index from a backup of this index, or of another index of the schema
+	 *
+	 * @param backupName      the name of the backup
+	 * @param sourceIndexName the name of the backed up index, or null if it is this index
+	 * @return the status of the restored index
+	 */
+	public IndexStatus restoreIndex(final String backupName, final String sourceIndexName) {
+		checkParameters();
+		return indexService.restoreIndex(schemaName, indexName, backupName, sourceIndexName);
+	}
+
+	/**
+	 * Create a new index sharing the files of the last commit of this index
+	 *
+	 * @param targetIndexName the name of the new index
+	 * @return the status of the new index
+	 */
+	public IndexStatus cloneIndex(final String targetIndexName) {
+		checkParameters();
+		return indexService.cloneIndex(schemaName, indexName, targetIndexName);
+	}
 }
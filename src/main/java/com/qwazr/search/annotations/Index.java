@@ -64,4 +64,49 @@ public @interface Index {
 	double nrtCachingDirectoryMaxMergeSizeMB() default IndexSettingsDefinition.DEFAULT_NRT_CACHING_DIRECTORY_MERGE_SIZE_MB;
 
 	double nrtCachingDirectoryMaxCachedMB() default IndexSettingsDefinition.DEFAULT_NRT_CACHING_DIRECTORY_MAX_CACHED_MB;
+
+	long replicationIntervalMs() default 0;
+
+	long replicationWaitMs() default 0;
+
+	int replicationThreads() default IndexSettingsDefinition.DEFAULT_REPLICATION_THREADS;
+
+	boolean replicationCompression() default false;
+
+	boolean mmapPreload() default false;
+
+	boolean mmapUnmap() default true;
+
+	/**
+	 * The extensions of the files memory mapped by the FileSwitchDirectory.
+	 * Empty means IndexSettingsDefinition.DEFAULT_MMAP_EXTENSIONS.
+	 */
+	String[] mmapExtensions() default {};
+
+	boolean offheapPersist() default false;
+
+	/**
+	 * The percentage of deleted documents which triggers an expunge_deletes job. 0 disables it.
+	 */
+	double expungeDeletesPct() default 0;
+
+	/**
+	 * The compression of the stored fields: BEST_SPEED (LZ4) or BEST_COMPRESSION (DEFLATE).
+	 */
+	IndexSettingsDefinition.StoredFieldsMode storedFieldsMode() default IndexSettingsDefinition.StoredFieldsMode.BEST_SPEED;
+
+	/**
+	 * When the indexes are opened at startup, the indexes with the highest priority are opened first.
+	 */
+	int startupPriority() default 0;
+
+	/**
+	 * The number of recent distinct queries replayed on each new searcher before it is published. 0 disables it.
+	 */
+	int warmRecentQueries() default 0;
+
+	/**
+	 * The maximum number of built Lucene queries kept in the query cache. 0 disables it.
+	 */
+	int queryCacheSize() default 0;
 }
\ No newline at end of file
@@ -73,6 +73,10 @@ public @interface IndexField {
 
 	boolean facetRequireDimCount() default false;
 
+	String postingsFormat() default StringUtils.EMPTY;
+
+	String docValuesFormat() default StringUtils.EMPTY;
+
 	@Deprecated
 	enum FieldTypeNumeric {
 
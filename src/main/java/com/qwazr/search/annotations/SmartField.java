@@ -48,4 +48,8 @@ public @interface SmartField {
 
 	boolean stored() default false;
 
+	String postingsFormat() default StringUtils.EMPTY;
+
+	String docValuesFormat() default StringUtils.EMPTY;
+
 }
\ No newline at end of file
@@ -79,8 +79,10 @@ public class CustomFieldDefinition extends FieldDefinition {
 			@JsonProperty("docvalues_type")    final DocValuesType docValuesType,
 			@JsonProperty("dimension_count")    final Integer dimensionCount,
 			@JsonProperty("dimension_num_bytes")    final Integer dimensionNumBytes,
-			@JsonProperty("copy_from") String[] copyFrom) {
-		super(null, analyzer, queryAnalyzer, copyFrom);
+			@JsonProperty("copy_from") String[] copyFrom,
+			@JsonProperty("postings_format") final String postingsFormat,
+			@JsonProperty("docvalues_format") final String docValuesFormat) {
+		super(null, analyzer, queryAnalyzer, copyFrom, postingsFormat, docValuesFormat);
 		this.template = template;
 		this.tokenized = tokenized;
 		this.stored = stored;
@@ -121,7 +123,8 @@ public class CustomFieldDefinition extends FieldDefinition {
 
 	public CustomFieldDefinition(final String fieldName, final IndexField indexField, final Map<String, Copy> copyMap) {
 		super(null, from(indexField.analyzer(), indexField.analyzerClass()),
-				from(indexField.queryAnalyzer(), indexField.queryAnalyzerClass()), from(fieldName, copyMap));
+				from(indexField.queryAnalyzer(), indexField.queryAnalyzerClass()), from(fieldName, copyMap),
+				from(indexField.postingsFormat()), from(indexField.docValuesFormat()));
 		template = indexField.template();
 		tokenized = indexField.tokenized();
 		stored = indexField.stored();
@@ -226,6 +229,16 @@ public class CustomFieldDefinition extends FieldDefinition {
 			return (CustomBuilder) super.queryAnalyzer(queryAnalyzer);
 		}
 
+		@Override
+		public CustomBuilder postingsFormat(String postingsFormat) {
+			return (CustomBuilder) super.postingsFormat(postingsFormat);
+		}
+
+		@Override
+		public CustomBuilder docValuesFormat(String docValuesFormat) {
+			return (CustomBuilder) super.docValuesFormat(docValuesFormat);
+		}
+
 		public CustomBuilder template(Template template) {
 			this.template = template;
 			return this;
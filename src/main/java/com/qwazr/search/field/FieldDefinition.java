@@ -99,14 +99,32 @@ public abstract class FieldDefinition {
 	@JsonProperty("copy_from")
 	public final String[] copyFrom;
 
+	/**
+	 * The name of the postings format (Lucene50, Memory, Direct, FST50, BloomFilter...).
+	 * Null means the default format of the codec.
+	 */
+	@JsonProperty("postings_format")
+	public final String postingsFormat;
+
+	/**
+	 * The name of the doc values format (Lucene54, Memory, Direct...).
+	 * Null means the default format of the codec.
+	 */
+	@JsonProperty("docvalues_format")
+	public final String docValuesFormat;
+
 	@JsonCreator
 	FieldDefinition(@JsonProperty("type") SmartFieldDefinition.Type type,
 			@JsonProperty("analyzer") final String analyzer, @JsonProperty("query_analyzer") final String queryAnalyzer,
-			@JsonProperty("copy_from") final String[] copyFrom) {
+			@JsonProperty("copy_from") final String[] copyFrom,
+			@JsonProperty("postings_format") final String postingsFormat,
+			@JsonProperty("docvalues_format") final String docValuesFormat) {
 		this.type = type;
 		this.analyzer = analyzer;
 		this.queryAnalyzer = queryAnalyzer;
 		this.copyFrom = copyFrom;
+		this.postingsFormat = postingsFormat;
+		this.docValuesFormat = docValuesFormat;
 	}
 
 	FieldDefinition(final Builder builder) {
@@ -116,6 +134,8 @@ public abstract class FieldDefinition {
 		this.copyFrom = builder.copyFrom == null || builder.copyFrom.isEmpty() ?
 				null :
 				builder.copyFrom.toArray(new String[builder.copyFrom.size()]);
+		this.postingsFormat = builder.postingsFormat;
+		this.docValuesFormat = builder.docValuesFormat;
 	}
 
 	@Override
@@ -131,6 +151,10 @@ public abstract class FieldDefinition {
 			return false;
 		if (!Objects.equals(queryAnalyzer, f.queryAnalyzer))
 			return false;
+		if (!Objects.equals(postingsFormat, f.postingsFormat))
+			return false;
+		if (!Objects.equals(docValuesFormat, f.docValuesFormat))
+			return false;
 		return true;
 	}
 
@@ -179,6 +203,10 @@ public abstract class FieldDefinition {
 				defaultMap == null ? null : defaultMap.get();
 	}
 
+	protected static String from(final String formatName) {
+		return StringUtils.isEmpty(formatName) ? null : formatName;
+	}
+
 	protected static String from(String analyzerName, Class<? extends Analyzer> analyzerClass) {
 		return analyzerClass != Analyzer.class ?
 				analyzerClass.getName() :
@@ -206,6 +234,8 @@ public abstract class FieldDefinition {
 		private String analyzer;
 		private String queryAnalyzer;
 		private LinkedHashSet<String> copyFrom;
+		private String postingsFormat;
+		private String docValuesFormat;
 
 		protected Builder type(SmartFieldDefinition.Type type) {
 			this.type = type;
@@ -229,6 +259,16 @@ public abstract class FieldDefinition {
 			return this;
 		}
 
+		protected Builder postingsFormat(String postingsFormat) {
+			this.postingsFormat = postingsFormat;
+			return this;
+		}
+
+		protected Builder docValuesFormat(String docValuesFormat) {
+			this.docValuesFormat = docValuesFormat;
+			return this;
+		}
+
 	}
 
 }
@@ -40,8 +40,10 @@ public class SmartFieldDefinition extends FieldDefinition {
 	SmartFieldDefinition(@JsonProperty("type") Type type, @JsonProperty("facet") Boolean facet,
 			@JsonProperty("index") Boolean index, @JsonProperty("analyzer") final String analyzer,
 			@JsonProperty("query_analyzer") final String queryAnalyzer, @JsonProperty("sort") Boolean sort,
-			@JsonProperty("stored") Boolean stored, @JsonProperty("copy_from") String[] copyFrom) {
-		super(type, analyzer, queryAnalyzer, copyFrom);
+			@JsonProperty("stored") Boolean stored, @JsonProperty("copy_from") String[] copyFrom,
+			@JsonProperty("postings_format") final String postingsFormat,
+			@JsonProperty("docvalues_format") final String docValuesFormat) {
+		super(type, analyzer, queryAnalyzer, copyFrom, postingsFormat, docValuesFormat);
 		this.facet = facet;
 		this.index = index;
 		this.sort = sort;
@@ -58,7 +60,8 @@ public class SmartFieldDefinition extends FieldDefinition {
 
 	public SmartFieldDefinition(final String fieldName, final SmartField smartField, final Map<String, Copy> copyMap) {
 		super(smartField.type(), from(smartField.analyzer(), smartField.analyzerClass()),
-				from(smartField.queryAnalyzer(), smartField.queryAnalyzerClass()), from(fieldName, copyMap));
+				from(smartField.queryAnalyzer(), smartField.queryAnalyzerClass()), from(fieldName, copyMap),
+				from(smartField.postingsFormat()), from(smartField.docValuesFormat()));
 		facet = smartField.facet();
 		index = smartField.index();
 		sort = smartField.sort();
@@ -117,6 +120,16 @@ public class SmartFieldDefinition extends FieldDefinition {
 			return (SmartBuilder) super.copyFrom(copyFrom);
 		}
 
+		@Override
+		public SmartBuilder postingsFormat(String postingsFormat) {
+			return (SmartBuilder) super.postingsFormat(postingsFormat);
+		}
+
+		@Override
+		public SmartBuilder docValuesFormat(String docValuesFormat) {
+			return (SmartBuilder) super.docValuesFormat(docValuesFormat);
+		}
+
 		public SmartBuilder facet(Boolean facet) {
 			this.facet = facet;
 			return this;
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.search.analysis.AnalyzerComponentCache;
+
+/**
+ * The tokenizer and filter factories shared by the custom analyzers of the node.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class AnalyzerCacheStatus {
+
+	final public Integer components;
+	final public Integer references;
+	final public Long hits;
+	final public Long misses;
+
+	@JsonCreator
+	AnalyzerCacheStatus(@JsonProperty("components") Integer components,
+			@JsonProperty("references") Integer references, @JsonProperty("hits") Long hits,
+			@JsonProperty("misses") Long misses) {
+		this.components = components;
+		this.references = references;
+		this.hits = hits;
+		this.misses = misses;
+	}
+
+	AnalyzerCacheStatus(final AnalyzerComponentCache cache) {
+		this(cache.getComponents(), cache.getReferences(), cache.getHits(), cache.getMisses());
+	}
+}
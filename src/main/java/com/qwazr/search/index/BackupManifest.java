@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.utils.LoggerUtils;
+import com.qwazr.utils.ObjectMappers;
+import org.apache.lucene.replicator.RevisionFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Lists the files of an index backup. Written once the backup is complete,
+ * it is used to find which files can be shared with the next backup.
+ * A file is identified by its name, its size and the checksum stored in its Lucene footer.
+ * The manifest is only valid for the index having the same UUID: a recreated index reuses the file names.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class BackupManifest {
+
+	private final static Logger LOGGER = LoggerUtils.getLogger(BackupManifest.class);
+
+	final public Date date;
+	final public String version;
+	@JsonProperty("index_uuid")
+	final public String indexUuid;
+	final public Map<String, List<FileEntry>> files;
+
+	@JsonCreator
+	BackupManifest(@JsonProperty("date") final Date date, @JsonProperty("version") final String version,
+			@JsonProperty("index_uuid") final String indexUuid,
+			@JsonProperty("files") final Map<String, List<FileEntry>> files) {
+		this.date = date;
+		this.version = version;
+		this.indexUuid = indexUuid;
+		this.files = files;
+	}
+
+	/**
+	 * @param checksums the footer checksum of each file, by source
+	 */
+	BackupManifest(final String version, final String indexUuid, final Map<String, List<RevisionFile>> sourceFiles,
+			final Map<String, Map<String, Long>> checksums) {
+		this.date = new Date();
+		this.version = version;
+		this.indexUuid = indexUuid;
+		this.files = new LinkedHashMap<>();
+		sourceFiles.forEach((source, revisionFiles) -> {
+			final Map<String, Long> sourceChecksums = checksums.get(source);
+			final List<FileEntry> entries = new ArrayList<>(revisionFiles.size());
+			revisionFiles.forEach(file -> entries.add(new FileEntry(file.fileName, file.size,
+					sourceChecksums == null ? null : sourceChecksums.get(file.fileName))));
+			files.put(source, entries);
+		});
+	}
+
+	/**
+	 * @return true if the backup contains the same file: a file without checksum never matches
+	 */
+	@JsonIgnore
+	final boolean contains(final String source, final String fileName, final long size, final Long checksum) {
+		if (checksum == null)
+			return false;
+		final List<FileEntry> entries = files == null ? null : files.get(source);
+		if (entries == null)
+			return false;
+		for (FileEntry entry : entries)
+			if (entry.size == size && checksum.equals(entry.checksum) && fileName.equals(entry.name))
+				return true;
+		return false;
+	}
+
+	final void save(final Path backupIndexDirectory) throws IOException {
+		ObjectMappers.JSON.writeValue(backupIndexDirectory.resolve(IndexFileSet.BACKUP_MANIFEST_FILE).toFile(), this);
+	}
+
+	static BackupManifest load(final Path backupIndexDirectory) {
+		final Path manifestPath = backupIndexDirectory.resolve(IndexFileSet.BACKUP_MANIFEST_FILE);
+		if (!Files.exists(manifestPath))
+			return null;
+		try {
+			return ObjectMappers.JSON.readValue(manifestPath.toFile(), BackupManifest.class);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, e, () -> "Unreadable backup manifest: " + manifestPath);
+			return null;
+		}
+	}
+
+	/**
+	 * Look for the most recent complete backup of the same index in the other backups of the schema.
+	 * The backups of another index having the same name (a different UUID) are ignored.
+	 *
+	 * @param backupIndexDirectory the directory of the new backup: {schema}/{backup_name}/{index_name}
+	 * @param indexUuid            the UUID of the index
+	 * @return the directory of the previous backup of the index, or null if there is none
+	 */
+	static Path findPrevious(final Path backupIndexDirectory, final String indexUuid) throws IOException {
+		final Path backupDirectory = backupIndexDirectory.getParent();
+		final Path backupSchemaDirectory = backupDirectory.getParent();
+		final String indexName = backupIndexDirectory.getFileName().toString();
+		Path previous = null;
+		Date previousDate = null;
+		try (final Stream<Path> stream = Files.list(backupSchemaDirectory)) {
+			for (Path path : (Iterable<Path>) stream::iterator) {
+				if (path.equals(backupDirectory) || !Files.isDirectory(path))
+					continue;
+				final Path candidate = path.resolve(indexName);
+				final BackupManifest manifest = load(candidate);
+				if (manifest == null || manifest.date == null || !indexUuid.equals(manifest.indexUuid))
+					continue;
+				if (previousDate == null || manifest.date.after(previousDate)) {
+					previous = candidate;
+					previousDate = manifest.date;
+				}
+			}
+		}
+		return previous;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class FileEntry {
+
+		final public String name;
+		final public long size;
+		final public Long checksum;
+
+		@JsonCreator
+		FileEntry(@JsonProperty("name") final String name, @JsonProperty("size") final long size,
+				@JsonProperty("checksum") final Long checksum) {
+			this.name = name;
+			this.size = size;
+			this.checksum = checksum;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.replicator.RevisionFile;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of a running backup, updated by the backup thread and read by the status requests.
+ */
+final class BackupProgress {
+
+	enum State {
+		running, done, failed
+	}
+
+	final Date start;
+
+	private volatile State state;
+	private volatile String error;
+	private volatile int totalFiles;
+	private volatile long totalBytes;
+	private final AtomicInteger doneFiles;
+	private final AtomicLong doneBytes;
+	private final AtomicInteger linkedFiles;
+	private final AtomicInteger copiedFiles;
+	private final AtomicLong copiedBytes;
+
+	BackupProgress() {
+		start = new Date();
+		state = State.running;
+		doneFiles = new AtomicInteger();
+		doneBytes = new AtomicLong();
+		linkedFiles = new AtomicInteger();
+		copiedFiles = new AtomicInteger();
+		copiedBytes = new AtomicLong();
+	}
+
+	void total(final Map<String, List<RevisionFile>> sourceFiles) {
+		int files = 0;
+		long bytes = 0;
+		for (List<RevisionFile> revisionFiles : sourceFiles.values()) {
+			for (RevisionFile file : revisionFiles) {
+				files++;
+				bytes += file.size;
+			}
+		}
+		totalFiles = files;
+		totalBytes = bytes;
+	}
+
+	/**
+	 * The file was already present in the backup directory
+	 */
+	void kept(final long size) {
+		doneFiles.incrementAndGet();
+		doneBytes.addAndGet(size);
+	}
+
+	/**
+	 * The file has been hard-linked from the previous backup
+	 */
+	void linked(final long size) {
+		linkedFiles.incrementAndGet();
+		kept(size);
+	}
+
+	/**
+	 * The file has been copied
+	 */
+	void copied(final long size) {
+		copiedFiles.incrementAndGet();
+		copiedBytes.addAndGet(size);
+		kept(size);
+	}
+
+	void done() {
+		state = State.done;
+	}
+
+	void failed(final Throwable e) {
+		error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+		state = State.failed;
+	}
+
+	boolean isRunning() {
+		return state == State.running;
+	}
+
+	BackupStatus.Progress getProgress() {
+		final long bytes = totalBytes;
+		return new BackupStatus.Progress(state.name(), start, totalFiles, doneFiles.get(), bytes, doneBytes.get(),
+				bytes == 0 ? null : (float) (doneBytes.get() * 100) / bytes, linkedFiles.get(), copiedFiles.get(),
+				copiedBytes.get(), error);
+	}
+}
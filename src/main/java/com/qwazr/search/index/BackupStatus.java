@@ -46,19 +46,34 @@ public class BackupStatus {
 	final public Date date;
 	final public Long bytes_size;
 	final public Integer files_count;
+	final public Progress progress;
 
 	@JsonCreator
 	BackupStatus(@JsonProperty("index_version") Long index_version,
 			@JsonProperty("taxonomy_version") Long taxonomy_version, @JsonProperty("date") Date date,
-			@JsonProperty("bytes_size") Long bytes_size, @JsonProperty("files_count") Integer files_count) {
+			@JsonProperty("bytes_size") Long bytes_size, @JsonProperty("files_count") Integer files_count,
+			@JsonProperty("progress") Progress progress) {
 		this.index_version = index_version;
 		this.taxonomy_version = taxonomy_version;
 		this.date = date;
 		this.bytes_size = bytes_size;
 		this.files_count = files_count;
+		this.progress = progress;
+	}
+
+	/**
+	 * The status of a backup which is still running (or has failed) in the background
+	 */
+	static BackupStatus newBackupStatus(final BackupProgress backupProgress) {
+		return new BackupStatus(null, null, backupProgress.start, null, null, backupProgress.getProgress());
 	}
 
 	static BackupStatus newBackupStatus(final Path backupDir, final boolean extractVersion) throws IOException {
+		return newBackupStatus(backupDir, extractVersion, null);
+	}
+
+	static BackupStatus newBackupStatus(final Path backupDir, final boolean extractVersion,
+			final BackupProgress backupProgress) throws IOException {
 		if (backupDir == null)
 			return null;
 
@@ -87,7 +102,8 @@ public class BackupStatus {
 			taxonomyVersion = null;
 		}
 		return new BackupStatus(indexVersion, taxonomyVersion,
-				new Date(Files.getLastModifiedTime(backupDir).toMillis()), size.get(), count.get());
+				new Date(Files.getLastModifiedTime(backupDir).toMillis()), size.get(), count.get(),
+				backupProgress == null ? null : backupProgress.getProgress());
 	}
 
 	private static Long getIndexVersion(final Path indexPath) throws IOException {
@@ -130,4 +146,40 @@ public class BackupStatus {
 		return Objects.equals(files_count, s.files_count);
 	}
 
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class Progress {
+
+		final public String state;
+		final public Date start;
+		final public Integer total_files;
+		final public Integer done_files;
+		final public Long total_bytes;
+		final public Long done_bytes;
+		final public Float percent;
+		final public Integer linked_files;
+		final public Integer copied_files;
+		final public Long copied_bytes;
+		final public String error;
+
+		@JsonCreator
+		Progress(@JsonProperty("state") String state, @JsonProperty("start") Date start,
+				@JsonProperty("total_files") Integer total_files, @JsonProperty("done_files") Integer done_files,
+				@JsonProperty("total_bytes") Long total_bytes, @JsonProperty("done_bytes") Long done_bytes,
+				@JsonProperty("percent") Float percent, @JsonProperty("linked_files") Integer linked_files,
+				@JsonProperty("copied_files") Integer copied_files, @JsonProperty("copied_bytes") Long copied_bytes,
+				@JsonProperty("error") String error) {
+			this.state = state;
+			this.start = start;
+			this.total_files = total_files;
+			this.done_files = done_files;
+			this.total_bytes = total_bytes;
+			this.done_bytes = done_bytes;
+			this.percent = percent;
+			this.linked_files = linked_files;
+			this.copied_files = copied_files;
+			this.copied_bytes = copied_bytes;
+			this.error = error;
+		}
+	}
+
 }
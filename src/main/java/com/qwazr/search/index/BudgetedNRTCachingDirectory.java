@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.NRTCachingDirectory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A NRTCachingDirectory which also asks the node-wide NrtCacheManager before caching a new file.
+ * The files still being written are tracked: only the complete files can be evicted to the disk.
+ */
+final class BudgetedNRTCachingDirectory extends NRTCachingDirectory {
+
+	private final NrtCacheManager manager;
+	private final Set<String> openOutputs;
+	private volatile long lastUsed;
+
+	BudgetedNRTCachingDirectory(final NrtCacheManager manager, final Directory delegate,
+			final double maxMergeSizeMB, final double maxCachedMB) {
+		super(delegate, maxMergeSizeMB, maxCachedMB);
+		this.manager = manager;
+		this.openOutputs = ConcurrentHashMap.newKeySet();
+		this.lastUsed = System.currentTimeMillis();
+	}
+
+	long getLastUsed() {
+		return lastUsed;
+	}
+
+	@Override
+	protected boolean doCacheWrite(final String name, final IOContext context) {
+		if (!super.doCacheWrite(name, context))
+			return false;
+		lastUsed = System.currentTimeMillis();
+		final long bytes;
+		if (context.mergeInfo != null)
+			bytes = context.mergeInfo.estimatedMergeBytes;
+		else if (context.flushInfo != null)
+			bytes = context.flushInfo.estimatedSegmentSize;
+		else
+			bytes = 0;
+		return manager.reserve(bytes);
+	}
+
+	@Override
+	public IndexOutput createOutput(final String name, final IOContext context) throws IOException {
+		openOutputs.add(name);
+		try {
+			return new TrackedIndexOutput(super.createOutput(name, context));
+		} catch (IOException | RuntimeException e) {
+			openOutputs.remove(name);
+			throw e;
+		}
+	}
+
+	@Override
+	public IndexInput openInput(final String name, final IOContext context) throws IOException {
+		lastUsed = System.currentTimeMillis();
+		return super.openInput(name, context);
+	}
+
+	/**
+	 * Move the complete cached files to the disk.
+	 * The temporary files are short-lived, they are never evicted.
+	 *
+	 * @return the number of evicted bytes
+	 */
+	long evict() throws IOException {
+		long evicted = 0;
+		for (String name : listCachedFiles()) {
+			if (openOutputs.contains(name) || name.endsWith(".tmp"))
+				continue;
+			try {
+				final long length = fileLength(name);
+				sync(Collections.singleton(name));
+				evicted += length;
+			} catch (NoSuchFileException | FileNotFoundException e) {
+				// The file has been deleted meanwhile
+			}
+		}
+		return evicted;
+	}
+
+	@Override
+	public void close() throws IOException {
+		manager.unregister(this);
+		super.close();
+	}
+
+	private final class TrackedIndexOutput extends IndexOutput {
+
+		private final IndexOutput delegate;
+
+		private TrackedIndexOutput(final IndexOutput delegate) {
+			super("TrackedIndexOutput(" + delegate + ")", delegate.getName());
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void writeByte(final byte b) throws IOException {
+			delegate.writeByte(b);
+		}
+
+		@Override
+		public void writeBytes(final byte[] b, final int offset, final int length) throws IOException {
+			delegate.writeBytes(b, offset, length);
+		}
+
+		@Override
+		public long getFilePointer() {
+			return delegate.getFilePointer();
+		}
+
+		@Override
+		public long getChecksum() throws IOException {
+			return delegate.getChecksum();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				delegate.close();
+			} finally {
+				openOutputs.remove(getName());
+			}
+		}
+	}
+}
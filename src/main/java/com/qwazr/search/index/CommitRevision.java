@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.replicator.IndexAndTaxonomyRevision;
+import org.apache.lucene.replicator.IndexInputInputStream;
+import org.apache.lucene.replicator.IndexRevision;
+import org.apache.lucene.replicator.Revision;
+import org.apache.lucene.replicator.RevisionFile;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A revision built from the last commit of a directory, without any IndexWriter.
+ * Used by the slaves to republish the revisions they have applied (cascading replication).
+ * The versions and the source names are the same as the ones published by the master.
+ * <p>
+ * A slave has no IndexWriter to take a snapshot: the files are protected by the directories until the revision is
+ * released, so that a downstream session which is still running when the next revision is applied can complete.
+ */
+final class CommitRevision implements Revision {
+
+	/**
+	 * The radix used by Lucene to write the generations in the revision versions
+	 */
+	private final static int RADIX = 16;
+
+	private final RevisionProtectedDirectory indexDirectory;
+	private final RevisionProtectedDirectory taxonomyDirectory;
+	private final long[] generations;
+	private final String version;
+	private final Map<String, List<RevisionFile>> sourceFiles;
+	private final AtomicBoolean released;
+
+	private CommitRevision(final RevisionProtectedDirectory indexDirectory, final IndexCommit indexCommit,
+			final RevisionProtectedDirectory taxonomyDirectory, final IndexCommit taxonomyCommit) throws IOException {
+		this.indexDirectory = indexDirectory;
+		this.taxonomyDirectory = taxonomyDirectory;
+		if (taxonomyCommit == null) {
+			generations = new long[] { indexCommit.getGeneration() };
+			version = IndexRevision.revisionVersion(indexCommit);
+			sourceFiles = IndexRevision.revisionFiles(indexCommit);
+		} else {
+			generations = new long[] { indexCommit.getGeneration(), taxonomyCommit.getGeneration() };
+			version = IndexAndTaxonomyRevision.revisionVersion(indexCommit, taxonomyCommit);
+			sourceFiles = IndexAndTaxonomyRevision.revisionFiles(indexCommit, taxonomyCommit);
+		}
+		sourceFiles.forEach((source, files) -> getDirectory(source).protect(getFileNames(files)));
+		released = new AtomicBoolean();
+	}
+
+	private RevisionProtectedDirectory getDirectory(final String source) {
+		return IndexAndTaxonomyRevision.TAXONOMY_SOURCE.equals(source) ? taxonomyDirectory : indexDirectory;
+	}
+
+	private static List<String> getFileNames(final List<RevisionFile> files) {
+		final List<String> fileNames = new ArrayList<>(files.size());
+		for (RevisionFile file : files)
+			fileNames.add(file.fileName);
+		return fileNames;
+	}
+
+	/**
+	 * @return a revision of the last commits, or null if one of the directories has no commit
+	 */
+	static CommitRevision of(final RevisionProtectedDirectory indexDirectory,
+			final RevisionProtectedDirectory taxonomyDirectory) throws IOException {
+		final IndexCommit indexCommit = getLastCommit(indexDirectory);
+		if (indexCommit == null)
+			return null;
+		if (taxonomyDirectory == null)
+			return new CommitRevision(indexDirectory, indexCommit, null, null);
+		final IndexCommit taxonomyCommit = getLastCommit(taxonomyDirectory);
+		return taxonomyCommit == null ?
+				null :
+				new CommitRevision(indexDirectory, indexCommit, taxonomyDirectory, taxonomyCommit);
+	}
+
+	private static IndexCommit getLastCommit(final Directory directory) throws IOException {
+		if (!DirectoryReader.indexExists(directory))
+			return null;
+		final List<IndexCommit> commits = DirectoryReader.listCommits(directory);
+		return commits.isEmpty() ? null : commits.get(commits.size() - 1);
+	}
+
+	@Override
+	public int compareTo(final String version) {
+		final String[] parts = version.split(":");
+		if (parts.length != generations.length)
+			throw new IllegalArgumentException("Incompatible revision version: " + version);
+		for (int i = 0; i < generations.length; i++) {
+			final int cmp = Long.compare(generations[i], Long.parseLong(parts[i], RADIX));
+			if (cmp != 0)
+				return cmp;
+		}
+		return 0;
+	}
+
+	@Override
+	public int compareTo(final Revision revision) {
+		return compareTo(revision.getVersion());
+	}
+
+	@Override
+	public String getVersion() {
+		return version;
+	}
+
+	@Override
+	public Map<String, List<RevisionFile>> getSourceFiles() {
+		return sourceFiles;
+	}
+
+	@Override
+	public InputStream open(final String source, final String fileName) throws IOException {
+		return new IndexInputInputStream(getDirectory(source).openInput(fileName, IOContext.READONCE));
+	}
+
+	/**
+	 * Called by the replicator when the revision is replaced and no session uses it anymore
+	 */
+	@Override
+	public void release() {
+		if (released.compareAndSet(false, true))
+			sourceFiles.forEach((source, files) -> getDirectory(source).release(getFileNames(files)));
+	}
+
+	@Override
+	public String toString() {
+		return "CommitRevision version=" + version + " files=" + sourceFiles;
+	}
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.search.field.FieldDefinition;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.TopOrdAndIntQueue;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.facet.taxonomy.IntTaxonomyFacets;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Facet counts computed concurrently by slices of segments.
+ * Each slice fills its own count array, the arrays are summed once every slice is done.
+ */
+interface ConcurrentFacetCounts {
+
+	int MAX_SLICES = Runtime.getRuntime().availableProcessors();
+
+	@FunctionalInterface
+	interface SegmentCounter {
+
+		void count(FacetsCollector.MatchingDocs hits, int[] counts) throws IOException;
+	}
+
+	/**
+	 * Group the segments in balanced slices, using the number of hits of each segment
+	 */
+	static List<List<FacetsCollector.MatchingDocs>> slices(final List<FacetsCollector.MatchingDocs> matchingDocsList,
+			final int maxSlices) {
+		final int count = Math.max(1, Math.min(maxSlices, matchingDocsList.size()));
+		final List<List<FacetsCollector.MatchingDocs>> slices = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+			slices.add(new ArrayList<>());
+		final long[] sliceHits = new long[count];
+		final List<FacetsCollector.MatchingDocs> sorted = new ArrayList<>(matchingDocsList);
+		sorted.sort((a, b) -> Integer.compare(b.totalHits, a.totalHits));
+		for (FacetsCollector.MatchingDocs matchingDocs : sorted) {
+			int smallest = 0;
+			for (int i = 1; i < count; i++)
+				if (sliceHits[i] < sliceHits[smallest])
+					smallest = i;
+			slices.get(smallest).add(matchingDocs);
+			sliceHits[smallest] += matchingDocs.totalHits;
+		}
+		return slices;
+	}
+
+	/**
+	 * Count the slices: one count array is allocated per slice.
+	 * The caller thread counts the slices too, and never waits for a slice which has not been started.
+	 * The counting completes even if the executor is saturated, ie. when the caller is itself a thread of the
+	 * executor.
+	 *
+	 * @return the count array of each slice
+	 */
+	static List<int[]> countSlices(final ExecutorService executorService,
+			final List<FacetsCollector.MatchingDocs> matchingDocsList, final int length,
+			final SegmentCounter counter) throws IOException {
+		final List<List<FacetsCollector.MatchingDocs>> slices =
+				slices(matchingDocsList, executorService == null ? 1 : MAX_SLICES);
+		final int[][] results = new int[slices.size()][];
+		final AtomicInteger nextSlice = new AtomicInteger();
+		final CountDownLatch countedSlices = new CountDownLatch(slices.size());
+		final AtomicReference<Exception> error = new AtomicReference<>();
+		final Runnable worker = () -> {
+			int slice;
+			while ((slice = nextSlice.getAndIncrement()) < slices.size()) {
+				try {
+					if (error.get() != null)
+						continue;
+					final int[] counts = new int[length];
+					for (FacetsCollector.MatchingDocs matchingDocs : slices.get(slice))
+						counter.count(matchingDocs, counts);
+					results[slice] = counts;
+				} catch (IOException | RuntimeException e) {
+					error.compareAndSet(null, e);
+				} finally {
+					countedSlices.countDown();
+				}
+			}
+		};
+		final List<Future<?>> helpers = new ArrayList<>();
+		try {
+			for (int i = 1; i < slices.size(); i++)
+				helpers.add(executorService.submit(worker));
+		} catch (RejectedExecutionException e) {
+			// The caller counts the remaining slices
+		}
+		worker.run();
+		try {
+			// The remaining slices are being counted by running helpers
+			countedSlices.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Facet counting interrupted", e);
+		} finally {
+			// The helpers which have not started have nothing left to count
+			helpers.forEach(helper -> helper.cancel(false));
+		}
+		final Exception e = error.get();
+		if (e instanceof IOException)
+			throw (IOException) e;
+		if (e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * SortedSetDocValues facet counts restricted to the ordinal ranges of the requested dimensions.
+	 */
+	final class SortedSet extends Facets {
+
+		private final SortedSetDocValues dv;
+		private final String field;
+		private final LinkedHashMap<String, SortedSetDocValuesReaderState.OrdRange> ordRanges;
+		private final int minOrd;
+		private final int[] counts;
+
+		SortedSet(final SortedSetDocValuesReaderState state, final Collection<String> dimensions,
+				final FacetsCollector facetsCollector, final ExecutorService executorService) throws IOException {
+			this.dv = state.getDocValues();
+			this.field = state.getField();
+			this.ordRanges = new LinkedHashMap<>();
+			int min = Integer.MAX_VALUE;
+			int max = -1;
+			for (String dimension : dimensions) {
+				final SortedSetDocValuesReaderState.OrdRange ordRange = state.getOrdRange(dimension);
+				if (ordRange == null)
+					continue;
+				ordRanges.put(dimension, ordRange);
+				min = Math.min(min, ordRange.start);
+				max = Math.max(max, ordRange.end);
+			}
+			if (ordRanges.isEmpty()) {
+				minOrd = 0;
+				counts = new int[0];
+				return;
+			}
+			minOrd = min;
+			counts = new int[max - min + 1];
+			for (int[] sliceCounts : countSlices(executorService, facetsCollector.getMatchingDocs(), counts.length,
+					this::countSegment))
+				for (int i = 0; i < counts.length; i++)
+					counts[i] += sliceCounts[i];
+		}
+
+		private boolean isRequested(final long ord) {
+			for (SortedSetDocValuesReaderState.OrdRange ordRange : ordRanges.values())
+				if (ord >= ordRange.start && ord <= ordRange.end)
+					return true;
+			return false;
+		}
+
+		private void countSegment(final FacetsCollector.MatchingDocs hits, final int[] sliceCounts)
+				throws IOException {
+			final SortedSetDocValues segValues = hits.context.reader().getSortedSetDocValues(field);
+			if (segValues == null)
+				return;
+			final DocIdSetIterator docs = hits.bits.iterator();
+			if (docs == null)
+				return;
+			final LongValues ordMap = dv instanceof MultiDocValues.MultiSortedSetDocValues ?
+					((MultiDocValues.MultiSortedSetDocValues) dv).mapping.getGlobalOrds(hits.context.ord) :
+					null;
+			final int numSegOrds = (int) segValues.getValueCount();
+			int doc;
+			if (ordMap != null && hits.totalHits > numSegOrds / 10) {
+				// Dense case: count the segment ordinals first, then map them once to the global ordinals
+				final int[] segOrdCounts = new int[numSegOrds];
+				while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+					segValues.setDocument(doc);
+					long segOrd;
+					while ((segOrd = segValues.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS)
+						segOrdCounts[(int) segOrd]++;
+				}
+				for (int segOrd = 0; segOrd < numSegOrds; segOrd++) {
+					final int count = segOrdCounts[segOrd];
+					if (count == 0)
+						continue;
+					final long ord = ordMap.get(segOrd);
+					if (isRequested(ord))
+						sliceCounts[(int) ord - minOrd] += count;
+				}
+			} else {
+				while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+					segValues.setDocument(doc);
+					long segOrd;
+					while ((segOrd = segValues.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+						final long ord = ordMap == null ? segOrd : ordMap.get(segOrd);
+						if (isRequested(ord))
+							sliceCounts[(int) ord - minOrd]++;
+					}
+				}
+			}
+		}
+
+		private FacetResult getDim(final String dimension, final SortedSetDocValuesReaderState.OrdRange ordRange,
+				final int topN) {
+			TopOrdAndIntQueue queue = null;
+			TopOrdAndIntQueue.OrdAndValue reuse = null;
+			int bottomCount = 0;
+			int dimCount = 0;
+			int childCount = 0;
+			for (int ord = ordRange.start; ord <= ordRange.end; ord++) {
+				final int count = counts[ord - minOrd];
+				if (count <= 0)
+					continue;
+				dimCount += count;
+				childCount++;
+				if (count > bottomCount) {
+					if (reuse == null)
+						reuse = new TopOrdAndIntQueue.OrdAndValue();
+					reuse.ord = ord;
+					reuse.value = count;
+					if (queue == null)
+						queue = new TopOrdAndIntQueue(topN);
+					reuse = queue.insertWithOverflow(reuse);
+					if (queue.size() == topN)
+						bottomCount = queue.top().value;
+				}
+			}
+			if (queue == null)
+				return null;
+			final LabelAndValue[] labelValues = new LabelAndValue[queue.size()];
+			for (int i = labelValues.length - 1; i >= 0; i--) {
+				final TopOrdAndIntQueue.OrdAndValue ordAndValue = queue.pop();
+				final String[] parts = FacetsConfig.stringToPath(dv.lookupOrd(ordAndValue.ord).utf8ToString());
+				labelValues[i] = new LabelAndValue(parts[1], ordAndValue.value);
+			}
+			return new FacetResult(dimension, new String[0], dimCount, labelValues, childCount);
+		}
+
+		@Override
+		public FacetResult getTopChildren(final int topN, final String dim, final String... path) {
+			if (path.length > 0)
+				throw new IllegalArgumentException("path should be 0 length");
+			final SortedSetDocValuesReaderState.OrdRange ordRange = ordRanges.get(dim);
+			return ordRange == null ? null : getDim(dim, ordRange, topN);
+		}
+
+		@Override
+		public Number getSpecificValue(final String dim, final String... path) {
+			if (path.length != 1)
+				throw new IllegalArgumentException("path must be length=1");
+			final SortedSetDocValuesReaderState.OrdRange ordRange = ordRanges.get(dim);
+			if (ordRange == null)
+				return -1;
+			final long ord = dv.lookupTerm(new BytesRef(FacetsConfig.pathToString(dim, path)));
+			if (ord < ordRange.start || ord > ordRange.end)
+				return -1;
+			return counts[(int) ord - minOrd];
+		}
+
+		@Override
+		public List<FacetResult> getAllDims(final int topN) {
+			final List<FacetResult> results = new ArrayList<>(ordRanges.size());
+			for (Map.Entry<String, SortedSetDocValuesReaderState.OrdRange> entry : ordRanges.entrySet()) {
+				final FacetResult facetResult = getDim(entry.getKey(), entry.getValue(), topN);
+				if (facetResult != null)
+					results.add(facetResult);
+			}
+			results.sort((a, b) -> Integer.compare(b.value.intValue(), a.value.intValue()));
+			return results;
+		}
+	}
+
+	/**
+	 * Taxonomy facet counts. The slices are decoded concurrently, then the values are rolled up.
+	 */
+	final class Taxonomy extends IntTaxonomyFacets {
+
+		Taxonomy(final TaxonomyReader taxonomyReader, final FacetsConfig facetsConfig,
+				final FacetsCollector facetsCollector, final ExecutorService executorService) throws IOException {
+			super(FieldDefinition.TAXONOMY_FACET_FIELD, taxonomyReader, facetsConfig);
+			for (int[] sliceValues : countSlices(executorService, facetsCollector.getMatchingDocs(), values.length,
+					this::countSegment))
+				for (int i = 0; i < values.length; i++)
+					values[i] += sliceValues[i];
+			rollup();
+		}
+
+		private void countSegment(final FacetsCollector.MatchingDocs hits, final int[] sliceValues)
+				throws IOException {
+			final BinaryDocValues dv = hits.context.reader().getBinaryDocValues(indexFieldName);
+			if (dv == null)
+				return;
+			final DocIdSetIterator docs = hits.bits.iterator();
+			if (docs == null)
+				return;
+			int doc;
+			while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+				final BytesRef bytesRef = dv.get(doc);
+				final byte[] bytes = bytesRef.bytes;
+				final int end = bytesRef.offset + bytesRef.length;
+				int ord = 0;
+				int offset = bytesRef.offset;
+				int prev = 0;
+				while (offset < end) {
+					final byte b = bytes[offset++];
+					if (b >= 0) {
+						prev = ord = ((ord << 7) | b) + prev;
+						++sliceValues[ord];
+						ord = 0;
+					} else
+						ord = (ord << 7) | (b & 0x7F);
+				}
+			}
+		}
+	}
+}
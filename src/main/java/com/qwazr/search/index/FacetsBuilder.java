@@ -29,8 +29,6 @@ import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.LabelAndValue;
-import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
-import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
 import org.apache.lucene.facet.taxonomy.TaxonomyFacetSumFloatAssociations;
 import org.apache.lucene.facet.taxonomy.TaxonomyFacetSumIntAssociations;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -40,8 +38,10 @@ import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -138,8 +138,8 @@ abstract class FacetsBuilder {
 
 	static class WithCollectors extends FacetsBuilder {
 
-		private final SortedSetDocValuesFacetCounts sortedSetCounts;
-		private final FastTaxonomyFacetCounts taxonomyCounts;
+		private final ConcurrentFacetCounts.SortedSet sortedSetCounts;
+		private final ConcurrentFacetCounts.Taxonomy taxonomyCounts;
 		private final TaxonomyFacetSumFloatAssociations floatTaxonomyCounts;
 		private final TaxonomyFacetSumIntAssociations intTaxonomyCounts;
 		private final FacetsConfig facetsConfig;
@@ -154,10 +154,13 @@ abstract class FacetsBuilder {
 			this.sortedSetCounts = queryContext.docValueReaderState == null ?
 					null :
 					(facetFlag & FACET_IS_SORTED) == FACET_IS_SORTED ?
-							new SortedSetDocValuesFacetCounts(queryContext.docValueReaderState, facetsCollector) :
+							new ConcurrentFacetCounts.SortedSet(queryContext.docValueReaderState,
+									getSortedSetDimensions(facetsConfig, facetsDef), facetsCollector,
+									queryContext.executorService) :
 							null;
 			this.taxonomyCounts = (facetFlag & FACET_IS_TAXO) == FACET_IS_TAXO ?
-					new FastTaxonomyFacetCounts(queryContext.taxonomyReader, facetsConfig, facetsCollector) :
+					new ConcurrentFacetCounts.Taxonomy(queryContext.taxonomyReader, facetsConfig, facetsCollector,
+							queryContext.executorService) :
 					null;
 			this.floatTaxonomyCounts = (facetFlag & FACET_IS_TAXO_FLOAT) == FACET_IS_TAXO_FLOAT ?
 					new TaxonomyFacetSumFloatAssociations(FieldDefinition.TAXONOMY_FLOAT_ASSOC_FACET_FIELD,
@@ -203,6 +206,19 @@ abstract class FacetsBuilder {
 			return flag;
 		}
 
+		private List<String> getSortedSetDimensions(final FacetsConfig facetsConfig,
+				final LinkedHashMap<String, FacetDefinition> facetsDef) {
+			final List<String> dimensions = new ArrayList<>();
+			for (String dimName : facetsDef.keySet()) {
+				final String resolvedDimension = resolvedDimensions.get(dimName);
+				if (resolvedDimension == null)
+					continue;
+				if (sortedSetFacetField.equals(facetsConfig.getDimConfig(resolvedDimension).indexFieldName))
+					dimensions.add(resolvedDimension);
+			}
+			return dimensions;
+		}
+
 		@Override
 		final protected Facets getFacets(final String dimension) throws IOException {
 			final String indexFieldName = facetsConfig.getDimConfig(dimension).indexFieldName;
@@ -15,6 +15,7 @@
  */
 package com.qwazr.search.index;
 
+import com.qwazr.search.analysis.AnalyzerComponentCache;
 import com.qwazr.server.ServerException;
 import com.qwazr.utils.ClassLoaderUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -27,14 +28,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Objects;
 
-class FileResourceLoader implements ResourceLoader {
+class FileResourceLoader implements ResourceLoader, AnalyzerComponentCache.Aware {
 
 	private final ResourceLoader delegate;
 	private final File directory;
+	private final AnalyzerComponentCache analyzerComponentCache;
 
-	FileResourceLoader(final ResourceLoader delegate, final File directory) {
+	FileResourceLoader(final ResourceLoader delegate, final File directory,
+			final AnalyzerComponentCache analyzerComponentCache) {
 		this.delegate = delegate;
 		this.directory = directory;
+		this.analyzerComponentCache = analyzerComponentCache;
+	}
+
+	@Override
+	public AnalyzerComponentCache getAnalyzerComponentCache() {
+		return analyzerComponentCache;
 	}
 
 	final File checkResourceName(final String resourceName) {
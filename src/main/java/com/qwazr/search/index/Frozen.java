@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+
+/**
+ * A frozen index only keeps a searcher opened on its last commit. There is no writer.
+ */
+interface Frozen {
+
+	final class NoTaxo extends WriterAndSearcher.NoTaxo implements Frozen {
+
+		NoTaxo(final Directory dataDirectory, final SearcherFactory searcherFactory) throws IOException {
+			super(null, new SearcherManager(dataDirectory, searcherFactory));
+		}
+
+		@Override
+		public void commit() {
+		}
+	}
+
+	final class WithTaxo extends WriterAndSearcher.WithTaxo implements Frozen {
+
+		WithTaxo(final Directory dataDirectory, final Directory taxonomyDirectory,
+				final SearcherFactory searcherFactory) throws IOException {
+			super(null, null, new SearcherTaxonomyManager(dataDirectory, taxonomyDirectory, searcherFactory));
+		}
+
+		@Override
+		public void commit() {
+		}
+	}
+}
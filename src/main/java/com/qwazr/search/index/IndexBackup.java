@@ -0,0 +1,274 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.replicator.IndexAndTaxonomyRevision;
+import org.apache.lucene.replicator.LocalReplicator;
+import org.apache.lucene.replicator.RevisionFile;
+import org.apache.lucene.replicator.SessionToken;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Incremental copy of the last published revision into a backup directory.
+ * <p>
+ * A file of the previous backup of the same index (same UUID) having the same name, the same size and the same
+ * footer checksum is the same file: it is hard-linked instead of being copied. When the file system does not support
+ * hard links, the file is copied from the previous backup. Only the new files are read from the index.
+ * <p>
+ * The same copy is used to clone a live index: the files are then linked from the directory of the source index.
+ */
+final class IndexBackup {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(IndexBackup.class);
+
+	private final LocalReplicator replicator;
+	private final Directory dataDirectory;
+	private final Directory taxonomyDirectory;
+	private final String indexUuid;
+	private final Path backupIndexDirectory;
+	private final BackupProgress progress;
+	private final Path previousDirectory;
+	private final BackupManifest previousManifest;
+	private final Map<String, Map<String, Long>> checksums;
+
+	private IndexBackup(final LocalReplicator replicator, final Directory dataDirectory,
+			final Directory taxonomyDirectory, final String indexUuid, final Path backupIndexDirectory,
+			final BackupProgress progress, final Path previousDirectory, final BackupManifest previousManifest) {
+		this.replicator = replicator;
+		this.dataDirectory = dataDirectory;
+		this.taxonomyDirectory = taxonomyDirectory;
+		this.indexUuid = indexUuid;
+		this.backupIndexDirectory = backupIndexDirectory;
+		this.progress = progress;
+		this.previousDirectory = previousDirectory;
+		this.previousManifest = previousManifest;
+		this.checksums = new HashMap<>();
+	}
+
+	/**
+	 * A backup sharing its files with the previous backup of the index
+	 */
+	static IndexBackup of(final LocalReplicator replicator, final Directory dataDirectory,
+			final Directory taxonomyDirectory, final UUID indexUuid, final Path backupIndexDirectory,
+			final BackupProgress progress) throws IOException {
+		final String uuid = indexUuid.toString();
+		final Path previousDirectory = BackupManifest.findPrevious(backupIndexDirectory, uuid);
+		final BackupManifest previousManifest =
+				previousDirectory == null ? null : BackupManifest.load(previousDirectory);
+		return new IndexBackup(replicator, dataDirectory, taxonomyDirectory, uuid, backupIndexDirectory, progress,
+				previousManifest == null ? null : previousDirectory, previousManifest);
+	}
+
+	/**
+	 * A copy sharing its files with the live index. The files are protected by the replication session.
+	 */
+	static IndexBackup ofIndex(final LocalReplicator replicator, final Directory dataDirectory,
+			final Directory taxonomyDirectory, final Path indexDirectory, final Path targetIndexDirectory,
+			final BackupProgress progress) {
+		return new IndexBackup(replicator, dataDirectory, taxonomyDirectory, null, targetIndexDirectory, progress,
+				indexDirectory, null);
+	}
+
+	/**
+	 * @return true if the previous directory is a backup (the files are checked against its manifest)
+	 */
+	private boolean withManifest() {
+		return indexUuid != null;
+	}
+
+	private static String getSubDirectory(final String source) {
+		return IndexAndTaxonomyRevision.TAXONOMY_SOURCE.equals(source) ?
+				IndexFileSet.INDEX_TAXONOMY :
+				IndexFileSet.INDEX_DATA;
+	}
+
+	void run() throws IOException {
+		// The session keeps the snapshot (and its files) until it is released
+		final SessionToken session = replicator.checkForUpdate(null);
+		if (session == null)
+			throw new IOException("No revision available for the backup: " + backupIndexDirectory);
+		try {
+			progress.total(session.sourceFiles);
+			for (Map.Entry<String, List<RevisionFile>> entry : session.sourceFiles.entrySet())
+				copySource(session.id, entry.getKey(), entry.getValue());
+			if (withManifest())
+				new BackupManifest(session.version, indexUuid, session.sourceFiles, checksums).save(
+						backupIndexDirectory);
+		} finally {
+			replicator.release(session.id);
+		}
+	}
+
+	private void copySource(final String sessionId, final String source, final List<RevisionFile> files)
+			throws IOException {
+		final String subDirectory = getSubDirectory(source);
+		final Path targetDirectory = backupIndexDirectory.resolve(subDirectory);
+		Files.createDirectories(targetDirectory);
+		final Path previousSourceDirectory = previousDirectory == null ? null : previousDirectory.resolve(subDirectory);
+
+		final Directory sourceDirectory = IndexAndTaxonomyRevision.TAXONOMY_SOURCE.equals(source) ?
+				taxonomyDirectory :
+				dataDirectory;
+		final Map<String, Long> sourceChecksums = new HashMap<>();
+		checksums.put(source, sourceChecksums);
+
+		final Set<String> fileNames = new HashSet<>();
+		try (final Directory targetLuceneDirectory = FSDirectory.open(targetDirectory)) {
+			for (RevisionFile file : files) {
+				fileNames.add(file.fileName);
+				final Path target = targetDirectory.resolve(file.fileName);
+				final Long checksum = withManifest() ? retrieveChecksum(sourceDirectory, file.fileName) : null;
+				if (checksum != null)
+					sourceChecksums.put(file.fileName, checksum);
+				// A backup done again with the same name
+				if (checksum != null && Files.exists(target) && Files.size(target) == file.size &&
+						checksum.equals(retrieveChecksum(targetLuceneDirectory, file.fileName))) {
+					progress.kept(file.size);
+					continue;
+				}
+				if (previousSourceDirectory != null && (!withManifest() ||
+						previousManifest.contains(source, file.fileName, file.size, checksum))) {
+					final Path previous = previousSourceDirectory.resolve(file.fileName);
+					if (Files.exists(previous) && Files.size(previous) == file.size) {
+						Files.deleteIfExists(target);
+						if (linkOrCopy(previous, target))
+							progress.linked(file.size);
+						else
+							progress.copied(file.size);
+						continue;
+					}
+				}
+				try (final InputStream input = replicator.obtainFile(sessionId, source, file.fileName)) {
+					Files.copy(input, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+				IOUtils.fsync(target, false);
+				progress.copied(file.size);
+			}
+		}
+
+		// Remove the files of an older revision (when a backup is done again with the same name)
+		try (final Stream<Path> stream = Files.list(targetDirectory)) {
+			for (Path path : (Iterable<Path>) stream::iterator)
+				if (!fileNames.contains(path.getFileName().toString()))
+					Files.deleteIfExists(path);
+		}
+		IOUtils.fsync(targetDirectory, true);
+	}
+
+	/**
+	 * @return the checksum stored in the Lucene footer of the file, or null if the footer cannot be read
+	 */
+	static Long retrieveChecksum(final Directory directory, final String fileName) {
+		if (directory == null)
+			return null;
+		try (final IndexInput input = directory.openInput(fileName, IOContext.READONCE)) {
+			return CodecUtil.retrieveChecksum(input);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, e, () -> "No checksum found in the footer of " + fileName);
+			return null;
+		}
+	}
+
+	/**
+	 * Materialize an index directory from a backup. The definitions (settings, fields, analyzers, resources) are
+	 * copied, the index files are hard-linked (or copied).
+	 *
+	 * @param backupIndexDirectory the backup of the index: {schema}/{backup_name}/{index_name}
+	 * @param indexDirectory       the directory of the new index, which must not exist
+	 */
+	static void restore(final Path backupIndexDirectory, final Path indexDirectory) throws IOException {
+		final Path backupDataDirectory = backupIndexDirectory.resolve(IndexFileSet.INDEX_DATA);
+		if (!Files.isDirectory(backupDataDirectory))
+			throw new IOException("No index data found in the backup: " + backupIndexDirectory);
+		Files.createDirectory(indexDirectory);
+		for (String fileName : DEFINITION_FILES) {
+			final Path file = backupIndexDirectory.resolve(fileName);
+			if (Files.exists(file))
+				Files.copy(file, indexDirectory.resolve(fileName));
+		}
+		copyFiles(backupIndexDirectory.resolve(IndexFileSet.RESOURCES_DIR),
+				indexDirectory.resolve(IndexFileSet.RESOURCES_DIR), false);
+		copyFiles(backupDataDirectory, indexDirectory.resolve(IndexFileSet.INDEX_DATA), true);
+		copyFiles(backupIndexDirectory.resolve(IndexFileSet.INDEX_TAXONOMY),
+				indexDirectory.resolve(IndexFileSet.INDEX_TAXONOMY), true);
+		IOUtils.fsync(indexDirectory, true);
+	}
+
+	private final static String[] DEFINITION_FILES =
+			{ IndexFileSet.SETTINGS_FILE, IndexFileSet.FIELDS_FILE, IndexFileSet.ANALYZERS_FILE };
+
+	/**
+	 * Copy the regular files of a directory (if it exists)
+	 *
+	 * @param link true if the files are write-once and can be hard-linked
+	 */
+	static void copyFiles(final Path sourceDirectory, final Path targetDirectory, final boolean link)
+			throws IOException {
+		if (!Files.isDirectory(sourceDirectory))
+			return;
+		Files.createDirectories(targetDirectory);
+		try (final Stream<Path> stream = Files.list(sourceDirectory)) {
+			for (Path path : (Iterable<Path>) stream::iterator) {
+				if (!Files.isRegularFile(path))
+					continue;
+				final Path target = targetDirectory.resolve(path.getFileName());
+				if (link)
+					linkOrCopy(path, target);
+				else
+					Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			}
+		}
+		IOUtils.fsync(targetDirectory, true);
+	}
+
+	/**
+	 * Hard-link the file, or copy it if the file system does not support hard links.
+	 *
+	 * @return true if the file has been linked, false if it has been copied
+	 */
+	static boolean linkOrCopy(final Path existing, final Path target) throws IOException {
+		try {
+			Files.createLink(target, existing);
+			return true;
+		} catch (UnsupportedOperationException | IOException e) {
+			LOGGER.log(Level.FINE, e, () -> "Hard link not possible, the file is copied: " + existing);
+		}
+		Files.copy(existing, target, StandardCopyOption.REPLACE_EXISTING);
+		IOUtils.fsync(target, false);
+		return false;
+	}
+}
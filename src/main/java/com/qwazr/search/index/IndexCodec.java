@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.field.FieldTypeInterface;
+import com.qwazr.server.ServerException;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.bloom.BloomFilteringPostingsFormat;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
+import org.apache.lucene.codecs.lucene62.Lucene62Codec;
+import org.apache.lucene.search.SortField;
+
+import javax.ws.rs.core.Response;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The codec used by the IndexWriter.
+ * The stored fields compression comes from the index settings,
+ * the postings and doc values formats come from the field definitions.
+ * The segments are still written under the Lucene62 name: the per-field formats are recorded in the field infos,
+ * any reader can open the index as long as the formats are available (lucene-codecs).
+ */
+class IndexCodec extends Lucene62Codec {
+
+	final static String BLOOM_FILTER = "BloomFilter";
+
+	private final static String BLOOM_FILTER_DELEGATE = "Lucene50";
+
+	private static volatile PostingsFormat bloomFilterPostingsFormat;
+
+	private volatile Map<String, FieldDefinition> luceneFields;
+	private volatile FieldMap fieldMap;
+
+	IndexCodec(final IndexSettingsDefinition settings) {
+		super(getMode(settings));
+		this.luceneFields = Collections.emptyMap();
+	}
+
+	private static Lucene50StoredFieldsFormat.Mode getMode(final IndexSettingsDefinition settings) {
+		if (settings == null || settings.storedFieldsMode == null)
+			return Lucene50StoredFieldsFormat.Mode.BEST_SPEED;
+		switch (settings.storedFieldsMode) {
+		case BEST_COMPRESSION:
+			return Lucene50StoredFieldsFormat.Mode.BEST_COMPRESSION;
+		default:
+		case BEST_SPEED:
+			return Lucene50StoredFieldsFormat.Mode.BEST_SPEED;
+		}
+	}
+
+	/**
+	 * Called each time the fields are updated. The formats are used by the next written segments.
+	 */
+	void setFieldMap(final FieldMap fieldMap) {
+		final Map<String, FieldDefinition> fields = new HashMap<>();
+		if (fieldMap != null) {
+			fieldMap.getFieldDefinitionMap().forEach((name, definition) -> {
+				if (definition.postingsFormat == null && definition.docValuesFormat == null)
+					return;
+				fields.put(name, definition);
+				// The smart fields are written using generated names
+				final FieldTypeInterface fieldType = fieldMap.getFieldType(name, null);
+				if (fieldType == null)
+					return;
+				putName(fields, fieldType.getQueryFieldName(name), definition);
+				putName(fields, fieldType.getStoredFieldName(name), definition);
+				final SortField sortField = fieldType.getSortField(name, null);
+				if (sortField != null)
+					putName(fields, sortField.getField(), definition);
+			});
+		}
+		this.luceneFields = fields;
+		this.fieldMap = fieldMap;
+	}
+
+	private static void putName(final Map<String, FieldDefinition> fields, final String luceneName,
+			final FieldDefinition definition) {
+		if (luceneName != null)
+			fields.putIfAbsent(luceneName, definition);
+	}
+
+	private FieldDefinition getDefinition(final String luceneName) {
+		final FieldDefinition definition = luceneFields.get(luceneName);
+		if (definition != null)
+			return definition;
+		// Wildcard fields
+		final FieldMap fm = fieldMap;
+		if (fm == null)
+			return null;
+		final FieldTypeInterface fieldType = fm.getFieldType(null, luceneName);
+		return fieldType == null ? null : fieldType.getDefinition();
+	}
+
+	@Override
+	public PostingsFormat getPostingsFormatForField(final String field) {
+		final FieldDefinition definition = getDefinition(field);
+		return definition == null || definition.postingsFormat == null ?
+				super.getPostingsFormatForField(field) :
+				getPostingsFormat(definition.postingsFormat);
+	}
+
+	@Override
+	public DocValuesFormat getDocValuesFormatForField(final String field) {
+		final FieldDefinition definition = getDefinition(field);
+		return definition == null || definition.docValuesFormat == null ?
+				super.getDocValuesFormatForField(field) :
+				DocValuesFormat.forName(definition.docValuesFormat);
+	}
+
+	static PostingsFormat getPostingsFormat(final String name) {
+		if (!BLOOM_FILTER.equals(name))
+			return PostingsFormat.forName(name);
+		if (bloomFilterPostingsFormat == null)
+			bloomFilterPostingsFormat = new BloomFilteringPostingsFormat(PostingsFormat.forName(BLOOM_FILTER_DELEGATE));
+		return bloomFilterPostingsFormat;
+	}
+
+	private static void checkFormat(final String fieldName, final String formatName,
+			final Function<String, ?> formatLoader) {
+		if (formatName == null)
+			return;
+		try {
+			formatLoader.apply(formatName);
+		} catch (IllegalArgumentException e) {
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"Unknown format: " + formatName + " - Field: " + fieldName);
+		}
+	}
+
+	/**
+	 * Check that the formats are available before the fields are saved
+	 */
+	static void checkFormats(final Map<String, FieldDefinition> fields) {
+		if (fields == null)
+			return;
+		fields.forEach((name, definition) -> {
+			checkFormat(name, definition.postingsFormat, IndexCodec::getPostingsFormat);
+			checkFormat(name, definition.docValuesFormat, DocValuesFormat::forName);
+		});
+	}
+}
@@ -15,17 +15,23 @@
  */
 package com.qwazr.search.index;
 
+import com.qwazr.server.ServerException;
+import com.qwazr.utils.concurrent.FunctionEx;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.facet.FacetsConfig;
 
+import javax.ws.rs.core.Response;
 import java.io.Closeable;
 import java.util.Map;
 
 public interface IndexContext extends Closeable {
 
-	default IndexInstance getIndex(String indexName) {
-		return null;
+	/**
+	 * Apply the action on another index of the schema, which is not evicted while the action is running.
+	 */
+	default <T, E extends Exception> T useIndex(String indexName, FunctionEx<IndexInstance, T, E> action) throws E {
+		throw new ServerException(Response.Status.NOT_FOUND, "Index not available: " + indexName);
 	}
 
 	Analyzer DEFAULT_ANALYZER = new StandardAnalyzer();
@@ -17,6 +17,7 @@ package com.qwazr.search.index;
 
 import com.qwazr.search.analysis.UpdatableAnalyzers;
 import com.qwazr.utils.IOUtils;
+import com.qwazr.utils.concurrent.FunctionEx;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.facet.FacetsConfig;
@@ -46,8 +47,11 @@ class IndexContextImpl implements IndexContext, Closeable {
 	}
 
 	@Override
-	final public IndexInstance getIndex(final String indexName) {
-		return indexProvider == null ? null : indexProvider.getIndex(indexName);
+	final public <T, E extends Exception> T useIndex(final String indexName,
+			final FunctionEx<IndexInstance, T, E> action) throws E {
+		return indexProvider == null ?
+				IndexContext.super.useIndex(indexName, action) :
+				indexProvider.use(indexName, action);
 	}
 
 	@Override
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+
+import java.io.Closeable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Closes the indexes which are not used, they are reopened transparently on the next access.
+ * <p>
+ * An index which has not been accessed during the idle timeout is closed (the writer commits the pending changes).
+ * The number of open indexes can also be capped: the least recently used indexes are closed first.
+ * An index is never closed while a request is using it (see IndexInstance.acquire()).
+ * The cap is soft: to avoid reopening the same indexes over and over, an index accessed during the last
+ * MIN_IDLE_MS milliseconds is not closed either.
+ * <p>
+ * The idle timeout and the cap can be set using the QWAZR_INDEX_IDLE_TIMEOUT_MS and QWAZR_INDEX_MAX_OPEN
+ * system properties or environment variables. Both are disabled by default.
+ */
+final class IndexEvictionManager implements Closeable {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(IndexEvictionManager.class);
+
+	final static String QWAZR_INDEX_IDLE_TIMEOUT_MS = "QWAZR_INDEX_IDLE_TIMEOUT_MS";
+	final static String QWAZR_INDEX_MAX_OPEN = "QWAZR_INDEX_MAX_OPEN";
+
+	final static long DEFAULT_CHECK_INTERVAL_MS = 1000;
+	final static long MIN_IDLE_MS = 5000;
+
+	interface Resident {
+
+		String getName();
+
+		/**
+		 * @return the time of the last access in milliseconds
+		 */
+		long getLastAccess();
+
+		/**
+		 * Close the index, unless it is in use or it has been accessed since the given time
+		 *
+		 * @param lastAccess the time of the last access when the index has been elected
+		 * @return true if the index has been closed
+		 */
+		boolean evict(long lastAccess);
+	}
+
+	private final long idleTimeoutMs;
+	private final int maxOpenIndexes;
+	private final long minIdleMs;
+	private final Set<Resident> residents;
+	private final ScheduledExecutorService scheduler;
+
+	private final LongAdder idleEvictions;
+	private final LongAdder capEvictions;
+
+	IndexEvictionManager(final long idleTimeoutMs, final int maxOpenIndexes, final long minIdleMs,
+			final long checkIntervalMs) {
+		this.idleTimeoutMs = idleTimeoutMs;
+		this.maxOpenIndexes = maxOpenIndexes;
+		this.minIdleMs = minIdleMs;
+		this.residents = ConcurrentHashMap.newKeySet();
+		this.idleEvictions = new LongAdder();
+		this.capEvictions = new LongAdder();
+		if (checkIntervalMs > 0 && (idleTimeoutMs > 0 || maxOpenIndexes > 0)) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "Index eviction controller");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleWithFixedDelay(this::checkQuietly, checkIntervalMs, checkIntervalMs,
+					TimeUnit.MILLISECONDS);
+		} else
+			scheduler = null;
+	}
+
+	private static long getDefaultValue(final String name) {
+		String value = System.getProperty(name);
+		if (value == null)
+			value = System.getenv(name);
+		if (value != null) {
+			try {
+				return Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				LOGGER.warning(() -> "Wrong value for " + name + ": " + value);
+			}
+		}
+		return 0;
+	}
+
+	static long getDefaultIdleTimeoutMs() {
+		return getDefaultValue(QWAZR_INDEX_IDLE_TIMEOUT_MS);
+	}
+
+	static int getDefaultMaxOpenIndexes() {
+		return (int) getDefaultValue(QWAZR_INDEX_MAX_OPEN);
+	}
+
+	void opened(final Resident resident) {
+		residents.add(resident);
+	}
+
+	void closed(final Resident resident) {
+		residents.remove(resident);
+	}
+
+	private boolean evict(final Resident resident, final long lastAccess) {
+		try {
+			return resident.evict(lastAccess);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, e, () -> "Cannot close the index " + resident.getName());
+			return false;
+		}
+	}
+
+	private void checkQuietly() {
+		try {
+			checkIdle();
+			checkCap();
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, e, () -> "Index eviction check failed");
+		}
+	}
+
+	/**
+	 * Close the indexes which have not been accessed during the idle timeout
+	 */
+	void checkIdle() {
+		if (idleTimeoutMs <= 0)
+			return;
+		final long now = System.currentTimeMillis();
+		for (Resident resident : residents) {
+			final long lastAccess = resident.getLastAccess();
+			if (now - lastAccess >= idleTimeoutMs && evict(resident, lastAccess))
+				idleEvictions.increment();
+		}
+	}
+
+	/**
+	 * Close the least recently used indexes until the number of open indexes is under the cap.
+	 * Must not be called while the lock of an index is held.
+	 */
+	void checkCap() {
+		if (maxOpenIndexes <= 0 || residents.size() <= maxOpenIndexes)
+			return;
+		// The last access times are captured before the sort, as they may change meanwhile
+		final List<Map.Entry<Resident, Long>> candidates = new ArrayList<>(residents.size());
+		for (Resident resident : residents)
+			candidates.add(new AbstractMap.SimpleImmutableEntry<>(resident, resident.getLastAccess()));
+		candidates.sort((c1, c2) -> Long.compare(c1.getValue(), c2.getValue()));
+		final long now = System.currentTimeMillis();
+		int excess = candidates.size() - maxOpenIndexes;
+		for (Map.Entry<Resident, Long> candidate : candidates) {
+			if (excess <= 0 || now - candidate.getValue() < minIdleMs)
+				return;
+			if (evict(candidate.getKey(), candidate.getValue())) {
+				capEvictions.increment();
+				excess--;
+			}
+		}
+	}
+
+	IndexEvictionStatus getStatus() {
+		return new IndexEvictionStatus(idleTimeoutMs, maxOpenIndexes, residents.size(), idleEvictions.sum(),
+				capEvictions.sum());
+	}
+
+	@Override
+	public void close() {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+	}
+}
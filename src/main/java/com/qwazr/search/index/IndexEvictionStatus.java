@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The open indexes of the node and the indexes closed by the eviction policy.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class IndexEvictionStatus {
+
+	final public Long idle_timeout_ms;
+	final public Integer max_open_indexes;
+	final public Integer open_indexes;
+	final public Long idle_evictions;
+	final public Long cap_evictions;
+
+	@JsonCreator
+	IndexEvictionStatus(@JsonProperty("idle_timeout_ms") Long idle_timeout_ms,
+			@JsonProperty("max_open_indexes") Integer max_open_indexes,
+			@JsonProperty("open_indexes") Integer open_indexes, @JsonProperty("idle_evictions") Long idle_evictions,
+			@JsonProperty("cap_evictions") Long cap_evictions) {
+		this.idle_timeout_ms = idle_timeout_ms;
+		this.max_open_indexes = max_open_indexes;
+		this.open_indexes = open_indexes;
+		this.idle_evictions = idle_evictions;
+		this.cap_evictions = cap_evictions;
+	}
+}
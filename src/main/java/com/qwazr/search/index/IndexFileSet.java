@@ -24,6 +24,7 @@ import com.qwazr.utils.IOUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.LinkedHashMap;
 import java.util.UUID;
@@ -33,12 +34,15 @@ public class IndexFileSet {
 	final static String INDEX_DATA = "data";
 	final static String INDEX_TAXONOMY = "taxonomy";
 	final static String REPL_WORK = "repl_work";
+	final static String REPL_DOWNLOAD = "repl_download";
 	final static String UUID_FILE = "uuid";
 	final static String UUID_MASTER_FILE = "uuid.master";
 	final static String SETTINGS_FILE = "settings.json";
 	final static String FIELDS_FILE = "fields.json";
 	final static String ANALYZERS_FILE = "analyzers.json";
 	final static String RESOURCES_DIR = "resources";
+	final static String BACKUP_MANIFEST_FILE = "backup_manifest.json";
+	final static String FROZEN_FILE = "frozen";
 
 	final private File uuidFile;
 	final File uuidMasterFile;
@@ -49,7 +53,9 @@ public class IndexFileSet {
 	final private File analyzerMapFile;
 	final File resourcesDirectory;
 	final private File fieldMapFile;
+	final private File frozenFile;
 	final Path replWorkPath;
+	final Path replDownloadPath;
 
 	IndexFileSet(final Path mainDirectory) {
 		this.uuidFile = mainDirectory.resolve(UUID_FILE).toFile();
@@ -61,7 +67,9 @@ public class IndexFileSet {
 		this.resourcesDirectory = mainDirectory.resolve(RESOURCES_DIR).toFile();
 		this.fieldMapFile = mainDirectory.resolve(FIELDS_FILE).toFile();
 		this.settingsFile = mainDirectory.resolve(SETTINGS_FILE).toFile();
+		this.frozenFile = mainDirectory.resolve(FROZEN_FILE).toFile();
 		this.replWorkPath = mainDirectory.resolve(REPL_WORK);
+		this.replDownloadPath = mainDirectory.resolve(REPL_DOWNLOAD);
 	}
 
 	void checkIndexDirectory() throws IOException {
@@ -115,4 +123,18 @@ public class IndexFileSet {
 		AnalyzerDefinition.saveMap(definitionMap, analyzerMapFile);
 	}
 
+	boolean isFrozen() {
+		return frozenFile.exists();
+	}
+
+	/**
+	 * The marker file contains the time the index has been frozen
+	 */
+	void setFrozen(final boolean frozen) throws IOException {
+		if (frozen)
+			IOUtils.writeStringAsFile(Long.toString(System.currentTimeMillis()), frozenFile);
+		else
+			Files.deleteIfExists(frozenFile.toPath());
+	}
+
 }
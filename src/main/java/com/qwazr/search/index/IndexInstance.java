@@ -27,21 +27,24 @@ import com.qwazr.search.query.JoinQuery;
 import com.qwazr.server.ServerException;
 import com.qwazr.utils.FileUtils;
 import com.qwazr.utils.IOUtils;
+import com.qwazr.utils.LoggerUtils;
 import com.qwazr.utils.StringUtils;
 import com.qwazr.utils.concurrent.FunctionEx;
 import com.qwazr.utils.concurrent.ReadWriteSemaphores;
 import com.qwazr.utils.reflection.ConstructorParametersImpl;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.facet.taxonomy.TaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
-import org.apache.lucene.replicator.LocalReplicator;
-import org.apache.lucene.replicator.PerSessionDirectoryFactory;
-import org.apache.lucene.replicator.ReplicationClient;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
@@ -49,7 +52,6 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.join.JoinUtil;
 import org.apache.lucene.search.join.ScoreMode;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 import javax.ws.rs.core.Response;
 import java.io.Closeable;
@@ -70,13 +72,21 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 final public class IndexInstance implements Closeable {
 
-	@FunctionalInterface
+	private static final Logger LOGGER = LoggerUtils.getLogger(IndexInstance.class);
+
 	public interface Provider {
-		IndexInstance getIndex(String name);
+
+		/**
+		 * Apply the action on the index, which is not evicted while the action is running.
+		 */
+		<T, E extends Exception> T use(String name, FunctionEx<IndexInstance, T, E> action) throws E;
 	}
 
 	private final IndexFileSet fileSet;
@@ -87,6 +97,7 @@ final public class IndexInstance implements Closeable {
 	private final Directory dataDirectory;
 	private final Directory taxonomyDirectory;
 	private final WriterAndSearcher writerAndSearcher;
+	private final boolean frozen;
 
 	private final Set<MultiSearchInstance> multiSearchInstances;
 
@@ -100,18 +111,40 @@ final public class IndexInstance implements Closeable {
 	private final ReentrantLock commitLock;
 	private final ReentrantLock backupLock;
 
+	/**
+	 * The number of requests using this instance
+	 */
+	private final AtomicInteger references;
+
 	private final UpdatableAnalyzers indexAnalyzers;
 	private final UpdatableAnalyzers queryAnalyzers;
+	private final ReentrantLock analyzersLock;
+	private volatile AnalyzerContext analyzerContext;
 
 	private final ReentrantLock fieldMapLock;
 	private volatile FieldMap fieldMap;
+	private final IndexCodec indexCodec;
 
 	private volatile LinkedHashMap<String, AnalyzerDefinition> analyzerDefinitionMap;
 	private final LinkedHashMap<String, CustomAnalyzer.Factory> localAnalyzerFactoryMap;
 	private final Map<String, AnalyzerFactory> globalAnalyzerFactoryMap;
 
 	private final IndexReplicator indexReplicator;
-	private final LocalReplicator localReplicator;
+	private final NotifyingReplicator localReplicator;
+	private final ReplicationPoller replicationPoller;
+
+	private final ReentrantLock onlineCheckLock;
+	private volatile OnlineIndexCheck onlineCheck;
+
+	private final IndexingBufferManager indexingBufferManager;
+
+	private final MergeService mergeService;
+	private final ReentrantLock mergeJobLock;
+	private volatile MergeJob mergeJob;
+	private volatile int lastAutoExpungeDeletedDocs;
+
+	private final QueryWarmer queryWarmer;
+	private final QueryCache queryCache;
 
 	IndexInstance(final IndexInstanceBuilder builder) {
 		this.readWriteSemaphores = builder.readWriteSemaphores;
@@ -126,9 +159,13 @@ final public class IndexInstance implements Closeable {
 		this.globalAnalyzerFactoryMap = builder.globalAnalyzerFactoryMap;
 		this.fieldMapLock = new ReentrantLock(true);
 		this.fieldMap = builder.fieldMap;
+		this.indexCodec = builder.indexCodec;
 		this.writerAndSearcher = builder.writerAndSearcher;
+		this.frozen = writerAndSearcher instanceof Frozen;
 		this.indexAnalyzers = builder.indexAnalyzers;
 		this.queryAnalyzers = builder.queryAnalyzers;
+		this.analyzersLock = new ReentrantLock(true);
+		this.analyzerContext = builder.analyzerContext;
 		this.settings = builder.settings;
 		this.multiSearchInstances = ConcurrentHashMap.newKeySet();
 		this.executorService = builder.executorService;
@@ -137,12 +174,26 @@ final public class IndexInstance implements Closeable {
 		this.replicationLock = new ReentrantLock(true);
 		this.commitLock = new ReentrantLock(true);
 		this.backupLock = new ReentrantLock(true);
+		this.references = new AtomicInteger();
+		this.onlineCheckLock = new ReentrantLock(true);
 		this.indexReplicator = writerAndSearcher instanceof IndexReplicator.Slave ?
 				((IndexReplicator.Slave) writerAndSearcher).getIndexReplicator() :
 				null;
 		this.localReplicator = writerAndSearcher instanceof Replication.Master ?
 				((Replication.Master) writerAndSearcher).getLocalReplicator() :
 				null;
+		this.replicationPoller = indexReplicator != null && settings.replicationIntervalMs != null &&
+				settings.replicationIntervalMs > 0 ?
+				new ReplicationPoller(indexName, indexReplicator, this::replicationCheck,
+						settings.replicationIntervalMs, settings.replicationWaitMs) :
+				null;
+		this.indexingBufferManager = builder.indexingBufferManager;
+		if (indexingBufferManager != null && writerAndSearcher.getIndexWriter() != null)
+			indexingBufferManager.register(indexName, writerAndSearcher.getIndexWriter());
+		this.mergeService = builder.mergeService;
+		this.mergeJobLock = new ReentrantLock(true);
+		this.queryCache = builder.queryCache;
+		this.queryWarmer = builder.queryWarmer;
 	}
 
 	public IndexSettingsDefinition getSettings() {
@@ -151,6 +202,23 @@ final public class IndexInstance implements Closeable {
 
 	@Override
 	public void close() {
+		if (replicationPoller != null)
+			replicationPoller.close();
+
+		final OnlineIndexCheck check = onlineCheck;
+		if (check != null)
+			check.cancel();
+
+		final MergeJob job = mergeJob;
+		if (job != null) {
+			job.cancel();
+			if (mergeService != null)
+				mergeService.unregister(getFullName(), job);
+		}
+
+		if (indexingBufferManager != null && writerAndSearcher.getIndexWriter() != null)
+			indexingBufferManager.unregister(writerAndSearcher.getIndexWriter());
+
 		IOUtils.closeQuietly(writerAndSearcher, indexAnalyzers, queryAnalyzers);
 
 		if (taxonomyDirectory != null)
@@ -173,7 +241,8 @@ final public class IndexInstance implements Closeable {
 				indexReplicator != null ? indexReplicator.getMasterUuid() : null, dataDirectory, indexSearcher,
 				writerAndSearcher.getIndexWriter(), settings, localAnalyzerFactoryMap.keySet(),
 				fieldMap.getFieldDefinitionMap().keySet(), indexAnalyzers.getActiveAnalyzers(),
-				queryAnalyzers.getActiveAnalyzers()));
+				queryAnalyzers.getActiveAnalyzers(), indexReplicator != null ? indexReplicator.getLag() : null,
+				frozen));
 	}
 
 	LinkedHashMap<String, FieldDefinition> getFields() {
@@ -189,27 +258,99 @@ final public class IndexInstance implements Closeable {
 		}
 	}
 
+	/**
+	 * The number of live documents visible by the current searcher
+	 */
+	long getNumDocs() throws IOException {
+		return writerAndSearcher.search(
+				(indexSearcher, taxonomyReader) -> (long) indexSearcher.getIndexReader().numDocs());
+	}
+
+	/**
+	 * The size in bytes of the files of the commit visible by the current searcher
+	 */
+	long getCommitSize() throws IOException {
+		return writerAndSearcher.search((indexSearcher, taxonomyReader) -> {
+			final IndexReader indexReader = indexSearcher.getIndexReader();
+			if (!(indexReader instanceof DirectoryReader))
+				return 0L;
+			final IndexCommit indexCommit = ((DirectoryReader) indexReader).getIndexCommit();
+			long size = 0;
+			for (String fileName : indexCommit.getFileNames()) {
+				try {
+					size += dataDirectory.fileLength(fileName);
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, e, e::getMessage);
+				}
+			}
+			return size;
+		});
+	}
+
+	/**
+	 * The min and max values of a LongPoint field, read from the points metadata of the segments.
+	 *
+	 * @param fieldName the name of the field
+	 * @return an array with the min and the max values, or null if no document has a value
+	 */
+	long[] getLongPointRange(final String fieldName) throws IOException {
+		final String luceneFieldName = fieldMap == null ? null : fieldMap.resolveQueryFieldName(fieldName);
+		final String pointFieldName = luceneFieldName == null ? fieldName : luceneFieldName;
+		return writerAndSearcher.search((indexSearcher, taxonomyReader) -> {
+			final IndexReader indexReader = indexSearcher.getIndexReader();
+			final byte[] minPackedValue = PointValues.getMinPackedValue(indexReader, pointFieldName);
+			final byte[] maxPackedValue = PointValues.getMaxPackedValue(indexReader, pointFieldName);
+			if (minPackedValue == null || maxPackedValue == null)
+				return null;
+			return new long[] { LongPoint.decodeDimension(minPackedValue, 0),
+					LongPoint.decodeDimension(maxPackedValue, 0) };
+		});
+	}
+
 	IndexStatus getStatus() throws IOException, InterruptedException {
 		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireReadSemaphore()) {
 			return getIndexStatus();
 		}
 	}
 
-	private void refreshFieldsAnalyzers() throws IOException {
-		final AnalyzerContext analyzerContext =
-				new AnalyzerContext(instanceFactory, fileResourceLoader, fieldMap, true, globalAnalyzerFactoryMap,
-						localAnalyzerFactoryMap);
-		indexAnalyzers.update(analyzerContext.indexAnalyzerMap);
-		queryAnalyzers.update(analyzerContext.queryAnalyzerMap);
-		multiSearchInstances.forEach(MultiSearchInstance::refresh);
+	/**
+	 * Rebuild the analyzers of the fields. The analyzers whose factory is unchanged and which have not loaded
+	 * one of the changed resources are reused.
+	 *
+	 * @param incremental      false to rebuild every analyzer
+	 * @param changedResources the name of the resources which have been updated
+	 */
+	private void refreshFieldsAnalyzers(final boolean incremental, final Set<String> changedResources)
+			throws IOException {
+		analyzersLock.lock();
+		try {
+			final AnalyzerContext context =
+					new AnalyzerContext(incremental ? analyzerContext : null, changedResources, instanceFactory,
+							fileResourceLoader, fieldMap, true, globalAnalyzerFactoryMap, localAnalyzerFactoryMap);
+			final boolean unchanged = context.hasSameAnalyzers(analyzerContext);
+			indexAnalyzers.update(context.indexAnalyzerMap);
+			queryAnalyzers.update(context.queryAnalyzerMap);
+			analyzerContext = context;
+			// The cached queries and the multi-search contexts are still using the right analyzers
+			if (unchanged)
+				return;
+			if (queryCache != null)
+				queryCache.clear();
+			multiSearchInstances.forEach(MultiSearchInstance::refresh);
+		} finally {
+			analyzersLock.unlock();
+		}
 	}
 
 	void setFields(final LinkedHashMap<String, FieldDefinition> fields) throws ServerException, IOException {
+		IndexCodec.checkFormats(fields);
 		fieldMapLock.lock();
 		try {
 			fileSet.writeFieldMap(fields);
 			fieldMap = new FieldMap(fields, settings.sortedSetFacetField);
-			refreshFieldsAnalyzers();
+			if (indexCodec != null)
+				indexCodec.setFieldMap(fieldMap);
+			refreshFieldsAnalyzers(true, null);
 		} finally {
 			fieldMapLock.unlock();
 		}
@@ -234,8 +375,8 @@ final public class IndexInstance implements Closeable {
 		return analyzerDefinitionMap;
 	}
 
-	private void updateLocalAnalyzers(boolean writeConfigFile) throws IOException {
-		refreshFieldsAnalyzers();
+	private void updateLocalAnalyzers(boolean incremental, boolean writeConfigFile) throws IOException {
+		refreshFieldsAnalyzers(incremental, null);
 		analyzerDefinitionMap = CustomAnalyzer.createDefinitionMap(localAnalyzerFactoryMap);
 		if (writeConfigFile)
 			fileSet.writeAnalyzerDefinitionMap(analyzerDefinitionMap);
@@ -243,7 +384,7 @@ final public class IndexInstance implements Closeable {
 
 	void refreshAnalyzers() throws IOException {
 		synchronized (localAnalyzerFactoryMap) {
-			updateLocalAnalyzers(false);
+			updateLocalAnalyzers(false, false);
 		}
 	}
 
@@ -252,7 +393,7 @@ final public class IndexInstance implements Closeable {
 		Objects.requireNonNull(analyzerDefinition, () -> "The analyzer definition is missing: " + analyzerName);
 		synchronized (localAnalyzerFactoryMap) {
 			localAnalyzerFactoryMap.put(analyzerName, new CustomAnalyzer.Factory(analyzerDefinition));
-			updateLocalAnalyzers(true);
+			updateLocalAnalyzers(true, true);
 		}
 	}
 
@@ -260,7 +401,7 @@ final public class IndexInstance implements Closeable {
 		Objects.requireNonNull(analyzerDefinitionMap, "The analyzer map is null");
 		synchronized (localAnalyzerFactoryMap) {
 			localAnalyzerFactoryMap.putAll(CustomAnalyzer.createFactoryMap(analyzerDefinitionMap, LinkedHashMap::new));
-			updateLocalAnalyzers(true);
+			updateLocalAnalyzers(true, true);
 		}
 	}
 
@@ -269,7 +410,7 @@ final public class IndexInstance implements Closeable {
 			if (localAnalyzerFactoryMap.remove(analyzerName) == null)
 				throw new ServerException(Response.Status.NOT_FOUND,
 						"Analyzer not found: " + analyzerName + " - Index: " + indexName);
-			updateLocalAnalyzers(true);
+			updateLocalAnalyzers(true, true);
 		}
 	}
 
@@ -309,7 +450,7 @@ final public class IndexInstance implements Closeable {
 	public Query createJoinQuery(final JoinQuery joinQuery) throws IOException {
 		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireReadSemaphore()) {
 			return writerAndSearcher.search((indexSearcher, taxonomyReader) -> {
-				try (final QueryContext queryContext = buildQueryContext(indexSearcher, taxonomyReader, null)) {
+				try (final QueryContext queryContext = buildQueryContext(indexSearcher, taxonomyReader, null, null)) {
 					final Query fromQuery = joinQuery.from_query == null ?
 							new MatchAllDocsQuery() :
 							joinQuery.from_query.getQuery(queryContext);
@@ -332,9 +473,129 @@ final public class IndexInstance implements Closeable {
 		} finally {
 			commitLock.unlock();
 		}
+		checkAutoExpungeDeletes();
+	}
+
+	private String getFullName() {
+		return fileSet.mainDirectory.getParentFile().getName() + '/' + indexName;
+	}
+
+	final MergeStatus startMerge(final MergeJob.Type type, final Integer maxSegments) {
+		checkIsMaster();
+		return startMerge(type, maxSegments, false);
+	}
+
+	private MergeStatus startMerge(final MergeJob.Type type, final Integer maxSegments, final boolean auto) {
+		mergeJobLock.lock();
+		try {
+			if (mergeJob != null && mergeJob.isRunning())
+				throw new ServerException(Response.Status.CONFLICT, "A merge is already running: " + indexName);
+			final MergeJob job = new MergeJob(indexName, Objects.requireNonNull(type, "The merge type is missing"),
+					maxSegments, auto, writerAndSearcher.getIndexWriter(), MergeThrottledDirectory.find(dataDirectory),
+					this::nrtCommit);
+			if (mergeJob != null && mergeService != null)
+				mergeService.unregister(getFullName(), mergeJob);
+			mergeJob = job;
+			if (mergeService != null)
+				mergeService.register(getFullName(), job);
+			executorService.submit(job);
+			return job.getStatus();
+		} finally {
+			mergeJobLock.unlock();
+		}
+	}
+
+	/**
+	 * Start an expunge_deletes job if the ratio of deleted documents exceeds expunge_deletes_pct.
+	 * A new job is only started if some documents have been deleted since the previous automatic job.
+	 */
+	private void checkAutoExpungeDeletes() {
+		if (settings.expungeDeletesPct == null || settings.expungeDeletesPct <= 0)
+			return;
+		final IndexWriter indexWriter = writerAndSearcher.getIndexWriter();
+		if (indexWriter == null)
+			return;
+		final int maxDoc = indexWriter.maxDoc();
+		final int deletedDocs = MergeJob.getDeletedDocs(indexWriter);
+		if (maxDoc == 0 || deletedDocs * 100d / maxDoc <= settings.expungeDeletesPct)
+			return;
+		if (deletedDocs <= lastAutoExpungeDeletedDocs || !mergeJobLock.tryLock())
+			return;
+		try {
+			if (mergeJob != null && mergeJob.isRunning())
+				return;
+			lastAutoExpungeDeletedDocs = deletedDocs;
+			startMerge(MergeJob.Type.expunge_deletes, null, true);
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, e, () -> "Cannot start the automatic expunge deletes: " + indexName);
+		} finally {
+			mergeJobLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the status of the running (or the last) merge job, or null if no job has been started
+	 */
+	final MergeStatus getMerge() {
+		final MergeJob job = mergeJob;
+		return job == null ? null : job.getStatus();
+	}
+
+	/**
+	 * @return the status of the cancelled job, or null if no job has been started
+	 */
+	final MergeStatus cancelMerge() {
+		final MergeJob job = mergeJob;
+		if (job == null)
+			return null;
+		job.cancel();
+		return job.getStatus();
+	}
+
+	/**
+	 * Called by the IndexInstanceManager, under its lock, when a request starts using the instance
+	 *
+	 * @return this instance
+	 */
+	final IndexInstance acquire() {
+		references.incrementAndGet();
+		return this;
+	}
+
+	/**
+	 * Called when the request no longer uses the instance
+	 */
+	final void release() {
+		references.decrementAndGet();
+	}
+
+	/**
+	 * An index used by a request, or running a background task (replication polling, merge, check, backup),
+	 * must stay open
+	 */
+	final boolean isBusy() {
+		final MergeJob job = mergeJob;
+		final OnlineIndexCheck check = onlineCheck;
+		return references.get() > 0 || replicationPoller != null || backupLock.isLocked() ||
+				replicationLock.isLocked() || (job != null && job.isRunning()) ||
+				(check != null && check.isRunning()) || (localReplicator != null && localReplicator.hasOpenSessions());
+	}
+
+	/**
+	 * Merge the index into a single segment and commit. Called before the index is frozen.
+	 */
+	final void forceMergeAndCommit() throws IOException {
+		checkIsMaster();
+		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireWriteSemaphore()) {
+			writerAndSearcher.write((indexWriter, taxonomyWriter) -> {
+				indexWriter.forceMerge(1, true);
+				return null;
+			});
+			nrtCommit();
+		}
 	}
 
-	final BackupStatus backup(final Path backupIndexDirectory) throws IOException {
+	final BackupStatus backup(final Path backupIndexDirectory, final BackupProgress progress) throws IOException {
 		backupLock.lock();
 		try {
 			checkIsMaster();
@@ -358,38 +619,84 @@ final public class IndexInstance implements Closeable {
 							backupIndexDirectory.resolve(IndexFileSet.UUID_MASTER_FILE),
 							StandardCopyOption.REPLACE_EXISTING);
 
-				// Copy the settings, field definitions analyzer definitions
-				IndexSettingsDefinition.save(settings,
-						backupIndexDirectory.resolve(IndexFileSet.SETTINGS_FILE).toFile());
-				FieldDefinition.saveMap(fieldMap.getFieldDefinitionMap(),
-						backupIndexDirectory.resolve(IndexFileSet.FIELDS_FILE).toFile());
-				AnalyzerDefinition.saveMap(analyzerDefinitionMap,
-						backupIndexDirectory.resolve(IndexFileSet.ANALYZERS_FILE).toFile());
-
-				// Copy the data using replication
-				try (final Directory dataDir = FSDirectory.open(backupIndexDirectory.resolve(IndexFileSet.INDEX_DATA));
-						final Directory taxoDir = taxonomyDirectory == null ?
-								null :
-								FSDirectory.open(backupIndexDirectory.resolve(IndexFileSet.INDEX_TAXONOMY))) {
-
-					final PerSessionDirectoryFactory sourceDirFactory =
-							new PerSessionDirectoryFactory(backupIndexDirectory.resolve(IndexFileSet.REPL_WORK));
-					try (final ReplicationClient replicationClient = new ReplicationClient(localReplicator,
-							IndexReplicator.getNewReplicationHandler(dataDir, taxoDir, () -> false),
-							sourceDirFactory)) {
-						replicationClient.updateNow();
-					} catch (IOException e) {
-						FileUtils.deleteDirectoryQuietly(backupIndexDirectory);
-						throw e;
-					}
-					return BackupStatus.newBackupStatus(backupIndexDirectory, false);
+				saveDefinitions(backupIndexDirectory);
+
+				// Copy the new files, link the ones already present in the previous backup
+				try {
+					IndexBackup.of(localReplicator, dataDirectory, taxonomyDirectory, indexUuid, backupIndexDirectory,
+							progress).run();
+				} catch (IOException e) {
+					FileUtils.deleteDirectoryQuietly(backupIndexDirectory);
+					throw e;
 				}
+				progress.done();
+				return BackupStatus.newBackupStatus(backupIndexDirectory, false, progress);
 			}
 		} finally {
 			backupLock.unlock();
 		}
 	}
 
+	/**
+	 * Copy the settings, the field definitions, the analyzer definitions and the resources
+	 */
+	private void saveDefinitions(final Path directory) throws IOException {
+		IndexSettingsDefinition.save(settings, directory.resolve(IndexFileSet.SETTINGS_FILE).toFile());
+		FieldDefinition.saveMap(fieldMap.getFieldDefinitionMap(),
+				directory.resolve(IndexFileSet.FIELDS_FILE).toFile());
+		AnalyzerDefinition.saveMap(analyzerDefinitionMap, directory.resolve(IndexFileSet.ANALYZERS_FILE).toFile());
+		IndexBackup.copyFiles(fileSet.resourcesDirectory.toPath(), directory.resolve(IndexFileSet.RESOURCES_DIR),
+				false);
+	}
+
+	/**
+	 * Materialize a copy of the last commit in a new index directory.
+	 * The index files are hard-linked (or copied if the file system does not support hard links).
+	 *
+	 * @param targetIndexDirectory the directory of the new index, which must not exist
+	 */
+	final void cloneTo(final Path targetIndexDirectory) throws IOException {
+		if (localReplicator == null)
+			throw new ServerException(Response.Status.NOT_ACCEPTABLE, "This index cannot be cloned: " + indexName);
+		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireReadSemaphore()) {
+			Files.createDirectory(targetIndexDirectory);
+			saveDefinitions(targetIndexDirectory);
+			IndexBackup.ofIndex(localReplicator, dataDirectory, taxonomyDirectory, fileSet.mainDirectory.toPath(),
+					targetIndexDirectory, new BackupProgress()).run();
+		}
+	}
+
+	/**
+	 * Start a check of the last commit on a background thread. The index keeps serving during the check.
+	 *
+	 * @param rateMbPerSec the maximum read rate (MB per second), 0 for no limit, null for the default rate
+	 * @return the status of the check
+	 */
+	final OnlineCheckStatus startOnlineCheck(final Double rateMbPerSec) {
+		if (localReplicator == null)
+			throw new ServerException(Response.Status.NOT_ACCEPTABLE,
+					"The online check is not available for this index: " + indexName);
+		onlineCheckLock.lock();
+		try {
+			if (onlineCheck != null && onlineCheck.isRunning())
+				throw new ServerException(Response.Status.CONFLICT, "A check is already running: " + indexName);
+			onlineCheck = new OnlineIndexCheck(indexName, localReplicator, dataDirectory, taxonomyDirectory,
+					rateMbPerSec);
+			executorService.submit(onlineCheck);
+			return onlineCheck.getStatus();
+		} finally {
+			onlineCheckLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the status of the running (or the last) online check, or null if no check has been started
+	 */
+	final OnlineCheckStatus getOnlineCheck() {
+		final OnlineIndexCheck check = onlineCheck;
+		return check == null ? null : check.getStatus();
+	}
+
 	final BackupStatus getBackup(final Path backupIndexDirectory, final boolean extractVersion) throws IOException {
 		checkIsMaster();
 		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireReadSemaphore()) {
@@ -398,6 +705,9 @@ final public class IndexInstance implements Closeable {
 	}
 
 	final void checkIsMaster() {
+		if (frozen)
+			throw new ServerException(Response.Status.NOT_ACCEPTABLE,
+					"Writing in a frozen index is not allowed: " + indexName);
 		if (writerAndSearcher.getIndexWriter() == null)
 			throw new UnsupportedOperationException(
 					"Writing in a read only index (slave) is not allowed: " + indexName);
@@ -412,7 +722,7 @@ final public class IndexInstance implements Closeable {
 		return uuid;
 	}
 
-	final LocalReplicator getLocalReplicator(final String remoteMasterUuid) {
+	final NotifyingReplicator getLocalReplicator(final String remoteMasterUuid) {
 		checkRemoteMasterUUID(remoteMasterUuid, indexUuid);
 		return Objects.requireNonNull(localReplicator, () -> "FILE replication not available: " + indexName);
 	}
@@ -454,6 +764,7 @@ final public class IndexInstance implements Closeable {
 
 				indexReplicator.updateNow(currentStatus);
 				writerAndSearcher.refresh();
+				((IndexReplicator.Slave) writerAndSearcher).republish();
 
 				return currentStatus.build();
 			} finally {
@@ -499,6 +810,7 @@ final public class IndexInstance implements Closeable {
 	}
 
 	final <T> T write(final IndexServiceInterface.WriteActions<T> writeActions) throws IOException {
+		checkIsMaster();
 		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireWriteSemaphore()) {
 			return writerAndSearcher.write(((indexWriter, taxonomyWriter) -> {
 				try (final WriteContext context = buildWriteContext(indexWriter, taxonomyWriter)) {
@@ -571,7 +883,7 @@ final public class IndexInstance implements Closeable {
 		Objects.requireNonNull(queryDefinition.query, "The query is missing - Index: " + indexName);
 		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireWriteSemaphore()) {
 			return writerAndSearcher.search((indexSearcher, taxonomyReader) -> {
-				try (final QueryContext queryContext = buildQueryContext(indexSearcher, taxonomyReader, null)) {
+				try (final QueryContext queryContext = buildQueryContext(indexSearcher, taxonomyReader, null, null)) {
 					final Query query = queryDefinition.query.getQuery(queryContext);
 					final IndexWriter indexWriter = writerAndSearcher.getIndexWriter();
 					int docs = indexWriter.numDocs();
@@ -607,9 +919,17 @@ final public class IndexInstance implements Closeable {
 	}
 
 	private QueryContextImpl buildQueryContext(final IndexSearcher indexSearcher, final TaxonomyReader taxonomyReader,
-			final FieldMapWrapper.Cache fieldMapWrappers) throws IOException {
+			final FieldMapWrapper.Cache fieldMapWrappers, final QueryWarmer queryWarmer) throws IOException {
 		return new QueryContextImpl(indexProvider, fileResourceLoader, executorService, indexAnalyzers, queryAnalyzers,
-				fieldMap, fieldMapWrappers, indexSearcher, taxonomyReader);
+				fieldMap, fieldMapWrappers, indexSearcher, taxonomyReader, queryWarmer, queryCache);
+	}
+
+	final QueryContextImpl buildWarmerContext(final IndexSearcher indexSearcher) throws IOException {
+		return buildQueryContext(indexSearcher, null, null, null);
+	}
+
+	final QueryWarmer getQueryWarmer() {
+		return queryWarmer;
 	}
 
 	final <T> T query(final FieldMapWrapper.Cache fieldMapWrappers,
@@ -617,7 +937,7 @@ final public class IndexInstance implements Closeable {
 		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireReadSemaphore()) {
 			return writerAndSearcher.search((indexSearcher, taxonomyReader) -> {
 				try (final QueryContextImpl context = buildQueryContext(indexSearcher, taxonomyReader,
-						fieldMapWrappers)) {
+						fieldMapWrappers, queryWarmer)) {
 					return queryActions.apply(context);
 				}
 			});
@@ -628,7 +948,7 @@ final public class IndexInstance implements Closeable {
 			throws IOException, ParseException, ReflectiveOperationException, QueryNodeException {
 		try (final ReadWriteSemaphores.Lock lock = readWriteSemaphores.acquireReadSemaphore()) {
 			return writerAndSearcher.search((indexSearcher, taxonomyReader) -> {
-				try (final QueryContextImpl context = buildQueryContext(indexSearcher, taxonomyReader, null)) {
+				try (final QueryContextImpl context = buildQueryContext(indexSearcher, taxonomyReader, null, null)) {
 					return new QueryExecution<>(context, queryDefinition).explain(docId);
 				} catch (ReflectiveOperationException | ParseException | QueryNodeException e) {
 					throw ServerException.of(e);
@@ -692,7 +1012,9 @@ final public class IndexInstance implements Closeable {
 		IOUtils.copy(inputStream, resourceFile);
 		if (lastModified != null)
 			resourceFile.setLastModified(lastModified);
-		refreshFieldsAnalyzers();
+		// Only the analyzers which have loaded this resource are rebuilt
+		if (analyzerContext.dependsOn(resourceName))
+			refreshFieldsAnalyzers(true, Collections.singleton(resourceName));
 	}
 
 	final LinkedHashMap<String, ResourceInfo> getResources() {
@@ -726,7 +1048,8 @@ final public class IndexInstance implements Closeable {
 	}
 
 	final FileResourceLoader newResourceLoader(final FileResourceLoader resourceLoader) {
-		return new FileResourceLoader(resourceLoader, fileSet.resourcesDirectory);
+		return new FileResourceLoader(resourceLoader, fileSet.resourcesDirectory,
+				fileResourceLoader.getAnalyzerComponentCache());
 	}
 
 }
@@ -17,6 +17,7 @@ package com.qwazr.search.index;
 
 import com.qwazr.search.analysis.AnalyzerContext;
 import com.qwazr.search.analysis.AnalyzerFactory;
+import com.qwazr.search.analysis.AnalyzerComponentCache;
 import com.qwazr.search.analysis.CustomAnalyzer;
 import com.qwazr.search.analysis.UpdatableAnalyzers;
 import com.qwazr.search.field.FieldDefinition;
@@ -34,10 +35,14 @@ import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.index.SimpleMergedSegmentWarmer;
 import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FileSwitchDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
 import org.apache.lucene.store.NRTCachingDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.InfoStream;
@@ -45,8 +50,12 @@ import org.apache.lucene.util.InfoStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 
@@ -56,6 +65,9 @@ class IndexInstanceBuilder {
 
 	final IndexFileSet fileSet;
 	final ExecutorService executorService;
+	final NrtCacheManager nrtCacheManager;
+	final IndexingBufferManager indexingBufferManager;
+	final MergeService mergeService;
 	final ReadWriteSemaphores readWriteSemaphores;
 	final IndexInstance.Provider indexProvider;
 
@@ -65,6 +77,7 @@ class IndexInstanceBuilder {
 	final ConstructorParametersImpl instanceFactory;
 	final FileResourceLoader fileResourceLoader;
 	final UUID indexUuid;
+	final boolean frozen;
 
 	Directory dataDirectory;
 	Directory taxonomyDirectory;
@@ -76,29 +89,42 @@ class IndexInstanceBuilder {
 	LinkedHashMap<String, CustomAnalyzer.Factory> localAnalyzerFactoryMap;
 
 	FieldMap fieldMap = null;
+	IndexCodec indexCodec = null;
 
+	AnalyzerContext analyzerContext;
 	UpdatableAnalyzers indexAnalyzers;
 	UpdatableAnalyzers queryAnalyzers;
 
 	WriterAndSearcher writerAndSearcher = null;
 
+	QueryCache queryCache;
+	QueryWarmer queryWarmer;
+	private volatile IndexInstance indexInstance;
+
 	private Similarity similarity;
-	private SearcherFactory searcherFactory;
+	MultiThreadSearcherFactory searcherFactory;
+	private Runnable warmingListener;
 
 	IndexInstanceBuilder(final IndexInstance.Provider indexProvider, final ConstructorParametersImpl instanceFactory,
 			final Map<String, AnalyzerFactory> globalAnalyzerFactoryMap, final ReadWriteSemaphores readWriteSemaphores,
-			final ExecutorService executorService, final IndexServiceInterface indexService, final IndexFileSet fileSet,
-			final IndexSettingsDefinition settings, UUID indexUuid) {
+			final ExecutorService executorService, final NrtCacheManager nrtCacheManager,
+			final IndexingBufferManager indexingBufferManager, final MergeService mergeService,
+			final AnalyzerComponentCache analyzerComponentCache, final IndexServiceInterface indexService,
+			final IndexFileSet fileSet, final IndexSettingsDefinition settings, UUID indexUuid) {
 		this.fileSet = fileSet;
 		this.executorService = executorService;
+		this.nrtCacheManager = nrtCacheManager;
+		this.indexingBufferManager = indexingBufferManager;
+		this.mergeService = mergeService;
 		this.readWriteSemaphores = readWriteSemaphores;
 		this.indexProvider = indexProvider;
 		this.instanceFactory = instanceFactory;
 		this.settings = settings;
 		this.globalAnalyzerFactoryMap = globalAnalyzerFactoryMap;
 		this.indexService = indexService;
-		this.fileResourceLoader = new FileResourceLoader(null, fileSet.resourcesDirectory);
+		this.fileResourceLoader = new FileResourceLoader(null, fileSet.resourcesDirectory, analyzerComponentCache);
 		this.indexUuid = indexUuid;
+		this.frozen = fileSet.isFrozen();
 	}
 
 	private void buildCommon() throws IOException, ReflectiveOperationException, URISyntaxException {
@@ -115,24 +141,82 @@ class IndexInstanceBuilder {
 
 		fieldMap = fieldMapDefinition == null ? null : new FieldMap(fieldMapDefinition, settings.sortedSetFacetField);
 
-		final AnalyzerContext context =
+		analyzerContext =
 				new AnalyzerContext(instanceFactory, fileResourceLoader, fieldMap, false, globalAnalyzerFactoryMap,
 						localAnalyzerFactoryMap);
-		indexAnalyzers = new UpdatableAnalyzers(context.indexAnalyzerMap);
-		queryAnalyzers = new UpdatableAnalyzers(context.queryAnalyzerMap);
+		indexAnalyzers = new UpdatableAnalyzers(analyzerContext.indexAnalyzerMap);
+		queryAnalyzers = new UpdatableAnalyzers(analyzerContext.queryAnalyzerMap);
+
+		// The warmer must be set before the first searcher is opened
+		queryCache = QueryCache.of(settings);
+		queryWarmer = QueryWarmer.of(fileSet.mainDirectory.getName(), settings, this::buildWarmerContext);
+		if (queryWarmer != null)
+			searcherFactory.setQueryWarmer(queryWarmer);
 
 		// Open and lock the index directories
-		dataDirectory = getDirectory(settings, fileSet.dataDirectory);
+		dataDirectory = getDirectory(fileSet.dataDirectory);
 		taxonomyDirectory = IndexSettingsDefinition.useTaxonomyIndex(settings) ?
-				getDirectory(settings, fileSet.taxonomyDirectory) :
+				getDirectory(fileSet.taxonomyDirectory) :
 				null;
 	}
 
-	static Directory getDirectory(IndexSettingsDefinition settings, File dataDirectory) throws IOException {
-		final Directory directory = settings == null || settings.directoryType == null ||
-				settings.directoryType == IndexSettingsDefinition.Type.FSDirectory ?
-				FSDirectory.open(dataDirectory.toPath()) :
-				new RAMDirectory();
+	/**
+	 * A frozen index is never written: neither NRT cache nor merge throttling
+	 */
+	private Directory getDirectory(final File directory) throws IOException {
+		return frozen ?
+				openDirectory(settings, directory.toPath()) :
+				getDirectory(settings, directory, nrtCacheManager, mergeService);
+	}
+
+	private static MMapDirectory newMMapDirectory(final IndexSettingsDefinition settings, final Path path)
+			throws IOException {
+		final MMapDirectory directory = new MMapDirectory(path);
+		if (settings.mmapPreload != null)
+			directory.setPreload(settings.mmapPreload);
+		// Unmapping is only possible if the JVM supports it
+		if (settings.mmapUnmap != null)
+			directory.setUseUnmap(settings.mmapUnmap && MMapDirectory.UNMAP_SUPPORTED);
+		return directory;
+	}
+
+	private static Directory openDirectory(final IndexSettingsDefinition settings, final Path path)
+			throws IOException {
+		if (settings == null || settings.directoryType == null)
+			return FSDirectory.open(path);
+		switch (settings.directoryType) {
+		case RAMDirectory:
+			return new RAMDirectory();
+		case OffHeapDirectory:
+			return new OffHeapDirectory(settings.offheapPersist != null && settings.offheapPersist ? path : null);
+		case MMapDirectory:
+			return newMMapDirectory(settings, path);
+		case NIOFSDirectory:
+			return new NIOFSDirectory(path);
+		case FileSwitchDirectory:
+			// Both directories share the same path, the files are dispatched by extension
+			final Set<String> mmapExtensions = settings.mmapExtensions == null || settings.mmapExtensions.isEmpty() ?
+					new HashSet<>(Arrays.asList(IndexSettingsDefinition.DEFAULT_MMAP_EXTENSIONS)) :
+					settings.mmapExtensions;
+			return new FileSwitchDirectory(mmapExtensions, newMMapDirectory(settings, path), new NIOFSDirectory(path),
+					true);
+		default:
+			return FSDirectory.open(path);
+		}
+	}
+
+	/**
+	 * Open the directory, wrapped by a NRT cache. If a NrtCacheManager is given, the cache shares the node budget.
+	 * If a MergeService is given, the merges written on the disk are throttled by the service.
+	 */
+	static Directory getDirectory(IndexSettingsDefinition settings, File dataDirectory,
+			NrtCacheManager nrtCacheManager, MergeService mergeService) throws IOException {
+		Directory directory = openDirectory(settings, dataDirectory.toPath());
+		// Caching the small segments on the heap is useless for a memory resident index
+		if (directory instanceof OffHeapDirectory)
+			return directory;
+		if (mergeService != null && !(directory instanceof RAMDirectory))
+			directory = mergeService.throttle(directory);
 		final double maxMergeSizeMB = settings == null || settings.nrtCachingDirectoryMaxMergeSizeMB == null ?
 				IndexSettingsDefinition.DEFAULT_NRT_CACHING_DIRECTORY_MERGE_SIZE_MB :
 				settings.nrtCachingDirectoryMaxMergeSizeMB;
@@ -141,7 +225,9 @@ class IndexInstanceBuilder {
 				settings.nrtCachingDirectoryMaxCachedMB;
 		if (maxMergeSizeMB == 0 || maxCacheMB == 0)
 			return directory;
-		return new NRTCachingDirectory(directory, maxMergeSizeMB, maxCacheMB);
+		return nrtCacheManager == null ?
+				new NRTCachingDirectory(directory, maxMergeSizeMB, maxCacheMB) :
+				nrtCacheManager.wrap(directory, maxMergeSizeMB, maxCacheMB);
 	}
 
 	private final static int MERGE_SCHEDULER_SSD_THREADS =
@@ -151,10 +237,15 @@ class IndexInstanceBuilder {
 
 		final IndexWriterConfig indexWriterConfig = new IndexWriterConfig(indexAnalyzers);
 		indexWriterConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+		indexCodec = new IndexCodec(settings);
+		indexCodec.setFieldMap(fieldMap);
+		indexWriterConfig.setCodec(indexCodec);
 		if (settings != null) {
 			if (similarity != null)
 				indexWriterConfig.setSimilarity(similarity);
-			if (settings.ramBufferSize != null)
+			if (indexingBufferManager != null)
+				indexWriterConfig.setRAMBufferSizeMB(indexingBufferManager.getRamBufferSizeMB(settings.ramBufferSize));
+			else if (settings.ramBufferSize != null)
 				indexWriterConfig.setRAMBufferSizeMB(settings.ramBufferSize);
 			if (settings.useCompoundFile != null)
 				indexWriterConfig.setUseCompoundFile(settings.useCompoundFile);
@@ -166,6 +257,8 @@ class IndexInstanceBuilder {
 				mergePolicy.setMaxMergedSegmentMB(settings.maxMergedSegmentMB);
 			if (settings.segmentsPerTier != null)
 				mergePolicy.setSegmentsPerTier(settings.segmentsPerTier);
+			if (settings.expungeDeletesPct != null && settings.expungeDeletesPct > 0)
+				mergePolicy.setForceMergeDeletesPctAllowed(Math.min(100, settings.expungeDeletesPct));
 			indexWriterConfig.setMergePolicy(mergePolicy);
 
 			if (settings.mergedSegmentWarmer != null && settings.mergedSegmentWarmer)
@@ -229,17 +322,27 @@ class IndexInstanceBuilder {
 
 		final boolean withTaxo = IndexSettingsDefinition.useTaxonomyIndex(settings);
 
+		// The files of the republished revisions are protected from the replication handler
+		final RevisionProtectedDirectory slaveDataDirectory = new RevisionProtectedDirectory(dataDirectory);
+		final RevisionProtectedDirectory slaveTaxonomyDirectory =
+				withTaxo ? new RevisionProtectedDirectory(taxonomyDirectory) : null;
+		dataDirectory = slaveDataDirectory;
+		taxonomyDirectory = slaveTaxonomyDirectory;
+
 		final IndexReplicator indexReplicator =
 				new IndexReplicator(indexService, settings.master, fileSet.uuidMasterFile, dataDirectory,
-						taxonomyDirectory, fileSet.replWorkPath, () -> false);
+						taxonomyDirectory, fileSet.replWorkPath, fileSet.replDownloadPath, executorService,
+						settings.replicationThreads, settings.replicationCompression, () -> false);
 		if (SegmentInfos.getLastCommitGeneration(dataDirectory) < 0 ||
 				(taxonomyDirectory != null && SegmentInfos.getLastCommitGeneration(taxonomyDirectory) < 0))
 			indexReplicator.updateNow(null);
+		warming();
 		if (withTaxo) {
 			writerAndSearcher =
-					new Replication.SlaveWithTaxo(indexReplicator, dataDirectory, taxonomyDirectory, searcherFactory);
+					new Replication.SlaveWithTaxo(indexReplicator, slaveDataDirectory, slaveTaxonomyDirectory,
+							searcherFactory);
 		} else {
-			writerAndSearcher = new Replication.SlaveNoTaxo(indexReplicator, dataDirectory, searcherFactory);
+			writerAndSearcher = new Replication.SlaveNoTaxo(indexReplicator, slaveDataDirectory, searcherFactory);
 		}
 
 	}
@@ -252,11 +355,36 @@ class IndexInstanceBuilder {
 		if (withTaxo)
 			openOrCreateTaxonomyIndex(false);
 
+		warming();
 		writerAndSearcher = withTaxo ?
 				new Replication.MasterWithTaxo(indexWriter, taxonomyWriter, searcherFactory) :
 				new Replication.MasterNoTaxo(indexWriter, searcherFactory);
 	}
 
+	private void buildFrozen() throws IOException {
+		warming();
+		writerAndSearcher = IndexSettingsDefinition.useTaxonomyIndex(settings) ?
+				new Frozen.WithTaxo(dataDirectory, taxonomyDirectory, searcherFactory) :
+				new Frozen.NoTaxo(dataDirectory, searcherFactory);
+	}
+
+	/**
+	 * The first searcher is warmed while the index is opened: the context is built from the components already opened.
+	 * Once the instance exists, it builds the context, following the field and analyzer updates.
+	 */
+	private QueryContextImpl buildWarmerContext(final IndexSearcher indexSearcher) throws IOException {
+		final IndexInstance instance = indexInstance;
+		if (instance != null)
+			return instance.buildWarmerContext(indexSearcher);
+		return new QueryContextImpl(indexProvider, fileResourceLoader, executorService, indexAnalyzers,
+				queryAnalyzers, fieldMap, null, indexSearcher, null, null, queryCache);
+	}
+
+	private void warming() {
+		if (warmingListener != null)
+			warmingListener.run();
+	}
+
 	private void abort() {
 		IOUtils.closeQuietly(writerAndSearcher, indexAnalyzers, queryAnalyzers);
 
@@ -282,13 +410,25 @@ class IndexInstanceBuilder {
 	}
 
 	IndexInstance build() throws ReflectiveOperationException, IOException, URISyntaxException {
+		return build(null);
+	}
+
+	/**
+	 * @param warmingListener called once the directories (and the writer) are opened, before the searcher is warmed
+	 */
+	IndexInstance build(final Runnable warmingListener)
+			throws ReflectiveOperationException, IOException, URISyntaxException {
+		this.warmingListener = warmingListener;
 		try {
 			buildCommon();
 			if (settings.master != null && settings.master.schema != null && settings.master.index != null)
 				buildSlave();
+			else if (frozen)
+				buildFrozen();
 			else
 				buildMaster();
-			return new IndexInstance(this);
+			indexInstance = new IndexInstance(this);
+			return indexInstance;
 		} catch (IOException | ReflectiveOperationException | URISyntaxException e) {
 			abort();
 			throw e;
@@ -15,6 +15,7 @@
  */
 package com.qwazr.search.index;
 
+import com.qwazr.search.analysis.AnalyzerComponentCache;
 import com.qwazr.search.analysis.AnalyzerFactory;
 import com.qwazr.server.ServerException;
 import com.qwazr.utils.FileUtils;
@@ -35,13 +36,18 @@ import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 
-class IndexInstanceManager implements Closeable {
+class IndexInstanceManager implements IndexEvictionManager.Resident, Closeable {
 
 	private final ReadWriteLock rwl;
 
 	private final IndexInstance.Provider indexProvider;
 	private final ConstructorParametersImpl instanceFactory;
 	private final ExecutorService executorService;
+	private final NrtCacheManager nrtCacheManager;
+	private final IndexingBufferManager indexingBufferManager;
+	private final MergeService mergeService;
+	private final IndexEvictionManager evictionManager;
+	private final AnalyzerComponentCache analyzerComponentCache;
 	private final IndexServiceInterface indexServiceInterface;
 	private final IndexFileSet fileSet;
 	private final Map<String, AnalyzerFactory> analyzerFactoryMap;
@@ -50,17 +56,26 @@ class IndexInstanceManager implements Closeable {
 	private UUID indexUuid;
 	private IndexSettingsDefinition settings;
 	private IndexInstance indexInstance;
+	private volatile long lastAccess;
+	private volatile IndexReadinessStatus.State state;
 
 	IndexInstanceManager(final IndexInstance.Provider indexProvider, final ConstructorParametersImpl instanceFactory,
 			final Map<String, AnalyzerFactory> analyzerFactoryMap, final ReadWriteSemaphores readWriteSemaphores,
-			final ExecutorService executorService, final IndexServiceInterface indexServiceInterface,
-			final Path indexDirectory) {
+			final ExecutorService executorService, final NrtCacheManager nrtCacheManager,
+			final IndexingBufferManager indexingBufferManager, final MergeService mergeService,
+			final IndexEvictionManager evictionManager, final AnalyzerComponentCache analyzerComponentCache,
+			final IndexServiceInterface indexServiceInterface, final Path indexDirectory) {
 
 		try {
 			rwl = ReadWriteLock.stamped();
 			this.indexProvider = indexProvider;
 			this.instanceFactory = instanceFactory;
 			this.executorService = executorService;
+			this.nrtCacheManager = nrtCacheManager;
+			this.indexingBufferManager = indexingBufferManager;
+			this.mergeService = mergeService;
+			this.evictionManager = evictionManager;
+			this.analyzerComponentCache = analyzerComponentCache;
 			this.indexServiceInterface = indexServiceInterface;
 			this.fileSet = new IndexFileSet(indexDirectory);
 			this.analyzerFactoryMap = analyzerFactoryMap;
@@ -68,6 +83,7 @@ class IndexInstanceManager implements Closeable {
 
 			checkDirectoryAndUuid();
 			settings = fileSet.loadSettings();
+			state = IndexReadinessStatus.State.closed;
 
 		} catch (IOException e) {
 			throw ServerException.of(e);
@@ -80,15 +96,94 @@ class IndexInstanceManager implements Closeable {
 	}
 
 	private IndexInstance ensureOpen() throws ReflectiveOperationException, IOException, URISyntaxException {
-		if (indexInstance == null)
-			indexInstance =
-					new IndexInstanceBuilder(indexProvider, instanceFactory, analyzerFactoryMap, readWriteSemaphores,
-							executorService, indexServiceInterface, fileSet, settings, indexUuid).build();
+		if (indexInstance == null) {
+			state = IndexReadinessStatus.State.loading;
+			try {
+				indexInstance = new IndexInstanceBuilder(indexProvider, instanceFactory, analyzerFactoryMap,
+						readWriteSemaphores, executorService, nrtCacheManager, indexingBufferManager, mergeService,
+						analyzerComponentCache, indexServiceInterface, fileSet, settings, indexUuid).build(
+						() -> state = IndexReadinessStatus.State.warming);
+			} catch (ReflectiveOperationException | IOException | URISyntaxException | RuntimeException e) {
+				state = IndexReadinessStatus.State.failed;
+				throw e;
+			}
+			state = IndexReadinessStatus.State.ready;
+			lastAccess = System.currentTimeMillis();
+			if (evictionManager != null)
+				evictionManager.opened(this);
+		}
 		return indexInstance;
 	}
 
+	/**
+	 * Return the instance, the index is (re)opened if required
+	 *
+	 * @return the loaded instance
+	 */
 	IndexInstance open() throws Exception {
-		return rwl.writeEx(this::ensureOpen);
+		lastAccess = System.currentTimeMillis();
+		final IndexInstance instance = rwl.read(() -> indexInstance);
+		if (instance != null)
+			return instance;
+		final IndexInstance openedInstance = rwl.writeEx(this::ensureOpen);
+		// Called once the lock is released, as other indexes may be closed
+		if (evictionManager != null)
+			evictionManager.checkCap();
+		return openedInstance;
+	}
+
+	/**
+	 * Return the instance, the index is (re)opened if required.
+	 * The instance cannot be evicted until IndexInstance.release() is called.
+	 *
+	 * @return the acquired instance
+	 */
+	IndexInstance acquire() throws Exception {
+		lastAccess = System.currentTimeMillis();
+		// The reference is taken under the lock, so an elected instance is either closed or kept open
+		final IndexInstance instance = rwl.read(() -> indexInstance == null ? null : indexInstance.acquire());
+		if (instance != null)
+			return instance;
+		final IndexInstance openedInstance = rwl.writeEx(() -> ensureOpen().acquire());
+		// Called once the lock is released, as other indexes may be closed
+		if (evictionManager != null)
+			evictionManager.checkCap();
+		return openedInstance;
+	}
+
+	@Override
+	public String getName() {
+		return fileSet.mainDirectory.getParentFile().getName() + '/' + fileSet.mainDirectory.getName();
+	}
+
+	IndexReadinessStatus.State getState() {
+		return state;
+	}
+
+	int getStartupPriority() {
+		return settings == null || settings.startupPriority == null ? 0 : settings.startupPriority;
+	}
+
+	/**
+	 * @return the last time the data directory has been modified (when a commit creates or deletes a file)
+	 */
+	long getLastModified() {
+		return fileSet.dataDirectory.lastModified();
+	}
+
+	@Override
+	public long getLastAccess() {
+		return lastAccess;
+	}
+
+	@Override
+	public boolean evict(final long electedLastAccess) {
+		return rwl.writeEx(() -> {
+			if (indexInstance == null || lastAccess != electedLastAccess || indexInstance.isBusy())
+				return false;
+			closeIndex();
+			return true;
+		});
 	}
 
 	private boolean isNewMaster(final IndexSettingsDefinition newSettings) {
@@ -121,10 +216,55 @@ class IndexInstanceManager implements Closeable {
 		});
 	}
 
+	private void checkFreezable() {
+		if (settings.master != null)
+			throw new ServerException(Response.Status.NOT_ACCEPTABLE,
+					"A slave index cannot be frozen - Index: " + fileSet.mainDirectory);
+		if (settings.directoryType == IndexSettingsDefinition.Type.RAMDirectory ||
+				(settings.directoryType == IndexSettingsDefinition.Type.OffHeapDirectory &&
+						(settings.offheapPersist == null || !settings.offheapPersist)))
+			throw new ServerException(Response.Status.NOT_ACCEPTABLE,
+					"A memory resident index cannot be frozen - Index: " + fileSet.mainDirectory);
+	}
+
+	/**
+	 * Merge the index into a single segment, then reopen it read only.
+	 * The writer, its indexing buffer, the NRT cache and the merge throttling are released.
+	 *
+	 * @return the frozen instance
+	 */
+	IndexInstance freeze() throws Exception {
+		return rwl.writeEx(() -> {
+			if (fileSet.isFrozen())
+				return ensureOpen();
+			checkFreezable();
+			ensureOpen().forceMergeAndCommit();
+			closeIndex();
+			fileSet.setFrozen(true);
+			return ensureOpen();
+		});
+	}
+
+	/**
+	 * Reopen a frozen index with a writer
+	 *
+	 * @return the writable instance
+	 */
+	IndexInstance unfreeze() throws Exception {
+		return rwl.writeEx(() -> {
+			if (!fileSet.isFrozen())
+				return ensureOpen();
+			closeIndex();
+			fileSet.setFrozen(false);
+			return ensureOpen();
+		});
+	}
+
 	CheckIndex.Status check() throws Exception {
 		return rwl.writeEx(() -> {
 			closeIndex();
-			try (final Directory directory = IndexInstanceBuilder.getDirectory(settings, fileSet.dataDirectory)) {
+			try (final Directory directory = IndexInstanceBuilder.getDirectory(settings, fileSet.dataDirectory, null,
+					null)) {
 				try (final CheckIndex checkIndex = new CheckIndex(directory)) {
 					return checkIndex.checkIndex();
 				}
@@ -134,20 +274,14 @@ class IndexInstanceManager implements Closeable {
 		});
 	}
 
-	/**
-	 * Return the loaded instance or null if the index cannot be loaded
-	 *
-	 * @return the loaded instance
-	 */
-	IndexInstance getIndexInstance() {
-		return rwl.read(() -> indexInstance);
-	}
-
 	private void closeIndex() {
 		if (indexInstance == null)
 			return;
 		IOUtils.closeQuietly(indexInstance);
 		indexInstance = null;
+		state = IndexReadinessStatus.State.closed;
+		if (evictionManager != null)
+			evictionManager.closed(this);
 	}
 
 	@Override
@@ -15,6 +15,7 @@
  */
 package com.qwazr.search.index;
 
+import com.qwazr.search.analysis.AnalyzerComponentCache;
 import com.qwazr.search.analysis.AnalyzerFactory;
 import com.qwazr.search.annotations.AnnotatedIndexService;
 import com.qwazr.server.ApplicationBuilder;
@@ -36,6 +37,8 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -63,11 +66,31 @@ public class IndexManager extends ConstructorParametersImpl implements Closeable
 
 	private final ExecutorService executorService;
 
+	private final NrtCacheManager nrtCacheManager;
+
+	private final IndexingBufferManager indexingBufferManager;
+
+	private final MergeService mergeService;
+
+	private final IndexEvictionManager evictionManager;
+
+	private final AnalyzerComponentCache analyzerComponentCache;
+
+	private volatile IndexStartup startup;
+
 	public IndexManager(final Path indexesDirectory, final ExecutorService executorService,
 			final ConstructorParameters constructorParameters) throws IOException {
 		super(constructorParameters == null ? new ConcurrentHashMap<>() : constructorParameters.getMap());
 		this.rootDirectory = indexesDirectory.toFile();
 		this.executorService = executorService;
+		this.nrtCacheManager = new NrtCacheManager(executorService, NrtCacheManager.getDefaultBudgetBytes());
+		this.indexingBufferManager = new IndexingBufferManager(IndexingBufferManager.getDefaultBudgetBytes(),
+				IndexingBufferManager.DEFAULT_CHECK_INTERVAL_MS);
+		this.mergeService = new MergeService(MergeService.getDefaultMbPerSec());
+		this.evictionManager = new IndexEvictionManager(IndexEvictionManager.getDefaultIdleTimeoutMs(),
+				IndexEvictionManager.getDefaultMaxOpenIndexes(), IndexEvictionManager.MIN_IDLE_MS,
+				IndexEvictionManager.DEFAULT_CHECK_INTERVAL_MS);
+		this.analyzerComponentCache = new AnalyzerComponentCache();
 
 		service = new IndexServiceImpl(this);
 		schemaMap = new ConcurrentHashMap<>();
@@ -79,7 +102,9 @@ public class IndexManager extends ConstructorParametersImpl implements Closeable
 		for (File schemaDirectory : directories) {
 			try {
 				schemaMap.put(schemaDirectory.getName(),
-						new SchemaInstance(this, analyzerFactoryMap, service, schemaDirectory, executorService));
+						new SchemaInstance(this, analyzerFactoryMap, service, schemaDirectory, executorService,
+								nrtCacheManager, indexingBufferManager, mergeService, evictionManager,
+								analyzerComponentCache));
 			} catch (ServerException | IOException | ReflectiveOperationException | URISyntaxException e) {
 				LOGGER.log(Level.SEVERE, e, e::getMessage);
 			}
@@ -119,6 +144,35 @@ public class IndexManager extends ConstructorParametersImpl implements Closeable
 		return this;
 	}
 
+	/**
+	 * Open and warm the indexes in the background if the eager opening is enabled (QWAZR_INDEX_EAGER_OPEN).
+	 * Should be called once the analyzer factories are registered.
+	 *
+	 * @return the current instance
+	 */
+	public IndexManager startIndexes() {
+		if (IndexStartup.isEagerOpen())
+			openIndexes(IndexStartup.getDefaultThreads());
+		return this;
+	}
+
+	/**
+	 * Open and warm all the indexes in the background
+	 *
+	 * @param threads the number of indexes opened in parallel
+	 * @return the current instance
+	 */
+	public IndexManager openIndexes(final int threads) {
+		synchronized (schemaMap) {
+			if (startup != null)
+				startup.close();
+			final List<IndexInstanceManager> indexes = new ArrayList<>();
+			schemaMap.values().forEach(schemaInstance -> indexes.addAll(schemaInstance.getIndexManagers()));
+			startup = new IndexStartup(threads, indexes);
+		}
+		return this;
+	}
+
 	final public IndexServiceInterface getService() {
 		return service;
 	}
@@ -130,8 +184,12 @@ public class IndexManager extends ConstructorParametersImpl implements Closeable
 	@Override
 	public void close() {
 		synchronized (schemaMap) {
+			if (startup != null)
+				startup.close();
 			schemaMap.values().forEach(IOUtils::closeQuietly);
 		}
+		evictionManager.close();
+		indexingBufferManager.close();
 	}
 
 	SchemaSettingsDefinition createUpdate(String schemaName, SchemaSettingsDefinition settings)
@@ -141,7 +199,8 @@ public class IndexManager extends ConstructorParametersImpl implements Closeable
 			if (schemaInstance == null) {
 				schemaInstance =
 						new SchemaInstance(this, analyzerFactoryMap, service, new File(rootDirectory, schemaName),
-								executorService);
+								executorService, nrtCacheManager, indexingBufferManager, mergeService, evictionManager,
+								analyzerComponentCache);
 				schemaMap.put(schemaName, schemaInstance);
 			}
 			if (settings != null)
@@ -173,6 +232,44 @@ public class IndexManager extends ConstructorParametersImpl implements Closeable
 		}
 	}
 
+	NrtCacheStatus getNrtCacheStatus() {
+		return nrtCacheManager.getStatus();
+	}
+
+	IndexingBufferStatus getIndexingBufferStatus() {
+		return indexingBufferManager.getStatus();
+	}
+
+	IndexReadinessStatus getReadiness() {
+		final SortedMap<String, SortedMap<String, IndexReadinessStatus.State>> indexes = new TreeMap<>();
+		schemaMap.forEach((name, schemaInstance) -> indexes.put(name, schemaInstance.getIndexStates()));
+		final IndexStartup currentStartup = startup;
+		final int pending = currentStartup == null ? 0 : currentStartup.getPending();
+		int failed = 0;
+		for (SortedMap<String, IndexReadinessStatus.State> states : indexes.values())
+			for (IndexReadinessStatus.State state : states.values())
+				if (state == IndexReadinessStatus.State.failed)
+					failed++;
+		return new IndexReadinessStatus(pending == 0 && failed == 0, pending, failed, indexes);
+	}
+
+	IndexEvictionStatus getEvictionStatus() {
+		return evictionManager.getStatus();
+	}
+
+	AnalyzerCacheStatus getAnalyzerCacheStatus() {
+		return new AnalyzerCacheStatus(analyzerComponentCache);
+	}
+
+	MergeServiceStatus getMergeServiceStatus() {
+		return mergeService.getStatus();
+	}
+
+	MergeServiceStatus setMergeRate(final double mbPerSec) {
+		mergeService.setMbPerSec(mbPerSec);
+		return mergeService.getStatus();
+	}
+
 	Set<String> nameSet() {
 		synchronized (schemaMap) {
 			return new TreeSet<>(schemaMap.keySet());
@@ -191,13 +288,13 @@ public class IndexManager extends ConstructorParametersImpl implements Closeable
 	}
 
 	SortedMap<String, SortedMap<String, BackupStatus>> backups(final String schemaName, final String indexName,
-			final String backupName) throws IOException {
+			final String backupName, final boolean async) throws IOException {
 		final SortedMap<String, SortedMap<String, BackupStatus>> results = new TreeMap<>();
 		schemaIterator(schemaName, (schName, schemaInstance) -> {
 			synchronized (results) {
 				if ("*".equals(schemaName) && StringUtils.isEmpty(schemaInstance.getSettings().backupDirectoryPath))
 					return;
-				final SortedMap<String, BackupStatus> schemaResults = schemaInstance.backups(indexName, backupName);
+				final SortedMap<String, BackupStatus> schemaResults = schemaInstance.backups(indexName, backupName, async);
 				if (schemaResults != null && !schemaResults.isEmpty())
 					results.put(schName, schemaResults);
 			}
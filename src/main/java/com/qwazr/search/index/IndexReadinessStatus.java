@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.SortedMap;
+
+/**
+ * The state of the indexes of the node. The node is ready when the indexes opened at startup are loaded
+ * and no index has failed to open.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class IndexReadinessStatus {
+
+	public enum State {
+
+		/**
+		 * Not opened yet (lazy opening) or closed by the eviction policy
+		 */
+		closed,
+
+		/**
+		 * The directories and the writer are being opened
+		 */
+		loading,
+
+		/**
+		 * The searcher is being opened and warmed
+		 */
+		warming,
+
+		ready,
+
+		failed
+	}
+
+	final public Boolean ready;
+	final public Integer pending_indexes;
+	final public Integer failed_indexes;
+	final public SortedMap<String, SortedMap<String, State>> indexes;
+
+	@JsonCreator
+	IndexReadinessStatus(@JsonProperty("ready") Boolean ready,
+			@JsonProperty("pending_indexes") Integer pending_indexes,
+			@JsonProperty("failed_indexes") Integer failed_indexes,
+			@JsonProperty("indexes") SortedMap<String, SortedMap<String, State>> indexes) {
+		this.ready = ready;
+		this.pending_indexes = pending_indexes;
+		this.failed_indexes = failed_indexes;
+		this.indexes = indexes;
+	}
+}
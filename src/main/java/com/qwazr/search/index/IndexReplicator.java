@@ -25,6 +25,7 @@ import org.apache.lucene.replicator.PerSessionDirectoryFactory;
 import org.apache.lucene.replicator.ReplicationClient;
 import org.apache.lucene.replicator.Replicator;
 import org.apache.lucene.replicator.Revision;
+import org.apache.lucene.replicator.RevisionFile;
 import org.apache.lucene.replicator.SessionToken;
 import org.apache.lucene.store.Directory;
 
@@ -36,28 +37,52 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.InflaterInputStream;
 
 class IndexReplicator implements Replicator {
 
 	private final IndexServiceInterface indexService;
 	private final RemoteIndex master;
 	private final File masterUuidFile;
+	private final ReplicationClient.ReplicationHandler replicationHandler;
 	private final ReplicationClient replicationClient;
+	private final ReplicationDownloader downloader;
+	private final int downloadThreads;
+	private final boolean compression;
 
 	private volatile String masterUuidString;
 	private volatile UUID masterUuid;
 	private volatile ReplicationStatus.Builder currentStatus;
 
+	private volatile SessionToken prefetchedToken;
+	private volatile String prefetchedVersion;
+
+	private volatile String masterVersion;
+	private volatile long pendingBytes;
+	private volatile long lastCheck;
+	private volatile long lastSync;
+	private volatile long tokenTime;
+	private volatile int failures;
+
 	IndexReplicator(final IndexServiceInterface localService, final RemoteIndex master, final File masterUuidFile,
 			final Directory indexDirectory, final Directory taxonomyDirectory, final Path replWorkPath,
-			final Callable<Boolean> callback) throws URISyntaxException, IOException {
+			final Path replDownloadPath, final ExecutorService executorService, final Integer downloadThreads,
+			final Boolean compression, final Callable<Boolean> callback) throws URISyntaxException, IOException {
+		replicationHandler = getNewReplicationHandler(indexDirectory, taxonomyDirectory, callback);
 		replicationClient =
-				new ReplicationClient(this, getNewReplicationHandler(indexDirectory, taxonomyDirectory, callback),
-						new PerSessionDirectoryFactory(replWorkPath));
+				new ReplicationClient(this, replicationHandler, new PerSessionDirectoryFactory(replWorkPath));
+		this.downloadThreads =
+				downloadThreads == null ? IndexSettingsDefinition.DEFAULT_REPLICATION_THREADS : downloadThreads;
+		this.compression = compression != null && compression;
 		this.master = master;
 		this.masterUuidFile = masterUuidFile;
 		this.indexService = master == null ? null : master.host == null ? localService : new IndexSingleClient(master);
@@ -66,6 +91,7 @@ class IndexReplicator implements Replicator {
 			this.masterUuidString = masterUuid.toString();
 		} else
 			checkRemoteMasterUuid();
+		this.downloader = new ReplicationDownloader(replDownloadPath, masterUuidString, executorService);
 	}
 
 	IndexServiceInterface checkService() {
@@ -121,7 +147,13 @@ class IndexReplicator implements Replicator {
 	}
 
 	interface Slave {
+
 		IndexReplicator getIndexReplicator();
+
+		/**
+		 * Publish the last applied revision, so that other slaves can replicate from this one.
+		 */
+		void republish() throws IOException;
 	}
 
 	@Override
@@ -134,8 +166,16 @@ class IndexReplicator implements Replicator {
 			throws IOException {
 		if (currentStatus != null)
 			currentStatus.countSize(source, fileName);
-		return checkService().replicationObtain(master.schema, master.index, masterUuidString, sessionID, source,
-				fileName);
+		final InputStream input = downloader.open(source, fileName);
+		return input != null ? input : fetchFile(sessionID, source, fileName, 0);
+	}
+
+	private InputStream fetchFile(final String sessionID, final String source, final String fileName,
+			final long offset) {
+		final InputStream input =
+				checkService().replicationObtain(master.schema, master.index, masterUuidString, sessionID, source,
+						fileName, offset == 0 ? null : offset, compression ? true : null);
+		return compression ? new InflaterInputStream(input) : input;
 	}
 
 	@Override
@@ -151,23 +191,111 @@ class IndexReplicator implements Replicator {
 
 	@Override
 	public SessionToken checkForUpdate(final String currVersion) throws IOException {
+		SessionToken sessionToken = prefetchedToken;
+		prefetchedToken = null;
+		if (sessionToken != null && !Objects.equals(currVersion, prefetchedVersion)) {
+			release(sessionToken.id);
+			sessionToken = null;
+		}
+		if (sessionToken == null)
+			sessionToken = fetchUpdate(currVersion, null);
+		if (sessionToken == null)
+			return null;
+		if (currentStatus != null)
+			currentStatus.sessionToken(sessionToken);
+		final String sessionID = sessionToken.id;
+		try {
+			downloader.download(sessionToken.sourceFiles, replicationHandler.currentRevisionFiles(), downloadThreads,
+					(source, fileName, offset) -> fetchFile(sessionID, source, fileName, offset));
+		} catch (IOException e) {
+			try {
+				release(sessionID);
+			} catch (IOException | RuntimeException releaseError) {
+				e.addSuppressed(releaseError);
+			}
+			throw e;
+		}
+		return sessionToken;
+	}
+
+	/**
+	 * Ask the master if a new revision is available, without downloading anything.
+	 * If the master supports it, the call waits up to waitMs for the next revision.
+	 * The returned session is kept and used by the next update.
+	 *
+	 * @param waitMs the maximum time the master may wait for a new revision
+	 * @return true if a new revision is available
+	 * @throws IOException if any I/O error occurs
+	 */
+	final boolean waitForUpdate(final Long waitMs) throws IOException {
+		final String currVersion = replicationHandler.currentVersion();
+		final SessionToken sessionToken = fetchUpdate(currVersion, waitMs);
+		if (sessionToken == null)
+			return false;
+		prefetchedVersion = currVersion;
+		prefetchedToken = sessionToken;
+		return true;
+	}
+
+	private SessionToken fetchUpdate(final String currVersion, final Long waitMs) throws IOException {
 		try (final InputStream inputStream = checkService().replicationUpdate(master.schema, master.index,
-				masterUuidString, currVersion)) {
-			if (inputStream == null)
-				return null;
-			if (inputStream.available() == 0)
+				masterUuidString, currVersion, waitMs)) {
+			final long now = System.currentTimeMillis();
+			lastCheck = now;
+			if (inputStream == null || inputStream.available() == 0) {
+				masterVersion = currVersion;
+				pendingBytes = 0;
+				lastSync = now;
 				return null;
+			}
 			final DataInput input = new DataInputStream(inputStream);
 			final SessionToken sessionToken = new SessionToken(input);
-			if (currentStatus != null)
-				currentStatus.sessionToken(sessionToken);
+			masterVersion = sessionToken.version;
+			pendingBytes = getRequiredBytes(sessionToken);
+			tokenTime = now;
 			return sessionToken;
 		}
 	}
 
+	/**
+	 * Sum the size of the files which are not already present locally
+	 */
+	private long getRequiredBytes(final SessionToken sessionToken) {
+		final Map<String, List<RevisionFile>> currentFiles = replicationHandler.currentRevisionFiles();
+		long bytes = 0;
+		for (Map.Entry<String, List<RevisionFile>> entry : sessionToken.sourceFiles.entrySet()) {
+			final Set<String> localFiles = new HashSet<>();
+			if (currentFiles != null && currentFiles.containsKey(entry.getKey()))
+				currentFiles.get(entry.getKey()).forEach(file -> localFiles.add(file.fileName));
+			for (RevisionFile file : entry.getValue())
+				if (!localFiles.contains(file.fileName))
+					bytes += file.size;
+		}
+		return bytes;
+	}
+
 	final void updateNow(ReplicationStatus.Builder currentStatus) throws IOException {
 		this.currentStatus = currentStatus;
 		replicationClient.updateNow();
+		downloader.clear();
+		if (Objects.equals(masterVersion, replicationHandler.currentVersion())) {
+			pendingBytes = 0;
+			lastSync = Math.max(lastSync, tokenTime);
+		}
+		failures = 0;
+	}
+
+	final void failed() {
+		failures++;
+	}
+
+	final ReplicationLag getLag() {
+		final String localVersion = replicationHandler.currentVersion();
+		final long sync = lastSync;
+		final Long seconds = sync == 0 ?
+				null :
+				Objects.equals(masterVersion, localVersion) ? 0 : (System.currentTimeMillis() - sync) / 1000;
+		return new ReplicationLag(masterVersion, localVersion, pendingBytes, seconds, lastCheck, sync, failures);
 	}
 
 	static ReplicationClient.ReplicationHandler getNewReplicationHandler(final Directory dataDirectory,
@@ -23,11 +23,11 @@ import com.qwazr.server.AbstractServiceImpl;
 import com.qwazr.server.ServerException;
 import com.qwazr.utils.LoggerUtils;
 import com.qwazr.utils.concurrent.FunctionEx;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.AutoCloseInputStream;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
-import org.apache.lucene.replicator.LocalReplicator;
 import org.apache.lucene.replicator.SessionToken;
 import org.apache.lucene.search.MatchAllDocsQuery;
 
@@ -50,6 +50,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.logging.Logger;
+import java.util.zip.DeflaterInputStream;
 
 final class IndexServiceImpl extends AbstractServiceImpl implements IndexServiceInterface, AnnotatedServiceInterface {
 
@@ -144,6 +145,86 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		}
 	}
 
+	@Override
+	final public NrtCacheStatus getNrtCacheStatus() {
+		try {
+			checkRight(null);
+			return indexManager.getNrtCacheStatus();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	final public IndexingBufferStatus getIndexingBufferStatus() {
+		try {
+			checkRight(null);
+			return indexManager.getIndexingBufferStatus();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	/**
+	 * @param probe if true, a node which is not ready returns a SERVICE_UNAVAILABLE error (for the load balancers)
+	 */
+	@Override
+	final public IndexReadinessStatus getReadiness(final Boolean probe) {
+		try {
+			checkRight(null);
+			final IndexReadinessStatus status = indexManager.getReadiness();
+			if (probe != null && probe && !status.ready)
+				throw new ServerException(Response.Status.SERVICE_UNAVAILABLE,
+						"The indexes are not ready: " + status.pending_indexes + " pending, " +
+								status.failed_indexes + " failed");
+			return status;
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	final public IndexEvictionStatus getEvictionStatus() {
+		try {
+			checkRight(null);
+			return indexManager.getEvictionStatus();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	final public AnalyzerCacheStatus getAnalyzerCacheStatus() {
+		try {
+			checkRight(null);
+			return indexManager.getAnalyzerCacheStatus();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	final public MergeServiceStatus getMergeServiceStatus() {
+		try {
+			checkRight(null);
+			return indexManager.getMergeServiceStatus();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	final public MergeServiceStatus setMergeRate(final Double rateMbPerSec) {
+		try {
+			checkRight(null);
+			if (rateMbPerSec == null)
+				throw new ServerException(Response.Status.BAD_REQUEST, "The parameter rate_mb_per_sec is missing");
+			return indexManager.setMergeRate(rateMbPerSec);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
 	@Override
 	final public boolean deleteSchema(final String schemaName) {
 		try {
@@ -177,7 +258,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	final public LinkedHashMap<String, FieldDefinition> getFields(final String schemaName, final String indexName) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, false).getFields();
+			return indexManager.get(schemaName).use(indexName, IndexInstance::getFields);
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -187,7 +268,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	final public FieldDefinition getField(final String schemaName, final String indexName, final String fieldName) {
 		try {
 			checkRight(schemaName);
-			Map<String, FieldDefinition> fieldMap = indexManager.get(schemaName).get(indexName, false).getFields();
+			Map<String, FieldDefinition> fieldMap = indexManager.get(schemaName)
+					.use(indexName, IndexInstance::getFields);
 			FieldDefinition fieldDef = (fieldMap != null) ? fieldMap.get(fieldName) : null;
 			if (fieldDef == null)
 				throw new ServerException(Response.Status.NOT_FOUND,
@@ -202,7 +284,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final LinkedHashMap<String, FieldDefinition> fields) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).setFields(fields);
+			indexManager.get(schemaName).consume(indexName, index -> index.setFields(fields));
 			return fields;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -212,16 +294,16 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	private List<TermDefinition> doAnalyzer(final String schemaName, final String indexName, final String fieldName,
 			final String text, final boolean index) throws IOException {
 		checkRight(schemaName);
-		final IndexInstance indexInstance = indexManager.get(schemaName).get(indexName, false);
 		final FunctionEx<Analyzer, List<TermDefinition>, IOException> analyzerFunction = analyzer -> {
 			if (analyzer == null)
 				throw new ServerException(
 						"No analyzer found for " + fieldName + " - Schema/index: " + schemaName + '/' + indexName);
 			return TermDefinition.buildTermList(analyzer, fieldName, text);
 		};
-		return index ?
-				indexInstance.useIndexAnalyzer(fieldName, analyzerFunction) :
-				indexInstance.useQueryAnalyzer(fieldName, analyzerFunction);
+		return indexManager.get(schemaName)
+				.use(indexName, indexInstance -> index ?
+						indexInstance.useIndexAnalyzer(fieldName, analyzerFunction) :
+						indexInstance.useQueryAnalyzer(fieldName, analyzerFunction));
 
 	}
 
@@ -239,7 +321,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	public FieldStats getFieldStats(String schemaName, String indexName, String fieldName) {
 		checkRight(schemaName);
 		try {
-			return indexManager.get(schemaName).get(indexName, false).getFieldStats(fieldName);
+			return indexManager.get(schemaName).use(indexName, index -> index.getFieldStats(fieldName));
 		} catch (IOException e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -256,7 +338,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final String fieldName, final String prefix, final Integer start, final Integer rows) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, false).getTermsEnum(fieldName, prefix, start, rows);
+			return indexManager.get(schemaName)
+					.use(indexName, index -> index.getTermsEnum(fieldName, prefix, start, rows));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -277,7 +360,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final FieldDefinition field) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).setField(fieldName, field);
+			indexManager.get(schemaName).consume(indexName, index -> index.setField(fieldName, field));
 			return field;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -288,7 +371,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	final public boolean deleteField(final String schemaName, final String indexName, final String fieldName) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).deleteField(fieldName);
+			indexManager.get(schemaName).consume(indexName, index -> index.deleteField(fieldName));
 			return true;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -300,7 +383,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final String indexName) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, false).getAnalyzers();
+			return indexManager.get(schemaName).use(indexName, IndexInstance::getAnalyzers);
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -312,7 +395,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		try {
 			checkRight(schemaName);
 			final Map<String, AnalyzerDefinition> analyzerMap =
-					indexManager.get(schemaName).get(indexName, false).getAnalyzers();
+					indexManager.get(schemaName).use(indexName, IndexInstance::getAnalyzers);
 			final AnalyzerDefinition analyzerDef = (analyzerMap != null) ? analyzerMap.get(analyzerName) : null;
 			if (analyzerDef == null)
 				throw new ServerException(Response.Status.NOT_FOUND,
@@ -327,7 +410,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	final public void refreshAnalyzers(final String schemaName, final String indexName) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).refreshAnalyzers();
+			indexManager.get(schemaName).consume(indexName, IndexInstance::refreshAnalyzers);
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -338,7 +421,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final String analyzerName, final AnalyzerDefinition analyzer) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).setAnalyzer(analyzerName, analyzer);
+			indexManager.get(schemaName).consume(indexName, index -> index.setAnalyzer(analyzerName, analyzer));
 			return analyzer;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -349,7 +432,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final LinkedHashMap<String, AnalyzerDefinition> analyzers) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).setAnalyzers(analyzers);
+			indexManager.get(schemaName).consume(indexName, index -> index.setAnalyzers(analyzers));
 			return analyzers;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -360,7 +443,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	final public boolean deleteAnalyzer(final String schemaName, final String indexName, final String analyzerName) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).deleteAnalyzer(analyzerName);
+			indexManager.get(schemaName).consume(indexName, index -> index.deleteAnalyzer(analyzerName));
 			return true;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -372,7 +455,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final String analyzerName, final String text) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, false).testAnalyzer(analyzerName, text);
+			return indexManager.get(schemaName).use(indexName, index -> index.testAnalyzer(analyzerName, text));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -384,7 +467,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		try {
 			checkRight(schemaName);
 			return TermDefinition.toDot(
-					indexManager.get(schemaName).get(indexName, false).testAnalyzer(analyzerName, text));
+					indexManager.get(schemaName).use(indexName, index -> index.testAnalyzer(analyzerName, text)));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -394,7 +477,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	final public IndexStatus getIndex(final String schemaName, final String indexName) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, false).getStatus();
+			return indexManager.get(schemaName).use(indexName, IndexInstance::getStatus);
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -411,6 +494,27 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		}
 	}
 
+	@Override
+	final public IndexStatus restoreIndex(final String schemaName, final String indexName, final String backupName,
+			final String sourceIndexName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).restoreIndex(indexName, backupName, sourceIndexName);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	final public IndexStatus cloneIndex(final String schemaName, final String indexName, final String targetIndexName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).cloneIndex(indexName, targetIndexName);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
 	@Override
 	public IndexCheckStatus checkIndex(String schemaName, String indexName) {
 		try {
@@ -421,6 +525,152 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		}
 	}
 
+	@Override
+	public OnlineCheckStatus startOnlineCheck(final String schemaName, final String indexName,
+			final Double rateMbPerSec) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).startOnlineCheck(indexName, rateMbPerSec);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public OnlineCheckStatus getOnlineCheck(final String schemaName, final String indexName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).getOnlineCheck(indexName);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public SortedMap<String, IndexTemplateDefinition> getTemplates(final String schemaName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).getTemplates();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public IndexTemplateDefinition setTemplate(final String schemaName, final String templateName,
+			final IndexTemplateDefinition template) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).setTemplate(templateName, template);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public IndexTemplateStatus getTemplate(final String schemaName, final String templateName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).getTemplate(templateName).getStatus();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public boolean deleteTemplate(final String schemaName, final String templateName) {
+		try {
+			checkRight(schemaName);
+			indexManager.get(schemaName).deleteTemplate(templateName);
+			return true;
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public IndexTemplateStatus rolloverTemplate(final String schemaName, final String templateName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).getTemplate(templateName).rollover();
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public Integer postTemplateDocuments(final String schemaName, final String templateName,
+			final PostDefinition.Documents post) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).getTemplate(templateName).postMappedDocuments(post);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public ResultDefinition.WithMap searchTemplate(final String schemaName, final String templateName,
+			final QueryDefinition query) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).getTemplate(templateName).search(query);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public MergeStatus startCompaction(final String schemaName, final String indexName, final String type,
+			final Integer maxSegments) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).startCompaction(indexName, type, maxSegments);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public MergeStatus getCompaction(final String schemaName, final String indexName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).getCompaction(indexName);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public MergeStatus cancelCompaction(final String schemaName, final String indexName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).cancelCompaction(indexName);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public IndexStatus freezeIndex(final String schemaName, final String indexName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).freezeIndex(indexName);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
+	@Override
+	public IndexStatus unfreezeIndex(final String schemaName, final String indexName) {
+		try {
+			checkRight(schemaName);
+			return indexManager.get(schemaName).unfreezeIndex(indexName);
+		} catch (Exception e) {
+			throw ServerException.getJsonException(LOGGER, e);
+		}
+	}
+
 	@Override
 	final public boolean deleteIndex(final String schemaName, final String indexName) {
 		try {
@@ -437,7 +687,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final PostDefinition.Document post) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, true).postMappedDocument(post);
+			return indexManager.get(schemaName).use(indexName, index -> index.postMappedDocument(post));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -448,7 +698,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final PostDefinition.Documents post) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, true).postMappedDocuments(post);
+			return indexManager.get(schemaName).use(indexName, index -> index.postMappedDocuments(post));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -458,7 +708,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	final public <T> int postDocument(final String schemaName, final String indexName, final Map<String, Field> fields,
 			final T document, final Map<String, String> commitUserData) throws IOException, InterruptedException {
 		checkRight(schemaName);
-		return indexManager.get(schemaName).get(indexName, true).postDocument(fields, document, commitUserData, true);
+		return indexManager.get(schemaName)
+				.use(indexName, index -> index.postDocument(fields, document, commitUserData, true));
 	}
 
 	@Override
@@ -466,14 +717,16 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final Collection<T> documents, final Map<String, String> commitUserData)
 			throws IOException, InterruptedException {
 		checkRight(schemaName);
-		return indexManager.get(schemaName).get(indexName, true).postDocuments(fields, documents, commitUserData, true);
+		return indexManager.get(schemaName)
+				.use(indexName, index -> index.postDocuments(fields, documents, commitUserData, true));
 	}
 
 	@Override
 	final public <T> int addDocument(final String schemaName, final String indexName, final Map<String, Field> fields,
 			final T document, final Map<String, String> commitUserData) throws IOException, InterruptedException {
 		checkRight(schemaName);
-		return indexManager.get(schemaName).get(indexName, true).postDocument(fields, document, commitUserData, false);
+		return indexManager.get(schemaName)
+				.use(indexName, index -> index.postDocument(fields, document, commitUserData, false));
 	}
 
 	@Override
@@ -482,8 +735,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			throws IOException, InterruptedException {
 		checkRight(schemaName);
 		return indexManager.get(schemaName)
-				.get(indexName, true)
-				.postDocuments(fields, documents, commitUserData, false);
+				.use(indexName, index -> index.postDocuments(fields, documents, commitUserData, false));
 	}
 
 	@Override
@@ -491,7 +743,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final PostDefinition.Document post) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, true).updateMappedDocValues(post);
+			return indexManager.get(schemaName).use(indexName, index -> index.updateMappedDocValues(post));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -502,7 +754,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final PostDefinition.Documents post) {
 		try {
 			checkRight(schemaName);
-			return indexManager.get(schemaName).get(indexName, true).updateMappedDocsValues(post);
+			return indexManager.get(schemaName).use(indexName, index -> index.updateMappedDocsValues(post));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -513,7 +765,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final Map<String, Field> fields, final T document, final Map<String, String> commitUserData)
 			throws IOException, InterruptedException {
 		checkRight(schemaName);
-		return indexManager.get(schemaName).get(indexName, true).updateDocValues(fields, document, commitUserData);
+		return indexManager.get(schemaName)
+				.use(indexName, index -> index.updateDocValues(fields, document, commitUserData));
 	}
 
 	@Override
@@ -521,15 +774,16 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final Map<String, Field> fields, final Collection<T> documents, final Map<String, String> commitUserData)
 			throws IOException, InterruptedException {
 		checkRight(schemaName);
-		return indexManager.get(schemaName).get(indexName, true).updateDocsValues(fields, documents, commitUserData);
+		return indexManager.get(schemaName)
+				.use(indexName, index -> index.updateDocsValues(fields, documents, commitUserData));
 	}
 
 	@Override
 	final public SortedMap<String, SortedMap<String, BackupStatus>> doBackup(final String schemaName,
-			final String indexName, final String backupName) {
+			final String indexName, final String backupName, final Boolean async) {
 		try {
 			checkRight(null);
-			return indexManager.backups(schemaName, indexName, backupName);
+			return indexManager.backups(schemaName, indexName, backupName, async != null && async);
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -558,16 +812,20 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 
 	@Override
 	final public InputStream replicationObtain(final String schemaName, final String indexName, final String masterUuid,
-			final String sessionID, final String source, final String fileName) {
+			final String sessionID, final String source, final String fileName, final Long offset,
+			final Boolean compress) {
 		try {
 			checkRight(null);
-			final LocalReplicator localReplicator =
-					indexManager.get(schemaName).get(indexName, false).getLocalReplicator(masterUuid);
+			final NotifyingReplicator localReplicator =
+					indexManager.get(schemaName).use(indexName, index -> index.getLocalReplicator(masterUuid));
 			final InputStream input = localReplicator.obtainFile(sessionID, source, fileName);
 			if (input == null)
 				throw new ServerException(Response.Status.NOT_FOUND,
 						"File not found: " + fileName + " - Schema/index: " + schemaName + '/' + indexName);
-			return new AutoCloseInputStream(input);
+			// Resume a partial download
+			if (offset != null && offset > 0)
+				IOUtils.skipFully(input, offset);
+			return new AutoCloseInputStream(compress != null && compress ? new DeflaterInputStream(input) : input);
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -578,7 +836,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final String sessionID) {
 		try {
 			checkRight(null);
-			indexManager.get(schemaName).get(indexName, false).getLocalReplicator(masterUuid).release(sessionID);
+			indexManager.get(schemaName)
+					.consume(indexName, index -> index.getLocalReplicator(masterUuid).release(sessionID));
 			return true;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -587,14 +846,13 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 
 	@Override
 	final public InputStream replicationUpdate(final String schemaName, final String indexName, final String masterUuid,
-			final String currentVersion) {
+			final String currentVersion, final Long waitMs) {
 		try {
 			checkRight(null);
 
 			final SessionToken token = indexManager.get(schemaName)
-					.get(indexName, false)
-					.getLocalReplicator(masterUuid)
-					.checkForUpdate(currentVersion);
+					.use(indexName, index -> index.getLocalReplicator(masterUuid)
+							.checkForUpdate(currentVersion, waitMs));
 			if (token == null) // Returns a 204 (no content)
 				return null;
 
@@ -616,7 +874,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		try {
 			checkRight(null);
 			LOGGER.info(() -> "Start replication " + schemaName + '/' + indexName);
-			final ReplicationStatus status = indexManager.get(schemaName).get(indexName, false).replicationCheck();
+			final ReplicationStatus status = indexManager.get(schemaName)
+					.use(indexName, IndexInstance::replicationCheck);
 			LOGGER.info(() -> "End replication " + schemaName + '/' + indexName + " - time: " + status.time +
 					"ms - size: " + status.size);
 			return status;
@@ -630,7 +889,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final String indexName) {
 		try {
 			checkRight(null);
-			return indexManager.get(schemaName).get(indexName, false).getResources();
+			return indexManager.get(schemaName).use(indexName, IndexInstance::getResources);
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -640,7 +899,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	public InputStream getResource(final String schemaName, final String indexName, final String resourceName) {
 		try {
 			checkRight(null);
-			final InputStream input = indexManager.get(schemaName).get(indexName, false).getResource(resourceName);
+			final InputStream input = indexManager.get(schemaName)
+					.use(indexName, index -> index.getResource(resourceName));
 			if (input == null)
 				throw new ServerException(Response.Status.NOT_FOUND,
 						"Resource not found: " + resourceName + " - Schema/index: " + schemaName + '/' + indexName);
@@ -655,7 +915,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final Long lastModified, final InputStream inputStream) {
 		try {
 			checkRight(null);
-			indexManager.get(schemaName).get(indexName, false).postResource(resourceName, lastModified, inputStream);
+			indexManager.get(schemaName)
+					.consume(indexName, index -> index.postResource(resourceName, lastModified, inputStream));
 			return true;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -666,7 +927,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	public boolean deleteResource(final String schemaName, final String indexName, final String resourceName) {
 		try {
 			checkRight(null);
-			indexManager.get(schemaName).get(indexName, false).deleteResource(resourceName);
+			indexManager.get(schemaName).consume(indexName, index -> index.deleteResource(resourceName));
 			return true;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -677,7 +938,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	final public boolean deleteAll(final String schemaName, final String indexName) {
 		try {
 			checkRight(schemaName);
-			indexManager.get(schemaName).get(indexName, false).deleteAll(null);
+			indexManager.get(schemaName).consume(indexName, index -> index.deleteAll(null));
 			return true;
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
@@ -704,7 +965,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	private ResultDefinition doSearchMap(final String schemaName, final String indexName, final QueryDefinition query)
 			throws InterruptedException, ReflectiveOperationException, QueryNodeException, ParseException, IOException {
 		checkRight(schemaName);
-		return indexManager.get(schemaName).get(indexName, false).query(null, context -> context.searchMap(query));
+		return indexManager.get(schemaName)
+				.use(indexName, index -> index.query(null, context -> context.searchMap(query)));
 	}
 
 	private ResultDefinition doSearchObject(final String schemaName, final String indexName,
@@ -712,8 +974,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			throws InterruptedException, ReflectiveOperationException, QueryNodeException, ParseException, IOException {
 		checkRight(schemaName);
 		return indexManager.get(schemaName)
-				.get(indexName, false)
-				.query(null, context -> context.searchObject(query, wrapper));
+				.use(indexName, index -> index.query(null, context -> context.searchObject(query, wrapper)));
 	}
 
 	@Override
@@ -794,11 +1055,9 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final QueryDefinition query, final Boolean delete) {
 		try {
 			checkRight(schemaName);
-			final IndexInstance index = indexManager.get(schemaName).get(indexName, delete != null && delete);
-			if (delete != null && delete)
-				return index.deleteByQuery(query);
-			else
-				return index.query(null, context -> context.searchMap(query));
+			return indexManager.get(schemaName).use(indexName, index -> delete != null && delete ?
+					index.deleteByQuery(query) :
+					index.query(null, context -> context.searchMap(query)));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -810,8 +1069,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		try {
 			checkRight(schemaName);
 			return indexManager.get(schemaName)
-					.get(indexName, false)
-					.query(null, context -> context.searchObject(query, wrapper));
+					.use(indexName, index -> index.query(null, context -> context.searchObject(query, wrapper)));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -823,8 +1081,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 		try {
 			checkRight(schemaName);
 			return indexManager.get(schemaName)
-					.get(indexName, false)
-					.query(null, context -> context.searchInterface(query, resultDocuments));
+					.use(indexName,
+							index -> index.query(null, context -> context.searchInterface(query, resultDocuments)));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -835,8 +1093,8 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			int docId) {
 		try {
 			checkRight(schemaName);
-			final IndexInstance index = indexManager.get(schemaName).get(indexName, false);
-			return new ExplainDefinition(index.explain(query, docId));
+			return new ExplainDefinition(
+					indexManager.get(schemaName).use(indexName, index -> index.explain(query, docId)));
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -847,8 +1105,7 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 			final int docId) {
 		try {
 			checkRight(schemaName);
-			final IndexInstance index = indexManager.get(schemaName).get(indexName, false);
-			return index.explain(query, docId).toString();
+			return indexManager.get(schemaName).use(indexName, index -> index.explain(query, docId)).toString();
 		} catch (Exception e) {
 			throw ServerException.getJsonException(LOGGER, e);
 		}
@@ -869,16 +1126,14 @@ final class IndexServiceImpl extends AbstractServiceImpl implements IndexService
 	public <T> T query(final String schemaName, final String indexName, final FieldMapWrapper.Cache fieldMapWrappers,
 			final QueryActions<T> actions) throws IOException {
 		checkRight(schemaName);
-		final IndexInstance index = indexManager.get(schemaName).get(indexName, false);
-		return index.query(fieldMapWrappers, actions);
+		return indexManager.get(schemaName).use(indexName, index -> index.query(fieldMapWrappers, actions));
 	}
 
 	@Override
 	public <T> T write(final String schemaName, final String indexName, final WriteActions<T> actions)
 			throws IOException {
 		checkRight(schemaName);
-		final IndexInstance index = indexManager.get(schemaName).get(indexName, false);
-		return index.write(actions);
+		return indexManager.get(schemaName).use(indexName, index -> index.write(actions));
 	}
 
 }
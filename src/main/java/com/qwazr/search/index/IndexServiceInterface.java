@@ -70,6 +70,45 @@ public interface IndexServiceInterface extends ServiceInterface {
 	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
 	Set<String> getSchemas();
 
+	@GET
+	@Path("/_nrt_cache")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	NrtCacheStatus getNrtCacheStatus();
+
+	@GET
+	@Path("/_indexing_buffer")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexingBufferStatus getIndexingBufferStatus();
+
+	@GET
+	@Path("/_eviction")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexEvictionStatus getEvictionStatus();
+
+	@GET
+	@Path("/_analyzer_cache")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	AnalyzerCacheStatus getAnalyzerCacheStatus();
+
+	@GET
+	@Path("/_readiness")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexReadinessStatus getReadiness(@QueryParam("probe") Boolean probe);
+
+	default IndexReadinessStatus getReadiness() {
+		return getReadiness(null);
+	}
+
+	@GET
+	@Path("/_merges")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	MergeServiceStatus getMergeServiceStatus();
+
+	@POST
+	@Path("/_merges")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	MergeServiceStatus setMergeRate(@QueryParam("rate_mb_per_sec") Double rate_mb_per_sec);
+
 	@DELETE
 	@Path("/{schema_name}")
 	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, MediaType.TEXT_PLAIN })
@@ -80,6 +119,50 @@ public interface IndexServiceInterface extends ServiceInterface {
 	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
 	Set<String> getIndexes(@PathParam("schema_name") String schema_name);
 
+	@GET
+	@Path("/{schema_name}/_templates")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	SortedMap<String, IndexTemplateDefinition> getTemplates(@PathParam("schema_name") String schema_name);
+
+	@POST
+	@Path("/{schema_name}/_templates/{template_name}")
+	@Consumes({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexTemplateDefinition setTemplate(@PathParam("schema_name") String schema_name,
+			@PathParam("template_name") String template_name, IndexTemplateDefinition template);
+
+	@GET
+	@Path("/{schema_name}/_templates/{template_name}")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexTemplateStatus getTemplate(@PathParam("schema_name") String schema_name,
+			@PathParam("template_name") String template_name);
+
+	@DELETE
+	@Path("/{schema_name}/_templates/{template_name}")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, MediaType.TEXT_PLAIN })
+	boolean deleteTemplate(@PathParam("schema_name") String schema_name,
+			@PathParam("template_name") String template_name);
+
+	@POST
+	@Path("/{schema_name}/_templates/{template_name}/rollover")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexTemplateStatus rolloverTemplate(@PathParam("schema_name") String schema_name,
+			@PathParam("template_name") String template_name);
+
+	@POST
+	@Path("/{schema_name}/_templates/{template_name}/docs")
+	@Consumes({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	Integer postTemplateDocuments(@PathParam("schema_name") String schema_name,
+			@PathParam("template_name") String template_name, PostDefinition.Documents documents);
+
+	@POST
+	@Path("/{schema_name}/_templates/{template_name}/search")
+	@Consumes({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	ResultDefinition.WithMap searchTemplate(@PathParam("schema_name") String schema_name,
+			@PathParam("template_name") String template_name, QueryDefinition query);
+
 	@POST
 	@Path("/{schema_name}/{index_name}")
 	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
@@ -221,12 +304,70 @@ public interface IndexServiceInterface extends ServiceInterface {
 	IndexStatus mergeIndex(@PathParam("schema_name") String schema_name, @PathParam("index_name") String index_name,
 			@PathParam("merged_index") String merged_index, final Map<String, String> commitUserData);
 
+	@POST
+	@Path("/{schema_name}/{index_name}/restore/{backup_name}")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexStatus restoreIndex(@PathParam("schema_name") String schema_name, @PathParam("index_name") String index_name,
+			@PathParam("backup_name") String backup_name, @QueryParam("source_index") String source_index);
+
+	default IndexStatus restoreIndex(final String schemaName, final String indexName, final String backupName) {
+		return restoreIndex(schemaName, indexName, backupName, null);
+	}
+
+	@POST
+	@Path("/{schema_name}/{index_name}/clone/{target_index}")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexStatus cloneIndex(@PathParam("schema_name") String schema_name, @PathParam("index_name") String index_name,
+			@PathParam("target_index") String target_index);
+
 	@POST
 	@Path("/{schema_name}/{index_name}/check")
 	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
 	IndexCheckStatus checkIndex(@PathParam("schema_name") String schema_name,
 			@PathParam("index_name") String index_name);
 
+	@POST
+	@Path("/{schema_name}/{index_name}/check/online")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	OnlineCheckStatus startOnlineCheck(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name, @QueryParam("rate_mb_per_sec") Double rate_mb_per_sec);
+
+	@GET
+	@Path("/{schema_name}/{index_name}/check/online")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	OnlineCheckStatus getOnlineCheck(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name);
+
+	@POST
+	@Path("/{schema_name}/{index_name}/compaction")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	MergeStatus startCompaction(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name, @QueryParam("type") String type,
+			@QueryParam("max_segments") Integer max_segments);
+
+	@GET
+	@Path("/{schema_name}/{index_name}/compaction")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	MergeStatus getCompaction(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name);
+
+	@DELETE
+	@Path("/{schema_name}/{index_name}/compaction")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	MergeStatus cancelCompaction(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name);
+
+	@POST
+	@Path("/{schema_name}/{index_name}/freeze")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexStatus freezeIndex(@PathParam("schema_name") String schema_name, @PathParam("index_name") String index_name);
+
+	@DELETE
+	@Path("/{schema_name}/{index_name}/freeze")
+	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
+	IndexStatus unfreezeIndex(@PathParam("schema_name") String schema_name,
+			@PathParam("index_name") String index_name);
+
 	@DELETE
 	@Path("/{schema_name}/{index_name}")
 	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, MediaType.TEXT_PLAIN })
@@ -282,7 +423,13 @@ public interface IndexServiceInterface extends ServiceInterface {
 	@Path("/{schema_name}/{index_name}/backup/{backup_name}")
 	@Produces({ ServiceInterface.APPLICATION_JSON_UTF8, SmileMediaTypes.APPLICATION_JACKSON_SMILE })
 	SortedMap<String, SortedMap<String, BackupStatus>> doBackup(@PathParam("schema_name") String schema_name,
-			@PathParam("index_name") String index_name, @PathParam("backup_name") String backup_name);
+			@PathParam("index_name") String index_name, @PathParam("backup_name") String backup_name,
+			@QueryParam("async") Boolean async);
+
+	default SortedMap<String, SortedMap<String, BackupStatus>> doBackup(final String schemaName,
+			final String indexName, final String backupName) {
+		return doBackup(schemaName, indexName, backupName, null);
+	}
 
 	@GET
 	@Path("/{schema_name}/{index_name}/backup/{backup_name}")
@@ -303,7 +450,8 @@ public interface IndexServiceInterface extends ServiceInterface {
 	InputStream replicationObtain(@PathParam("schema_name") String schema_name,
 			@PathParam("index_name") String index_name, @PathParam("master_uuid") String masterUuid,
 			@PathParam("session_id") String sessionID, @PathParam("source") String source,
-			@PathParam("filename") String fileName);
+			@PathParam("filename") String fileName, @QueryParam("offset") Long offset,
+			@QueryParam("compress") Boolean compress);
 
 	@DELETE
 	@Path("/{schema_name}/{index_name}/replication/{master_uuid}/{session_id}")
@@ -315,7 +463,7 @@ public interface IndexServiceInterface extends ServiceInterface {
 	@Path("/{schema_name}/{index_name}/replication/{master_uuid}")
 	InputStream replicationUpdate(@PathParam("schema_name") String schema_name,
 			@PathParam("index_name") String index_name, @PathParam("master_uuid") String masterUuid,
-			@QueryParam("current_version") String current_version);
+			@QueryParam("current_version") String current_version, @QueryParam("wait_ms") Long wait_ms);
 
 	@GET
 	@Path("/{schema_name}/{index_name}/replication")
@@ -412,6 +560,10 @@ public interface IndexServiceInterface extends ServiceInterface {
 			new GenericType<LinkedHashMap<String, AnalyzerDefinition>>() {
 			};
 
+	GenericType<SortedMap<String, IndexTemplateDefinition>> mapStringTemplateType =
+			new GenericType<SortedMap<String, IndexTemplateDefinition>>() {
+			};
+
 	@FunctionalInterface
 	interface QueryActions<T> extends FunctionEx<QueryContext, T, IOException> {
 	}
@@ -26,25 +26,41 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Supplier;
 
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 public class IndexSettingsDefinition {
 
 	public enum Type {
-		FSDirectory, RAMDirectory
+		FSDirectory, RAMDirectory, MMapDirectory, NIOFSDirectory, FileSwitchDirectory, OffHeapDirectory
 	}
 
 	public enum MergeScheduler {
 		NO, CONCURRENT, SERIAL
 	}
 
+	public enum StoredFieldsMode {
+		BEST_SPEED, BEST_COMPRESSION
+	}
+
 	public static final int DEFAULT_MAX_MERGE_AT_ONCE = 10;
 	public static final int DEFAULT_SEGMENTS_PER_TIER = 10;
 	public static final double DEFAULT_MAX_MERGED_SEGMENT_MB = 5 * 1024 * 1024;
 	public static final double DEFAULT_NRT_CACHING_DIRECTORY_MERGE_SIZE_MB = 5;
 	public static final double DEFAULT_NRT_CACHING_DIRECTORY_MAX_CACHED_MB = 60;
+	public static final int DEFAULT_REPLICATION_THREADS = 4;
+
+	/**
+	 * The files memory mapped by the FileSwitchDirectory: postings, terms, norms, points and doc values.
+	 * The other files (e.g. stored fields, term vectors) are read using NIO.
+	 */
+	public static final String[] DEFAULT_MMAP_EXTENSIONS =
+			{ "doc", "pos", "pay", "tim", "tip", "nvd", "nvm", "dim", "dii", "dvd", "dvm", "cfs", "cfe" };
 
 	// TODO: Name reservation
 	@JsonProperty("replication")
@@ -94,6 +110,48 @@ public class IndexSettingsDefinition {
 	@JsonProperty("nrt_caching_directory_max_cached_mb")
 	final public Double nrtCachingDirectoryMaxCachedMB;
 
+	@JsonProperty("replication_interval_ms")
+	final public Long replicationIntervalMs;
+
+	@JsonProperty("replication_wait_ms")
+	final public Long replicationWaitMs;
+
+	@JsonProperty("replication_threads")
+	final public Integer replicationThreads;
+
+	@JsonProperty("replication_compression")
+	final public Boolean replicationCompression;
+
+	@JsonProperty("mmap_preload")
+	final public Boolean mmapPreload;
+
+	@JsonProperty("mmap_unmap")
+	final public Boolean mmapUnmap;
+
+	@JsonProperty("mmap_extensions")
+	final public Set<String> mmapExtensions;
+
+	@JsonProperty("offheap_persist")
+	final public Boolean offheapPersist;
+
+	@JsonProperty("expunge_deletes_pct")
+	final public Double expungeDeletesPct;
+
+	@JsonProperty("stored_fields_mode")
+	final public StoredFieldsMode storedFieldsMode;
+
+	@JsonProperty("startup_priority")
+	final public Integer startupPriority;
+
+	@JsonProperty("warm_recent_queries")
+	final public Integer warmRecentQueries;
+
+	@JsonProperty("query_cache_size")
+	final public Integer queryCacheSize;
+
+	@JsonProperty("warm_queries")
+	final public List<QueryDefinition> warmQueries;
+
 	public IndexSettingsDefinition() {
 		directoryType = null;
 		mergeScheduler = null;
@@ -110,6 +168,20 @@ public class IndexSettingsDefinition {
 		mergedSegmentWarmer = null;
 		nrtCachingDirectoryMaxMergeSizeMB = null;
 		nrtCachingDirectoryMaxCachedMB = null;
+		replicationIntervalMs = null;
+		replicationWaitMs = null;
+		replicationThreads = null;
+		replicationCompression = null;
+		mmapPreload = null;
+		mmapUnmap = null;
+		mmapExtensions = null;
+		offheapPersist = null;
+		expungeDeletesPct = null;
+		storedFieldsMode = null;
+		startupPriority = null;
+		warmRecentQueries = null;
+		queryCacheSize = null;
+		warmQueries = null;
 	}
 
 	private IndexSettingsDefinition(final Builder builder) {
@@ -128,6 +200,20 @@ public class IndexSettingsDefinition {
 		this.mergedSegmentWarmer = builder.mergedSegmentWarmer;
 		this.nrtCachingDirectoryMaxMergeSizeMB = builder.nrtCachingDirectoryMaxMergeSizeMB;
 		this.nrtCachingDirectoryMaxCachedMB = builder.nrtCachingDirectoryMaxCachedMB;
+		this.replicationIntervalMs = builder.replicationIntervalMs;
+		this.replicationWaitMs = builder.replicationWaitMs;
+		this.replicationThreads = builder.replicationThreads;
+		this.replicationCompression = builder.replicationCompression;
+		this.mmapPreload = builder.mmapPreload;
+		this.mmapUnmap = builder.mmapUnmap;
+		this.mmapExtensions = builder.mmapExtensions;
+		this.offheapPersist = builder.offheapPersist;
+		this.expungeDeletesPct = builder.expungeDeletesPct;
+		this.storedFieldsMode = builder.storedFieldsMode;
+		this.startupPriority = builder.startupPriority;
+		this.warmRecentQueries = builder.warmRecentQueries;
+		this.queryCacheSize = builder.queryCacheSize;
+		this.warmQueries = builder.warmQueries;
 	}
 
 	final static IndexSettingsDefinition EMPTY = new IndexSettingsDefinition();
@@ -177,6 +263,34 @@ public class IndexSettingsDefinition {
 			return false;
 		if (!Objects.equals(nrtCachingDirectoryMaxCachedMB, s.nrtCachingDirectoryMaxCachedMB))
 			return false;
+		if (!Objects.equals(replicationIntervalMs, s.replicationIntervalMs))
+			return false;
+		if (!Objects.equals(replicationWaitMs, s.replicationWaitMs))
+			return false;
+		if (!Objects.equals(replicationThreads, s.replicationThreads))
+			return false;
+		if (!Objects.equals(replicationCompression, s.replicationCompression))
+			return false;
+		if (!Objects.equals(mmapPreload, s.mmapPreload))
+			return false;
+		if (!Objects.equals(mmapUnmap, s.mmapUnmap))
+			return false;
+		if (!Objects.equals(mmapExtensions, s.mmapExtensions))
+			return false;
+		if (!Objects.equals(offheapPersist, s.offheapPersist))
+			return false;
+		if (!Objects.equals(expungeDeletesPct, s.expungeDeletesPct))
+			return false;
+		if (!Objects.equals(storedFieldsMode, s.storedFieldsMode))
+			return false;
+		if (!Objects.equals(startupPriority, s.startupPriority))
+			return false;
+		if (!Objects.equals(warmRecentQueries, s.warmRecentQueries))
+			return false;
+		if (!Objects.equals(queryCacheSize, s.queryCacheSize))
+			return false;
+		if (!Objects.equals(warmQueries, s.warmQueries))
+			return false;
 		return true;
 	}
 
@@ -209,6 +323,20 @@ public class IndexSettingsDefinition {
 		private Boolean mergedSegmentWarmer;
 		private Double nrtCachingDirectoryMaxMergeSizeMB;
 		private Double nrtCachingDirectoryMaxCachedMB;
+		private Long replicationIntervalMs;
+		private Long replicationWaitMs;
+		private Integer replicationThreads;
+		private Boolean replicationCompression;
+		private Boolean mmapPreload;
+		private Boolean mmapUnmap;
+		private Set<String> mmapExtensions;
+		private Boolean offheapPersist;
+		private Double expungeDeletesPct;
+		private StoredFieldsMode storedFieldsMode;
+		private Integer startupPriority;
+		private Integer warmRecentQueries;
+		private Integer queryCacheSize;
+		private List<QueryDefinition> warmQueries;
 
 		private Builder() {
 		}
@@ -229,6 +357,19 @@ public class IndexSettingsDefinition {
 			mergedSegmentWarmer = annotatedIndex.mergedSegmentWarmer();
 			nrtCachingDirectoryMaxMergeSizeMB = annotatedIndex.nrtCachingDirectoryMaxMergeSizeMB();
 			nrtCachingDirectoryMaxCachedMB = annotatedIndex.nrtCachingDirectoryMaxCachedMB();
+			replicationIntervalMs = annotatedIndex.replicationIntervalMs();
+			replicationWaitMs = annotatedIndex.replicationWaitMs();
+			replicationThreads = annotatedIndex.replicationThreads();
+			replicationCompression = annotatedIndex.replicationCompression();
+			mmapPreload = annotatedIndex.mmapPreload();
+			mmapUnmap = annotatedIndex.mmapUnmap();
+			mmapExtensions(annotatedIndex.mmapExtensions());
+			offheapPersist = annotatedIndex.offheapPersist();
+			expungeDeletesPct = annotatedIndex.expungeDeletesPct();
+			storedFieldsMode = annotatedIndex.storedFieldsMode();
+			startupPriority = annotatedIndex.startupPriority();
+			warmRecentQueries = annotatedIndex.warmRecentQueries();
+			queryCacheSize = annotatedIndex.queryCacheSize();
 		}
 
 		private Builder(final IndexSettingsDefinition settings) {
@@ -247,6 +388,20 @@ public class IndexSettingsDefinition {
 			this.mergedSegmentWarmer = settings.mergedSegmentWarmer;
 			this.nrtCachingDirectoryMaxMergeSizeMB = settings.nrtCachingDirectoryMaxMergeSizeMB;
 			this.nrtCachingDirectoryMaxCachedMB = settings.nrtCachingDirectoryMaxCachedMB;
+			this.replicationIntervalMs = settings.replicationIntervalMs;
+			this.replicationWaitMs = settings.replicationWaitMs;
+			this.replicationThreads = settings.replicationThreads;
+			this.replicationCompression = settings.replicationCompression;
+			this.mmapPreload = settings.mmapPreload;
+			this.mmapUnmap = settings.mmapUnmap;
+			this.mmapExtensions = settings.mmapExtensions;
+			this.offheapPersist = settings.offheapPersist;
+			this.expungeDeletesPct = settings.expungeDeletesPct;
+			this.storedFieldsMode = settings.storedFieldsMode;
+			this.startupPriority = settings.startupPriority;
+			this.warmRecentQueries = settings.warmRecentQueries;
+			this.queryCacheSize = settings.queryCacheSize;
+			this.warmQueries = settings.warmQueries;
 		}
 
 		public Builder type(final Type directoryType) {
@@ -337,6 +492,88 @@ public class IndexSettingsDefinition {
 			return this;
 		}
 
+		public Builder replicationIntervalMs(final Long replicationIntervalMs) {
+			this.replicationIntervalMs = replicationIntervalMs;
+			return this;
+		}
+
+		public Builder replicationWaitMs(final Long replicationWaitMs) {
+			this.replicationWaitMs = replicationWaitMs;
+			return this;
+		}
+
+		public Builder replicationThreads(final Integer replicationThreads) {
+			this.replicationThreads = replicationThreads;
+			return this;
+		}
+
+		public Builder replicationCompression(final Boolean replicationCompression) {
+			this.replicationCompression = replicationCompression;
+			return this;
+		}
+
+		public Builder mmapPreload(final Boolean mmapPreload) {
+			this.mmapPreload = mmapPreload;
+			return this;
+		}
+
+		public Builder mmapUnmap(final Boolean mmapUnmap) {
+			this.mmapUnmap = mmapUnmap;
+			return this;
+		}
+
+		public Builder mmapExtensions(final Set<String> mmapExtensions) {
+			this.mmapExtensions = mmapExtensions;
+			return this;
+		}
+
+		public Builder mmapExtensions(final String... mmapExtensions) {
+			this.mmapExtensions = mmapExtensions == null || mmapExtensions.length == 0 ?
+					null :
+					new LinkedHashSet<>(Arrays.asList(mmapExtensions));
+			return this;
+		}
+
+		public Builder offheapPersist(final Boolean offheapPersist) {
+			this.offheapPersist = offheapPersist;
+			return this;
+		}
+
+		public Builder expungeDeletesPct(final Double expungeDeletesPct) {
+			this.expungeDeletesPct = expungeDeletesPct;
+			return this;
+		}
+
+		public Builder storedFieldsMode(final StoredFieldsMode storedFieldsMode) {
+			this.storedFieldsMode = storedFieldsMode;
+			return this;
+		}
+
+		public Builder startupPriority(final Integer startupPriority) {
+			this.startupPriority = startupPriority;
+			return this;
+		}
+
+		public Builder warmRecentQueries(final Integer warmRecentQueries) {
+			this.warmRecentQueries = warmRecentQueries;
+			return this;
+		}
+
+		public Builder queryCacheSize(final Integer queryCacheSize) {
+			this.queryCacheSize = queryCacheSize;
+			return this;
+		}
+
+		public Builder warmQueries(final List<QueryDefinition> warmQueries) {
+			this.warmQueries = warmQueries;
+			return this;
+		}
+
+		public Builder warmQueries(final QueryDefinition... warmQueries) {
+			this.warmQueries = warmQueries == null || warmQueries.length == 0 ? null : Arrays.asList(warmQueries);
+			return this;
+		}
+
 		public IndexSettingsDefinition build() {
 			return new IndexSettingsDefinition(this);
 		}
@@ -63,6 +63,57 @@ public class IndexSingleClient extends JsonClient implements IndexServiceInterfa
 		return indexTarget.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE).get(setStringType);
 	}
 
+	@Override
+	public NrtCacheStatus getNrtCacheStatus() {
+		return indexTarget.path("_nrt_cache")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(NrtCacheStatus.class);
+	}
+
+	@Override
+	public IndexingBufferStatus getIndexingBufferStatus() {
+		return indexTarget.path("_indexing_buffer")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(IndexingBufferStatus.class);
+	}
+
+	@Override
+	public IndexReadinessStatus getReadiness(final Boolean probe) {
+		WebTarget target = indexTarget.path("_readiness");
+		if (probe != null)
+			target = target.queryParam("probe", probe);
+		return target.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE).get(IndexReadinessStatus.class);
+	}
+
+	@Override
+	public IndexEvictionStatus getEvictionStatus() {
+		return indexTarget.path("_eviction")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(IndexEvictionStatus.class);
+	}
+
+	@Override
+	public AnalyzerCacheStatus getAnalyzerCacheStatus() {
+		return indexTarget.path("_analyzer_cache")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(AnalyzerCacheStatus.class);
+	}
+
+	@Override
+	public MergeServiceStatus getMergeServiceStatus() {
+		return indexTarget.path("_merges")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(MergeServiceStatus.class);
+	}
+
+	@Override
+	public MergeServiceStatus setMergeRate(final Double rateMbPerSec) {
+		return indexTarget.path("_merges")
+				.queryParam("rate_mb_per_sec", rateMbPerSec)
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE), MergeServiceStatus.class);
+	}
+
 	@Override
 	public boolean deleteSchema(final String schemaName) {
 		return indexTarget.path(schemaName).request(MediaType.TEXT_PLAIN).delete(boolean.class);
@@ -298,6 +349,28 @@ public class IndexSingleClient extends JsonClient implements IndexServiceInterfa
 				.post(Entity.entity(commitUserData, SmileMediaTypes.APPLICATION_JACKSON_SMILE), IndexStatus.class);
 	}
 
+	@Override
+	public IndexStatus restoreIndex(final String schemaName, final String indexName, final String backupName,
+			final String sourceIndexName) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("restore")
+				.path(backupName)
+				.queryParam("source_index", sourceIndexName)
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE), IndexStatus.class);
+	}
+
+	@Override
+	public IndexStatus cloneIndex(final String schemaName, final String indexName, final String targetIndexName) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("clone")
+				.path(targetIndexName)
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE), IndexStatus.class);
+	}
+
 	@Override
 	public IndexCheckStatus checkIndex(final String schemaName, final String indexName) {
 		return indexTarget.path(schemaName)
@@ -307,6 +380,145 @@ public class IndexSingleClient extends JsonClient implements IndexServiceInterfa
 				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE), IndexCheckStatus.class);
 	}
 
+	@Override
+	public OnlineCheckStatus startOnlineCheck(final String schemaName, final String indexName,
+			final Double rateMbPerSec) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("check")
+				.path("online")
+				.queryParam("rate_mb_per_sec", rateMbPerSec)
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE), OnlineCheckStatus.class);
+	}
+
+	@Override
+	public OnlineCheckStatus getOnlineCheck(final String schemaName, final String indexName) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("check")
+				.path("online")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(OnlineCheckStatus.class);
+	}
+
+	@Override
+	public SortedMap<String, IndexTemplateDefinition> getTemplates(final String schemaName) {
+		return indexTarget.path(schemaName)
+				.path("_templates")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(mapStringTemplateType);
+	}
+
+	@Override
+	public IndexTemplateDefinition setTemplate(final String schemaName, final String templateName,
+			final IndexTemplateDefinition template) {
+		return indexTarget.path(schemaName)
+				.path("_templates")
+				.path(templateName)
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(template, SmileMediaTypes.APPLICATION_JACKSON_SMILE),
+						IndexTemplateDefinition.class);
+	}
+
+	@Override
+	public IndexTemplateStatus getTemplate(final String schemaName, final String templateName) {
+		return indexTarget.path(schemaName)
+				.path("_templates")
+				.path(templateName)
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(IndexTemplateStatus.class);
+	}
+
+	@Override
+	public boolean deleteTemplate(final String schemaName, final String templateName) {
+		return indexTarget.path(schemaName)
+				.path("_templates")
+				.path(templateName)
+				.request(MediaType.TEXT_PLAIN)
+				.delete(boolean.class);
+	}
+
+	@Override
+	public IndexTemplateStatus rolloverTemplate(final String schemaName, final String templateName) {
+		return indexTarget.path(schemaName)
+				.path("_templates")
+				.path(templateName)
+				.path("rollover")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE), IndexTemplateStatus.class);
+	}
+
+	@Override
+	public Integer postTemplateDocuments(final String schemaName, final String templateName,
+			final PostDefinition.Documents post) {
+		return indexTarget.path(schemaName)
+				.path("_templates")
+				.path(templateName)
+				.path("docs")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(post, SmileMediaTypes.APPLICATION_JACKSON_SMILE), Integer.class);
+	}
+
+	@Override
+	public ResultDefinition.WithMap searchTemplate(final String schemaName, final String templateName,
+			final QueryDefinition query) {
+		return indexTarget.path(schemaName)
+				.path("_templates")
+				.path(templateName)
+				.path("search")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(query, SmileMediaTypes.APPLICATION_JACKSON_SMILE), ResultDefinition.WithMap.class);
+	}
+
+	@Override
+	public MergeStatus startCompaction(final String schemaName, final String indexName, final String type,
+			final Integer maxSegments) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("compaction")
+				.queryParam("type", type)
+				.queryParam("max_segments", maxSegments)
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE), MergeStatus.class);
+	}
+
+	@Override
+	public MergeStatus getCompaction(final String schemaName, final String indexName) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("compaction")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.get(MergeStatus.class);
+	}
+
+	@Override
+	public MergeStatus cancelCompaction(final String schemaName, final String indexName) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("compaction")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.delete(MergeStatus.class);
+	}
+
+	@Override
+	public IndexStatus freezeIndex(final String schemaName, final String indexName) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("freeze")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE), IndexStatus.class);
+	}
+
+	@Override
+	public IndexStatus unfreezeIndex(final String schemaName, final String indexName) {
+		return indexTarget.path(schemaName)
+				.path(indexName)
+				.path("freeze")
+				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
+				.delete(IndexStatus.class);
+	}
+
 	@Override
 	public boolean deleteIndex(final String schemaName, final String indexName) {
 		return indexTarget.path(schemaName).path(indexName).request(MediaType.TEXT_PLAIN).delete(boolean.class);
@@ -314,11 +526,12 @@ public class IndexSingleClient extends JsonClient implements IndexServiceInterfa
 
 	@Override
 	public SortedMap<String, SortedMap<String, BackupStatus>> doBackup(final String schemaName, final String indexName,
-			final String backupName) {
+			final String backupName, final Boolean async) {
 		return indexTarget.path(schemaName)
 				.path(indexName)
 				.path("backup")
 				.path(backupName)
+				.queryParam("async", async)
 				.request(SmileMediaTypes.APPLICATION_JACKSON_SMILE)
 				.post(Entity.entity(null, SmileMediaTypes.APPLICATION_JACKSON_SMILE),
 						mapStringMapStringBackupStatusType);
@@ -348,7 +561,8 @@ public class IndexSingleClient extends JsonClient implements IndexServiceInterfa
 
 	@Override
 	public InputStream replicationObtain(final String schemaName, final String indexName, final String masterUuid,
-			final String sessionID, final String source, final String fileName) {
+			final String sessionID, final String source, final String fileName, final Long offset,
+			final Boolean compress) {
 		return new AutoCloseInputStream(indexTarget.path(schemaName)
 				.path(indexName)
 				.path("replication")
@@ -356,6 +570,8 @@ public class IndexSingleClient extends JsonClient implements IndexServiceInterfa
 				.path(sessionID)
 				.path(source)
 				.path(fileName)
+				.queryParam("offset", offset)
+				.queryParam("compress", compress)
 				.request(MediaType.APPLICATION_OCTET_STREAM)
 				.get(InputStream.class));
 	}
@@ -374,12 +590,13 @@ public class IndexSingleClient extends JsonClient implements IndexServiceInterfa
 
 	@Override
 	public InputStream replicationUpdate(final String schemaName, final String indexName, final String masterUuid,
-			final String currentVersion) {
+			final String currentVersion, final Long waitMs) {
 		return new AutoCloseInputStream(indexTarget.path(schemaName)
 				.path(indexName)
 				.path("replication")
 				.path(masterUuid)
 				.queryParam("current_version", currentVersion)
+				.queryParam("wait_ms", waitMs)
 				.request(MediaType.APPLICATION_OCTET_STREAM)
 				.get(InputStream.class));
 	}
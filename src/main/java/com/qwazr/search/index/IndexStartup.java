@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opens (and warms) the indexes at startup on a bounded pool.
+ * The indexes with the highest startup priority are opened first, then the most recently written.
+ * <p>
+ * The eager opening is enabled by the QWAZR_INDEX_EAGER_OPEN system property or environment variable.
+ * The size of the pool is set by QWAZR_INDEX_OPEN_THREADS, the default is the number of processors.
+ */
+final class IndexStartup implements Closeable {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(IndexStartup.class);
+
+	final static String QWAZR_INDEX_EAGER_OPEN = "QWAZR_INDEX_EAGER_OPEN";
+	final static String QWAZR_INDEX_OPEN_THREADS = "QWAZR_INDEX_OPEN_THREADS";
+
+	private final ExecutorService executorService;
+	private final AtomicInteger pending;
+
+	IndexStartup(final int threads, final Collection<IndexInstanceManager> indexes) {
+		final List<IndexInstanceManager> ordered = new ArrayList<>(indexes);
+		ordered.sort(Comparator.comparingInt(IndexInstanceManager::getStartupPriority)
+				.reversed()
+				.thenComparing(Comparator.comparingLong(IndexInstanceManager::getLastModified).reversed()));
+		pending = new AtomicInteger(ordered.size());
+		executorService = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+			final Thread thread = new Thread(runnable, "Index startup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// The queue of the pool is FIFO: the indexes are opened in the priority order
+		for (IndexInstanceManager index : ordered)
+			executorService.submit(() -> open(index));
+		executorService.shutdown();
+	}
+
+	private static String getDefaultValue(final String name) {
+		final String value = System.getProperty(name);
+		return value == null ? System.getenv(name) : value;
+	}
+
+	static boolean isEagerOpen() {
+		return Boolean.parseBoolean(getDefaultValue(QWAZR_INDEX_EAGER_OPEN));
+	}
+
+	static int getDefaultThreads() {
+		final String value = getDefaultValue(QWAZR_INDEX_OPEN_THREADS);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				LOGGER.warning(() -> "Wrong value for " + QWAZR_INDEX_OPEN_THREADS + ": " + value);
+			}
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	private void open(final IndexInstanceManager index) {
+		try {
+			index.open();
+		} catch (Exception e) {
+			LOGGER.log(Level.SEVERE, e, () -> "Cannot open the index " + index.getName());
+		} finally {
+			pending.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of indexes which are not opened yet
+	 */
+	int getPending() {
+		return pending.get();
+	}
+
+	@Override
+	public void close() {
+		executorService.shutdownNow();
+	}
+}
@@ -83,6 +83,8 @@ public class IndexStatus {
 	final public String directory_cached_ram_used;
 	final public Integer active_index_analyzers;
 	final public Integer active_query_analyzers;
+	final public ReplicationLag replication_lag;
+	final public Boolean frozen;
 
 	@JsonCreator
 	IndexStatus(@JsonProperty("num_docs") Long num_docs, @JsonProperty("num_deleted_docs") Long num_deleted_docs,
@@ -106,7 +108,9 @@ public class IndexStatus {
 			@JsonProperty("directory_cached_files") String[] directory_cached_files,
 			@JsonProperty("directory_cached_ram_used") String directory_cached_ram_used,
 			@JsonProperty("active_index_analyzers") Integer active_index_analyzers,
-			@JsonProperty("active_query_analyzers") Integer active_query_analyzers) {
+			@JsonProperty("active_query_analyzers") Integer active_query_analyzers,
+			@JsonProperty("replication_lag") ReplicationLag replication_lag,
+			@JsonProperty("frozen") Boolean frozen) {
 		this.num_docs = num_docs;
 		this.num_deleted_docs = num_deleted_docs;
 		this.merge_policy = merge_policy;
@@ -133,12 +137,15 @@ public class IndexStatus {
 		this.directory_cached_ram_used = directory_cached_ram_used;
 		this.active_index_analyzers = active_index_analyzers;
 		this.active_query_analyzers = active_query_analyzers;
+		this.replication_lag = replication_lag;
+		this.frozen = frozen;
 	}
 
 	public IndexStatus(final UUID indexUuid, final UUID masterUuid, final Directory directory,
 			final IndexSearcher indexSearcher, final IndexWriter indexWriter, final IndexSettingsDefinition settings,
 			final Set<String> analyzers, final Set<String> fields, final int activeIndexAnalyzers,
-			final int activeQueryAnalyzers) throws IOException {
+			final int activeQueryAnalyzers, final ReplicationLag replicationLag, final boolean frozen)
+			throws IOException {
 		final IndexReader indexReader = indexSearcher.getIndexReader();
 		num_docs = (long) indexReader.numDocs();
 		num_deleted_docs = (long) indexReader.numDeletedDocs();
@@ -209,6 +216,8 @@ public class IndexStatus {
 		this.active_index_analyzers = activeIndexAnalyzers;
 		this.active_query_analyzers = activeQueryAnalyzers;
 		this.fields = fields;
+		this.replication_lag = replicationLag;
+		this.frozen = frozen ? Boolean.TRUE : null;
 
 		final QueryCache queryCache = indexSearcher.getQueryCache();
 		this.query_cache = queryCache != null && queryCache instanceof LRUQueryCache ?
@@ -218,11 +227,11 @@ public class IndexStatus {
 		if (directory != null) {
 			if (directory instanceof NRTCachingDirectory) {
 				final NRTCachingDirectory nrtCachingDirectory = (NRTCachingDirectory) directory;
-				directory_class = nrtCachingDirectory.getDelegate().getClass().getName();
+				directory_class = getDirectoryClass(nrtCachingDirectory.getDelegate());
 				directory_cached_files = nrtCachingDirectory.listCachedFiles();
 				directory_cached_ram_used = FileUtils.byteCountToDisplaySize(nrtCachingDirectory.ramBytesUsed());
 			} else {
-				directory_class = directory.getClass().getName();
+				directory_class = getDirectoryClass(directory);
 				directory_cached_files = null;
 				directory_cached_ram_used = null;
 			}
@@ -233,6 +242,12 @@ public class IndexStatus {
 		}
 	}
 
+	private static String getDirectoryClass(final Directory directory) {
+		return directory instanceof MergeThrottledDirectory ?
+				((MergeThrottledDirectory) directory).getDelegate().getClass().getName() :
+				directory.getClass().getName();
+	}
+
 	private void fillFieldInfos(final Map<String, Set<FieldInfoStatus>> field_infos,
 			final List<LeafReaderContext> leaves) {
 		if (field_infos == null || leaves == null || leaves.isEmpty())
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.search.query.AbstractFieldQuery;
+import com.qwazr.search.query.AbstractQuery;
+import com.qwazr.search.query.BooleanQuery;
+import com.qwazr.search.query.LongExactQuery;
+import com.qwazr.search.query.LongRangeQuery;
+import com.qwazr.server.ServerException;
+import com.qwazr.utils.IOUtils;
+
+import javax.ws.rs.core.Response;
+import java.io.Closeable;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The runtime part of an index template.
+ * The partitions are regular indexes of the schema, named after the template and their creation time (UTC):
+ * template-yyyyMMddHHmmssSSS. They are listed, deleted and backed up like any other index.
+ */
+class IndexTemplate implements Closeable {
+
+	private final static char PARTITION_SEPARATOR = '-';
+
+	private final static DateTimeFormatter PARTITION_TIME_FORMAT =
+			DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS").withZone(ZoneOffset.UTC);
+
+	private final static int PARTITION_TIME_LENGTH = 17;
+
+	private final static int MAX_CACHED_SEARCHES = 16;
+
+	private final String templateName;
+	private final SchemaInstance schemaInstance;
+	private final ReentrantLock rolloverLock;
+	private final LinkedHashMap<String, PartitionSearch> partitionSearches;
+	private final ConcurrentHashMap<String, PartitionRange> partitionRanges;
+
+	private volatile IndexTemplateDefinition definition;
+	private volatile String currentPartition;
+
+	IndexTemplate(final String templateName, final IndexTemplateDefinition definition,
+			final SchemaInstance schemaInstance) {
+		this.templateName = templateName;
+		this.schemaInstance = schemaInstance;
+		this.rolloverLock = new ReentrantLock();
+		this.partitionSearches = new LinkedHashMap<>(16, 0.75f, true);
+		this.partitionRanges = new ConcurrentHashMap<>();
+		this.definition = definition;
+	}
+
+	IndexTemplateDefinition getDefinition() {
+		return definition;
+	}
+
+	/**
+	 * The new definition applies to the partitions created by the next rollover
+	 */
+	void setDefinition(final IndexTemplateDefinition definition) {
+		this.definition = definition;
+	}
+
+	private String partitionName(final long time) {
+		return templateName + PARTITION_SEPARATOR + PARTITION_TIME_FORMAT.format(Instant.ofEpochMilli(time));
+	}
+
+	/**
+	 * @return the creation time of the partition, or null if the index is not a partition of this template
+	 */
+	private Long partitionTime(final String indexName) {
+		if (indexName.length() != templateName.length() + 1 + PARTITION_TIME_LENGTH)
+			return null;
+		if (!indexName.startsWith(templateName) || indexName.charAt(templateName.length()) != PARTITION_SEPARATOR)
+			return null;
+		try {
+			return Instant.from(PARTITION_TIME_FORMAT.parse(indexName.substring(templateName.length() + 1)))
+					.toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the partitions sorted by creation time
+	 */
+	private TreeSet<String> getPartitions() {
+		final TreeSet<String> partitions = new TreeSet<>();
+		for (String indexName : schemaInstance.nameSet())
+			if (partitionTime(indexName) != null)
+				partitions.add(indexName);
+		return partitions;
+	}
+
+	private String createPartition() throws Exception {
+		final Set<String> indexNames = schemaInstance.nameSet();
+		long time = System.currentTimeMillis();
+		String partition = partitionName(time);
+		while (indexNames.contains(partition))
+			partition = partitionName(++time);
+		final IndexTemplateDefinition def = definition;
+		final IndexInstance indexInstance = schemaInstance.createUpdate(partition,
+				def.settings == null ? IndexSettingsDefinition.of().build() : def.settings);
+		if (def.fields != null && !def.fields.isEmpty())
+			indexInstance.setFields(def.fields);
+		partitionRanges.remove(partition);
+		currentPartition = partition;
+		return partition;
+	}
+
+	private boolean isRolloverRequired(final String partition) throws Exception {
+		final IndexTemplateDefinition def = definition;
+		if (def.maxAgeMs != null && def.maxAgeMs > 0) {
+			final Long time = partitionTime(partition);
+			if (time != null && System.currentTimeMillis() - time >= def.maxAgeMs)
+				return true;
+		}
+		if ((def.maxDocs == null || def.maxDocs <= 0) && (def.maxSizeMb == null || def.maxSizeMb <= 0))
+			return false;
+		return schemaInstance.use(partition, indexInstance -> {
+			if (def.maxDocs != null && def.maxDocs > 0 && indexInstance.getNumDocs() >= def.maxDocs)
+				return true;
+			return def.maxSizeMb != null && def.maxSizeMb > 0 &&
+					indexInstance.getCommitSize() >= (long) (def.maxSizeMb * 1024 * 1024);
+		});
+	}
+
+	/**
+	 * @return the acquired partition which receives the documents, after a rollover if required
+	 */
+	private IndexInstance acquireWritePartition() throws Exception {
+		rolloverLock.lock();
+		try {
+			String partition = currentPartition;
+			if (partition == null || !schemaInstance.nameSet().contains(partition)) {
+				final TreeSet<String> partitions = getPartitions();
+				partition = partitions.isEmpty() ? null : partitions.last();
+			}
+			if (partition == null || isRolloverRequired(partition))
+				partition = createPartition();
+			currentPartition = partition;
+			return schemaInstance.acquire(partition);
+		} finally {
+			rolloverLock.unlock();
+		}
+	}
+
+	Integer postMappedDocuments(final PostDefinition.Documents post) throws Exception {
+		final IndexInstance indexInstance = acquireWritePartition();
+		try {
+			return indexInstance.postMappedDocuments(post);
+		} finally {
+			indexInstance.release();
+		}
+	}
+
+	IndexTemplateStatus rollover() throws Exception {
+		rolloverLock.lock();
+		try {
+			createPartition();
+		} finally {
+			rolloverLock.unlock();
+		}
+		return getStatus();
+	}
+
+	IndexTemplateStatus getStatus() throws Exception {
+		final IndexTemplateDefinition def = definition;
+		final List<IndexTemplateStatus.Partition> partitions = new ArrayList<>();
+		for (String partition : getPartitions()) {
+			partitions.add(schemaInstance.use(partition, indexInstance -> {
+				final long[] range = indexInstance.getLongPointRange(def.timestampField);
+				return new IndexTemplateStatus.Partition(partition, new Date(partitionTime(partition)),
+						indexInstance.getNumDocs(), indexInstance.getCommitSize(), range == null ? null : range[0],
+						range == null ? null : range[1]);
+			}));
+		}
+		return new IndexTemplateStatus(def, currentPartition, partitions);
+	}
+
+	/**
+	 * Extract the time range from the query. Only the top level clauses are used: a range or an exact query on the
+	 * timestamp field, or the intersection of the MUST and FILTER clauses of a boolean query.
+	 *
+	 * @return the lower and upper bounds, or null if the query is not bounded in time
+	 */
+	static long[] getTimeRange(final AbstractQuery query, final String timestampField) {
+		if (query instanceof AbstractFieldQuery) {
+			final AbstractFieldQuery fieldQuery = (AbstractFieldQuery) query;
+			if (!timestampField.equals(fieldQuery.field) && !timestampField.equals(fieldQuery.genericField))
+				return null;
+			if (query instanceof LongRangeQuery) {
+				final LongRangeQuery rangeQuery = (LongRangeQuery) query;
+				return new long[] { rangeQuery.lower_value, rangeQuery.upper_value };
+			}
+			if (query instanceof LongExactQuery) {
+				final LongExactQuery exactQuery = (LongExactQuery) query;
+				return new long[] { exactQuery.value, exactQuery.value };
+			}
+			return null;
+		}
+		if (!(query instanceof BooleanQuery))
+			return null;
+		final BooleanQuery booleanQuery = (BooleanQuery) query;
+		if (booleanQuery.clauses == null)
+			return null;
+		long[] range = null;
+		for (BooleanQuery.BooleanClause clause : booleanQuery.clauses) {
+			if (clause.occur != BooleanQuery.Occur.must && clause.occur != BooleanQuery.Occur.filter)
+				continue;
+			final long[] clauseRange = getTimeRange(clause.query, timestampField);
+			if (clauseRange == null)
+				continue;
+			range = range == null ?
+					clauseRange :
+					new long[] { Math.max(range[0], clauseRange[0]), Math.min(range[1], clauseRange[1]) };
+		}
+		return range;
+	}
+
+	/**
+	 * @return the partitions which may contain documents matching the time range
+	 */
+	private List<String> selectPartitions(final long[] timeRange) throws Exception {
+		final TreeSet<String> partitions = getPartitions();
+		if (partitions.isEmpty())
+			throw new ServerException(Response.Status.NOT_FOUND, "The template has no partition: " + templateName);
+		final String timestampField = definition.timestampField;
+		final List<String> selected = new ArrayList<>();
+		partitionRanges.keySet().retainAll(partitions);
+		for (String partition : partitions) {
+			final long[] range = getPartitionRange(partition, timestampField);
+			if (range == null)
+				continue;
+			if (timeRange == null || (range[0] <= timeRange[1] && range[1] >= timeRange[0]))
+				selected.add(partition);
+		}
+		// Nothing matches: the newest partition still builds a consistent empty result
+		if (selected.isEmpty())
+			selected.add(partitions.last());
+		return selected;
+	}
+
+	/**
+	 * The range of a partition is read once per commit: the partitions which do not match the query are not opened.
+	 */
+	private long[] getPartitionRange(final String partition, final String timestampField) throws Exception {
+		// Read before the range: a commit in between is detected by the next search
+		final long generation = schemaInstance.getLastCommitGeneration(partition);
+		final PartitionRange cached = partitionRanges.get(partition);
+		if (cached != null && cached.generation == generation && cached.timestampField.equals(timestampField))
+			return cached.range;
+		final long[] range = schemaInstance.use(partition, index -> index.getLongPointRange(timestampField));
+		partitionRanges.put(partition, new PartitionRange(generation, timestampField, range));
+		return range;
+	}
+
+	ResultDefinition.WithMap search(final QueryDefinition queryDefinition) throws Exception {
+		final List<String> partitions =
+				selectPartitions(getTimeRange(queryDefinition.query, definition.timestampField));
+		if (partitions.size() == 1)
+			return schemaInstance.use(partitions.get(0),
+					indexInstance -> indexInstance.query(null, context -> context.searchMap(queryDefinition)));
+		final List<IndexInstance> indexInstances = new ArrayList<>(partitions.size());
+		try {
+			for (String partition : partitions)
+				indexInstances.add(schemaInstance.acquire(partition));
+			final PartitionSearch partitionSearch = acquirePartitionSearch(partitions, indexInstances);
+			try {
+				return partitionSearch.multiSearchInstance.searchMap(queryDefinition);
+			} finally {
+				releasePartitionSearch(partitionSearch);
+			}
+		} finally {
+			indexInstances.forEach(IndexInstance::release);
+		}
+	}
+
+	/**
+	 * The returned search is in use until releasePartitionSearch is called: it is not closed meanwhile.
+	 */
+	private PartitionSearch acquirePartitionSearch(final List<String> partitions,
+			final List<IndexInstance> indexInstances) {
+		final String key = String.join(",", partitions);
+		synchronized (partitionSearches) {
+			PartitionSearch partitionSearch = partitionSearches.get(key);
+			if (partitionSearch != null && !partitionSearch.isSame(indexInstances)) {
+				// The instances have been reopened: the cached readers are outdated
+				partitionSearches.remove(key);
+				partitionSearch.evict();
+				partitionSearch = null;
+			}
+			if (partitionSearch == null) {
+				evictUnusedPartitionSearches();
+				partitionSearch = new PartitionSearch(schemaInstance.newMultiSearchInstance(), indexInstances);
+				partitionSearches.put(key, partitionSearch);
+			}
+			partitionSearch.references++;
+			return partitionSearch;
+		}
+	}
+
+	private void releasePartitionSearch(final PartitionSearch partitionSearch) {
+		synchronized (partitionSearches) {
+			if (--partitionSearch.references == 0 && partitionSearch.evicted)
+				partitionSearch.close();
+		}
+	}
+
+	/**
+	 * Evict the least recently used searches which are not in use, until there is room for a new one.
+	 * If every search is in use, the cache temporarily grows beyond MAX_CACHED_SEARCHES.
+	 */
+	private void evictUnusedPartitionSearches() {
+		final Iterator<PartitionSearch> iterator = partitionSearches.values().iterator();
+		while (partitionSearches.size() >= MAX_CACHED_SEARCHES && iterator.hasNext()) {
+			final PartitionSearch partitionSearch = iterator.next();
+			if (partitionSearch.references > 0)
+				continue;
+			iterator.remove();
+			partitionSearch.evict();
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (partitionSearches) {
+			partitionSearches.forEach((k, search) -> search.evict());
+			partitionSearches.clear();
+		}
+	}
+
+	private static class PartitionRange {
+
+		private final long generation;
+		private final String timestampField;
+		private final long[] range;
+
+		private PartitionRange(final long generation, final String timestampField, final long[] range) {
+			this.generation = generation;
+			this.timestampField = timestampField;
+			this.range = range;
+		}
+	}
+
+	/**
+	 * The references and the eviction flag are guarded by the partitionSearches lock.
+	 */
+	private static class PartitionSearch implements Closeable {
+
+		private final MultiSearchInstance multiSearchInstance;
+		private final List<IndexInstance> indexInstances;
+
+		private int references;
+		private boolean evicted;
+
+		private PartitionSearch(final MultiSearchInstance multiSearchInstance,
+				final List<IndexInstance> indexInstances) {
+			this.multiSearchInstance = multiSearchInstance;
+			this.indexInstances = indexInstances;
+			for (IndexInstance indexInstance : indexInstances) {
+				multiSearchInstance.register(indexInstance);
+				indexInstance.register(multiSearchInstance);
+			}
+		}
+
+		private boolean isSame(final List<IndexInstance> instances) {
+			if (instances.size() != indexInstances.size())
+				return false;
+			for (int i = 0; i < instances.size(); i++)
+				if (instances.get(i) != indexInstances.get(i))
+					return false;
+			return true;
+		}
+
+		/**
+		 * Removed from the cache: closed now if not in use, otherwise by the last release.
+		 */
+		private void evict() {
+			evicted = true;
+			if (references == 0)
+				close();
+		}
+
+		@Override
+		public void close() {
+			for (IndexInstance indexInstance : indexInstances)
+				indexInstance.unregister(multiSearchInstance);
+			IOUtils.closeQuietly(multiSearchInstance);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.qwazr.search.field.FieldDefinition;
+
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * An index template creates time partitioned indexes.
+ * The documents are written in the current partition, a new partition is created when the current one is too old,
+ * too large, or contains too many documents.
+ * The timestamp field must be a LongPoint (or an indexed LONG smart field),
+ * its min and max values are used to skip the partitions which cannot match the range of a query.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class IndexTemplateDefinition {
+
+	@JsonProperty("timestamp_field")
+	final public String timestampField;
+
+	/**
+	 * Rollover when the current partition is older than this duration (in milliseconds)
+	 */
+	@JsonProperty("max_age_ms")
+	final public Long maxAgeMs;
+
+	/**
+	 * Rollover when the current partition contains more documents
+	 */
+	@JsonProperty("max_docs")
+	final public Long maxDocs;
+
+	/**
+	 * Rollover when the size of the last commit of the current partition is larger
+	 */
+	@JsonProperty("max_size_mb")
+	final public Double maxSizeMb;
+
+	/**
+	 * The settings of the partitions
+	 */
+	final public IndexSettingsDefinition settings;
+
+	/**
+	 * The fields of the partitions
+	 */
+	final public LinkedHashMap<String, FieldDefinition> fields;
+
+	@JsonCreator
+	private IndexTemplateDefinition(@JsonProperty("timestamp_field") final String timestampField,
+			@JsonProperty("max_age_ms") final Long maxAgeMs, @JsonProperty("max_docs") final Long maxDocs,
+			@JsonProperty("max_size_mb") final Double maxSizeMb,
+			@JsonProperty("settings") final IndexSettingsDefinition settings,
+			@JsonProperty("fields") final LinkedHashMap<String, FieldDefinition> fields) {
+		this.timestampField = timestampField;
+		this.maxAgeMs = maxAgeMs;
+		this.maxDocs = maxDocs;
+		this.maxSizeMb = maxSizeMb;
+		this.settings = settings;
+		this.fields = fields;
+	}
+
+	private IndexTemplateDefinition(final Builder builder) {
+		this(builder.timestampField, builder.maxAgeMs, builder.maxDocs, builder.maxSizeMb, builder.settings,
+				builder.fields);
+	}
+
+	@Override
+	public boolean equals(final Object e) {
+		if (e == null || !(e instanceof IndexTemplateDefinition))
+			return false;
+		final IndexTemplateDefinition def = (IndexTemplateDefinition) e;
+		if (!Objects.equals(timestampField, def.timestampField))
+			return false;
+		if (!Objects.equals(maxAgeMs, def.maxAgeMs))
+			return false;
+		if (!Objects.equals(maxDocs, def.maxDocs))
+			return false;
+		if (!Objects.equals(maxSizeMb, def.maxSizeMb))
+			return false;
+		if (!Objects.equals(settings, def.settings))
+			return false;
+		if (!Objects.equals(fields, def.fields))
+			return false;
+		return true;
+	}
+
+	final static TypeReference<LinkedHashMap<String, IndexTemplateDefinition>> mapStringTemplateTypeRef =
+			new TypeReference<LinkedHashMap<String, IndexTemplateDefinition>>() {
+			};
+
+	public static Builder of() {
+		return new Builder();
+	}
+
+	public static class Builder {
+
+		public String timestampField;
+		public Long maxAgeMs;
+		public Long maxDocs;
+		public Double maxSizeMb;
+		public IndexSettingsDefinition settings;
+		public LinkedHashMap<String, FieldDefinition> fields;
+
+		public Builder timestampField(String timestampField) {
+			this.timestampField = timestampField;
+			return this;
+		}
+
+		public Builder maxAgeMs(Long maxAgeMs) {
+			this.maxAgeMs = maxAgeMs;
+			return this;
+		}
+
+		public Builder maxDocs(Long maxDocs) {
+			this.maxDocs = maxDocs;
+			return this;
+		}
+
+		public Builder maxSizeMb(Double maxSizeMb) {
+			this.maxSizeMb = maxSizeMb;
+			return this;
+		}
+
+		public Builder settings(IndexSettingsDefinition settings) {
+			this.settings = settings;
+			return this;
+		}
+
+		public Builder field(String name, FieldDefinition field) {
+			if (fields == null)
+				fields = new LinkedHashMap<>();
+			fields.put(name, field);
+			return this;
+		}
+
+		public IndexTemplateDefinition build() {
+			return new IndexTemplateDefinition(this);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The partitions of an index template, from the oldest to the current one.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class IndexTemplateStatus {
+
+	final public IndexTemplateDefinition definition;
+	final public String current_partition;
+	final public List<Partition> partitions;
+
+	@JsonCreator
+	IndexTemplateStatus(@JsonProperty("definition") IndexTemplateDefinition definition,
+			@JsonProperty("current_partition") String current_partition,
+			@JsonProperty("partitions") List<Partition> partitions) {
+		this.definition = definition;
+		this.current_partition = current_partition;
+		this.partitions = partitions;
+	}
+
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	public static class Partition {
+
+		final public String name;
+		final public Date created;
+		final public Long num_docs;
+		final public Long size_bytes;
+		final public Long min_timestamp;
+		final public Long max_timestamp;
+
+		@JsonCreator
+		Partition(@JsonProperty("name") String name, @JsonProperty("created") Date created,
+				@JsonProperty("num_docs") Long num_docs, @JsonProperty("size_bytes") Long size_bytes,
+				@JsonProperty("min_timestamp") Long min_timestamp,
+				@JsonProperty("max_timestamp") Long max_timestamp) {
+			this.name = name;
+			this.created = created;
+			this.num_docs = num_docs;
+			this.size_bytes = size_bytes;
+			this.min_timestamp = min_timestamp;
+			this.max_timestamp = max_timestamp;
+		}
+	}
+}
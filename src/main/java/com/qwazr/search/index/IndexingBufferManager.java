@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.AlreadyClosedException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single indexing memory budget for all the IndexWriters of the node.
+ * <p>
+ * The RAM used by the writers is checked periodically. When the total exceeds the budget,
+ * the writers with the largest buffers are flushed until the total is back under the budget.
+ * As the budget is shared, an index which receives a large batch can build large segments,
+ * while the idle indexes do not hold any memory.
+ * <p>
+ * The writers of the indexes which do not set ram_buffer_size get the whole budget as their RAM buffer: a busy writer
+ * is only flushed by Lucene once it holds the whole budget, or by the check when the total exceeds the budget.
+ * Between two checks, the total may exceed the budget by what the writers index during the check interval.
+ * <p>
+ * The budget can be set using the QWAZR_INDEX_BUFFER_MB system property or environment variable.
+ * The default budget is 10% of the maximum heap size.
+ */
+final class IndexingBufferManager implements Closeable {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(IndexingBufferManager.class);
+
+	final static String QWAZR_INDEX_BUFFER_MB = "QWAZR_INDEX_BUFFER_MB";
+
+	final static long DEFAULT_CHECK_INTERVAL_MS = 1000;
+
+	private final long budgetBytes;
+	private final Map<IndexWriter, String> writers;
+	private final ScheduledExecutorService scheduler;
+
+	private final LongAdder flushes;
+	private final LongAdder flushedBytes;
+
+	IndexingBufferManager(final long budgetBytes, final long checkIntervalMs) {
+		this.budgetBytes = budgetBytes;
+		this.writers = new ConcurrentHashMap<>();
+		this.flushes = new LongAdder();
+		this.flushedBytes = new LongAdder();
+		if (checkIntervalMs > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				final Thread thread = new Thread(runnable, "Indexing buffer controller");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleWithFixedDelay(this::checkQuietly, checkIntervalMs, checkIntervalMs,
+					TimeUnit.MILLISECONDS);
+		} else
+			scheduler = null;
+	}
+
+	static long getDefaultBudgetBytes() {
+		String value = System.getProperty(QWAZR_INDEX_BUFFER_MB);
+		if (value == null)
+			value = System.getenv(QWAZR_INDEX_BUFFER_MB);
+		if (value != null) {
+			try {
+				return (long) (Double.parseDouble(value) * 1024 * 1024);
+			} catch (NumberFormatException e) {
+				LOGGER.warning(() -> "Wrong value for " + QWAZR_INDEX_BUFFER_MB + ": " + value);
+			}
+		}
+		return Runtime.getRuntime().maxMemory() / 10;
+	}
+
+	/**
+	 * The RAM buffer of a writer. If the index does not set it, the writer may use the whole budget.
+	 */
+	double getRamBufferSizeMB(final Double ramBufferSize) {
+		return ramBufferSize != null ? ramBufferSize : Math.max(1, budgetBytes / (1024 * 1024));
+	}
+
+	void register(final String indexName, final IndexWriter indexWriter) {
+		writers.put(indexWriter, indexName);
+	}
+
+	void unregister(final IndexWriter indexWriter) {
+		writers.remove(indexWriter);
+	}
+
+	long getUsedBytes() {
+		long used = 0;
+		for (IndexWriter indexWriter : writers.keySet())
+			used += ramBytesUsed(indexWriter);
+		return used;
+	}
+
+	private static long ramBytesUsed(final IndexWriter indexWriter) {
+		try {
+			return indexWriter.ramBytesUsed();
+		} catch (AlreadyClosedException e) {
+			return 0;
+		}
+	}
+
+	private void checkQuietly() {
+		try {
+			check();
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, e, () -> "Indexing buffer check failed");
+		}
+	}
+
+	/**
+	 * Flush the largest writers until the total RAM used is under the budget
+	 */
+	synchronized void check() {
+		final List<Map.Entry<IndexWriter, Long>> usages = new ArrayList<>(writers.size());
+		long used = 0;
+		for (IndexWriter indexWriter : writers.keySet()) {
+			final long bytes = ramBytesUsed(indexWriter);
+			if (bytes == 0)
+				continue;
+			usages.add(new AbstractMap.SimpleImmutableEntry<>(indexWriter, bytes));
+			used += bytes;
+		}
+		if (used <= budgetBytes)
+			return;
+		usages.sort((u1, u2) -> Long.compare(u2.getValue(), u1.getValue()));
+		for (Map.Entry<IndexWriter, Long> usage : usages) {
+			if (used <= budgetBytes)
+				return;
+			final IndexWriter indexWriter = usage.getKey();
+			try {
+				indexWriter.flush();
+				flushes.increment();
+				flushedBytes.add(usage.getValue());
+				used -= usage.getValue();
+			} catch (AlreadyClosedException e) {
+				// The index has been closed meanwhile
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, e, () -> "Cannot flush the index " + writers.get(indexWriter));
+			}
+		}
+	}
+
+	IndexingBufferStatus getStatus() {
+		return new IndexingBufferStatus(budgetBytes, getUsedBytes(), writers.size(), flushes.sum(),
+				flushedBytes.sum());
+	}
+
+	@Override
+	public void close() {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The usage of the indexing memory budget shared by all the writers of the node.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class IndexingBufferStatus {
+
+	final public Long budget_bytes;
+	final public Long used_bytes;
+	final public Integer writers;
+	final public Long flushes;
+	final public Long flushed_bytes;
+
+	@JsonCreator
+	IndexingBufferStatus(@JsonProperty("budget_bytes") Long budget_bytes, @JsonProperty("used_bytes") Long used_bytes,
+			@JsonProperty("writers") Integer writers, @JsonProperty("flushes") Long flushes,
+			@JsonProperty("flushed_bytes") Long flushed_bytes) {
+		this.budget_bytes = budget_bytes;
+		this.used_bytes = used_bytes;
+		this.writers = writers;
+		this.flushes = flushes;
+		this.flushed_bytes = flushed_bytes;
+	}
+}
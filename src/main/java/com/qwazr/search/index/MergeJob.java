@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+import org.apache.lucene.index.IndexWriter;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A force_merge or an expunge_deletes running in the background.
+ * The job waits for the merges, then commits.
+ */
+final class MergeJob implements Runnable {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(MergeJob.class);
+
+	enum Type {
+		force_merge, expunge_deletes
+	}
+
+	enum State {
+		running, done, failed, cancelled
+	}
+
+	private final String indexName;
+	private final Type type;
+	private final Integer maxSegments;
+	private final boolean auto;
+	private final IndexWriter indexWriter;
+	private final MergeThrottledDirectory directory;
+	private final Commit commit;
+	private final Date start;
+	private final long startBytes;
+	private final int deletedDocsBefore;
+
+	private volatile State state;
+	private volatile Date end;
+	private volatile Long endBytes;
+	private volatile Integer deletedDocsAfter;
+	private volatile String error;
+
+	MergeJob(final String indexName, final Type type, final Integer maxSegments, final boolean auto,
+			final IndexWriter indexWriter, final MergeThrottledDirectory directory,
+			final Commit commit) {
+		this.indexName = indexName;
+		this.type = type;
+		this.maxSegments = type == Type.force_merge ? maxSegments == null ? 1 : maxSegments : null;
+		if (this.maxSegments != null && this.maxSegments < 1)
+			throw new IllegalArgumentException("max_segments must be greater than 0: " + maxSegments);
+		this.auto = auto;
+		this.indexWriter = indexWriter;
+		this.directory = directory;
+		this.commit = commit;
+		this.start = new Date();
+		this.startBytes = directory == null ? 0 : directory.getMergedBytes();
+		this.deletedDocsBefore = getDeletedDocs(indexWriter);
+		this.state = State.running;
+	}
+
+	static int getDeletedDocs(final IndexWriter indexWriter) {
+		return indexWriter.maxDoc() - indexWriter.numDocs();
+	}
+
+	@Override
+	public void run() {
+		try {
+			switch (type) {
+			case force_merge:
+				indexWriter.forceMerge(maxSegments, true);
+				break;
+			case expunge_deletes:
+				indexWriter.forceMergeDeletes(true);
+				break;
+			}
+			if (state == State.running) {
+				commit.commit();
+				state = State.done;
+			}
+		} catch (IOException | RuntimeException e) {
+			if (state != State.cancelled) {
+				LOGGER.log(Level.WARNING, e, () -> type + " failed: " + indexName);
+				error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+				state = State.failed;
+			}
+		} finally {
+			if (directory != null) {
+				directory.resumeMerges();
+				endBytes = directory.getMergedBytes();
+			}
+			deletedDocsAfter = getDeletedDocs(indexWriter);
+			end = new Date();
+		}
+	}
+
+	boolean isRunning() {
+		return state == State.running;
+	}
+
+	boolean isAuto() {
+		return auto;
+	}
+
+	/**
+	 * Abort the running merges of the index. The already merged segments are kept.
+	 */
+	void cancel() {
+		if (state != State.running)
+			return;
+		state = State.cancelled;
+		if (directory != null)
+			directory.abortMerges("The " + type + " has been cancelled: " + indexName);
+	}
+
+	MergeStatus getStatus() {
+		final State currentState = state;
+		final Long currentBytes = endBytes;
+		final long mergedBytes = directory == null ?
+				0 :
+				(currentBytes == null ? directory.getMergedBytes() : currentBytes) - startBytes;
+		return new MergeStatus(type.name(), currentState.name(), auto ? Boolean.TRUE : null, start, end, maxSegments,
+				mergedBytes == 0 ? null : mergedBytes,
+				currentState == State.running ? indexWriter.getMergingSegments().size() : null, deletedDocsBefore,
+				deletedDocsAfter, error);
+	}
+
+	@FunctionalInterface
+	interface Commit {
+		void commit() throws IOException;
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RateLimiter;
+import org.apache.lucene.util.ThreadInterruptedException;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * The merge service of the node.
+ * <p>
+ * The merges of every index write through a MergeThrottledDirectory sharing one global rate (MB/s).
+ * The heavy merges can't starve the I/O of the queries, whatever the number of merging indexes.
+ * <p>
+ * The rate can be set using the QWAZR_INDEX_MERGE_MB_PER_SEC system property or environment variable,
+ * and changed at runtime. 0 means unlimited (the default).
+ */
+final class MergeService {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(MergeService.class);
+
+	final static String QWAZR_INDEX_MERGE_MB_PER_SEC = "QWAZR_INDEX_MERGE_MB_PER_SEC";
+
+	private final Map<String, MergeJob> jobs;
+	private final LongAdder mergedBytes;
+	private final LongAdder pausedNanos;
+
+	private volatile double mbPerSec;
+	private long nextNs;
+
+	MergeService(final double mbPerSec) {
+		this.jobs = new ConcurrentHashMap<>();
+		this.mergedBytes = new LongAdder();
+		this.pausedNanos = new LongAdder();
+		this.mbPerSec = mbPerSec;
+	}
+
+	static double getDefaultMbPerSec() {
+		String value = System.getProperty(QWAZR_INDEX_MERGE_MB_PER_SEC);
+		if (value == null)
+			value = System.getenv(QWAZR_INDEX_MERGE_MB_PER_SEC);
+		if (value != null) {
+			try {
+				return Double.parseDouble(value);
+			} catch (NumberFormatException e) {
+				LOGGER.warning(() -> "Wrong value for " + QWAZR_INDEX_MERGE_MB_PER_SEC + ": " + value);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Wrap a disk directory: the merged files are written at the rate of the service
+	 */
+	Directory throttle(final Directory directory) {
+		return new MergeThrottledDirectory(directory, this);
+	}
+
+	double getMbPerSec() {
+		return mbPerSec;
+	}
+
+	void setMbPerSec(final double mbPerSec) {
+		if (mbPerSec < 0)
+			throw new IllegalArgumentException("The rate can't be negative: " + mbPerSec);
+		this.mbPerSec = mbPerSec;
+	}
+
+	/**
+	 * The number of bytes between two calls of pause. Without rate, pause is still called to check the cancellation.
+	 */
+	long getMinPauseCheckBytes() {
+		final double rate = mbPerSec;
+		if (rate <= 0)
+			return 64 * 1024;
+		// Check the rate every 5ms
+		return Math.max(4096, Math.min(1024 * 1024, (long) (rate * 1024 * 1024 * 0.005)));
+	}
+
+	/**
+	 * Called by the merging threads of all indexes. Every thread reserves the time required to write its bytes
+	 * at the global rate, then waits until the reserved slot.
+	 *
+	 * @return the paused time in nanoseconds
+	 */
+	long pause(final long bytes) {
+		mergedBytes.add(bytes);
+		final double rate = mbPerSec;
+		if (rate <= 0)
+			return 0;
+		final long intervalNs = (long) (bytes * 1_000_000_000d / (rate * 1024 * 1024));
+		final long now = System.nanoTime();
+		final long targetNs;
+		synchronized (this) {
+			// No credit for the idle time
+			nextNs = Math.max(nextNs, now) + intervalNs;
+			targetNs = nextNs - intervalNs;
+		}
+		final long pauseNs = targetNs - now;
+		if (pauseNs <= 0)
+			return 0;
+		try {
+			Thread.sleep(pauseNs / 1_000_000, (int) (pauseNs % 1_000_000));
+		} catch (InterruptedException e) {
+			throw new ThreadInterruptedException(e);
+		}
+		pausedNanos.add(pauseNs);
+		return pauseNs;
+	}
+
+	void register(final String indexName, final MergeJob job) {
+		jobs.put(indexName, job);
+	}
+
+	void unregister(final String indexName, final MergeJob job) {
+		jobs.remove(indexName, job);
+	}
+
+	MergeServiceStatus getStatus() {
+		final Map<String, MergeStatus> running = new TreeMap<>();
+		jobs.forEach((indexName, job) -> {
+			if (job.isRunning())
+				running.put(indexName, job.getStatus());
+		});
+		return new MergeServiceStatus(mbPerSec, mergedBytes.sum(), pausedNanos.sum() / 1_000_000, running);
+	}
+
+	/**
+	 * The rate limiter of one directory: checks the cancellation of the jobs of the index,
+	 * then waits for the global rate.
+	 */
+	static final class DirectoryRateLimiter extends RateLimiter {
+
+		private final MergeService mergeService;
+		private final LongAdder directoryBytes;
+		private volatile String abortReason;
+
+		DirectoryRateLimiter(final MergeService mergeService) {
+			this.mergeService = mergeService;
+			this.directoryBytes = new LongAdder();
+		}
+
+		@Override
+		public void setMBPerSec(final double mbPerSec) {
+			mergeService.setMbPerSec(mbPerSec);
+		}
+
+		@Override
+		public double getMBPerSec() {
+			return mergeService.getMbPerSec();
+		}
+
+		@Override
+		public long pause(final long bytes) throws MergePolicy.MergeAbortedException {
+			final String reason = abortReason;
+			if (reason != null)
+				throw new MergePolicy.MergeAbortedException(reason);
+			directoryBytes.add(bytes);
+			return mergeService.pause(bytes);
+		}
+
+		@Override
+		public long getMinPauseCheckBytes() {
+			return mergeService.getMinPauseCheckBytes();
+		}
+
+		long getBytes() {
+			return directoryBytes.sum();
+		}
+
+		/**
+		 * @param reason the reason of the abort, or null to let the merges run again
+		 */
+		void setAbort(final String reason) {
+			abortReason = reason;
+		}
+	}
+}
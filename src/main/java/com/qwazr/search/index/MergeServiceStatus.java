@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * The global merge rate of the node, and the running merge jobs.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class MergeServiceStatus {
+
+	final public Double rate_mb_per_sec;
+	final public Long merged_bytes;
+	final public Long paused_ms;
+	final public Map<String, MergeStatus> jobs;
+
+	@JsonCreator
+	MergeServiceStatus(@JsonProperty("rate_mb_per_sec") Double rate_mb_per_sec,
+			@JsonProperty("merged_bytes") Long merged_bytes, @JsonProperty("paused_ms") Long paused_ms,
+			@JsonProperty("jobs") Map<String, MergeStatus> jobs) {
+		this.rate_mb_per_sec = rate_mb_per_sec;
+		this.merged_bytes = merged_bytes;
+		this.paused_ms = paused_ms;
+		this.jobs = jobs;
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Date;
+
+/**
+ * The status of a force_merge or expunge_deletes job, running (or done) in the background.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class MergeStatus {
+
+	final public String type;
+	final public String state;
+	final public Boolean auto;
+	final public Date start;
+	final public Date end;
+	final public Integer max_segments;
+	final public Long merged_bytes;
+	final public Integer merging_segments;
+	final public Integer deleted_docs_before;
+	final public Integer deleted_docs_after;
+	final public String error;
+
+	@JsonCreator
+	MergeStatus(@JsonProperty("type") String type, @JsonProperty("state") String state,
+			@JsonProperty("auto") Boolean auto, @JsonProperty("start") Date start, @JsonProperty("end") Date end,
+			@JsonProperty("max_segments") Integer max_segments, @JsonProperty("merged_bytes") Long merged_bytes,
+			@JsonProperty("merging_segments") Integer merging_segments,
+			@JsonProperty("deleted_docs_before") Integer deleted_docs_before,
+			@JsonProperty("deleted_docs_after") Integer deleted_docs_after, @JsonProperty("error") String error) {
+		this.type = type;
+		this.state = state;
+		this.auto = auto;
+		this.start = start;
+		this.end = end;
+		this.max_segments = max_segments;
+		this.merged_bytes = merged_bytes;
+		this.merging_segments = merging_segments;
+		this.deleted_docs_before = deleted_docs_before;
+		this.deleted_docs_after = deleted_docs_after;
+		this.error = error;
+	}
+}
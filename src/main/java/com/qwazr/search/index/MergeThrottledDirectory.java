@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RateLimitedIndexOutput;
+
+import java.io.IOException;
+
+/**
+ * Throttles the files written by the merges using the global rate of the MergeService.
+ * The merges of this directory can also be aborted: used to cancel a force merge.
+ */
+final class MergeThrottledDirectory extends FilterDirectory {
+
+	private final MergeService.DirectoryRateLimiter rateLimiter;
+
+	MergeThrottledDirectory(final Directory directory, final MergeService mergeService) {
+		super(directory);
+		this.rateLimiter = new MergeService.DirectoryRateLimiter(mergeService);
+	}
+
+	@Override
+	public IndexOutput createOutput(final String name, final IOContext context) throws IOException {
+		final IndexOutput output = in.createOutput(name, context);
+		return context.context == IOContext.Context.MERGE ? new RateLimitedIndexOutput(rateLimiter, output) : output;
+	}
+
+	/**
+	 * @return the number of bytes written by the merges of this directory
+	 */
+	long getMergedBytes() {
+		return rateLimiter.getBytes();
+	}
+
+	void abortMerges(final String reason) {
+		rateLimiter.setAbort(reason);
+	}
+
+	void resumeMerges() {
+		rateLimiter.setAbort(null);
+	}
+
+	/**
+	 * Find the MergeThrottledDirectory wrapped by the given directory (ie. by a NRTCachingDirectory)
+	 *
+	 * @return the MergeThrottledDirectory or null if the merges of this directory are not throttled
+	 */
+	static MergeThrottledDirectory find(Directory directory) {
+		while (directory instanceof FilterDirectory) {
+			if (directory instanceof MergeThrottledDirectory)
+				return (MergeThrottledDirectory) directory;
+			directory = ((FilterDirectory) directory).getDelegate();
+		}
+		return null;
+	}
+}
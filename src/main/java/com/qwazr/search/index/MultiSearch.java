@@ -54,6 +54,10 @@ class MultiSearch implements Closeable, AutoCloseable {
 
 	private synchronized void doClose() {
 		IOUtils.close(multiReader);
+		if (context.queryAnalyzers != null)
+			context.queryAnalyzers.close();
+		if (context.indexAnalyzers != null)
+			context.indexAnalyzers.close();
 	}
 
 	@Override
@@ -71,19 +75,35 @@ class MultiSearch implements Closeable, AutoCloseable {
 		doClose();
 	}
 
+	private QueryContextImpl newQueryContext() {
+		return new QueryContextImpl(context.indexProvider, null, context.executorService, context.indexAnalyzers,
+				context.queryAnalyzers, context.fieldMap, null, indexSearcher, null, null, null);
+	}
+
 	<T extends ResultDocumentAbstract> ResultDefinition<T> search(final QueryDefinition queryDef,
 			final ResultDocuments<T> resultDocuments) throws Exception {
 		if (indexSearcher == null)
 			return null;
 		incRef();
 		try {
-			try (final QueryContextImpl queryContext = new QueryContextImpl(context.indexProvider, null,
-					context.executorService, context.indexAnalyzers, context.queryAnalyzers, context.fieldMap, null,
-					indexSearcher, null)) {
+			try (final QueryContextImpl queryContext = newQueryContext()) {
 				return new QueryExecution<T>(queryContext, queryDef).execute(resultDocuments);
 			}
 		} finally {
 			decRef();
 		}
 	}
+
+	ResultDefinition.WithMap searchMap(final QueryDefinition queryDef) throws Exception {
+		if (indexSearcher == null)
+			return null;
+		incRef();
+		try {
+			try (final QueryContextImpl queryContext = newQueryContext()) {
+				return queryContext.searchMap(queryDef);
+			}
+		} finally {
+			decRef();
+		}
+	}
 }
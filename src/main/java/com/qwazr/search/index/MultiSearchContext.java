@@ -41,6 +41,7 @@ final class MultiSearchContext implements Closeable, AutoCloseable {
 	final Map<String, AnalyzerFactory> analyzers;
 	final UpdatableAnalyzers indexAnalyzers;
 	final UpdatableAnalyzers queryAnalyzers;
+	private final MultiSearch multiSearch;
 
 	MultiSearchContext(final IndexInstance.Provider indexProvider, final ConstructorParametersImpl instanceFactory,
 			final Map<String, AnalyzerFactory> analyzers, final ExecutorService executorService,
@@ -54,6 +55,7 @@ final class MultiSearchContext implements Closeable, AutoCloseable {
 			indexAnalyzers = null;
 			queryAnalyzers = null;
 			fieldMap = null;
+			multiSearch = null;
 			return;
 		}
 		indexReaders = new IndexReader[indexInstances.size()];
@@ -72,16 +74,28 @@ final class MultiSearchContext implements Closeable, AutoCloseable {
 				new AnalyzerContext(instanceFactory, resourceLoader, fieldMap, failOnException, analyzerMap, analyzers);
 		indexAnalyzers = new UpdatableAnalyzers(analyzerContext.indexAnalyzerMap);
 		queryAnalyzers = new UpdatableAnalyzers(analyzerContext.queryAnalyzerMap);
+		multiSearch = new MultiSearch(this);
+	}
+
+	/**
+	 * The returned MultiSearch must be released using decRef
+	 */
+	final MultiSearch acquire() {
+		if (multiSearch == null)
+			return null;
+		multiSearch.incRef();
+		return multiSearch;
 	}
 
 	final <T extends ResultDocumentAbstract> ResultDefinition<T> search(final QueryDefinition queryDef,
 			final ResultDocuments<T> resultDocuments) throws Exception {
-		return new MultiSearch(this).search(queryDef, resultDocuments);
+		return multiSearch == null ? null : multiSearch.search(queryDef, resultDocuments);
 	}
 
 	@Override
 	final public void close() {
-		queryAnalyzers.close();
-		indexAnalyzers.close();
+		// The readers and the analyzers are closed when the last running search releases the MultiSearch
+		if (multiSearch != null)
+			multiSearch.close();
 	}
 }
@@ -84,13 +84,40 @@ class MultiSearchInstance implements Closeable {
 		}
 	}
 
+	private MultiSearch acquire() throws IOException {
+		synchronized (indexInstances) {
+			return getContext().acquire();
+		}
+	}
+
 	<T extends ResultDocumentAbstract> ResultDefinition<T> search(final QueryDefinition queryDef,
 			final ResultDocuments<T> resultDocuments) throws Exception {
-		return getContext().search(queryDef, resultDocuments);
+		final MultiSearch multiSearch = acquire();
+		if (multiSearch == null)
+			return null;
+		try {
+			return multiSearch.search(queryDef, resultDocuments);
+		} finally {
+			multiSearch.decRef();
+		}
+	}
+
+	ResultDefinition.WithMap searchMap(final QueryDefinition queryDef) throws Exception {
+		final MultiSearch multiSearch = acquire();
+		if (multiSearch == null)
+			return null;
+		try {
+			return multiSearch.searchMap(queryDef);
+		} finally {
+			multiSearch.decRef();
+		}
 	}
 
 	@Override
 	public void close() throws IOException {
-		IOUtils.close(multiSearchContext);
+		synchronized (indexInstances) {
+			IOUtils.close(multiSearchContext);
+			multiSearchContext = null;
+		}
 	}
 }
@@ -19,12 +19,14 @@ import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SimpleMergedSegmentWarmer;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.util.InfoStream;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 class MultiThreadSearcherFactory extends SearcherFactory {
@@ -41,6 +43,7 @@ class MultiThreadSearcherFactory extends SearcherFactory {
 	protected final ExecutorService executorService;
 	private final boolean useWarmer;
 	private final String stateFacetField;
+	private volatile Warmer queryWarmer;
 
 	private MultiThreadSearcherFactory(final ExecutorService executorService, boolean useWarmer,
 			final String stateFacetField) {
@@ -49,13 +52,22 @@ class MultiThreadSearcherFactory extends SearcherFactory {
 		this.stateFacetField = stateFacetField;
 	}
 
+	/**
+	 * Set the warmer called on each new searcher, once the segments are warmed
+	 */
+	void setQueryWarmer(final Warmer queryWarmer) {
+		this.queryWarmer = queryWarmer;
+	}
+
 	protected StateIndexSearcher warm(final IndexReader indexReader, final StateIndexSearcher indexSearcher)
 			throws IOException {
-		if (!useWarmer)
-			return indexSearcher;
+		if (useWarmer)
+			for (final LeafReaderContext context : indexReader.leaves())
+				WARMER.warm(context.reader());
 
-		for (final LeafReaderContext context : indexReader.leaves())
-			WARMER.warm(context.reader());
+		final Warmer warmer = queryWarmer;
+		if (warmer != null)
+			warmer.warm(indexSearcher);
 
 		return indexSearcher;
 	}
@@ -83,13 +95,39 @@ class MultiThreadSearcherFactory extends SearcherFactory {
 		}
 	}
 
+	interface Warmer {
+
+		void warm(IndexSearcher indexSearcher);
+	}
+
+	/**
+	 * The maximum number of document frequencies cached by a searcher
+	 */
+	final static int MAX_CACHED_DOC_FREQS = 65536;
+
 	class StateIndexSearcher extends IndexSearcher {
 
 		final SortedSetDocValuesReaderState state;
 
+		/**
+		 * The document frequencies of the terms, valid as long as the reader (and therefore this searcher) is used
+		 */
+		private final ConcurrentHashMap<Term, Integer> docFreqs;
+
 		StateIndexSearcher(IndexReader reader) throws IOException {
 			super(reader, executorService);
 			state = IndexUtils.getNewFacetsState(reader, stateFacetField);
+			docFreqs = new ConcurrentHashMap<>();
+		}
+
+		int docFreq(final Term term) throws IOException {
+			final Integer cachedFreq = docFreqs.get(term);
+			if (cachedFreq != null)
+				return cachedFreq;
+			final int docFreq = getIndexReader().docFreq(term);
+			if (docFreqs.size() < MAX_CACHED_DOC_FREQS)
+				docFreqs.put(term, docFreq);
+			return docFreq;
 		}
 
 	}
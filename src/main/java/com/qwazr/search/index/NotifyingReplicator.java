@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.replicator.LocalReplicator;
+import org.apache.lucene.replicator.Revision;
+import org.apache.lucene.replicator.SessionToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A LocalReplicator which lets the slaves wait (long-poll) for the next published revision.
+ * The sessions are tracked with their last access time: the index is not evicted while a slave is downloading.
+ */
+class NotifyingReplicator extends LocalReplicator {
+
+	/**
+	 * The maximum time a slave is allowed to wait for a new revision
+	 */
+	final static long MAX_WAIT_MS = 60000;
+
+	private final Object revisionMonitor = new Object();
+
+	private volatile long publishCount;
+	private volatile String currentVersion;
+	private volatile boolean closed;
+	private volatile long expirationThresholdMs = DEFAULT_SESSION_EXPIRATION_THRESHOLD;
+
+	private final ConcurrentHashMap<String, Long> sessionAccesses = new ConcurrentHashMap<>();
+
+	@Override
+	public void publish(final Revision revision) throws IOException {
+		super.publish(revision);
+		synchronized (revisionMonitor) {
+			currentVersion = revision.getVersion();
+			publishCount++;
+			revisionMonitor.notifyAll();
+		}
+	}
+
+	@Override
+	public SessionToken checkForUpdate(final String currentVersion) {
+		final SessionToken token = super.checkForUpdate(currentVersion);
+		if (token != null)
+			sessionAccesses.put(token.id, System.currentTimeMillis());
+		return token;
+	}
+
+	@Override
+	public InputStream obtainFile(final String sessionID, final String source, final String fileName)
+			throws IOException {
+		final InputStream input = super.obtainFile(sessionID, source, fileName);
+		sessionAccesses.computeIfPresent(sessionID, (id, time) -> System.currentTimeMillis());
+		return input;
+	}
+
+	@Override
+	public void release(final String sessionID) throws IOException {
+		sessionAccesses.remove(sessionID);
+		super.release(sessionID);
+	}
+
+	@Override
+	public void setExpirationThreshold(final long expirationThreshold) throws IOException {
+		super.setExpirationThreshold(expirationThreshold);
+		expirationThresholdMs = expirationThreshold;
+	}
+
+	/**
+	 * @return true if a session is open and has not expired
+	 */
+	final boolean hasOpenSessions() {
+		final long expired = System.currentTimeMillis() - expirationThresholdMs;
+		sessionAccesses.values().removeIf(time -> time < expired);
+		return !sessionAccesses.isEmpty();
+	}
+
+	/**
+	 * @return the version of the last published revision
+	 */
+	final String getCurrentVersion() {
+		return currentVersion;
+	}
+
+	/**
+	 * Check for an update. If there is none, wait until a new revision is published or the wait time expires.
+	 *
+	 * @param currentVersion the version of the slave
+	 * @param waitMs         the maximum time to wait, capped by MAX_WAIT_MS
+	 * @return a session token, or null if the slave is up to date
+	 * @throws IOException          if any I/O error occurs
+	 * @throws InterruptedException if the thread was interrupted while waiting
+	 */
+	final SessionToken checkForUpdate(final String currentVersion, final Long waitMs)
+			throws IOException, InterruptedException {
+		long count = publishCount;
+		SessionToken token = checkForUpdate(currentVersion);
+		if (token != null || waitMs == null || waitMs <= 0)
+			return token;
+		final long deadline = System.currentTimeMillis() + Math.min(waitMs, MAX_WAIT_MS);
+		for (; ; ) {
+			synchronized (revisionMonitor) {
+				long remaining;
+				while (count == publishCount && !closed && (remaining = deadline - System.currentTimeMillis()) > 0)
+					revisionMonitor.wait(remaining);
+				if (count == publishCount)
+					return null;
+				count = publishCount;
+			}
+			token = checkForUpdate(currentVersion);
+			if (token != null)
+				return token;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (revisionMonitor) {
+			closed = true;
+			revisionMonitor.notifyAll();
+		}
+		super.close();
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single memory budget for the NRT caches of all the indexes of the node.
+ * <p>
+ * A new file is cached only if the total size of the caches stays under the budget. When the budget is exceeded,
+ * the cached files of the least recently used directories are moved to the disk, in the background,
+ * until the usage is back under the low watermark.
+ * <p>
+ * The budget can be set using the QWAZR_INDEX_NRT_CACHE_MB system property or environment variable.
+ * The default budget is 5% of the maximum heap size.
+ */
+final class NrtCacheManager {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(NrtCacheManager.class);
+
+	final static String QWAZR_INDEX_NRT_CACHE_MB = "QWAZR_INDEX_NRT_CACHE_MB";
+
+	final static double LOW_WATERMARK = 0.8;
+
+	private final ExecutorService executorService;
+	private final long budgetBytes;
+	private final Set<BudgetedNRTCachingDirectory> directories;
+	private final AtomicBoolean evicting;
+
+	private final LongAdder acceptedFiles;
+	private final LongAdder rejectedFiles;
+	private final LongAdder evictions;
+	private final LongAdder evictedBytes;
+
+	NrtCacheManager(final ExecutorService executorService, final long budgetBytes) {
+		this.executorService = executorService;
+		this.budgetBytes = budgetBytes;
+		this.directories = ConcurrentHashMap.newKeySet();
+		this.evicting = new AtomicBoolean();
+		this.acceptedFiles = new LongAdder();
+		this.rejectedFiles = new LongAdder();
+		this.evictions = new LongAdder();
+		this.evictedBytes = new LongAdder();
+	}
+
+	static long getDefaultBudgetBytes() {
+		String value = System.getProperty(QWAZR_INDEX_NRT_CACHE_MB);
+		if (value == null)
+			value = System.getenv(QWAZR_INDEX_NRT_CACHE_MB);
+		if (value != null) {
+			try {
+				return (long) (Double.parseDouble(value) * 1024 * 1024);
+			} catch (NumberFormatException e) {
+				LOGGER.warning(() -> "Wrong value for " + QWAZR_INDEX_NRT_CACHE_MB + ": " + value);
+			}
+		}
+		return Runtime.getRuntime().maxMemory() / 20;
+	}
+
+	/**
+	 * Wrap the directory with a NRT cache sharing the node budget
+	 */
+	Directory wrap(final Directory directory, final double maxMergeSizeMB, final double maxCachedMB) {
+		final BudgetedNRTCachingDirectory cachingDirectory =
+				new BudgetedNRTCachingDirectory(this, directory, maxMergeSizeMB, maxCachedMB);
+		directories.add(cachingDirectory);
+		return cachingDirectory;
+	}
+
+	void unregister(final BudgetedNRTCachingDirectory directory) {
+		directories.remove(directory);
+	}
+
+	long getUsedBytes() {
+		long used = 0;
+		for (BudgetedNRTCachingDirectory directory : directories)
+			used += directory.ramBytesUsed();
+		return used;
+	}
+
+	/**
+	 * @param bytes the estimated size of the new file
+	 * @return true if the file can be cached
+	 */
+	boolean reserve(final long bytes) {
+		if (getUsedBytes() + bytes <= budgetBytes) {
+			acceptedFiles.increment();
+			return true;
+		}
+		rejectedFiles.increment();
+		scheduleEviction();
+		return false;
+	}
+
+	private void scheduleEviction() {
+		if (!evicting.compareAndSet(false, true))
+			return;
+		try {
+			executorService.submit(() -> {
+				try {
+					evict();
+				} finally {
+					evicting.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			evicting.set(false);
+		}
+	}
+
+	/**
+	 * Evict the least recently used directories until the usage is under the low watermark
+	 */
+	void evict() {
+		final long target = (long) (budgetBytes * LOW_WATERMARK);
+		final List<BudgetedNRTCachingDirectory> candidates = new ArrayList<>(directories);
+		candidates.sort(Comparator.comparingLong(BudgetedNRTCachingDirectory::getLastUsed));
+		for (BudgetedNRTCachingDirectory directory : candidates) {
+			if (getUsedBytes() <= target)
+				return;
+			if (directory.ramBytesUsed() == 0)
+				continue;
+			try {
+				final long bytes = directory.evict();
+				if (bytes > 0) {
+					evictions.increment();
+					evictedBytes.add(bytes);
+				}
+			} catch (IOException | RuntimeException e) {
+				LOGGER.log(Level.WARNING, e, () -> "NRT cache eviction failed: " + directory);
+			}
+		}
+	}
+
+	NrtCacheStatus getStatus() {
+		int cachedFiles = 0;
+		for (BudgetedNRTCachingDirectory directory : directories)
+			cachedFiles += directory.listCachedFiles().length;
+		return new NrtCacheStatus(budgetBytes, getUsedBytes(), directories.size(), cachedFiles, acceptedFiles.sum(),
+				rejectedFiles.sum(), evictions.sum(), evictedBytes.sum());
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The usage of the NRT cache budget shared by all the indexes of the node.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class NrtCacheStatus {
+
+	final public Long budget_bytes;
+	final public Long used_bytes;
+	final public Integer directories;
+	final public Integer cached_files;
+	final public Long accepted_files;
+	final public Long rejected_files;
+	final public Long evictions;
+	final public Long evicted_bytes;
+
+	@JsonCreator
+	NrtCacheStatus(@JsonProperty("budget_bytes") Long budget_bytes, @JsonProperty("used_bytes") Long used_bytes,
+			@JsonProperty("directories") Integer directories, @JsonProperty("cached_files") Integer cached_files,
+			@JsonProperty("accepted_files") Long accepted_files, @JsonProperty("rejected_files") Long rejected_files,
+			@JsonProperty("evictions") Long evictions, @JsonProperty("evicted_bytes") Long evicted_bytes) {
+		this.budget_bytes = budget_bytes;
+		this.used_bytes = used_bytes;
+		this.directories = directories;
+		this.cached_files = cached_files;
+		this.accepted_files = accepted_files;
+		this.rejected_files = rejected_files;
+		this.evictions = evictions;
+		this.evicted_bytes = evicted_bytes;
+	}
+}
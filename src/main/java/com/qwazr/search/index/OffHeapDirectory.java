@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.store.BaseDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.SingleInstanceLockFactory;
+import org.apache.lucene.util.IOUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory directory storing the files in direct (off-heap) ByteBuffer blocks.
+ * Unlike RAMDirectory, the index bytes are not scanned by the garbage collector.
+ * <p>
+ * When a persistence path is given, the synced files (the commits) are also written to the disk,
+ * and the directory is reloaded from the disk when it is opened. The reads never hit the disk.
+ */
+final class OffHeapDirectory extends BaseDirectory {
+
+	final static int BLOCK_SHIFT = 20;
+	final static int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+	final static long BLOCK_MASK = BLOCK_SIZE - 1;
+
+	private final ConcurrentHashMap<String, OffHeapFile> files;
+	private final AtomicLong sizeInBytes;
+	private final AtomicLong nextTempFileCounter;
+	private final Path persistPath;
+
+	OffHeapDirectory(final Path persistPath) throws IOException {
+		super(new SingleInstanceLockFactory());
+		this.files = new ConcurrentHashMap<>();
+		this.sizeInBytes = new AtomicLong();
+		this.nextTempFileCounter = new AtomicLong();
+		this.persistPath = persistPath;
+		if (persistPath != null)
+			load();
+	}
+
+	private void load() throws IOException {
+		Files.createDirectories(persistPath);
+		try (final Stream<Path> stream = Files.list(persistPath)) {
+			for (Path path : (Iterable<Path>) stream::iterator) {
+				if (!Files.isRegularFile(path))
+					continue;
+				final String name = path.getFileName().toString();
+				try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+						final IndexOutput output = new OffHeapIndexOutput(name, newFile(name))) {
+					final byte[] buffer = new byte[8192];
+					final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+					int read;
+					while ((read = channel.read(byteBuffer)) != -1) {
+						output.writeBytes(buffer, 0, read);
+						byteBuffer.clear();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes allocated by the files
+	 */
+	final long sizeInBytes() {
+		return sizeInBytes.get();
+	}
+
+	private OffHeapFile newFile(final String name) throws FileAlreadyExistsException {
+		final OffHeapFile file = new OffHeapFile();
+		if (files.putIfAbsent(name, file) != null)
+			throw new FileAlreadyExistsException(name);
+		return file;
+	}
+
+	private OffHeapFile getFile(final String name) throws NoSuchFileException {
+		final OffHeapFile file = files.get(name);
+		if (file == null)
+			throw new NoSuchFileException(name);
+		return file;
+	}
+
+	@Override
+	public String[] listAll() {
+		ensureOpen();
+		final String[] names = files.keySet().toArray(new String[0]);
+		Arrays.sort(names);
+		return names;
+	}
+
+	@Override
+	public void deleteFile(final String name) throws IOException {
+		ensureOpen();
+		final OffHeapFile file = files.remove(name);
+		if (file == null)
+			throw new NoSuchFileException(name);
+		file.release();
+		if (persistPath != null)
+			Files.deleteIfExists(persistPath.resolve(name));
+	}
+
+	@Override
+	public long fileLength(final String name) throws IOException {
+		ensureOpen();
+		return getFile(name).length;
+	}
+
+	@Override
+	public IndexOutput createOutput(final String name, final IOContext context) throws IOException {
+		ensureOpen();
+		return new OffHeapIndexOutput(name, newFile(name));
+	}
+
+	@Override
+	public IndexOutput createTempOutput(final String prefix, final String suffix, final IOContext context)
+			throws IOException {
+		ensureOpen();
+		while (true) {
+			final String name = IndexFileNames.segmentFileName(prefix,
+					suffix + "_" + Long.toString(nextTempFileCounter.getAndIncrement(), Character.MAX_RADIX), "tmp");
+			final OffHeapFile file = new OffHeapFile();
+			if (files.putIfAbsent(name, file) == null)
+				return new OffHeapIndexOutput(name, file);
+		}
+	}
+
+	/**
+	 * The files are already in memory. If the directory is persistent, the files are written to the disk.
+	 */
+	@Override
+	public void sync(final Collection<String> names) throws IOException {
+		ensureOpen();
+		if (persistPath == null)
+			return;
+		for (String name : names)
+			persist(name, getFile(name));
+	}
+
+	private void persist(final String name, final OffHeapFile file) throws IOException {
+		final Path path = persistPath.resolve(name);
+		// The files are write-once
+		if (Files.exists(path) && Files.size(path) == file.length)
+			return;
+		try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			for (ByteBuffer block : file.blocks) {
+				final ByteBuffer buffer = block.duplicate();
+				buffer.clear();
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			}
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * The renames are used to publish the commits: the renamed file is always persisted.
+	 */
+	@Override
+	public void rename(final String source, final String dest) throws IOException {
+		ensureOpen();
+		final OffHeapFile file = files.remove(source);
+		if (file == null)
+			throw new NoSuchFileException(source);
+		final OffHeapFile previous = files.put(dest, file);
+		if (previous != null)
+			previous.release();
+		if (persistPath != null) {
+			final Path sourcePath = persistPath.resolve(source);
+			if (Files.exists(sourcePath))
+				Files.move(sourcePath, persistPath.resolve(dest), StandardCopyOption.ATOMIC_MOVE);
+			else
+				persist(dest, file);
+		}
+	}
+
+	@Override
+	public void syncMetaData() throws IOException {
+		ensureOpen();
+		if (persistPath != null)
+			IOUtils.fsync(persistPath, true);
+	}
+
+	@Override
+	public IndexInput openInput(final String name, final IOContext context) throws IOException {
+		ensureOpen();
+		final OffHeapFile file = getFile(name);
+		return new OffHeapIndexInput("OffHeapIndexInput(name=\"" + name + "\")", file.blocks, 0, file.length);
+	}
+
+	@Override
+	public void close() {
+		isOpen = false;
+		files.values().forEach(OffHeapFile::release);
+		files.clear();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + '@' + (persistPath == null ? "memory" : persistPath) + " lockFactory=" +
+				lockFactory;
+	}
+
+	/**
+	 * The content of a file. It is set once, when the output is closed.
+	 * The blocks are released by the garbage collector when no more input is using them.
+	 */
+	final class OffHeapFile {
+
+		private volatile ByteBuffer[] blocks = new ByteBuffer[0];
+		private volatile long length;
+		private long allocated;
+		private boolean released;
+
+		void setContent(final ByteBuffer[] blocks, final long length) {
+			long capacity = 0;
+			for (ByteBuffer block : blocks)
+				capacity += block.capacity();
+			this.blocks = blocks;
+			this.length = length;
+			synchronized (this) {
+				if (released)
+					return;
+				allocated = capacity;
+				sizeInBytes.addAndGet(capacity);
+			}
+		}
+
+		synchronized void release() {
+			released = true;
+			sizeInBytes.addAndGet(-allocated);
+			allocated = 0;
+		}
+	}
+}
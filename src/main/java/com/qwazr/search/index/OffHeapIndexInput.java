@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RandomAccessInput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a file of the OffHeapDirectory. The single value reads use absolute positions, the shared blocks are never
+ * modified. A private duplicate of the current block is only used for the bulk reads.
+ */
+final class OffHeapIndexInput extends IndexInput implements RandomAccessInput {
+
+	private final ByteBuffer[] blocks;
+	private final long offset;
+	private final long length;
+	private long pos;
+
+	private int currentIndex;
+	private ByteBuffer current;
+
+	OffHeapIndexInput(final String resourceDescription, final ByteBuffer[] blocks, final long offset,
+			final long length) {
+		super(resourceDescription);
+		this.blocks = blocks;
+		this.offset = offset;
+		this.length = length;
+		this.currentIndex = -1;
+	}
+
+	private static int blockIndex(final long position) {
+		return (int) (position >>> OffHeapDirectory.BLOCK_SHIFT);
+	}
+
+	private static int blockOffset(final long position) {
+		return (int) (position & OffHeapDirectory.BLOCK_MASK);
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		if (pos >= length)
+			throw new EOFException("read past EOF: " + this);
+		final long position = offset + pos++;
+		return blocks[blockIndex(position)].get(blockOffset(position));
+	}
+
+	@Override
+	public void readBytes(final byte[] b, int off, int len) throws IOException {
+		if (pos + len > length)
+			throw new EOFException("read past EOF: " + this);
+		while (len > 0) {
+			final long position = offset + pos;
+			final int index = blockIndex(position);
+			if (index != currentIndex) {
+				current = blocks[index].duplicate();
+				currentIndex = index;
+			}
+			final int blockOffset = blockOffset(position);
+			final int n = Math.min(len, current.capacity() - blockOffset);
+			current.position(blockOffset);
+			current.get(b, off, n);
+			off += n;
+			len -= n;
+			pos += n;
+		}
+	}
+
+	@Override
+	public byte readByte(final long position) {
+		final long p = offset + position;
+		return blocks[blockIndex(p)].get(blockOffset(p));
+	}
+
+	@Override
+	public short readShort(final long position) {
+		final long p = offset + position;
+		final ByteBuffer block = blocks[blockIndex(p)];
+		final int blockOffset = blockOffset(p);
+		if (blockOffset + Short.BYTES <= block.capacity())
+			return block.getShort(blockOffset);
+		return (short) (((readByte(position) & 0xFF) << 8) | (readByte(position + 1) & 0xFF));
+	}
+
+	@Override
+	public int readInt(final long position) {
+		final long p = offset + position;
+		final ByteBuffer block = blocks[blockIndex(p)];
+		final int blockOffset = blockOffset(p);
+		if (blockOffset + Integer.BYTES <= block.capacity())
+			return block.getInt(blockOffset);
+		return ((readShort(position) & 0xFFFF) << 16) | (readShort(position + 2) & 0xFFFF);
+	}
+
+	@Override
+	public long readLong(final long position) {
+		final long p = offset + position;
+		final ByteBuffer block = blocks[blockIndex(p)];
+		final int blockOffset = blockOffset(p);
+		if (blockOffset + Long.BYTES <= block.capacity())
+			return block.getLong(blockOffset);
+		return (((long) readInt(position)) << 32) | (readInt(position + 4) & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public long getFilePointer() {
+		return pos;
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		if (pos < 0 || pos > length)
+			throw new EOFException("seek past EOF (pos=" + pos + "): " + this);
+		this.pos = pos;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public IndexInput slice(final String sliceDescription, final long offset, final long length) {
+		if (offset < 0 || length < 0 || offset + length > this.length)
+			throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: " + this);
+		return new OffHeapIndexInput(toString() + " [slice=" + sliceDescription + "]", blocks, this.offset + offset,
+				length);
+	}
+
+	@Override
+	public OffHeapIndexInput clone() {
+		final OffHeapIndexInput clone = (OffHeapIndexInput) super.clone();
+		clone.current = null;
+		clone.currentIndex = -1;
+		return clone;
+	}
+
+	@Override
+	public void close() {
+		// The memory belongs to the file
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.store.IndexOutput;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a file of the OffHeapDirectory. The first block grows until it reaches the block size,
+ * the last block is trimmed when the output is closed.
+ */
+final class OffHeapIndexOutput extends IndexOutput {
+
+	private final static int FIRST_BLOCK_SIZE = 4096;
+
+	private final OffHeapDirectory.OffHeapFile file;
+	private final List<ByteBuffer> blocks;
+	private final CRC32 crc;
+	private ByteBuffer current;
+	private long length;
+	private boolean closed;
+
+	OffHeapIndexOutput(final String name, final OffHeapDirectory.OffHeapFile file) {
+		super("OffHeapIndexOutput(name=\"" + name + "\")", name);
+		this.file = file;
+		this.blocks = new ArrayList<>();
+		this.crc = new CRC32();
+	}
+
+	private void nextBlock() {
+		if (current != null && blocks.size() == 1 && current.capacity() < OffHeapDirectory.BLOCK_SIZE) {
+			// Grow the first block
+			final ByteBuffer grown =
+					ByteBuffer.allocateDirect(Math.min(current.capacity() * 2, OffHeapDirectory.BLOCK_SIZE));
+			current.flip();
+			grown.put(current);
+			blocks.set(0, grown);
+			current = grown;
+			return;
+		}
+		current = ByteBuffer.allocateDirect(blocks.isEmpty() ? FIRST_BLOCK_SIZE : OffHeapDirectory.BLOCK_SIZE);
+		blocks.add(current);
+	}
+
+	@Override
+	public void writeByte(final byte b) {
+		if (current == null || !current.hasRemaining())
+			nextBlock();
+		current.put(b);
+		crc.update(b);
+		length++;
+	}
+
+	@Override
+	public void writeBytes(final byte[] b, int offset, int len) {
+		crc.update(b, offset, len);
+		length += len;
+		while (len > 0) {
+			if (current == null || !current.hasRemaining())
+				nextBlock();
+			final int n = Math.min(len, current.remaining());
+			current.put(b, offset, n);
+			offset += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public long getFilePointer() {
+		return length;
+	}
+
+	@Override
+	public long getChecksum() {
+		return crc.getValue();
+	}
+
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		if (current != null && current.hasRemaining()) {
+			final ByteBuffer trimmed = ByteBuffer.allocateDirect(current.position());
+			current.flip();
+			trimmed.put(current);
+			blocks.set(blocks.size() - 1, trimmed);
+		}
+		current = null;
+		file.setContent(blocks.toArray(new ByteBuffer[blocks.size()]), length);
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Date;
+
+/**
+ * The status of an online check, running (or done) in the background while the index is serving.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class OnlineCheckStatus {
+
+	final public String state;
+	final public Date start;
+	final public Date end;
+	final public String version;
+	final public Double rate_mb_per_sec;
+	final public Long checked_bytes;
+	final public Boolean clean;
+	final public IndexCheckStatus data;
+	final public IndexCheckStatus taxonomy;
+	final public String error;
+
+	@JsonCreator
+	OnlineCheckStatus(@JsonProperty("state") String state, @JsonProperty("start") Date start,
+			@JsonProperty("end") Date end, @JsonProperty("version") String version,
+			@JsonProperty("rate_mb_per_sec") Double rate_mb_per_sec, @JsonProperty("checked_bytes") Long checked_bytes,
+			@JsonProperty("clean") Boolean clean, @JsonProperty("data") IndexCheckStatus data,
+			@JsonProperty("taxonomy") IndexCheckStatus taxonomy, @JsonProperty("error") String error) {
+		this.state = state;
+		this.start = start;
+		this.end = end;
+		this.version = version;
+		this.rate_mb_per_sec = rate_mb_per_sec;
+		this.checked_bytes = checked_bytes;
+		this.clean = clean;
+		this.data = data;
+		this.taxonomy = taxonomy;
+		this.error = error;
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+import org.apache.lucene.index.CheckIndex;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.replicator.IndexAndTaxonomyRevision;
+import org.apache.lucene.replicator.LocalReplicator;
+import org.apache.lucene.replicator.RevisionFile;
+import org.apache.lucene.replicator.SessionToken;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.NoLockFactory;
+import org.apache.lucene.store.RateLimiter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verifies the last published commit while the index keeps serving.
+ * <p>
+ * The replication session holds the files of the commit, they cannot be deleted until the check is done: a snapshot on
+ * a master, the RevisionProtectedDirectory on a slave.
+ * CheckIndex reads the snapshot through a view which only lists the files of the commit, with a limited read rate.
+ * The checked bytes are updated each time CheckIndex is done with a file.
+ */
+final class OnlineIndexCheck implements Runnable {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(OnlineIndexCheck.class);
+
+	final static double DEFAULT_RATE_MB_PER_SEC = 20;
+
+	enum State {
+		running, done, failed, cancelled
+	}
+
+	private final String indexName;
+	private final LocalReplicator replicator;
+	private final Directory dataDirectory;
+	private final Directory taxonomyDirectory;
+	private final Double rateMbPerSec;
+	private final Date start;
+
+	private volatile State state;
+	private volatile Date end;
+	private volatile String version;
+	private volatile long checkedBytes;
+	private volatile CheckIndex.Status dataStatus;
+	private volatile CheckIndex.Status taxonomyStatus;
+	private volatile String error;
+
+	OnlineIndexCheck(final String indexName, final LocalReplicator replicator, final Directory dataDirectory,
+			final Directory taxonomyDirectory, final Double rateMbPerSec) {
+		this.indexName = indexName;
+		this.replicator = replicator;
+		this.dataDirectory = dataDirectory;
+		this.taxonomyDirectory = taxonomyDirectory;
+		this.rateMbPerSec = rateMbPerSec == null ? DEFAULT_RATE_MB_PER_SEC : rateMbPerSec;
+		this.start = new Date();
+		this.state = State.running;
+	}
+
+	@Override
+	public void run() {
+		try {
+			final SessionToken session = replicator.checkForUpdate(null);
+			if (session == null)
+				throw new IOException("No commit available for the check: " + indexName);
+			try {
+				version = session.version;
+				final RateLimiter rateLimiter = rateMbPerSec > 0 ? new CancellableRateLimiter(rateMbPerSec) : null;
+				final List<RevisionFile> dataFiles = session.sourceFiles.get(IndexAndTaxonomyRevision.INDEX_SOURCE);
+				if (dataFiles != null)
+					dataStatus = check(dataDirectory, dataFiles, rateLimiter);
+				final List<RevisionFile> taxonomyFiles =
+						session.sourceFiles.get(IndexAndTaxonomyRevision.TAXONOMY_SOURCE);
+				if (taxonomyFiles != null && taxonomyDirectory != null)
+					taxonomyStatus = check(taxonomyDirectory, taxonomyFiles, rateLimiter);
+			} finally {
+				replicator.release(session.id);
+			}
+			if (state == State.running)
+				state = State.done;
+		} catch (IOException | RuntimeException e) {
+			if (state != State.cancelled) {
+				LOGGER.log(Level.WARNING, e, () -> "Online check failed: " + indexName);
+				error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+				state = State.failed;
+			}
+		} finally {
+			end = new Date();
+		}
+	}
+
+	private CheckIndex.Status check(final Directory directory, final List<RevisionFile> files,
+			final RateLimiter rateLimiter) throws IOException {
+		final SnapshotView snapshotView = new SnapshotView(directory, files, rateLimiter);
+		// The IndexWriter keeps the write lock: the files of the snapshot are not modified
+		try (final CheckIndex checkIndex = new CheckIndex(snapshotView,
+				NoLockFactory.INSTANCE.obtainLock(snapshotView, IndexWriter.WRITE_LOCK_NAME))) {
+			final CheckIndex.Status status = checkIndex.checkIndex();
+			// The files which have not been read by CheckIndex
+			for (RevisionFile file : files)
+				snapshotView.fileChecked(file.fileName);
+			return status;
+		}
+	}
+
+	boolean isRunning() {
+		return state == State.running;
+	}
+
+	/**
+	 * Stop the check as soon as possible (the next time the rate is checked)
+	 */
+	void cancel() {
+		if (state == State.running)
+			state = State.cancelled;
+	}
+
+	OnlineCheckStatus getStatus() {
+		final CheckIndex.Status data = dataStatus;
+		final CheckIndex.Status taxonomy = taxonomyStatus;
+		final State currentState = state;
+		final Boolean clean = currentState != State.done ?
+				null :
+				(data == null || data.clean) && (taxonomy == null || taxonomy.clean);
+		return new OnlineCheckStatus(currentState.name(), start, end, version, rateMbPerSec,
+				checkedBytes == 0 ? null : checkedBytes, clean, data == null ? null : new IndexCheckStatus(data),
+				taxonomy == null ? null : new IndexCheckStatus(taxonomy), error);
+	}
+
+	private final class CancellableRateLimiter extends RateLimiter.SimpleRateLimiter {
+
+		private CancellableRateLimiter(final double mbPerSec) {
+			super(mbPerSec);
+		}
+
+		@Override
+		public long pause(final long bytes) throws IOException {
+			if (state == State.cancelled)
+				throw new IOException("The online check has been cancelled: " + indexName);
+			return super.pause(bytes);
+		}
+	}
+
+	/**
+	 * A read-only view of the files of a commit.
+	 */
+	private final class SnapshotView extends FilterDirectory {
+
+		private final String[] fileNames;
+		private final Map<String, Long> fileSizes;
+		private final Set<String> checkedFiles;
+		private final RateLimiter rateLimiter;
+
+		private SnapshotView(final Directory directory, final List<RevisionFile> files,
+				final RateLimiter rateLimiter) {
+			super(directory);
+			this.fileNames = new String[files.size()];
+			this.fileSizes = new HashMap<>();
+			int i = 0;
+			for (RevisionFile file : files) {
+				fileNames[i++] = file.fileName;
+				fileSizes.put(file.fileName, file.size);
+			}
+			Arrays.sort(fileNames);
+			this.checkedFiles = new HashSet<>();
+			this.rateLimiter = rateLimiter;
+		}
+
+		/**
+		 * A file is checked when CheckIndex closes it (the files of a segment are closed once the segment is checked)
+		 */
+		private void fileChecked(final String name) {
+			final Long size = fileSizes.get(name);
+			if (size != null && checkedFiles.add(name))
+				checkedBytes += size;
+		}
+
+		@Override
+		public String[] listAll() {
+			return fileNames.clone();
+		}
+
+		@Override
+		public IndexInput openInput(final String name, final IOContext context) throws IOException {
+			final IndexInput input = in.openInput(name, context);
+			return new CheckedIndexInput(name,
+					rateLimiter == null ? input : new RateLimitedIndexInput(input, rateLimiter), this);
+		}
+
+		@Override
+		public void close() {
+			// The directory belongs to the index
+		}
+	}
+
+	/**
+	 * Notifies the view when the file is closed. The clones and the slices are never closed by Lucene.
+	 */
+	private static final class CheckedIndexInput extends IndexInput {
+
+		private final String name;
+		private final IndexInput delegate;
+		private final SnapshotView snapshotView;
+
+		private CheckedIndexInput(final String name, final IndexInput delegate, final SnapshotView snapshotView) {
+			super("CheckedIndexInput(" + delegate + ")");
+			this.name = name;
+			this.delegate = delegate;
+			this.snapshotView = snapshotView;
+		}
+
+		@Override
+		public byte readByte() throws IOException {
+			return delegate.readByte();
+		}
+
+		@Override
+		public void readBytes(final byte[] b, final int offset, final int len) throws IOException {
+			delegate.readBytes(b, offset, len);
+		}
+
+		@Override
+		public long getFilePointer() {
+			return delegate.getFilePointer();
+		}
+
+		@Override
+		public void seek(final long pos) throws IOException {
+			delegate.seek(pos);
+		}
+
+		@Override
+		public long length() {
+			return delegate.length();
+		}
+
+		@Override
+		public IndexInput slice(final String sliceDescription, final long offset, final long length)
+				throws IOException {
+			return delegate.slice(sliceDescription, offset, length);
+		}
+
+		@Override
+		public IndexInput clone() {
+			return delegate.clone();
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+			snapshotView.fileChecked(name);
+		}
+	}
+}
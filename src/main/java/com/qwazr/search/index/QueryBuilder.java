@@ -15,6 +15,7 @@
  */
 package com.qwazr.search.index;
 
+import com.qwazr.search.aggregation.AggregationDefinition;
 import com.qwazr.search.query.AbstractQuery;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Query;
@@ -42,6 +43,8 @@ public class QueryBuilder {
 
 	LinkedHashMap<String, HighlighterDefinition> highlighters;
 
+	LinkedHashMap<String, AggregationDefinition> aggregations;
+
 	AbstractQuery query;
 
 	Query luceneQuery;
@@ -63,6 +66,8 @@ public class QueryBuilder {
 
 		highlighters = queryDef.highlighters;
 
+		aggregations = queryDef.aggregations;
+
 		query = queryDef.query;
 		luceneQuery = queryDef.luceneQuery;
 		commitUserData = queryDef.commitUserData;
@@ -220,6 +225,24 @@ public class QueryBuilder {
 		return this;
 	}
 
+	public QueryBuilder aggregations(final Map<String, AggregationDefinition> aggregations) {
+		if (aggregations == null || aggregations.isEmpty())
+			return this;
+		if (this.aggregations == null)
+			this.aggregations = new LinkedHashMap<>();
+		this.aggregations.putAll(aggregations);
+		return this;
+	}
+
+	public QueryBuilder aggregation(final String name, final AggregationDefinition aggregation) {
+		if (name == null || aggregation == null)
+			return this;
+		if (this.aggregations == null)
+			this.aggregations = new LinkedHashMap<>();
+		this.aggregations.put(name, aggregation);
+		return this;
+	}
+
 	public QueryBuilder commitUserData(final String name, final String value) {
 		if (commitUserData == null)
 			commitUserData = new LinkedHashMap<>();
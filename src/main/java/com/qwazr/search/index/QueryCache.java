@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.search.query.AbstractQuery;
+import com.qwazr.utils.ObjectMappers;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
+import org.apache.lucene.search.Query;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the Lucene queries built from the cacheable query definitions of an index.
+ * The key is the JSON serialization of the query definition.
+ * The cache is cleared when the fields or the analyzers are updated.
+ */
+final class QueryCache {
+
+	private final int maxSize;
+	private final LinkedHashMap<String, Query> queries;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private long generation;
+
+	QueryCache(final int maxSize) {
+		this.maxSize = maxSize;
+		this.queries = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Query> eldest) {
+				return size() > QueryCache.this.maxSize;
+			}
+		};
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * @return a new cache, or null if the query cache is disabled
+	 */
+	static QueryCache of(final IndexSettingsDefinition settings) {
+		return settings.queryCacheSize == null || settings.queryCacheSize <= 0 ?
+				null :
+				new QueryCache(settings.queryCacheSize);
+	}
+
+	Query getQuery(final AbstractQuery query, final QueryContext queryContext)
+			throws IOException, ParseException, QueryNodeException, ReflectiveOperationException {
+		if (!query.isCacheable())
+			return query.getQuery(queryContext);
+		final String key = ObjectMappers.JSON.writeValueAsString(query);
+		final long currentGeneration;
+		synchronized (queries) {
+			final Query cachedQuery = queries.get(key);
+			if (cachedQuery != null) {
+				hits.increment();
+				return cachedQuery;
+			}
+			currentGeneration = generation;
+		}
+		misses.increment();
+		final Query luceneQuery = query.getQuery(queryContext);
+		synchronized (queries) {
+			// Don't cache a query built while the analyzers were updated
+			if (currentGeneration == generation)
+				queries.put(key, luceneQuery);
+		}
+		return luceneQuery;
+	}
+
+	void clear() {
+		synchronized (queries) {
+			generation++;
+			queries.clear();
+		}
+	}
+
+	int size() {
+		synchronized (queries) {
+			return queries.size();
+		}
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+}
@@ -15,6 +15,9 @@
  **/
 package com.qwazr.search.index;
 
+import com.qwazr.search.aggregation.AggregationResult;
+import com.qwazr.search.aggregation.Aggregations;
+import com.qwazr.search.aggregation.AggregationsCollector;
 import com.qwazr.search.collector.BaseCollector;
 import com.qwazr.search.collector.ConcurrentCollector;
 import org.apache.lucene.facet.DrillSideways;
@@ -29,6 +32,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -163,4 +167,20 @@ class QueryCollectorManager extends QueryCollectors implements CollectorManager<
 		}
 		return results;
 	}
+
+	@Override
+	public final Map<String, Object> getAggregations() {
+		if (queryCollectorsList == null || queryCollectorsList.isEmpty())
+			return null;
+		AggregationsCollector reducer = null;
+		final List<BaseCollector<LinkedHashMap<String, AggregationResult>>> aggregationsCollectors =
+				new ArrayList<>(queryCollectorsList.size());
+		for (QueryCollectorsClassic queryCollectors : queryCollectorsList) {
+			if (queryCollectors.aggregationsCollector == null)
+				continue;
+			reducer = queryCollectors.aggregationsCollector;
+			aggregationsCollectors.add(reducer);
+		}
+		return reducer == null ? null : Aggregations.toOutput(reducer.getReducedResult(aggregationsCollectors));
+	}
 }
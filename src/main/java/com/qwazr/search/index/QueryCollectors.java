@@ -44,6 +44,8 @@ abstract class QueryCollectors {
 
 	abstract Map<String, Object> getExternalResults();
 
+	abstract Map<String, Object> getAggregations();
+
 	static List<Pair<String, String[]>> getDimPathPairs(final DrillDownQuery drillDownQuery) {
 		final List<Pair<String, String[]>> dimPaths = new ArrayList<>();
 		drillDownQuery.dimPath.forEach(map -> map.forEach((dim, paths) -> {
@@ -16,6 +16,8 @@
 
 package com.qwazr.search.index;
 
+import com.qwazr.search.aggregation.Aggregations;
+import com.qwazr.search.aggregation.AggregationsCollector;
 import com.qwazr.search.collector.BaseCollector;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.lucene.facet.DrillSideways;
@@ -47,6 +49,8 @@ class QueryCollectorsClassic extends QueryCollectors {
 
 	final List<BaseCollector> userCollectors;
 
+	final AggregationsCollector aggregationsCollector;
+
 	final TotalHitCountCollector totalHitCountCollector;
 
 	final TopDocsCollector topDocsCollector;
@@ -65,6 +69,8 @@ class QueryCollectorsClassic extends QueryCollectors {
 				userCollectors.add(add((BaseCollector) item.getLeft().newInstance(item.getRight())));
 		} else
 			userCollectors = null;
+		aggregationsCollector =
+				queryExecution.aggregations == null ? null : add(queryExecution.aggregations.newCollector());
 		finalCollector = getFinalCollector();
 	}
 
@@ -169,4 +175,9 @@ class QueryCollectorsClassic extends QueryCollectors {
 			results.put(name, userCollectors.get(i++).getResult());
 		return results;
 	}
+
+	@Override
+	public final Map<String, Object> getAggregations() {
+		return aggregationsCollector == null ? null : Aggregations.toOutput(aggregationsCollector.getResult());
+	}
 }
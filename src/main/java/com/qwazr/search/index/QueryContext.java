@@ -18,6 +18,7 @@ package com.qwazr.search.index;
 import com.qwazr.binder.FieldMapWrapper;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 
 import java.io.IOException;
@@ -36,6 +37,14 @@ public interface QueryContext extends IndexContext {
 		return null;
 	}
 
+	/**
+	 * @return the number of documents containing the term
+	 */
+	default int getDocFreq(final Term term) throws IOException {
+		final IndexReader indexReader = getIndexReader();
+		return indexReader == null ? 0 : indexReader.docFreq(term);
+	}
+
 	default ResultDefinition.WithMap searchMap(QueryDefinition queryDefinition) throws IOException {
 		throw new NotImplementedException("Not available");
 	}
@@ -17,12 +17,17 @@ package com.qwazr.search.index;
 
 import com.qwazr.binder.FieldMapWrapper;
 import com.qwazr.search.analysis.UpdatableAnalyzers;
+import com.qwazr.search.query.AbstractQuery;
 import com.qwazr.server.ServerException;
 import org.apache.lucene.analysis.util.ResourceLoader;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.flexible.core.QueryNodeException;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -37,19 +42,26 @@ final class QueryContextImpl extends IndexContextImpl implements QueryContext, C
 	final SortedSetDocValuesReaderState docValueReaderState;
 	final FieldMapWrapper.Cache fieldMapWrappers;
 	final FieldMap fieldMap;
+	private final QueryWarmer queryWarmer;
+	private final QueryCache queryCache;
 
 	QueryContextImpl(final IndexInstance.Provider indexProvider, final ResourceLoader resourceLoader,
 			final ExecutorService executorService, final UpdatableAnalyzers indexAnalyzers,
 			final UpdatableAnalyzers queryAnalyzers, final FieldMap fieldMap,
 			final FieldMapWrapper.Cache fieldMapWrappers, final IndexSearcher indexSearcher,
-			final TaxonomyReader taxonomyReader) {
+			final TaxonomyReader taxonomyReader, final QueryWarmer queryWarmer, final QueryCache queryCache) {
 		super(indexProvider, resourceLoader, executorService, indexAnalyzers, queryAnalyzers, fieldMap);
-		this.docValueReaderState = ((MultiThreadSearcherFactory.StateIndexSearcher) indexSearcher).state;
+		// The multi-index searches use a plain IndexSearcher, they have no sorted set facets state
+		this.docValueReaderState = indexSearcher instanceof MultiThreadSearcherFactory.StateIndexSearcher ?
+				((MultiThreadSearcherFactory.StateIndexSearcher) indexSearcher).state :
+				null;
 		this.fieldMap = fieldMap;
 		this.fieldMapWrappers = fieldMapWrappers;
 		this.indexSearcher = indexSearcher;
 		this.indexReader = indexSearcher.getIndexReader();
 		this.taxonomyReader = taxonomyReader;
+		this.queryWarmer = queryWarmer;
+		this.queryCache = queryCache;
 	}
 
 	@Override
@@ -67,10 +79,25 @@ final class QueryContextImpl extends IndexContextImpl implements QueryContext, C
 		return fieldMap;
 	}
 
+	@Override
+	public int getDocFreq(final Term term) throws IOException {
+		return indexSearcher instanceof MultiThreadSearcherFactory.StateIndexSearcher ?
+				((MultiThreadSearcherFactory.StateIndexSearcher) indexSearcher).docFreq(term) :
+				indexReader.docFreq(term);
+	}
+
+	Query getQuery(final AbstractQuery query)
+			throws IOException, ParseException, QueryNodeException, ReflectiveOperationException {
+		return queryCache == null ? query.getQuery(this) : queryCache.getQuery(query, this);
+	}
+
 	private <T extends ResultDocumentAbstract> ResultDefinition<T> search(final QueryDefinition queryDefinition,
 			final ResultDocuments<T> resultDocuments) throws IOException {
 		try {
-			return new QueryExecution<T>(this, queryDefinition).execute(resultDocuments);
+			final ResultDefinition<T> result = new QueryExecution<T>(this, queryDefinition).execute(resultDocuments);
+			if (queryWarmer != null)
+				queryWarmer.sample(queryDefinition);
+			return result;
 		} catch (Exception e) {
 			throw ServerException.of(e);
 		}
@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.search.aggregation.AggregationDefinition;
 import com.qwazr.search.query.AbstractQuery;
 import com.qwazr.utils.CollectionsUtils;
 import com.qwazr.utils.ObjectMappers;
@@ -58,6 +59,8 @@ public class QueryDefinition extends BaseQueryDefinition {
 
 	final public LinkedHashMap<String, HighlighterDefinition> highlighters;
 
+	final public LinkedHashMap<String, AggregationDefinition> aggregations;
+
 	@JsonProperty("commit_user_data")
 	final public Map<String, String> commitUserData;
 
@@ -99,6 +102,7 @@ public class QueryDefinition extends BaseQueryDefinition {
 			@JsonProperty("collectors") LinkedHashMap<String, CollectorDefinition> collectors,
 			@JsonProperty("facets") LinkedHashMap<String, FacetDefinition> facets,
 			@JsonProperty("highlighters") LinkedHashMap<String, HighlighterDefinition> highlighters,
+			@JsonProperty("aggregations") LinkedHashMap<String, AggregationDefinition> aggregations,
 			@JsonProperty("query") AbstractQuery query,
 			@JsonProperty("commit_user_data") Map<String, String> commitUserData) {
 		super(start, rows, returnedFields, queryDebug);
@@ -106,6 +110,7 @@ public class QueryDefinition extends BaseQueryDefinition {
 		this.collectors = collectors;
 		this.facets = facets;
 		this.highlighters = highlighters;
+		this.aggregations = aggregations;
 		this.query = query;
 		this.commitUserData = commitUserData;
 		luceneQuery = null;
@@ -117,6 +122,7 @@ public class QueryDefinition extends BaseQueryDefinition {
 		sorts = builder.sorts;
 		collectors = builder.collectors;
 		highlighters = builder.highlighters;
+		aggregations = builder.aggregations;
 		query = builder.query;
 		luceneQuery = builder.luceneQuery;
 		commitUserData = builder.commitUserData;
@@ -132,6 +138,7 @@ public class QueryDefinition extends BaseQueryDefinition {
 		return Objects.equals(query, q.query) && CollectionsUtils.equals(sorts, q.sorts) &&
 				CollectionsUtils.equals(collectors, q.collectors) && CollectionsUtils.equals(facets, q.facets) &&
 				CollectionsUtils.equals(highlighters, q.highlighters) &&
+				CollectionsUtils.equals(aggregations, q.aggregations) &&
 				CollectionsUtils.equals(commitUserData, q.commitUserData);
 	}
 
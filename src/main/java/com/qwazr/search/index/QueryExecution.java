@@ -15,6 +15,7 @@
  */
 package com.qwazr.search.index;
 
+import com.qwazr.search.aggregation.Aggregations;
 import com.qwazr.search.collector.ConcurrentCollector;
 import com.qwazr.search.field.SortUtils;
 import com.qwazr.search.query.DrillDownQuery;
@@ -55,6 +56,7 @@ final class QueryExecution<T extends ResultDocumentAbstract> {
 	final boolean useDrillSideways;
 	final Query query;
 	final List<Pair<Constructor, Object[]>> collectorConstructors;
+	final Aggregations aggregations;
 
 	private final boolean isConcurrent;
 
@@ -68,7 +70,7 @@ final class QueryExecution<T extends ResultDocumentAbstract> {
 
 		this.query = queryDef.luceneQuery != null ?
 				queryDef.luceneQuery :
-				queryDef.query == null ? new MatchAllDocsQuery() : queryDef.query.getQuery(queryContext);
+				queryDef.query == null ? new MatchAllDocsQuery() : queryContext.getQuery(queryDef.query);
 
 		this.sort = queryDef.sorts == null ? null : SortUtils.buildSort(queryContext.fieldMap, queryDef.sorts);
 
@@ -80,6 +82,10 @@ final class QueryExecution<T extends ResultDocumentAbstract> {
 		this.end = start + rows;
 
 		this.bNeedScore = sort == null || sort.needsScores();
+		this.aggregations = queryDef.aggregations == null || queryDef.aggregations.isEmpty() ?
+				null :
+				new Aggregations(queryContext, queryDef.aggregations);
+
 		this.useDrillSideways =
 				queryDef.query instanceof DrillDownQuery && ((DrillDownQuery) queryDef.query).useDrillSideways &&
 						queryDef.facets != null;
@@ -153,8 +159,8 @@ final class QueryExecution<T extends ResultDocumentAbstract> {
 
 		final ResultDocumentsBuilder resultBuilder =
 				new ResultDocumentsBuilder(queryDef, topDocs, queryContext.indexSearcher, query, highlighters,
-						queryCollectors.getExternalResults(), timeTracker, facetsBuilder,
-						totalHits == null ? 0 : totalHits, resultDocumentsInterface);
+						queryCollectors.getExternalResults(), queryCollectors.getAggregations(), timeTracker,
+						facetsBuilder, totalHits == null ? 0 : totalHits, resultDocumentsInterface);
 
 		return resultDocuments.apply(resultBuilder);
 	}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+import com.qwazr.utils.concurrent.FunctionEx;
+import org.apache.lucene.search.IndexSearcher;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays queries on each new searcher before it is published (when the index is opened, after a refresh
+ * or a replication),
+ * so that the first real queries do not pay the cold caches.
+ * The replayed queries are the warm queries of the settings and the most recent distinct queries of the live traffic.
+ */
+final class QueryWarmer implements MultiThreadSearcherFactory.Warmer {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(QueryWarmer.class);
+
+	/**
+	 * One query out of SAMPLE_INTERVAL is sampled (must be a power of two)
+	 */
+	final static int SAMPLE_INTERVAL = 8;
+
+	private final String indexName;
+	private final List<QueryDefinition> warmQueries;
+	private final int maxRecentQueries;
+	private final ArrayDeque<QueryDefinition> recentQueries;
+	private final AtomicInteger counter;
+	private final LongAdder warmedQueries;
+	private final FunctionEx<IndexSearcher, QueryContextImpl, IOException> contextBuilder;
+
+	private QueryWarmer(final String indexName, final List<QueryDefinition> warmQueries, final int maxRecentQueries,
+			final FunctionEx<IndexSearcher, QueryContextImpl, IOException> contextBuilder) {
+		this.indexName = indexName;
+		this.warmQueries = warmQueries;
+		this.maxRecentQueries = maxRecentQueries;
+		this.recentQueries = new ArrayDeque<>(maxRecentQueries);
+		this.counter = new AtomicInteger();
+		this.warmedQueries = new LongAdder();
+		this.contextBuilder = contextBuilder;
+	}
+
+	/**
+	 * @return a new warmer, or null if the settings do not define any warm query
+	 */
+	static QueryWarmer of(final String indexName, final IndexSettingsDefinition settings,
+			final FunctionEx<IndexSearcher, QueryContextImpl, IOException> contextBuilder) {
+		final int maxRecentQueries = settings.warmRecentQueries == null ? 0 : settings.warmRecentQueries;
+		final boolean hasWarmQueries = settings.warmQueries != null && !settings.warmQueries.isEmpty();
+		if (maxRecentQueries <= 0 && !hasWarmQueries)
+			return null;
+		return new QueryWarmer(indexName, hasWarmQueries ? settings.warmQueries : null, Math.max(0, maxRecentQueries),
+				contextBuilder);
+	}
+
+	/**
+	 * Record a query of the live traffic. The queries built from a Lucene query (Java API) are not recorded.
+	 * While the list is not full every query is recorded, then only a sample.
+	 */
+	void sample(final QueryDefinition queryDefinition) {
+		if (maxRecentQueries == 0 || queryDefinition == null || queryDefinition.query == null)
+			return;
+		if ((counter.incrementAndGet() & (SAMPLE_INTERVAL - 1)) != 0 && recentQueries.size() >= maxRecentQueries)
+			return;
+		synchronized (recentQueries) {
+			recentQueries.remove(queryDefinition);
+			recentQueries.addFirst(queryDefinition);
+			while (recentQueries.size() > maxRecentQueries)
+				recentQueries.removeLast();
+		}
+	}
+
+	List<QueryDefinition> getQueries() {
+		final List<QueryDefinition> queries = new ArrayList<>();
+		if (warmQueries != null)
+			queries.addAll(warmQueries);
+		synchronized (recentQueries) {
+			for (QueryDefinition queryDefinition : recentQueries)
+				if (!queries.contains(queryDefinition))
+					queries.add(queryDefinition);
+		}
+		return queries;
+	}
+
+	/**
+	 * @return the number of queries successfully replayed since the index has been opened
+	 */
+	long getWarmedQueries() {
+		return warmedQueries.sum();
+	}
+
+	@Override
+	public void warm(final IndexSearcher indexSearcher) {
+		for (QueryDefinition queryDefinition : getQueries()) {
+			try (final QueryContextImpl context = contextBuilder.apply(indexSearcher)) {
+				context.searchMap(queryDefinition);
+				warmedQueries.increment();
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, e, () -> "Warm query failed on " + indexName + ": " + e.getMessage());
+			}
+		}
+	}
+}
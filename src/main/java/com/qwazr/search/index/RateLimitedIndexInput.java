@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.RateLimiter;
+
+import java.io.IOException;
+
+/**
+ * An IndexInput which pauses the reading thread to keep the read rate under the limit.
+ */
+final class RateLimitedIndexInput extends IndexInput {
+
+	private final IndexInput delegate;
+	private final RateLimiter rateLimiter;
+	private long bytesSinceLastPause;
+
+	RateLimitedIndexInput(final IndexInput delegate, final RateLimiter rateLimiter) {
+		super("RateLimitedIndexInput(" + delegate + ")");
+		this.delegate = delegate;
+		this.rateLimiter = rateLimiter;
+	}
+
+	private void checkRate(final int bytes) throws IOException {
+		bytesSinceLastPause += bytes;
+		if (bytesSinceLastPause < rateLimiter.getMinPauseCheckBytes())
+			return;
+		rateLimiter.pause(bytesSinceLastPause);
+		bytesSinceLastPause = 0;
+	}
+
+	@Override
+	public byte readByte() throws IOException {
+		checkRate(1);
+		return delegate.readByte();
+	}
+
+	@Override
+	public void readBytes(final byte[] b, final int offset, final int len) throws IOException {
+		checkRate(len);
+		delegate.readBytes(b, offset, len);
+	}
+
+	@Override
+	public long getFilePointer() {
+		return delegate.getFilePointer();
+	}
+
+	@Override
+	public void seek(final long pos) throws IOException {
+		delegate.seek(pos);
+	}
+
+	@Override
+	public long length() {
+		return delegate.length();
+	}
+
+	@Override
+	public IndexInput slice(final String sliceDescription, final long offset, final long length)
+			throws IOException {
+		return new RateLimitedIndexInput(delegate.slice(sliceDescription, offset, length), rateLimiter);
+	}
+
+	@Override
+	public IndexInput clone() {
+		return new RateLimitedIndexInput(delegate.clone(), rateLimiter);
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+}
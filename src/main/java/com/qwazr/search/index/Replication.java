@@ -21,10 +21,8 @@ import org.apache.lucene.facet.taxonomy.SearcherTaxonomyManager;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.replicator.IndexAndTaxonomyRevision;
 import org.apache.lucene.replicator.IndexRevision;
-import org.apache.lucene.replicator.LocalReplicator;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
-import org.apache.lucene.store.Directory;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -32,19 +30,19 @@ import java.net.URISyntaxException;
 interface Replication {
 
 	interface Master {
-		LocalReplicator getLocalReplicator();
+		NotifyingReplicator getLocalReplicator();
 	}
 
 	final class MasterWithTaxo extends WriterAndSearcher.WithTaxo implements Master {
 
-		final LocalReplicator localReplicator;
+		final NotifyingReplicator localReplicator;
 
 		MasterWithTaxo(final IndexWriter indexWriter,
 				final IndexAndTaxonomyRevision.SnapshotDirectoryTaxonomyWriter taxonomyWriter,
 				final SearcherFactory searcherFactory) throws IOException {
 			super(indexWriter, taxonomyWriter,
 					new SearcherTaxonomyManager(indexWriter, true, searcherFactory, taxonomyWriter));
-			localReplicator = new LocalReplicator();
+			localReplicator = new NotifyingReplicator();
 			localReplicator.publish(newRevision());
 		}
 
@@ -65,24 +63,39 @@ interface Replication {
 		}
 
 		@Override
-		public LocalReplicator getLocalReplicator() {
+		public NotifyingReplicator getLocalReplicator() {
 			return localReplicator;
 		}
 	}
 
-	final class SlaveWithTaxo extends WriterAndSearcher.WithTaxo implements IndexReplicator.Slave {
+	final class SlaveWithTaxo extends WriterAndSearcher.WithTaxo implements IndexReplicator.Slave, Master {
 
 		private final IndexReplicator indexReplicator;
+		private final RevisionProtectedDirectory dataDirectory;
+		private final RevisionProtectedDirectory taxonomyDirectory;
+		private final NotifyingReplicator localReplicator;
 
-		SlaveWithTaxo(final IndexReplicator indexReplicator, final Directory dataDirectory,
-				final Directory taxonomyDirectory, final SearcherFactory searcherFactory)
+		SlaveWithTaxo(final IndexReplicator indexReplicator, final RevisionProtectedDirectory dataDirectory,
+				final RevisionProtectedDirectory taxonomyDirectory, final SearcherFactory searcherFactory)
 				throws IOException, URISyntaxException {
 			super(null, null, new SearcherTaxonomyManager(dataDirectory, taxonomyDirectory, searcherFactory));
 			this.indexReplicator = indexReplicator;
+			this.dataDirectory = dataDirectory;
+			this.taxonomyDirectory = taxonomyDirectory;
+			this.localReplicator = new NotifyingReplicator();
+			republish();
+		}
+
+		@Override
+		public void republish() throws IOException {
+			final CommitRevision revision = CommitRevision.of(dataDirectory, taxonomyDirectory);
+			if (revision != null)
+				localReplicator.publish(revision);
 		}
 
 		@Override
 		public void close() throws IOException {
+			IOUtils.closeQuietly(localReplicator);
 			super.close();
 			IOUtils.closeQuietly(indexReplicator);
 		}
@@ -92,15 +105,20 @@ interface Replication {
 			return indexReplicator;
 		}
 
+		@Override
+		public NotifyingReplicator getLocalReplicator() {
+			return localReplicator;
+		}
+
 	}
 
 	final class MasterNoTaxo extends WriterAndSearcher.NoTaxo implements Master {
 
-		final LocalReplicator localReplicator;
+		final NotifyingReplicator localReplicator;
 
 		MasterNoTaxo(final IndexWriter indexWriter, final SearcherFactory searcherFactory) throws IOException {
 			super(indexWriter, new SearcherManager(indexWriter, searcherFactory));
-			localReplicator = new LocalReplicator();
+			localReplicator = new NotifyingReplicator();
 			localReplicator.publish(newRevision());
 		}
 
@@ -121,23 +139,36 @@ interface Replication {
 		}
 
 		@Override
-		public LocalReplicator getLocalReplicator() {
+		public NotifyingReplicator getLocalReplicator() {
 			return localReplicator;
 		}
 	}
 
-	final class SlaveNoTaxo extends WriterAndSearcher.NoTaxo implements IndexReplicator.Slave {
+	final class SlaveNoTaxo extends WriterAndSearcher.NoTaxo implements IndexReplicator.Slave, Master {
 
 		private final IndexReplicator indexReplicator;
+		private final RevisionProtectedDirectory dataDirectory;
+		private final NotifyingReplicator localReplicator;
 
-		SlaveNoTaxo(final IndexReplicator indexReplicator, final Directory dataDirectory,
+		SlaveNoTaxo(final IndexReplicator indexReplicator, final RevisionProtectedDirectory dataDirectory,
 				final SearcherFactory searcherFactory) throws IOException, URISyntaxException {
 			super(null, new SearcherManager(dataDirectory, searcherFactory));
 			this.indexReplicator = indexReplicator;
+			this.dataDirectory = dataDirectory;
+			this.localReplicator = new NotifyingReplicator();
+			republish();
+		}
+
+		@Override
+		public void republish() throws IOException {
+			final CommitRevision revision = CommitRevision.of(dataDirectory, null);
+			if (revision != null)
+				localReplicator.publish(revision);
 		}
 
 		@Override
 		public void close() throws IOException {
+			IOUtils.closeQuietly(localReplicator);
 			super.close();
 			IOUtils.closeQuietly(indexReplicator);
 		}
@@ -146,5 +177,10 @@ interface Replication {
 		public IndexReplicator getIndexReplicator() {
 			return indexReplicator;
 		}
+
+		@Override
+		public NotifyingReplicator getLocalReplicator() {
+			return localReplicator;
+		}
 	}
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.replicator.RevisionFile;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.NIOFSDirectory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Downloads the files of a replication session concurrently into a staging directory.
+ * <p>
+ * Lucene files are write-once: a partially downloaded file from the same master index can safely be resumed,
+ * even by a later session. The staging directory is therefore specific to the master index UUID.
+ * A partial file is resumed only if its content still matches the length and the CRC32 recorded when the transfer
+ * stopped, otherwise it is downloaded again from the start. Each complete file is verified using its Lucene footer
+ * checksum before being handed to the ReplicationClient.
+ */
+final class ReplicationDownloader {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(ReplicationDownloader.class);
+
+	final static int MAX_ATTEMPTS = 3;
+
+	final static String PARTIAL_SUFFIX = ".partial";
+
+	private final static int BUFFER_SIZE = 65536;
+
+	@FunctionalInterface
+	interface Fetcher {
+		InputStream fetch(String source, String fileName, long offset) throws IOException;
+	}
+
+	private final Path downloadPath;
+	private final ExecutorService executorService;
+
+	/**
+	 * @param replDownloadPath the staging directory of the index
+	 * @param masterUuid       the UUID of the master index, the files of another master are removed
+	 * @param executorService  runs the downloads
+	 */
+	ReplicationDownloader(final Path replDownloadPath, final String masterUuid,
+			final ExecutorService executorService) {
+		this.downloadPath = replDownloadPath.resolve(masterUuid);
+		this.executorService = executorService;
+		removeOtherMasters(replDownloadPath);
+	}
+
+	private void removeOtherMasters(final Path replDownloadPath) {
+		if (!Files.isDirectory(replDownloadPath))
+			return;
+		try (final Stream<Path> stream = Files.list(replDownloadPath)) {
+			for (Path path : (Iterable<Path>) stream::iterator)
+				if (!path.equals(downloadPath))
+					FileUtils.forceDelete(path.toFile());
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, e, () -> "Cannot clear the replication download directory: " + replDownloadPath);
+		}
+	}
+
+	private Path getPath(final String source, final String fileName) {
+		return downloadPath.resolve(source).resolve(fileName);
+	}
+
+	/**
+	 * Download the files of the session which are not already present locally.
+	 *
+	 * @param sourceFiles the files of the replication session
+	 * @param localFiles  the files of the current local revision
+	 * @param threads     the maximum number of concurrent downloads
+	 * @param fetcher     opens a remote file starting at the given offset
+	 * @throws IOException if a file cannot be downloaded or verified
+	 */
+	void download(final Map<String, List<RevisionFile>> sourceFiles, final Map<String, List<RevisionFile>> localFiles,
+			final int threads, final Fetcher fetcher) throws IOException {
+
+		final ConcurrentLinkedQueue<FileTask> tasks = new ConcurrentLinkedQueue<>();
+		for (Map.Entry<String, List<RevisionFile>> entry : sourceFiles.entrySet()) {
+			final String source = entry.getKey();
+			final Set<String> existingFiles = new HashSet<>();
+			if (localFiles != null && localFiles.containsKey(source))
+				localFiles.get(source).forEach(file -> existingFiles.add(file.fileName));
+			for (RevisionFile file : entry.getValue())
+				if (!existingFiles.contains(file.fileName))
+					tasks.add(new FileTask(source, file));
+		}
+		if (tasks.isEmpty())
+			return;
+
+		final int workers = Math.max(1, Math.min(threads, tasks.size()));
+		final List<Future<?>> futures = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			futures.add(executorService.submit(() -> {
+				FileTask task;
+				while ((task = tasks.poll()) != null)
+					task.download(fetcher);
+				return null;
+			}));
+		}
+
+		IOException error = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				tasks.clear();
+				Thread.currentThread().interrupt();
+				error = new IOException("Replication download interrupted", e);
+			} catch (ExecutionException e) {
+				tasks.clear();
+				if (error == null)
+					error = e.getCause() instanceof IOException ?
+							(IOException) e.getCause() :
+							new IOException(e.getCause());
+			}
+		}
+		if (error != null)
+			throw error;
+	}
+
+	/**
+	 * Open a downloaded file.
+	 *
+	 * @return the content of the file or null if the file has not been downloaded
+	 * @throws IOException if any I/O error occurs
+	 */
+	InputStream open(final String source, final String fileName) throws IOException {
+		final Path path = getPath(source, fileName);
+		return Files.exists(path) ? Files.newInputStream(path) : null;
+	}
+
+	/**
+	 * Remove every downloaded file. Called when the session has been applied.
+	 */
+	void clear() {
+		try {
+			if (Files.exists(downloadPath))
+				FileUtils.deleteDirectory(downloadPath.toFile());
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, e, () -> "Cannot clear the replication download directory: " + downloadPath);
+		}
+	}
+
+	private final class FileTask {
+
+		private final String source;
+		private final RevisionFile file;
+		private final Path path;
+		private final Path partialPath;
+
+		private FileTask(final String source, final RevisionFile file) {
+			this.source = source;
+			this.file = file;
+			this.path = getPath(source, file.fileName);
+			this.partialPath = path.resolveSibling(file.fileName + PARTIAL_SUFFIX);
+		}
+
+		private void download(final Fetcher fetcher) throws IOException {
+			Files.createDirectories(path.getParent());
+			IOException error = null;
+			for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+				final CRC32 crc = new CRC32();
+				final long offset = checkPartial(crc);
+				if (offset < file.size) {
+					long length = offset;
+					try (final InputStream input = fetcher.fetch(source, file.fileName, offset);
+							final OutputStream output = Files.newOutputStream(path, StandardOpenOption.CREATE,
+									StandardOpenOption.APPEND)) {
+						final byte[] buffer = new byte[BUFFER_SIZE];
+						int read;
+						while ((read = input.read(buffer)) != -1) {
+							output.write(buffer, 0, read);
+							crc.update(buffer, 0, read);
+							length += read;
+						}
+					} catch (IOException | RuntimeException e) {
+						// Keep the partial file, the next attempt resumes from the length written
+						error = e instanceof IOException ? (IOException) e : new IOException(e);
+						continue;
+					} finally {
+						savePartial(length, crc.getValue());
+					}
+				}
+				if (Files.size(path) != file.size) {
+					error = new IOException(
+							"Wrong size for " + source + '/' + file.fileName + ": " + Files.size(path) + " <> " +
+									file.size);
+					continue;
+				}
+				try {
+					verify();
+					Files.deleteIfExists(partialPath);
+					return;
+				} catch (IOException e) {
+					deleteFile();
+					error = e;
+				}
+			}
+			throw error;
+		}
+
+		private void deleteFile() throws IOException {
+			Files.deleteIfExists(path);
+			Files.deleteIfExists(partialPath);
+		}
+
+		/**
+		 * Check the bytes already downloaded against the length and the CRC32 recorded by the previous transfer.
+		 * The bytes written after the record are dropped.
+		 *
+		 * @param crc updated with the bytes which are kept
+		 * @return the offset to resume from
+		 */
+		private long checkPartial(final CRC32 crc) throws IOException {
+			if (!Files.exists(path))
+				return 0;
+			final long[] record = readPartial();
+			if (record == null) {
+				// A complete file without record is verified by its footer
+				if (Files.size(path) == file.size)
+					return file.size;
+				deleteFile();
+				return 0;
+			}
+			final long length = record[0];
+			final long expectedCrc = record[1];
+			if (length > file.size || Files.size(path) < length) {
+				deleteFile();
+				return 0;
+			}
+			try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+					StandardOpenOption.READ)) {
+				channel.truncate(length);
+				final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				while (channel.read(buffer) != -1) {
+					buffer.flip();
+					crc.update(buffer);
+					buffer.clear();
+				}
+			}
+			if (crc.getValue() == expectedCrc)
+				return length;
+			LOGGER.warning(() -> "Corrupted partial file, downloading again: " + source + '/' + file.fileName);
+			crc.reset();
+			deleteFile();
+			return 0;
+		}
+
+		/**
+		 * @return the length and the CRC32 recorded by the previous transfer, or null if there is no valid record
+		 */
+		private long[] readPartial() throws IOException {
+			if (!Files.exists(partialPath))
+				return null;
+			final String[] record =
+					new String(Files.readAllBytes(partialPath), StandardCharsets.UTF_8).trim().split(":");
+			if (record.length != 2)
+				return null;
+			try {
+				return new long[] { Long.parseLong(record[0]), Long.parseLong(record[1]) };
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		private void savePartial(final long length, final long crcValue) throws IOException {
+			Files.write(partialPath, (Long.toString(length) + ':' + crcValue).getBytes(StandardCharsets.UTF_8));
+		}
+
+		private void verify() throws IOException {
+			try (final Directory directory = new NIOFSDirectory(path.getParent());
+					final IndexInput input = directory.openInput(file.fileName, IOContext.READONCE)) {
+				CodecUtil.checksumEntireFile(input);
+			}
+		}
+	}
+}
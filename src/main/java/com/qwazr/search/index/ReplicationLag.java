@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.utils.FileUtils;
+
+import java.util.Date;
+
+/**
+ * How far a slave index is behind its master, measured at the last replication check.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class ReplicationLag {
+
+	final public String master_version;
+	final public String local_version;
+	final public Long generations;
+	final public Long bytes;
+	final public String size;
+	final public Long seconds;
+	final public Date last_check;
+	final public Date last_sync;
+	final public Integer failures;
+
+	@JsonCreator
+	ReplicationLag(@JsonProperty("master_version") String master_version,
+			@JsonProperty("local_version") String local_version, @JsonProperty("generations") Long generations,
+			@JsonProperty("bytes") Long bytes, @JsonProperty("size") String size,
+			@JsonProperty("seconds") Long seconds, @JsonProperty("last_check") Date last_check,
+			@JsonProperty("last_sync") Date last_sync, @JsonProperty("failures") Integer failures) {
+		this.master_version = master_version;
+		this.local_version = local_version;
+		this.generations = generations;
+		this.bytes = bytes;
+		this.size = size;
+		this.seconds = seconds;
+		this.last_check = last_check;
+		this.last_sync = last_sync;
+		this.failures = failures;
+	}
+
+	ReplicationLag(final String masterVersion, final String localVersion, final long bytes, final Long seconds,
+			final long lastCheck, final long lastSync, final int failures) {
+		this(masterVersion, localVersion, generations(masterVersion, localVersion), bytes,
+				FileUtils.byteCountToDisplaySize(bytes), seconds, lastCheck == 0 ? null : new Date(lastCheck),
+				lastSync == 0 ? null : new Date(lastSync), failures);
+	}
+
+	/**
+	 * Revision versions are hexadecimal commit generations. The taxonomy revisions use two generations
+	 * separated by a colon (index:taxonomy).
+	 *
+	 * @return the sum of the generation differences, or null if one of the versions is unknown
+	 */
+	static Long generations(final String masterVersion, final String localVersion) {
+		if (masterVersion == null || localVersion == null)
+			return null;
+		final String[] masterParts = masterVersion.split(":");
+		final String[] localParts = localVersion.split(":");
+		if (masterParts.length != localParts.length)
+			return null;
+		try {
+			long generations = 0;
+			for (int i = 0; i < masterParts.length; i++)
+				generations += Math.max(0, Long.parseLong(masterParts[i], 16) - Long.parseLong(localParts[i], 16));
+			return generations;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.LoggerUtils;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a slave index up to date without external calls.
+ * The poller asks the master for a new revision (optionally long-polling), and only runs the replication
+ * check when a revision is available. On failure the delay doubles up to MAX_BACKOFF_MS.
+ * The waiting and the check itself never block the searches: the current searcher is used until the
+ * downloaded revision is applied.
+ */
+final class ReplicationPoller implements Closeable {
+
+	private static final Logger LOGGER = LoggerUtils.getLogger(ReplicationPoller.class);
+
+	final static long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(10);
+
+	private final String indexName;
+	private final IndexReplicator indexReplicator;
+	private final Callable<ReplicationStatus> replicationCheck;
+	private final long intervalMs;
+	private final Long waitMs;
+	private final ScheduledExecutorService scheduler;
+
+	private volatile boolean closed;
+	private int failures;
+
+	ReplicationPoller(final String indexName, final IndexReplicator indexReplicator,
+			final Callable<ReplicationStatus> replicationCheck, final long intervalMs, final Long waitMs) {
+		this.indexName = indexName;
+		this.indexReplicator = indexReplicator;
+		this.replicationCheck = replicationCheck;
+		this.intervalMs = intervalMs;
+		this.waitMs = waitMs == null || waitMs <= 0 ? null : waitMs;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "Replication poller " + indexName);
+			thread.setDaemon(true);
+			return thread;
+		});
+		schedule(intervalMs);
+	}
+
+	private void schedule(final long delayMs) {
+		if (closed)
+			return;
+		try {
+			scheduler.schedule(this::poll, delayMs, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// The poller has been closed
+		}
+	}
+
+	private void poll() {
+		long nextDelay = intervalMs;
+		try {
+			if (indexReplicator.waitForUpdate(waitMs)) {
+				final ReplicationStatus status = replicationCheck.call();
+				LOGGER.info(() -> "Replicated " + indexName + " - " + status.size + " in " + status.time + "ms");
+			}
+			failures = 0;
+		} catch (Exception e) {
+			if (closed)
+				return;
+			indexReplicator.failed();
+			failures++;
+			final long backoff = Math.max(intervalMs, Math.min(MAX_BACKOFF_MS, intervalMs << Math.min(failures, 20)));
+			nextDelay = backoff;
+			LOGGER.log(Level.WARNING, e,
+					() -> "Replication failed: " + indexName + " - next try in " + backoff / 1000 + "s");
+		} finally {
+			schedule(nextDelay);
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		scheduler.shutdownNow();
+	}
+}
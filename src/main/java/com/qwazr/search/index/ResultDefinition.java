@@ -36,6 +36,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 	final public Map<String, Map<String, Number>> facets;
 	final public String query;
 	final public Map<String, Object> collectors;
+	final public Map<String, Object> aggregations;
 
 	public ResultDefinition() {
 		this.timer = null;
@@ -43,6 +44,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		this.documents = null;
 		this.facets = null;
 		this.collectors = null;
+		this.aggregations = null;
 		this.max_score = null;
 		this.query = null;
 	}
@@ -55,6 +57,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		this.documents = documents;
 		this.facets = builder.facets;
 		this.collectors = builder.collectors;
+		this.aggregations = builder.aggregations;
 	}
 
 	protected ResultDefinition(final ResultDefinition<?> src, @NotNull final List<T> documents) {
@@ -65,6 +68,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		this.documents = documents;
 		this.facets = src.facets;
 		this.collectors = src.collectors;
+		this.aggregations = src.aggregations;
 	}
 
 	ResultDefinition(TimeTracker timeTracker) {
@@ -73,6 +77,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		documents = Collections.emptyList();
 		facets = null;
 		collectors = null;
+		aggregations = null;
 		max_score = null;
 		this.timer = timeTracker != null ? timeTracker.getStatus() : null;
 	}
@@ -83,6 +88,7 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		documents = Collections.emptyList();
 		facets = null;
 		collectors = null;
+		aggregations = null;
 		max_score = null;
 		this.timer = null;
 	}
@@ -142,6 +148,15 @@ public abstract class ResultDefinition<T extends ResultDocumentAbstract> {
 		return collectors == null ? null : (O) collectors.get(name);
 	}
 
+	public Map<String, Object> getAggregations() {
+		return aggregations == null ? Collections.emptyMap() : aggregations;
+	}
+
+	@JsonIgnore
+	public <O> O getAggregation(final String name) {
+		return aggregations == null ? null : (O) aggregations.get(name);
+	}
+
 	final public void forEach(final Consumer<T> consumer) {
 		if (documents != null)
 			for (T document : documents)
@@ -30,6 +30,7 @@ import java.util.Map;
 class ResultDocumentsBuilder {
 
 	final Map<String, Object> collectors;
+	final Map<String, Object> aggregations;
 	final LinkedHashMap<String, Map<String, Number>> facets;
 	final String queryDebug;
 	final TimeTracker.Status timeTrackerStatus;
@@ -38,11 +39,13 @@ class ResultDocumentsBuilder {
 
 	ResultDocumentsBuilder(final QueryDefinition queryDefinition, final TopDocs topDocs,
 			final IndexSearcher indexSearcher, final Query luceneQuery, final Map<String, HighlighterImpl> highlighters,
-			final Map<String, Object> externalCollectorsResults, final TimeTracker timeTracker,
+			final Map<String, Object> externalCollectorsResults, final Map<String, Object> aggregationsResults,
+			final TimeTracker timeTracker,
 			final FacetsBuilder facetsBuilder, long totalHits, @NotNull final ResultDocumentsInterface resultDocuments)
 			throws ReflectiveOperationException, IOException {
 
 		this.collectors = externalCollectorsResults;
+		this.aggregations = aggregationsResults;
 
 		if (topDocs != null && topDocs.scoreDocs != null) {
 
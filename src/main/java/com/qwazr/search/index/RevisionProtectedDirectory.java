@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.util.IOUtils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The directory of a slave which republishes its revisions (cascading replication).
+ * The replication handler deletes the files of the previous commit once a new revision is applied. The deletion of
+ * a file which belongs to a published revision is deferred until the revision is released, so that a downstream
+ * session can still obtain it.
+ */
+final class RevisionProtectedDirectory extends FilterDirectory {
+
+	private final Map<String, Integer> protectedFiles;
+	private final Set<String> pendingDeletes;
+
+	RevisionProtectedDirectory(final Directory directory) {
+		super(directory);
+		this.protectedFiles = new HashMap<>();
+		this.pendingDeletes = new HashSet<>();
+	}
+
+	synchronized void protect(final Collection<String> fileNames) {
+		for (String fileName : fileNames)
+			protectedFiles.merge(fileName, 1, Integer::sum);
+	}
+
+	/**
+	 * Release the files and delete the ones the replication handler has deleted meanwhile
+	 */
+	synchronized void release(final Collection<String> fileNames) {
+		for (String fileName : fileNames) {
+			if (protectedFiles.computeIfPresent(fileName, (name, count) -> count > 1 ? count - 1 : null) != null)
+				continue;
+			// Best effort: a file which is left is deleted by the next cleanup of the replication handler
+			if (pendingDeletes.remove(fileName))
+				IOUtils.deleteFilesIgnoringExceptions(in, fileName);
+		}
+	}
+
+	@Override
+	public synchronized void deleteFile(final String name) throws IOException {
+		if (protectedFiles.containsKey(name))
+			pendingDeletes.add(name);
+		else
+			in.deleteFile(name);
+	}
+}
@@ -15,15 +15,19 @@
  */
 package com.qwazr.search.index;
 
+import com.qwazr.search.analysis.AnalyzerComponentCache;
 import com.qwazr.search.analysis.AnalyzerFactory;
 import com.qwazr.server.ServerException;
 import com.qwazr.utils.FileUtils;
 import com.qwazr.utils.IOUtils;
 import com.qwazr.utils.ObjectMappers;
 import com.qwazr.utils.StringUtils;
+import com.qwazr.utils.concurrent.ConsumerEx;
+import com.qwazr.utils.concurrent.FunctionEx;
 import com.qwazr.utils.concurrent.ReadWriteLock;
 import com.qwazr.utils.concurrent.ReadWriteSemaphores;
 import com.qwazr.utils.reflection.ConstructorParametersImpl;
+import org.apache.lucene.index.SegmentInfos;
 
 import javax.ws.rs.core.Response;
 import java.io.Closeable;
@@ -32,6 +36,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -47,6 +52,7 @@ import java.util.regex.Pattern;
 class SchemaInstance implements IndexInstance.Provider, Closeable {
 
 	private final static String SETTINGS_FILE = "settings.json";
+	private final static String TEMPLATES_FILE = "templates.json";
 
 	private final ConcurrentHashMap<String, IndexInstanceManager> indexMap;
 	private final ConcurrentHashMap<String, AnalyzerFactory> analyzerFactoryMap;
@@ -55,23 +61,39 @@ class SchemaInstance implements IndexInstance.Provider, Closeable {
 	private final ConstructorParametersImpl instanceFactory;
 	private final IndexServiceInterface service;
 	private final ExecutorService executorService;
+	private final NrtCacheManager nrtCacheManager;
+	private final IndexingBufferManager indexingBufferManager;
+	private final MergeService mergeService;
+	private final IndexEvictionManager evictionManager;
+	private final AnalyzerComponentCache analyzerComponentCache;
 	private final String schemaName;
 	private final Path schemaDirectory;
 	private final File settingsFile;
 	private volatile SchemaSettingsDefinition settingsDefinition;
 	private volatile Path backupRootDirectory;
+	private final File templatesFile;
+	private final ConcurrentHashMap<String, IndexTemplate> templateMap;
+	private final Set<String> pendingCreations = ConcurrentHashMap.newKeySet();
 
 	private final ReadWriteLock backupLock = ReadWriteLock.stamped();
+	private final ConcurrentHashMap<Path, BackupProgress> backupJobs = new ConcurrentHashMap<>();
 
 	SchemaInstance(final ConstructorParametersImpl instanceFactory,
 			final ConcurrentHashMap<String, AnalyzerFactory> analyzerFactoryMap, final IndexServiceInterface service,
-			final File schemaDirectory, final ExecutorService executorService)
+			final File schemaDirectory, final ExecutorService executorService, final NrtCacheManager nrtCacheManager,
+			final IndexingBufferManager indexingBufferManager, final MergeService mergeService,
+			final IndexEvictionManager evictionManager, final AnalyzerComponentCache analyzerComponentCache)
 			throws IOException, ReflectiveOperationException, URISyntaxException {
 
 		this.readWriteSemaphores = new ReadWriteSemaphores(null, null);
 		this.instanceFactory = instanceFactory;
 		this.analyzerFactoryMap = analyzerFactoryMap;
 		this.executorService = executorService;
+		this.nrtCacheManager = nrtCacheManager;
+		this.indexingBufferManager = indexingBufferManager;
+		this.mergeService = mergeService;
+		this.evictionManager = evictionManager;
+		this.analyzerComponentCache = analyzerComponentCache;
 		this.service = service;
 		this.schemaName = schemaDirectory.getName();
 		this.schemaDirectory = schemaDirectory.toPath();
@@ -86,23 +108,36 @@ class SchemaInstance implements IndexInstance.Provider, Closeable {
 				SchemaSettingsDefinition.EMPTY;
 		checkSettings();
 
+		templatesFile = new File(schemaDirectory, TEMPLATES_FILE);
+		templateMap = new ConcurrentHashMap<>();
+		if (templatesFile.exists())
+			ObjectMappers.JSON.readValue(templatesFile, IndexTemplateDefinition.mapStringTemplateTypeRef)
+					.forEach((name, definition) -> templateMap.put(name, new IndexTemplate(name, definition, this)));
+
 		Files.list(this.schemaDirectory).filter(path -> Files.isDirectory(path)).forEach(indexPath -> {
-			indexMap.put(indexPath.toFile().getName(),
-					new IndexInstanceManager(this, instanceFactory, analyzerFactoryMap, readWriteSemaphores,
-							executorService, service, indexPath));
+			indexMap.put(indexPath.toFile().getName(), newIndexInstanceManager(indexPath));
 		});
 	}
 
 	@Override
 	public void close() throws IOException {
+		templateMap.forEachValue(1, IOUtils::closeQuietly);
 		indexMap.forEachValue(1, IOUtils::closeQuietly);
 	}
 
 	IndexInstance createUpdate(final String indexName, final IndexSettingsDefinition settings) throws Exception {
 		Objects.requireNonNull(settings, "The settings cannot be null");
-		return indexMap.computeIfAbsent(indexName,
-				name -> new IndexInstanceManager(this, instanceFactory, analyzerFactoryMap, readWriteSemaphores,
-						executorService, service, schemaDirectory.resolve(name))).createUpdate(settings);
+		return indexMap.computeIfAbsent(indexName, name -> {
+			if (pendingCreations.contains(name))
+				throw new ServerException(Response.Status.CONFLICT, "The index is being created: " + name);
+			return newIndexInstanceManager(schemaDirectory.resolve(name));
+		}).createUpdate(settings);
+	}
+
+	private IndexInstanceManager newIndexInstanceManager(final Path indexDirectory) {
+		return new IndexInstanceManager(this, instanceFactory, analyzerFactoryMap, readWriteSemaphores,
+				executorService, nrtCacheManager, indexingBufferManager, mergeService, evictionManager,
+				analyzerComponentCache, service, indexDirectory);
 	}
 
 	private IndexInstanceManager checkIndexExists(final String indexName,
@@ -115,23 +150,66 @@ class SchemaInstance implements IndexInstance.Provider, Closeable {
 	/**
 	 * Returns the indexInstance. If the index does not exists, an exception it
 	 * thrown. This method never returns a null value.
+	 * The instance is not protected against eviction: a request using the index should call use() or acquire().
 	 *
-	 * @param indexName        The name of the index
-	 * @param ensureWriterOpen if true the index will be reopen if the writer has been closed
+	 * @param indexName The name of the index
 	 * @return the indexInstance
 	 */
-	public IndexInstance get(String indexName, boolean ensureWriterOpen) {
+	public IndexInstance get(String indexName) {
+		final IndexInstanceManager indexInstanceManager = checkIndexExists(indexName, indexMap.get(indexName));
+		try {
+			return indexInstanceManager.open();
+		} catch (Exception e) {
+			throw ServerException.of(e);
+		}
+	}
+
+	/**
+	 * Returns the indexInstance, which is not evicted until IndexInstance.release() is called.
+	 *
+	 * @param indexName The name of the index
+	 * @return the acquired indexInstance
+	 */
+	IndexInstance acquire(String indexName) {
 		final IndexInstanceManager indexInstanceManager = checkIndexExists(indexName, indexMap.get(indexName));
 		try {
-			return ensureWriterOpen ? indexInstanceManager.getIndexInstance() : indexInstanceManager.open();
+			return indexInstanceManager.acquire();
 		} catch (Exception e) {
 			throw ServerException.of(e);
 		}
 	}
 
+	/**
+	 * Apply the action on the indexInstance, which is not evicted while the action is running.
+	 *
+	 * @param indexName The name of the index
+	 * @param action    the action to apply on the indexInstance
+	 * @return the result of the action
+	 */
 	@Override
-	public IndexInstance getIndex(String name) {
-		return get(name, false);
+	public <T, E extends Exception> T use(final String indexName, final FunctionEx<IndexInstance, T, E> action)
+			throws E {
+		final IndexInstance indexInstance = acquire(indexName);
+		try {
+			return action.apply(indexInstance);
+		} finally {
+			indexInstance.release();
+		}
+	}
+
+	/**
+	 * Apply the action on the indexInstance, which is not evicted while the action is running.
+	 *
+	 * @param indexName The name of the index
+	 * @param action    the action to apply on the indexInstance
+	 */
+	<E extends Exception> void consume(final String indexName, final ConsumerEx<IndexInstance, E> action) throws E {
+		final IndexInstance indexInstance = acquire(indexName);
+		try {
+			action.accept(indexInstance);
+		} finally {
+			indexInstance.release();
+		}
 	}
 
 	void delete() {
@@ -151,6 +229,27 @@ class SchemaInstance implements IndexInstance.Provider, Closeable {
 		return indexMap.keySet();
 	}
 
+	/**
+	 * Read the generation of the last commit from the directory listing: the index is not opened.
+	 *
+	 * @param indexName the name of the index
+	 * @return the generation of the last commit, or -1 if the index has no commit
+	 */
+	long getLastCommitGeneration(final String indexName) {
+		final String[] files = schemaDirectory.resolve(indexName).resolve(IndexFileSet.INDEX_DATA).toFile().list();
+		return files == null ? -1 : SegmentInfos.getLastCommitGeneration(files);
+	}
+
+	Collection<IndexInstanceManager> getIndexManagers() {
+		return indexMap.values();
+	}
+
+	SortedMap<String, IndexReadinessStatus.State> getIndexStates() {
+		final SortedMap<String, IndexReadinessStatus.State> states = new TreeMap<>();
+		indexMap.forEach((name, indexInstanceManager) -> states.put(name, indexInstanceManager.getState()));
+		return states;
+	}
+
 	final private static Pattern backupNameMatcher = Pattern.compile("[^a-zA-Z0-9-_]");
 
 	private void checkBackupConfig() {
@@ -181,35 +280,77 @@ class SchemaInstance implements IndexInstance.Provider, Closeable {
 		return backupDirectory;
 	}
 
+	/**
+	 * The instances are acquired while the consumer is called
+	 */
 	private void indexIterator(final String indexName, final BiConsumer<String, IndexInstance> consumer) {
 		if ("*".equals(indexName)) {
 			indexMap.forEach(1, (name, indexInstanceManager) -> {
 				try {
-					consumer.accept(name, indexInstanceManager.open());
+					final IndexInstance indexInstance = indexInstanceManager.acquire();
+					try {
+						consumer.accept(name, indexInstance);
+					} finally {
+						indexInstance.release();
+					}
 				} catch (Exception e) {
 					throw ServerException.of(e);
 				}
 			});
 		} else
-			consumer.accept(indexName, get(indexName, false));
+			use(indexName, indexInstance -> {
+				consumer.accept(indexName, indexInstance);
+				return null;
+			});
 	}
 
-	SortedMap<String, BackupStatus> backups(final String indexName, final String backupName) throws IOException {
+	SortedMap<String, BackupStatus> backups(final String indexName, final String backupName, final boolean async)
+			throws IOException {
 		return backupLock.writeEx(() -> {
 			checkBackupConfig();
 			final Path backupDirectory = getBackupDirectory(backupName, true);
 			final SortedMap<String, BackupStatus> results = new TreeMap<>();
 			indexIterator(indexName, (idxName, indexInstance) -> {
-				try {
-					results.put(idxName, indexInstance.backup(backupDirectory.resolve(idxName)));
-				} catch (IOException e) {
-					throw ServerException.of(e);
+				final Path backupIndexDirectory = backupDirectory.resolve(idxName);
+				final BackupProgress progress = new BackupProgress();
+				final BackupProgress previous = backupJobs.putIfAbsent(backupIndexDirectory, progress);
+				if (previous != null) {
+					if (previous.isRunning())
+						throw new ServerException(Response.Status.CONFLICT,
+								"A backup is already running: " + backupName + '/' + idxName);
+					backupJobs.put(backupIndexDirectory, progress);
 				}
+				if (async) {
+					// The instance stays acquired until the backup is done
+					indexInstance.acquire();
+					executorService.submit(() -> {
+						try {
+							return runBackup(indexInstance, backupIndexDirectory, progress);
+						} finally {
+							indexInstance.release();
+						}
+					});
+					results.put(idxName, BackupStatus.newBackupStatus(progress));
+				} else
+					results.put(idxName, runBackup(indexInstance, backupIndexDirectory, progress));
 			});
 			return results;
 		});
 	}
 
+	private BackupStatus runBackup(final IndexInstance indexInstance, final Path backupIndexDirectory,
+			final BackupProgress progress) {
+		try {
+			final BackupStatus status = indexInstance.backup(backupIndexDirectory, progress);
+			backupJobs.remove(backupIndexDirectory, progress);
+			return status;
+		} catch (IOException | RuntimeException e) {
+			// The failed job is kept, so its error can be read using the backup status
+			progress.failed(e);
+			throw ServerException.of(e);
+		}
+	}
+
 	private void backupIterator(final String backupName, final Consumer<Path> consumer) {
 		final Path backupSchemaDirectory = backupRootDirectory.resolve(schemaName);
 		if (Files.notExists(backupSchemaDirectory) || !Files.isDirectory(backupSchemaDirectory))
@@ -237,7 +378,10 @@ class SchemaInstance implements IndexInstance.Provider, Closeable {
 				indexIterator(indexName, (idxName, indexInstance) -> {
 					try {
 						final Path backupIndexDirectory = backupDirectory.resolve(idxName);
-						if (Files.exists(backupIndexDirectory) && Files.isDirectory(backupIndexDirectory))
+						final BackupProgress progress = backupJobs.get(backupIndexDirectory);
+						if (progress != null)
+							backupResults.put(idxName, BackupStatus.newBackupStatus(progress));
+						else if (Files.exists(backupIndexDirectory) && Files.isDirectory(backupIndexDirectory))
 							backupResults.put(idxName, indexInstance.getBackup(backupIndexDirectory, extractVersion));
 					} catch (IOException e) {
 						throw ServerException.of(e);
@@ -278,6 +422,12 @@ class SchemaInstance implements IndexInstance.Provider, Closeable {
 
 				backupIndexDirectoryIterator(backupDirectory, indexName, backupIndexDirectory -> {
 
+					final BackupProgress progress = backupJobs.get(backupIndexDirectory);
+					if (progress != null && progress.isRunning())
+						throw new ServerException(Response.Status.CONFLICT,
+								"The backup is running: " + backupIndexDirectory.getFileName());
+					backupJobs.remove(backupIndexDirectory);
+
 					try {
 						FileUtils.deleteDirectory(backupIndexDirectory);
 						counter.incrementAndGet();
@@ -332,8 +482,162 @@ class SchemaInstance implements IndexInstance.Provider, Closeable {
 		return indexInstanceManager == null ? null : new IndexCheckStatus(indexInstanceManager.check());
 	}
 
+	/**
+	 * Create a new index from its files. The directory is removed if the index cannot be materialized.
+	 * The name is reserved while the files are materialized, outside of the index map lock.
+	 */
+	private IndexInstance createFrom(final String indexName, final IndexMaterializer materializer) throws Exception {
+		final Path indexDirectory = schemaDirectory.resolve(indexName);
+		indexMap.compute(indexName, (name, existing) -> {
+			if (existing != null || Files.exists(indexDirectory) || !pendingCreations.add(name))
+				throw new ServerException(Response.Status.CONFLICT, "The index already exists: " + name);
+			return null;
+		});
+		final IndexInstanceManager indexInstanceManager;
+		try {
+			try {
+				materializer.materialize(indexDirectory);
+			} catch (IOException | RuntimeException e) {
+				FileUtils.deleteDirectoryQuietly(indexDirectory);
+				throw e;
+			}
+			indexInstanceManager = newIndexInstanceManager(indexDirectory);
+			indexMap.put(indexName, indexInstanceManager);
+		} finally {
+			pendingCreations.remove(indexName);
+		}
+		return indexInstanceManager.open();
+	}
+
+	@FunctionalInterface
+	private interface IndexMaterializer {
+		void materialize(Path indexDirectory) throws IOException;
+	}
+
+	IndexStatus restoreIndex(final String indexName, final String backupName, final String sourceIndexName)
+			throws Exception {
+		return backupLock.readEx(() -> {
+			checkBackupConfig();
+			final Path backupDirectory = getBackupDirectory(backupName, false);
+			final Path backupIndexDirectory =
+					backupDirectory.resolve(StringUtils.isEmpty(sourceIndexName) ? indexName : sourceIndexName);
+			if (!Files.isDirectory(backupIndexDirectory))
+				throw new ServerException(Response.Status.NOT_FOUND,
+						"Backup not found: " + backupName + '/' + backupIndexDirectory.getFileName());
+			final BackupProgress progress = backupJobs.get(backupIndexDirectory);
+			if (progress != null)
+				throw new ServerException(Response.Status.CONFLICT,
+						"The backup is not complete: " + backupName + '/' + backupIndexDirectory.getFileName());
+			return createFrom(indexName,
+					indexDirectory -> IndexBackup.restore(backupIndexDirectory, indexDirectory)).getStatus();
+		});
+	}
+
+	IndexStatus cloneIndex(final String indexName, final String targetIndexName) throws Exception {
+		return use(indexName, indexInstance -> createFrom(targetIndexName, indexInstance::cloneTo)).getStatus();
+	}
+
+	OnlineCheckStatus startOnlineCheck(final String indexName, final Double rateMbPerSec) {
+		return get(indexName).startOnlineCheck(rateMbPerSec);
+	}
+
+	MultiSearchInstance newMultiSearchInstance() throws IOException {
+		return new MultiSearchInstance(this, instanceFactory, analyzerFactoryMap, executorService);
+	}
+
+	private void saveTemplates() throws IOException {
+		final Map<String, IndexTemplateDefinition> definitions = new TreeMap<>();
+		templateMap.forEach((name, template) -> definitions.put(name, template.getDefinition()));
+		if (definitions.isEmpty())
+			Files.deleteIfExists(templatesFile.toPath());
+		else
+			ObjectMappers.JSON.writeValue(templatesFile, definitions);
+	}
+
+	synchronized IndexTemplateDefinition setTemplate(final String templateName,
+			final IndexTemplateDefinition definition) throws IOException {
+		if (StringUtils.isEmpty(templateName) || backupNameMatcher.matcher(templateName).find())
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"The template name should only contains alphanumeric characters, dash, or underscore: " +
+							templateName);
+		if (definition == null || StringUtils.isEmpty(definition.timestampField))
+			throw new ServerException(Response.Status.BAD_REQUEST,
+					"The timestamp field is missing - Template: " + templateName);
+		final IndexTemplate template = templateMap.get(templateName);
+		if (template != null)
+			template.setDefinition(definition);
+		else
+			templateMap.put(templateName, new IndexTemplate(templateName, definition, this));
+		saveTemplates();
+		return definition;
+	}
+
+	SortedMap<String, IndexTemplateDefinition> getTemplates() {
+		final SortedMap<String, IndexTemplateDefinition> definitions = new TreeMap<>();
+		templateMap.forEach((name, template) -> definitions.put(name, template.getDefinition()));
+		return definitions;
+	}
+
+	IndexTemplate getTemplate(final String templateName) {
+		final IndexTemplate template = templateMap.get(templateName);
+		if (template == null)
+			throw new ServerException(Response.Status.NOT_FOUND, "Template not found: " + templateName);
+		return template;
+	}
+
+	/**
+	 * Remove the template. The partitions are kept as regular indexes.
+	 */
+	synchronized void deleteTemplate(final String templateName) throws IOException {
+		final IndexTemplate template = templateMap.remove(templateName);
+		if (template == null)
+			throw new ServerException(Response.Status.NOT_FOUND, "Template not found: " + templateName);
+		template.close();
+		saveTemplates();
+	}
+
+	MergeStatus startCompaction(final String indexName, final String type, final Integer maxSegments) {
+		final MergeJob.Type mergeType;
+		try {
+			mergeType = MergeJob.Type.valueOf(type == null ? MergeJob.Type.force_merge.name() : type);
+		} catch (IllegalArgumentException e) {
+			throw new ServerException(Response.Status.BAD_REQUEST, "Unknown compaction type: " + type);
+		}
+		return get(indexName).startMerge(mergeType, maxSegments);
+	}
+
+	MergeStatus getCompaction(final String indexName) {
+		return checkCompaction(indexName, get(indexName).getMerge());
+	}
+
+	MergeStatus cancelCompaction(final String indexName) {
+		return checkCompaction(indexName, get(indexName).cancelMerge());
+	}
+
+	private static MergeStatus checkCompaction(final String indexName, final MergeStatus status) {
+		if (status == null)
+			throw new ServerException(Response.Status.NOT_FOUND, "No compaction has been started: " + indexName);
+		return status;
+	}
+
+	IndexStatus freezeIndex(final String indexName) throws Exception {
+		return checkIndexExists(indexName, indexMap.get(indexName)).freeze().getStatus();
+	}
+
+	IndexStatus unfreezeIndex(final String indexName) throws Exception {
+		return checkIndexExists(indexName, indexMap.get(indexName)).unfreeze().getStatus();
+	}
+
+	OnlineCheckStatus getOnlineCheck(final String indexName) {
+		final OnlineCheckStatus status = get(indexName).getOnlineCheck();
+		if (status == null)
+			throw new ServerException(Response.Status.NOT_FOUND, "No online check has been started: " + indexName);
+		return status;
+	}
+
 	IndexStatus mergeIndex(final String indexName, final String mergedIndexName,
 			final Map<String, String> commitUserData) throws IOException {
-		return getIndex(indexName).merge(getIndex(mergedIndexName), commitUserData);
+		return use(indexName, indexInstance -> use(mergedIndexName,
+				mergedInstance -> indexInstance.merge(mergedInstance, commitUserData)));
 	}
 }
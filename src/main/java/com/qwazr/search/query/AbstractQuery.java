@@ -120,4 +120,15 @@ public abstract class AbstractQuery<T extends AbstractQuery> extends Equalizer<T
 	public abstract Query getQuery(final QueryContext queryContext)
 			throws IOException, ParseException, QueryNodeException, ReflectiveOperationException;
 
+	/**
+	 * A cacheable query always builds the same Lucene query as long as the fields and the analyzers are unchanged.
+	 * It must not depend on the content of the index, and must be fully described by its JSON serialization.
+	 *
+	 * @return true if the built Lucene query can be cached
+	 */
+	@JsonIgnore
+	public boolean isCacheable() {
+		return false;
+	}
+
 }
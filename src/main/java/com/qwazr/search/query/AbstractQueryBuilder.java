@@ -69,6 +69,15 @@ public abstract class AbstractQueryBuilder<T extends AbstractQueryBuilder> exten
 			queryBuilder.setEnableGraphQueries(enableGraphQueries);
 	}
 
+	/**
+	 * The query is not cacheable if a custom analyzer (not serialized) has been set
+	 */
+	@Override
+	@JsonIgnore
+	public boolean isCacheable() {
+		return analyzer == null;
+	}
+
 	@Override
 	@JsonIgnore
 	protected boolean isEqual(T q) {
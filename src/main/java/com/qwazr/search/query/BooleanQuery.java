@@ -149,6 +149,16 @@ public class BooleanQuery extends AbstractQuery<BooleanQuery> {
 		return builder.build();
 	}
 
+	@Override
+	@JsonIgnore
+	public boolean isCacheable() {
+		if (clauses != null)
+			for (BooleanClause clause : clauses)
+				if (clause.query == null || !clause.query.isCacheable())
+					return false;
+		return true;
+	}
+
 	@Override
 	protected boolean isEqual(BooleanQuery query) {
 		return CollectionsUtils.equals(clauses, query.clauses) && Objects.equals(disable_coord, query.disable_coord) &&
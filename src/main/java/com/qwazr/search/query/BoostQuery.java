@@ -16,6 +16,7 @@
 package com.qwazr.search.query;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.qwazr.search.index.QueryContext;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -45,6 +46,12 @@ public class BoostQuery extends AbstractQuery<BoostQuery> {
 		return new org.apache.lucene.search.BoostQuery(query.getQuery(queryContext), boost);
 	}
 
+	@Override
+	@JsonIgnore
+	public boolean isCacheable() {
+		return query != null && query.isCacheable();
+	}
+
 	@Override
 	protected boolean isEqual(BoostQuery q) {
 		return Objects.equals(query, q.query) && Objects.equals(boost, q.boost);
@@ -16,6 +16,7 @@
 package com.qwazr.search.query;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.qwazr.search.index.QueryContext;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -43,6 +44,12 @@ public class ConstantScoreQuery extends AbstractQuery<ConstantScoreQuery> {
 		return new org.apache.lucene.search.ConstantScoreQuery(query.getQuery(queryContext));
 	}
 
+	@Override
+	@JsonIgnore
+	public boolean isCacheable() {
+		return query != null && query.isCacheable();
+	}
+
 	@Override
 	protected boolean isEqual(ConstantScoreQuery q) {
 		return Objects.equals(query, q.query);
@@ -16,6 +16,7 @@
 package com.qwazr.search.query;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.qwazr.search.index.QueryContext;
 import com.qwazr.utils.CollectionsUtils;
@@ -59,6 +60,16 @@ public class DisjunctionMaxQuery extends AbstractQuery<DisjunctionMaxQuery> {
 				tieBreakerMultiplier == null ? 0 : tieBreakerMultiplier);
 	}
 
+	@Override
+	@JsonIgnore
+	public boolean isCacheable() {
+		if (queries != null)
+			for (AbstractQuery query : queries)
+				if (query == null || !query.isCacheable())
+					return false;
+		return true;
+	}
+
 	@Override
 	protected boolean isEqual(DisjunctionMaxQuery q) {
 		return CollectionsUtils.equals(queries, q.queries);
@@ -53,7 +53,7 @@ public class JoinQuery extends AbstractQuery<JoinQuery> {
 	@Override
 	final public Query getQuery(final QueryContext queryContext)
 			throws IOException, ParseException, ReflectiveOperationException, QueryNodeException {
-		return queryContext.getIndex(from_index).createJoinQuery(this);
+		return queryContext.useIndex(from_index, index -> index.createJoinQuery(this));
 	}
 
 	@Override
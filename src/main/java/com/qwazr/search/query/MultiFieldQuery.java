@@ -25,7 +25,6 @@ import com.qwazr.utils.StringUtils;
 import com.qwazr.utils.concurrent.ConcurrentUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
@@ -179,10 +178,9 @@ public class MultiFieldQuery extends AbstractQuery<MultiFieldQuery> {
 
 		// We look for terms frequency globally
 		final Map<String, Integer> termsFreq = new HashMap<>();
-		final IndexReader indexReader = queryContext.getIndexReader();
 		ConcurrentUtils.forEachEx(fieldsBoosts, (field, boost) -> {
 			try (final TokenStream tokenStream = alzr.tokenStream(field, queryString)) {
-				new TermsWithFreq(tokenStream, indexReader, field, termsFreq).forEachToken();
+				new TermsWithFreq(tokenStream, queryContext, field, termsFreq).forEachToken();
 				tokenStream.end();
 			}
 		});
@@ -245,14 +243,14 @@ public class MultiFieldQuery extends AbstractQuery<MultiFieldQuery> {
 
 	private class TermsWithFreq extends TermConsumer.WithChar {
 
-		private final IndexReader indexReader;
+		private final QueryContext queryContext;
 		private final String field;
 		private final Map<String, Integer> termsFreq;
 
-		private TermsWithFreq(final TokenStream tokenStream, final IndexReader indexReader, final String field,
+		private TermsWithFreq(final TokenStream tokenStream, final QueryContext queryContext, final String field,
 				final Map<String, Integer> termsFreq) {
 			super(tokenStream);
-			this.indexReader = indexReader;
+			this.queryContext = queryContext;
 			this.field = field;
 			this.termsFreq = termsFreq;
 		}
@@ -261,7 +259,7 @@ public class MultiFieldQuery extends AbstractQuery<MultiFieldQuery> {
 		final public boolean token() throws IOException {
 			final String text = charTermAttr.toString();
 			final Term term = new Term(field, text);
-			final int newFreq = indexReader == null ? 0 : indexReader.docFreq(term);
+			final int newFreq = queryContext.getDocFreq(term);
 			if (newFreq > 0) {
 				final Integer previousFreq = termsFreq.get(text);
 				if (previousFreq == null || newFreq > previousFreq)
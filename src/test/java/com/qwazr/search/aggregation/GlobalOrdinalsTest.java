@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class GlobalOrdinalsTest {
+
+	private static void addDocument(final IndexWriter indexWriter, final String value) throws IOException {
+		final Document document = new Document();
+		document.add(new SortedDocValuesField("category", new BytesRef(value)));
+		indexWriter.addDocument(document);
+		// One segment per document
+		indexWriter.commit();
+	}
+
+	@Test
+	public void ordinalMapIsCachedPerReader() throws IOException {
+		try (final RAMDirectory directory = new RAMDirectory()) {
+			try (final IndexWriter indexWriter = new IndexWriter(directory,
+					new IndexWriterConfig(new StandardAnalyzer()))) {
+				addDocument(indexWriter, "b");
+				addDocument(indexWriter, "a");
+				addDocument(indexWriter, "b");
+			}
+			final DirectoryReader indexReader = DirectoryReader.open(directory);
+			Assert.assertEquals(3, indexReader.leaves().size());
+
+			final GlobalOrdinals ordinals = GlobalOrdinals.of(indexReader, "category");
+			Assert.assertEquals(2, ordinals.getValueCount());
+			Assert.assertEquals("a", ordinals.lookup(0));
+			Assert.assertEquals("b", ordinals.lookup(1));
+			// The first segment only contains "b", the second one only contains "a"
+			Assert.assertEquals(1, ordinals.getGlobalOrds(indexReader.leaves().get(0)).get(0));
+			Assert.assertEquals(0, ordinals.getGlobalOrds(indexReader.leaves().get(1)).get(0));
+			Assert.assertEquals(1, GlobalOrdinals.getCachedOrdinalMaps(indexReader));
+
+			// The next query reuses the map
+			Assert.assertEquals(2, GlobalOrdinals.of(indexReader, "category").getValueCount());
+			Assert.assertEquals(1, GlobalOrdinals.getCachedOrdinalMaps(indexReader));
+
+			indexReader.close();
+			Assert.assertEquals(0, GlobalOrdinals.getCachedOrdinalMaps(indexReader));
+		}
+	}
+}
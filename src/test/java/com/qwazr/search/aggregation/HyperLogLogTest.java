@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.aggregation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+	private final static int THRESHOLD = 100;
+
+	/**
+	 * 512 registers: the standard error is 1.04 / sqrt(512) = 4.6%, three times that is allowed
+	 */
+	private final static double MAX_ERROR = 0.14;
+
+	private static HyperLogLog sketch(final long from, final long to) {
+		final HyperLogLog sketch = new HyperLogLog(THRESHOLD);
+		for (long value = from; value < to; value++)
+			sketch.add(HyperLogLog.hash(value));
+		return sketch;
+	}
+
+	private static void assertError(final long expected, final long actual) {
+		Assert.assertTrue("Expected " + expected + " but was " + actual,
+				Math.abs(actual - expected) <= expected * MAX_ERROR);
+	}
+
+	@Test
+	public void exactBelowThreshold() {
+		Assert.assertEquals(THRESHOLD, sketch(0, THRESHOLD).cardinality());
+	}
+
+	@Test
+	public void denseErrorBounds() {
+		Assert.assertEquals(9, HyperLogLog.precisionFor(THRESHOLD));
+		// Linear counting, raw estimate just above it, then large cardinalities
+		for (long count : new long[] { 1_000, 2_000, 5_000, 100_000 })
+			assertError(count, sketch(0, count).cardinality());
+	}
+
+	@Test
+	public void mergeSlices() {
+		// Two overlapping slices
+		final HyperLogLog slice1 = sketch(0, 60_000);
+		slice1.merge(sketch(40_000, 100_000));
+		assertError(100_000, slice1.cardinality());
+		// The registers of the merged sketch are the ones of a single sketch
+		Assert.assertEquals(sketch(0, 100_000).cardinality(), slice1.cardinality());
+	}
+
+	@Test
+	public void mergeSparseAndDense() {
+		final long expected = sketch(0, 10_050).cardinality();
+
+		final HyperLogLog dense = sketch(0, 10_000);
+		dense.merge(sketch(10_000, 10_050));
+		Assert.assertEquals(expected, dense.cardinality());
+
+		final HyperLogLog sparse = sketch(10_000, 10_050);
+		sparse.merge(sketch(0, 10_000));
+		Assert.assertEquals(expected, sparse.cardinality());
+		assertError(10_050, expected);
+	}
+
+	@Test
+	public void precisionThresholdOutOfRange() {
+		Assert.assertEquals(CardinalityAggregation.DEFAULT_PRECISION_THRESHOLD,
+				new CardinalityAggregation("field").getPrecisionThresholdValue());
+		for (int threshold : new int[] { 0, -1, CardinalityAggregation.MAX_PRECISION_THRESHOLD + 1 }) {
+			try {
+				new CardinalityAggregation("field", threshold).getPrecisionThresholdValue();
+				Assert.fail("IllegalArgumentException not thrown: " + threshold);
+			} catch (IllegalArgumentException e) {
+				Assert.assertTrue(e.getMessage().contains(Integer.toString(threshold)));
+			}
+		}
+	}
+}
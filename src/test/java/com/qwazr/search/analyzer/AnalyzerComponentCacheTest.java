@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.analyzer;
+
+import com.qwazr.search.analysis.AnalyzerComponentCache;
+import com.qwazr.search.analysis.AnalyzerDefinition;
+import com.qwazr.search.analysis.CustomAnalyzer;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AnalyzerComponentCacheTest {
+
+	private final static String DEFINITION = "{\"tokenizer\":{\"class\":\"standard.StandardTokenizer\"}," +
+			"\"filters\":[{\"class\":\"core.LowerCaseFilter\"}," +
+			"{\"class\":\"core.StopFilter\",\"words\":\"stop.txt\"}]}";
+
+	private static class Loader implements ResourceLoader, AnalyzerComponentCache.Aware {
+
+		private final ResourceLoader classLoader;
+		private final AnalyzerComponentCache cache;
+		private final Map<String, String> resources;
+
+		private Loader(final AnalyzerComponentCache cache) {
+			this.classLoader = new ClasspathResourceLoader(AnalyzerComponentCacheTest.class);
+			this.cache = cache;
+			this.resources = new HashMap<>();
+		}
+
+		private Loader resource(final String name, final String content) {
+			resources.put(name, content);
+			return this;
+		}
+
+		@Override
+		public InputStream openResource(final String resourceName) throws IOException {
+			final String content = resources.get(resourceName);
+			if (content == null)
+				throw new FileNotFoundException(resourceName);
+			return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public <T> Class<? extends T> findClass(final String cname, final Class<T> expectedType) {
+			return classLoader.findClass(cname, expectedType);
+		}
+
+		@Override
+		public <T> T newInstance(final String cname, final Class<T> expectedType) {
+			return classLoader.newInstance(cname, expectedType);
+		}
+
+		@Override
+		public AnalyzerComponentCache getAnalyzerComponentCache() {
+			return cache;
+		}
+	}
+
+	private static CustomAnalyzer newAnalyzer(final ResourceLoader loader)
+			throws IOException, ReflectiveOperationException {
+		return newAnalyzer(loader, DEFINITION);
+	}
+
+	private static CustomAnalyzer newAnalyzer(final ResourceLoader loader, final String definition)
+			throws IOException, ReflectiveOperationException {
+		return new CustomAnalyzer(loader, AnalyzerDefinition.newAnalyzer(definition));
+	}
+
+	@Test
+	public void sharedAndReleased() throws IOException, ReflectiveOperationException {
+		final AnalyzerComponentCache cache = new AnalyzerComponentCache();
+		final Loader loader1 = new Loader(cache).resource("stop.txt", "the\nand");
+		final Loader loader2 = new Loader(cache).resource("stop.txt", "the\nand");
+		final Loader loader3 = new Loader(cache).resource("stop.txt", "a\nan");
+
+		final CustomAnalyzer analyzer1 = newAnalyzer(loader1);
+		Assert.assertEquals(3, cache.getComponents());
+		Assert.assertEquals(3, cache.getMisses());
+		Assert.assertEquals(0, cache.getHits());
+
+		// Same content in another index: every component is shared
+		final CustomAnalyzer analyzer2 = newAnalyzer(loader2);
+		Assert.assertEquals(3, cache.getComponents());
+		Assert.assertEquals(6, cache.getReferences());
+		Assert.assertEquals(3, cache.getHits());
+
+		// Different stop words: only the stop filter is built again
+		final CustomAnalyzer analyzer3 = newAnalyzer(loader3);
+		Assert.assertEquals(4, cache.getComponents());
+		Assert.assertEquals(9, cache.getReferences());
+		Assert.assertEquals(4, cache.getMisses());
+
+		analyzer1.close();
+		analyzer1.close();
+		Assert.assertEquals(4, cache.getComponents());
+		Assert.assertEquals(6, cache.getReferences());
+
+		analyzer2.close();
+		Assert.assertEquals(3, cache.getComponents());
+		analyzer3.close();
+		Assert.assertEquals(0, cache.getComponents());
+		Assert.assertEquals(0, cache.getReferences());
+	}
+
+	@Test
+	public void argumentsAreNotConcatenated() throws IOException, ReflectiveOperationException {
+		final AnalyzerComponentCache cache = new AnalyzerComponentCache();
+		final Loader loader = new Loader(cache).resource("stop.txt", "the\nand");
+		// Both argument maps print the same way: {ignoreCase=true, words=stop.txt}
+		final String tokenizer = "{\"tokenizer\":{\"class\":\"standard.StandardTokenizer\"},";
+		final CustomAnalyzer analyzer1 = newAnalyzer(loader, tokenizer +
+				"\"filters\":[{\"class\":\"core.StopFilter\",\"ignoreCase\":\"true\",\"words\":\"stop.txt\"}]}");
+		final CustomAnalyzer analyzer2 = newAnalyzer(loader, tokenizer +
+				"\"filters\":[{\"class\":\"core.StopFilter\",\"ignoreCase\":\"true, words=stop.txt\"}]}");
+		// Only the tokenizer is shared
+		Assert.assertEquals(3, cache.getComponents());
+		Assert.assertEquals(1, cache.getHits());
+		analyzer1.close();
+		analyzer2.close();
+		Assert.assertEquals(0, cache.getComponents());
+	}
+
+	@Test
+	public void failureReleasesComponents() {
+		final AnalyzerComponentCache cache = new AnalyzerComponentCache();
+		try {
+			newAnalyzer(new Loader(cache));
+			Assert.fail("The stop words resource should be missing");
+		} catch (IOException | ReflectiveOperationException e) {
+			Assert.assertEquals(0, cache.getReferences());
+		}
+	}
+}
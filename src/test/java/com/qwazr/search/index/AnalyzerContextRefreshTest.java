@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.search.analysis.AnalyzerContext;
+import com.qwazr.search.analysis.AnalyzerDefinition;
+import com.qwazr.search.analysis.CustomAnalyzer;
+import com.qwazr.search.analysis.UpdatableAnalyzers;
+import com.qwazr.search.field.CustomFieldDefinition;
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.utils.ObjectMappers;
+import org.apache.lucene.analysis.TokenStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+public class AnalyzerContextRefreshTest {
+
+	private Path resourcesDirectory;
+	private FileResourceLoader resourceLoader;
+	private FieldMap fieldMap;
+	private LinkedHashMap<String, CustomAnalyzer.Factory> analyzers;
+
+	private static CustomAnalyzer.Factory stopAnalyzer(final String words) throws IOException {
+		return new CustomAnalyzer.Factory(AnalyzerDefinition.newAnalyzer(
+				"{\"tokenizer\":{\"class\":\"standard.StandardTokenizer\"}," +
+						"\"filters\":[{\"class\":\"core.StopFilter\",\"words\":\"" + words + "\"}]}"));
+	}
+
+	private static FieldDefinition textField(final String analyzer) {
+		return CustomFieldDefinition.of().template(FieldDefinition.Template.TextField).analyzer(analyzer).build();
+	}
+
+	@Before
+	public void setup() throws IOException {
+		resourcesDirectory = Files.createTempDirectory("resources");
+		Files.write(resourcesDirectory.resolve("stop1.txt"), "the".getBytes(StandardCharsets.UTF_8));
+		Files.write(resourcesDirectory.resolve("stop2.txt"), "and".getBytes(StandardCharsets.UTF_8));
+		resourceLoader = new FileResourceLoader(null, resourcesDirectory.toFile(), null);
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>();
+		fields.put("field1", textField("analyzer1"));
+		fields.put("field2", textField("analyzer2"));
+		fieldMap = new FieldMap(fields, null);
+		analyzers = new LinkedHashMap<>();
+		analyzers.put("analyzer1", stopAnalyzer("stop1.txt"));
+		analyzers.put("analyzer2", stopAnalyzer("stop2.txt"));
+	}
+
+	private AnalyzerContext newContext(final AnalyzerContext previous, final String changedResource) {
+		return new AnalyzerContext(previous,
+				changedResource == null ? null : Collections.singleton(changedResource), null, resourceLoader,
+				fieldMap, true, analyzers);
+	}
+
+	private static void analyze(final UpdatableAnalyzers analyzers, final String field) throws IOException {
+		try (final TokenStream tokenStream = analyzers.tokenStream(field, "the quick and")) {
+			tokenStream.reset();
+			while (tokenStream.incrementToken()) {
+			}
+			tokenStream.end();
+		}
+	}
+
+	@Test
+	public void resourceDependencies() throws IOException {
+		final AnalyzerContext context1 = newContext(null, null);
+		Assert.assertEquals(2, context1.getBuiltAnalyzers());
+		Assert.assertTrue(context1.dependsOn("stop1.txt"));
+		Assert.assertTrue(context1.dependsOn("stop2.txt"));
+		Assert.assertFalse(context1.dependsOn("other.txt"));
+
+		final UpdatableAnalyzers indexAnalyzers = new UpdatableAnalyzers(context1.indexAnalyzerMap);
+
+		// Only the analyzer which has loaded the resource is rebuilt
+		Files.write(resourcesDirectory.resolve("stop1.txt"), "quick".getBytes(StandardCharsets.UTF_8));
+		final AnalyzerContext context2 = newContext(context1, "stop1.txt");
+		Assert.assertEquals(1, context2.getBuiltAnalyzers());
+		Assert.assertNotSame(context1.indexAnalyzerMap.get("field1"), context2.indexAnalyzerMap.get("field1"));
+		Assert.assertSame(context1.indexAnalyzerMap.get("field2"), context2.indexAnalyzerMap.get("field2"));
+
+		// The reused analyzer survives the release of the previous generation
+		indexAnalyzers.update(context2.indexAnalyzerMap);
+		analyze(indexAnalyzers, "field1");
+		analyze(indexAnalyzers, "field2");
+
+		// A new analyzer definition only rebuilds this analyzer
+		analyzers.put("analyzer2", stopAnalyzer("stop1.txt"));
+		final AnalyzerContext context3 = newContext(context2, null);
+		Assert.assertEquals(1, context3.getBuiltAnalyzers());
+		Assert.assertSame(context2.indexAnalyzerMap.get("field1"), context3.indexAnalyzerMap.get("field1"));
+		Assert.assertFalse(context3.dependsOn("stop2.txt"));
+
+		indexAnalyzers.update(context3.indexAnalyzerMap);
+		analyze(indexAnalyzers, "field1");
+		analyze(indexAnalyzers, "field2");
+		indexAnalyzers.close();
+	}
+
+	@Test
+	public void unchangedDefinitionsAreReused() throws IOException {
+		final AnalyzerContext context1 = newContext(null, null);
+
+		// Like setAnalyzers: the definitions are parsed again, the factories are new instances
+		final LinkedHashMap<String, AnalyzerDefinition> definitions = AnalyzerDefinition.newAnalyzerMap(
+				ObjectMappers.JSON.writeValueAsString(CustomAnalyzer.createDefinitionMap(analyzers)));
+		definitions.put("analyzer2", stopAnalyzer("stop1.txt").definition);
+		analyzers.putAll(CustomAnalyzer.createFactoryMap(definitions, LinkedHashMap::new));
+
+		final AnalyzerContext context2 = newContext(context1, null);
+		Assert.assertEquals(1, context2.getBuiltAnalyzers());
+		Assert.assertSame(context1.indexAnalyzerMap.get("field1"), context2.indexAnalyzerMap.get("field1"));
+		Assert.assertNotSame(context1.indexAnalyzerMap.get("field2"), context2.indexAnalyzerMap.get("field2"));
+	}
+
+	@Test
+	public void fullRefresh() {
+		final AnalyzerContext context1 = newContext(null, null);
+		final AnalyzerContext context2 = newContext(null, "stop2.txt");
+		Assert.assertEquals(2, context2.getBuiltAnalyzers());
+		Assert.assertNotSame(context1.indexAnalyzerMap.get("field1"), context2.indexAnalyzerMap.get("field1"));
+	}
+
+	@Test
+	public void sameAnalyzers() {
+		final AnalyzerContext context1 = newContext(null, null);
+		Assert.assertFalse(context1.hasSameAnalyzers(null));
+
+		// Nothing has changed, every analyzer is reused
+		final AnalyzerContext context2 = newContext(context1, "other.txt");
+		Assert.assertEquals(0, context2.getBuiltAnalyzers());
+		Assert.assertTrue(context2.hasSameAnalyzers(context1));
+
+		// A new field reuses an analyzer, but the analyzer maps are different
+		final LinkedHashMap<String, FieldDefinition> fields = new LinkedHashMap<>(fieldMap.getFieldDefinitionMap());
+		fields.put("field3", textField("analyzer1"));
+		fieldMap = new FieldMap(fields, null);
+		final AnalyzerContext context3 = newContext(context2, null);
+		Assert.assertEquals(0, context3.getBuiltAnalyzers());
+		Assert.assertFalse(context3.hasSameAnalyzers(context2));
+
+		// A rebuilt analyzer
+		final AnalyzerContext context4 = newContext(context3, "stop1.txt");
+		Assert.assertFalse(context4.hasSameAnalyzers(context3));
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.FileUtils;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public class BackupManifestTest {
+
+	private Path schemaDirectory;
+
+	@Before
+	public void setup() throws IOException {
+		schemaDirectory = Files.createTempDirectory("backup-manifest");
+	}
+
+	@After
+	public void cleanup() {
+		FileUtils.deleteDirectoryQuietly(schemaDirectory);
+	}
+
+	private static BackupManifest manifest(final String indexUuid, final Long checksum) {
+		final Map<String, List<BackupManifest.FileEntry>> files =
+				Collections.singletonMap("index", Collections.singletonList(
+						new BackupManifest.FileEntry("_0.cfs", 100, checksum)));
+		return new BackupManifest(new Date(), "1", indexUuid, files);
+	}
+
+	@Test
+	public void previousBackupOfTheSameIndexOnly() throws IOException {
+		final Path previous = Files.createDirectories(schemaDirectory.resolve("first").resolve("index"));
+		manifest("uuid1", 42L).save(previous);
+		final Path backupIndexDirectory = schemaDirectory.resolve("second").resolve("index");
+		Assert.assertEquals(previous, BackupManifest.findPrevious(backupIndexDirectory, "uuid1"));
+		// The index has been recreated with the same name
+		Assert.assertNull(BackupManifest.findPrevious(backupIndexDirectory, "uuid2"));
+	}
+
+	@Test
+	public void containsChecksTheChecksum() throws IOException {
+		final Path previous = Files.createDirectories(schemaDirectory.resolve("first").resolve("index"));
+		manifest("uuid1", 42L).save(previous);
+		final BackupManifest manifest = BackupManifest.load(previous);
+		Assert.assertNotNull(manifest);
+		Assert.assertEquals("uuid1", manifest.indexUuid);
+		Assert.assertTrue(manifest.contains("index", "_0.cfs", 100, 42L));
+		Assert.assertFalse(manifest.contains("index", "_0.cfs", 100, 43L));
+		Assert.assertFalse(manifest.contains("index", "_0.cfs", 100, null));
+		Assert.assertFalse(manifest.contains("index", "_0.cfs", 101, 42L));
+		Assert.assertFalse(manifest.contains("taxonomy", "_0.cfs", 100, 42L));
+	}
+
+	@Test
+	public void retrieveChecksum() throws IOException {
+		try (final Directory directory = new RAMDirectory()) {
+			try (final IndexOutput output = directory.createOutput("with_footer", IOContext.DEFAULT)) {
+				CodecUtil.writeHeader(output, "test", 0);
+				output.writeString("content");
+				CodecUtil.writeFooter(output);
+			}
+			final long checksum;
+			try (final IndexInput input = directory.openInput("with_footer", IOContext.READONCE)) {
+				checksum = CodecUtil.checksumEntireFile(input);
+			}
+			try (final IndexOutput output = directory.createOutput("without_footer", IOContext.DEFAULT)) {
+				output.writeString("content without footer");
+			}
+			Assert.assertEquals(Long.valueOf(checksum), IndexBackup.retrieveChecksum(directory, "with_footer"));
+			Assert.assertNull(IndexBackup.retrieveChecksum(directory, "without_footer"));
+		}
+	}
+}
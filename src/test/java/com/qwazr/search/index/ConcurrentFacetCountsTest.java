@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.facet.Facets;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.FacetField;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrentFacetCountsTest {
+
+	private final static String SORTED_FIELD = "$sorted_facets";
+	private final static List<String> SORTED_DIMENSIONS = Arrays.asList("color", "size");
+	private final static List<String> TAXONOMY_DIMENSIONS = Arrays.asList("category", "brand");
+
+	private static Directory dataDirectory;
+	private static Directory taxonomyDirectory;
+	private static DirectoryReader indexReader;
+	private static TaxonomyReader taxonomyReader;
+	private static FacetsConfig facetsConfig;
+	private static SortedSetDocValuesReaderState sortedSetState;
+	private static FacetsCollector facetsCollector;
+
+	@BeforeClass
+	public static void setup() throws IOException {
+		dataDirectory = new RAMDirectory();
+		taxonomyDirectory = new RAMDirectory();
+		facetsConfig = new FacetsConfig();
+		SORTED_DIMENSIONS.forEach(dimension -> facetsConfig.setIndexFieldName(dimension, SORTED_FIELD));
+		facetsConfig.setMultiValued("color", true);
+		facetsConfig.setHierarchical("category", true);
+		final String[] colors = { "red", "green", "blue", "yellow" };
+		final String[] categories = { "book", "music", "video" };
+		// No merge, to keep one segment per commit
+		try (final IndexWriter indexWriter = new IndexWriter(dataDirectory,
+				new IndexWriterConfig(new KeywordAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE));
+				final DirectoryTaxonomyWriter taxonomyWriter = new DirectoryTaxonomyWriter(taxonomyDirectory)) {
+			for (int segment = 0; segment < 12; segment++) {
+				for (int i = 0; i < 10 + segment * 7; i++) {
+					final Document document = new Document();
+					document.add(new SortedSetDocValuesFacetField("color", colors[(i + segment) % colors.length]));
+					if (i % 3 == 0)
+						document.add(new SortedSetDocValuesFacetField("color", colors[i % colors.length]));
+					document.add(new SortedSetDocValuesFacetField("size", Integer.toString(i % 5)));
+					document.add(new FacetField("category", categories[i % categories.length],
+							Integer.toString(segment % 4)));
+					document.add(new FacetField("brand", "brand" + (i * segment % 9)));
+					indexWriter.addDocument(facetsConfig.build(taxonomyWriter, document));
+				}
+				indexWriter.commit();
+			}
+			taxonomyWriter.commit();
+		}
+		indexReader = DirectoryReader.open(dataDirectory);
+		Assert.assertTrue(indexReader.leaves().size() > 1);
+		taxonomyReader = new DirectoryTaxonomyReader(taxonomyDirectory);
+		sortedSetState = new DefaultSortedSetDocValuesReaderState(indexReader, SORTED_FIELD);
+		facetsCollector = new FacetsCollector();
+		new IndexSearcher(indexReader).search(new MatchAllDocsQuery(), facetsCollector);
+	}
+
+	@AfterClass
+	public static void cleanup() throws IOException {
+		taxonomyReader.close();
+		indexReader.close();
+		taxonomyDirectory.close();
+		dataDirectory.close();
+	}
+
+	private static void checkFacets(final Facets expected, final Facets actual, final List<String> dimensions)
+			throws IOException {
+		for (String dimension : dimensions)
+			Assert.assertEquals(expected.getTopChildren(100, dimension).toString(),
+					actual.getTopChildren(100, dimension).toString());
+		Assert.assertEquals(expected.getAllDims(100).toString(), actual.getAllDims(100).toString());
+	}
+
+	private static void checkConcurrentEqualsSequential(final ExecutorService executorService)
+			throws IOException {
+		checkFacets(new ConcurrentFacetCounts.SortedSet(sortedSetState, SORTED_DIMENSIONS, facetsCollector, null),
+				new ConcurrentFacetCounts.SortedSet(sortedSetState, SORTED_DIMENSIONS, facetsCollector,
+						executorService), SORTED_DIMENSIONS);
+		checkFacets(new ConcurrentFacetCounts.Taxonomy(taxonomyReader, facetsConfig, facetsCollector, null),
+				new ConcurrentFacetCounts.Taxonomy(taxonomyReader, facetsConfig, facetsCollector, executorService),
+				TAXONOMY_DIMENSIONS);
+	}
+
+	@Test
+	public void concurrentEqualsSequential() throws IOException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			checkConcurrentEqualsSequential(executorService);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void slicesCoverEverySegment() {
+		final List<FacetsCollector.MatchingDocs> matchingDocs = facetsCollector.getMatchingDocs();
+		final List<List<FacetsCollector.MatchingDocs>> slices = ConcurrentFacetCounts.slices(matchingDocs, 3);
+		Assert.assertEquals(3, slices.size());
+		int segments = 0;
+		for (List<FacetsCollector.MatchingDocs> slice : slices) {
+			Assert.assertFalse(slice.isEmpty());
+			segments += slice.size();
+		}
+		Assert.assertEquals(matchingDocs.size(), segments);
+		Assert.assertEquals(1, ConcurrentFacetCounts.slices(Collections.emptyList(), 3).size());
+	}
+
+	@Test(timeout = 30000)
+	public void saturatedExecutorDoesNotDeadlock() throws Exception {
+		final ExecutorService executorService = Executors.newSingleThreadExecutor();
+		final CountDownLatch blocker = new CountDownLatch(1);
+		try {
+			// The only thread of the executor is busy
+			executorService.submit(() -> {
+				blocker.await();
+				return null;
+			});
+			checkConcurrentEqualsSequential(executorService);
+			// The facets are counted from a thread of the executor itself
+			blocker.countDown();
+			final Future<?> future = executorService.submit(() -> {
+				checkConcurrentEqualsSequential(executorService);
+				return null;
+			});
+			future.get(20, TimeUnit.SECONDS);
+		} finally {
+			blocker.countDown();
+			executorService.shutdown();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IndexEvictionManagerTest {
+
+	private static class Resident implements IndexEvictionManager.Resident {
+
+		private final String name;
+		private final IndexEvictionManager manager;
+		private volatile long lastAccess;
+		private boolean open;
+
+		private Resident(final String name, final IndexEvictionManager manager, final long lastAccess) {
+			this.name = name;
+			this.manager = manager;
+			this.lastAccess = lastAccess;
+			this.open = true;
+			manager.opened(this);
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getLastAccess() {
+			return lastAccess;
+		}
+
+		@Override
+		public synchronized boolean evict(final long electedLastAccess) {
+			if (!open || lastAccess != electedLastAccess)
+				return false;
+			open = false;
+			manager.closed(this);
+			return true;
+		}
+	}
+
+	@Test
+	public void idleTimeout() {
+		final IndexEvictionManager manager = new IndexEvictionManager(60000, 0, 0, 0);
+		final long now = System.currentTimeMillis();
+		final Resident idle = new Resident("idle", manager, now - 120000);
+		final Resident active = new Resident("active", manager, now);
+
+		manager.checkIdle();
+
+		Assert.assertFalse(idle.open);
+		Assert.assertTrue(active.open);
+		final IndexEvictionStatus status = manager.getStatus();
+		Assert.assertEquals(Integer.valueOf(1), status.open_indexes);
+		Assert.assertEquals(Long.valueOf(1), status.idle_evictions);
+		Assert.assertEquals(Long.valueOf(0), status.cap_evictions);
+	}
+
+	@Test
+	public void leastRecentlyUsedFirst() {
+		final IndexEvictionManager manager = new IndexEvictionManager(0, 2, 1000, 0);
+		final long now = System.currentTimeMillis();
+		final Resident oldest = new Resident("oldest", manager, now - 30000);
+		final Resident older = new Resident("older", manager, now - 20000);
+		final Resident old = new Resident("old", manager, now - 10000);
+		final Resident recent = new Resident("recent", manager, now);
+
+		manager.checkCap();
+
+		Assert.assertFalse(oldest.open);
+		Assert.assertFalse(older.open);
+		Assert.assertTrue(old.open);
+		Assert.assertTrue(recent.open);
+		Assert.assertEquals(Long.valueOf(2), manager.getStatus().cap_evictions);
+	}
+
+	@Test
+	public void recentlyUsedAreKept() {
+		final IndexEvictionManager manager = new IndexEvictionManager(0, 1, 60000, 0);
+		final long now = System.currentTimeMillis();
+		final Resident first = new Resident("first", manager, now - 1000);
+		final Resident second = new Resident("second", manager, now);
+
+		// The cap is soft: both indexes have been used recently
+		manager.checkCap();
+
+		Assert.assertTrue(first.open);
+		Assert.assertTrue(second.open);
+		Assert.assertEquals(Integer.valueOf(2), manager.getStatus().open_indexes);
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class IndexInstanceReferenceTest {
+
+	private Path rootDirectory;
+	private ExecutorService executor;
+	private IndexManager indexManager;
+	private SchemaInstance schemaInstance;
+	private IndexInstanceManager indexInstanceManager;
+
+	@Before
+	public void setup() throws IOException {
+		rootDirectory = Files.createTempDirectory("index-reference");
+		executor = Executors.newCachedThreadPool();
+		indexManager = new IndexManager(rootDirectory, executor);
+		indexManager.getService().createUpdateSchema("schema");
+		indexManager.getService().createUpdateIndex("schema", "index");
+		schemaInstance = indexManager.get("schema");
+		indexInstanceManager = schemaInstance.getIndexManagers().iterator().next();
+	}
+
+	@After
+	public void cleanup() {
+		indexManager.close();
+		executor.shutdown();
+		FileUtils.deleteDirectoryQuietly(rootDirectory);
+	}
+
+	@Test
+	public void acquiredInstanceIsNotEvicted() {
+		final IndexInstance indexInstance = schemaInstance.acquire("index");
+		final IndexInstance secondReference = schemaInstance.acquire("index");
+		Assert.assertSame(indexInstance, secondReference);
+
+		Assert.assertFalse(indexInstanceManager.evict(indexInstanceManager.getLastAccess()));
+		indexInstance.release();
+		Assert.assertFalse(indexInstanceManager.evict(indexInstanceManager.getLastAccess()));
+		secondReference.release();
+		Assert.assertTrue(indexInstanceManager.evict(indexInstanceManager.getLastAccess()));
+
+		// The next request reopens the index
+		Assert.assertNotSame(indexInstance, schemaInstance.use("index", instance -> instance));
+	}
+
+	@Test
+	public void releasedWhenTheActionFails() {
+		try {
+			schemaInstance.consume("index", instance -> {
+				throw new IOException("failure");
+			});
+			Assert.fail("IOException expected");
+		} catch (IOException e) {
+			Assert.assertEquals("failure", e.getMessage());
+		}
+		Assert.assertTrue(indexInstanceManager.evict(indexInstanceManager.getLastAccess()));
+	}
+}
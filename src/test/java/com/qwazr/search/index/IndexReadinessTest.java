@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.server.ServerException;
+import com.qwazr.utils.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+public class IndexReadinessTest {
+
+	private Path rootDirectory;
+	private ExecutorService executor;
+	private IndexManager indexManager;
+
+	@Before
+	public void setup() throws IOException {
+		rootDirectory = Files.createTempDirectory("index-readiness");
+		executor = Executors.newCachedThreadPool();
+		indexManager = new IndexManager(rootDirectory, executor);
+		indexManager.getService().createUpdateSchema("schema");
+		indexManager.getService().createUpdateIndex("schema", "index");
+		indexManager.close();
+
+		// Corrupt the commit: the index cannot be opened anymore
+		final Path dataDirectory = rootDirectory.resolve("schema").resolve("index").resolve(IndexFileSet.INDEX_DATA);
+		try (final Stream<Path> stream = Files.list(dataDirectory)) {
+			for (Path path : (Iterable<Path>) stream::iterator)
+				if (path.getFileName().toString().startsWith("segments"))
+					Files.delete(path);
+		}
+		Files.write(dataDirectory.resolve("segments_1"), "corrupted".getBytes(StandardCharsets.UTF_8));
+
+		indexManager = new IndexManager(rootDirectory, executor);
+	}
+
+	@After
+	public void cleanup() {
+		indexManager.close();
+		executor.shutdown();
+		FileUtils.deleteDirectoryQuietly(rootDirectory);
+	}
+
+	@Test
+	public void failedIndexIsNotReady() throws InterruptedException {
+		indexManager.openIndexes(1);
+		IndexReadinessStatus status = indexManager.getReadiness();
+		final long deadline = System.currentTimeMillis() + 60000;
+		while (status.pending_indexes > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+			status = indexManager.getReadiness();
+		}
+		Assert.assertEquals(Integer.valueOf(0), status.pending_indexes);
+		Assert.assertEquals(Integer.valueOf(1), status.failed_indexes);
+		Assert.assertEquals(IndexReadinessStatus.State.failed, status.indexes.get("schema").get("index"));
+		Assert.assertFalse(status.ready);
+
+		// The probe reports the node as unavailable
+		try {
+			indexManager.getService().getReadiness(true);
+			Assert.fail("ServerException not thrown");
+		} catch (WebApplicationException e) {
+			Assert.assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getResponse().getStatus());
+		} catch (ServerException e) {
+			Assert.assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), e.getStatusCode());
+		}
+	}
+}
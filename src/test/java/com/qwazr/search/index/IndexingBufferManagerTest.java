@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class IndexingBufferManagerTest {
+
+	private final static long BUDGET = 1024 * 1024;
+
+	private static IndexWriter newIndexWriter(final IndexingBufferManager manager) throws IOException {
+		final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+		config.setRAMBufferSizeMB(manager.getRamBufferSizeMB(64D));
+		return new IndexWriter(new RAMDirectory(), config);
+	}
+
+	private static void addDocuments(final IndexWriter indexWriter, final int count, final int offset)
+			throws IOException {
+		for (int i = 0; i < count; i++) {
+			final Document document = new Document();
+			document.add(new TextField("text", "document " + (offset + i) + " of the indexing buffer test",
+					Field.Store.YES));
+			indexWriter.addDocument(document);
+		}
+	}
+
+	@Test
+	public void flushLargestWriters() throws IOException {
+		final IndexingBufferManager manager = new IndexingBufferManager(BUDGET, 0);
+		try (final IndexWriter small = newIndexWriter(manager); final IndexWriter large = newIndexWriter(manager)) {
+			manager.register("small", small);
+			manager.register("large", large);
+
+			addDocuments(small, 100, 0);
+			int offset = 0;
+			while (manager.getUsedBytes() <= BUDGET) {
+				addDocuments(large, 1000, offset);
+				offset += 1000;
+			}
+			final long smallBytes = small.ramBytesUsed();
+
+			manager.check();
+
+			// Only the largest writer has been flushed
+			final IndexingBufferStatus status = manager.getStatus();
+			Assert.assertEquals(Long.valueOf(1), status.flushes);
+			Assert.assertTrue(status.used_bytes <= BUDGET);
+			Assert.assertEquals(smallBytes, small.ramBytesUsed());
+
+			manager.unregister(small);
+			manager.unregister(large);
+			Assert.assertEquals(Integer.valueOf(0), manager.getStatus().writers);
+		} finally {
+			manager.close();
+		}
+	}
+
+	@Test
+	public void defaultRamBufferSize() {
+		final IndexingBufferManager manager = new IndexingBufferManager(BUDGET * 32, 0);
+		Assert.assertEquals(32D, manager.getRamBufferSizeMB(null), 0);
+		Assert.assertEquals(16D, manager.getRamBufferSizeMB(16D), 0);
+	}
+
+	@Test
+	public void busyWriterGoesOverItsEqualShare() throws IOException {
+		final IndexingBufferManager manager = new IndexingBufferManager(BUDGET * 4, 0);
+		try (final IndexWriter idle = newDefaultIndexWriter(manager);
+				final IndexWriter busy = newDefaultIndexWriter(manager)) {
+			manager.register("idle", idle);
+			manager.register("busy", busy);
+			Assert.assertEquals(4D, busy.getConfig().getRAMBufferSizeMB(), 0);
+
+			// The busy writer holds more than half of the budget
+			int offset = 0;
+			while (busy.ramBytesUsed() <= BUDGET * 2) {
+				addDocuments(busy, 1000, offset);
+				offset += 1000;
+			}
+			final long busyBytes = busy.ramBytesUsed();
+
+			// The total is under the budget: nothing is flushed
+			manager.check();
+			Assert.assertEquals(Long.valueOf(0), manager.getStatus().flushes);
+			Assert.assertEquals(busyBytes, busy.ramBytesUsed());
+
+			manager.unregister(idle);
+			manager.unregister(busy);
+		} finally {
+			manager.close();
+		}
+	}
+
+	private static IndexWriter newDefaultIndexWriter(final IndexingBufferManager manager) throws IOException {
+		final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+		config.setRAMBufferSizeMB(manager.getRamBufferSizeMB(null));
+		return new IndexWriter(new RAMDirectory(), config);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MergeInfo;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class MergeServiceTest {
+
+	private final static int SIZE = 1024 * 1024;
+
+	private final static IOContext MERGE_CONTEXT = new IOContext(new MergeInfo(100, SIZE, false, -1));
+
+	private static void write(final MergeThrottledDirectory directory, final String name, final IOContext context)
+			throws IOException {
+		try (final IndexOutput output = directory.createOutput(name, context)) {
+			final byte[] buffer = new byte[4096];
+			for (int i = 0; i < SIZE; i += buffer.length)
+				output.writeBytes(buffer, buffer.length);
+		}
+	}
+
+	@Test
+	public void globalRate() throws IOException {
+		final MergeService mergeService = new MergeService(4);
+		final MergeThrottledDirectory first = (MergeThrottledDirectory) mergeService.throttle(new RAMDirectory());
+		final MergeThrottledDirectory second = (MergeThrottledDirectory) mergeService.throttle(new RAMDirectory());
+
+		// Two MB written by two directories at 4 MB/s: at least about half a second
+		final long start = System.nanoTime();
+		write(first, "merged", MERGE_CONTEXT);
+		write(second, "merged", MERGE_CONTEXT);
+		final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		Assert.assertTrue("Too fast: " + elapsedMs + "ms", elapsedMs >= 400);
+
+		Assert.assertTrue(first.getMergedBytes() > 0);
+		Assert.assertTrue(second.getMergedBytes() > 0);
+		final MergeServiceStatus status = mergeService.getStatus();
+		Assert.assertEquals(Double.valueOf(4), status.rate_mb_per_sec);
+		Assert.assertEquals(Long.valueOf(first.getMergedBytes() + second.getMergedBytes()), status.merged_bytes);
+		Assert.assertTrue(status.paused_ms > 0);
+	}
+
+	@Test
+	public void flushesAreNotThrottled() throws IOException {
+		final MergeService mergeService = new MergeService(1);
+		final MergeThrottledDirectory directory = (MergeThrottledDirectory) mergeService.throttle(new RAMDirectory());
+		final long start = System.nanoTime();
+		write(directory, "flushed", IOContext.DEFAULT);
+		Assert.assertTrue((System.nanoTime() - start) / 1_000_000 < 1000);
+		Assert.assertEquals(0, directory.getMergedBytes());
+	}
+
+	@Test
+	public void abortMerges() throws IOException {
+		final MergeService mergeService = new MergeService(0);
+		final MergeThrottledDirectory directory = (MergeThrottledDirectory) mergeService.throttle(new RAMDirectory());
+		directory.abortMerges("cancelled");
+		try {
+			write(directory, "aborted", MERGE_CONTEXT);
+			Assert.fail("MergeAbortedException not thrown");
+		} catch (MergePolicy.MergeAbortedException e) {
+			Assert.assertEquals("cancelled", e.getMessage());
+		}
+		directory.resumeMerges();
+		write(directory, "resumed", MERGE_CONTEXT);
+		Assert.assertTrue(directory.getMergedBytes() > 0);
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.NRTCachingDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class NrtCacheManagerTest {
+
+	private final static int FILE_SIZE = 300 * 1024;
+	private final static long BUDGET = 1024 * 1024;
+
+	private static ExecutorService executorService;
+
+	@BeforeClass
+	public static void setup() {
+		executorService = Executors.newSingleThreadExecutor();
+	}
+
+	@AfterClass
+	public static void cleanup() {
+		executorService.shutdown();
+	}
+
+	private static void writeFile(final Directory directory, final String name) throws IOException {
+		try (final IndexOutput output = directory.createOutput(name, IOContext.DEFAULT)) {
+			output.writeBytes(new byte[FILE_SIZE], FILE_SIZE);
+		}
+	}
+
+	@Test
+	public void sharedBudget() throws IOException {
+		final NrtCacheManager manager = new NrtCacheManager(executorService, BUDGET);
+		try (final NRTCachingDirectory first = (NRTCachingDirectory) manager.wrap(new RAMDirectory(), 5, 60)) {
+			try (final NRTCachingDirectory second = (NRTCachingDirectory) manager.wrap(new RAMDirectory(), 5, 60)) {
+				for (int i = 0; i < 3; i++) {
+					writeFile(first, "first" + i);
+					writeFile(second, "second" + i);
+				}
+				// Each directory is under its own limit, but both together exceed the budget
+				NrtCacheStatus status = manager.getStatus();
+				Assert.assertEquals(Integer.valueOf(2), status.directories);
+				Assert.assertTrue(status.rejected_files > 0);
+
+				manager.evict();
+				status = manager.getStatus();
+				Assert.assertTrue(status.used_bytes <= BUDGET * NrtCacheManager.LOW_WATERMARK);
+
+				// Evicted or not, every file is still readable
+				for (String name : Arrays.asList("first0", "first1", "first2")) {
+					Assert.assertEquals(FILE_SIZE, first.fileLength(name));
+					try (final IndexInput input = first.openInput(name, IOContext.DEFAULT)) {
+						Assert.assertEquals(FILE_SIZE, input.length());
+					}
+				}
+			}
+			Assert.assertEquals(Integer.valueOf(1), manager.getStatus().directories);
+		}
+		Assert.assertEquals(Long.valueOf(0), manager.getStatus().used_bytes);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RandomAccessInput;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class OffHeapDirectoryTest {
+
+	@Test
+	public void readWriteAcrossBlocks() throws IOException {
+		final byte[] bytes = new byte[OffHeapDirectory.BLOCK_SIZE * 2 + 12345];
+		new Random(0).nextBytes(bytes);
+		try (final OffHeapDirectory directory = new OffHeapDirectory(null)) {
+			try (final IndexOutput output = directory.createOutput("test", IOContext.DEFAULT)) {
+				output.writeBytes(bytes, 0, 10);
+				for (int i = 10; i < 100; i++)
+					output.writeByte(bytes[i]);
+				output.writeBytes(bytes, 100, bytes.length - 100);
+			}
+			Assert.assertEquals(bytes.length, directory.fileLength("test"));
+			Assert.assertEquals(bytes.length, directory.sizeInBytes());
+
+			try (final IndexInput input = directory.openInput("test", IOContext.DEFAULT)) {
+				final byte[] read = new byte[bytes.length];
+				input.readBytes(read, 0, read.length);
+				Assert.assertArrayEquals(bytes, read);
+
+				// A long spanning two blocks
+				final long position = OffHeapDirectory.BLOCK_SIZE - 3;
+				input.seek(position);
+				final long expected = input.readLong();
+				final RandomAccessInput randomAccess = input.randomAccessSlice(0, input.length());
+				Assert.assertEquals(expected, randomAccess.readLong(position));
+
+				final IndexInput slice = input.slice("slice", position, 100);
+				Assert.assertEquals(expected, slice.readLong());
+				Assert.assertEquals(bytes[(int) position + 8], input.clone().readByte());
+			}
+
+			directory.deleteFile("test");
+			Assert.assertEquals(0, directory.sizeInBytes());
+		}
+	}
+
+	private static void addDocuments(final OffHeapDirectory directory, final int count) throws IOException {
+		try (final IndexWriter indexWriter = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+			for (int i = 0; i < count; i++) {
+				final Document document = new Document();
+				document.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+				document.add(new NumericDocValuesField("value", i));
+				indexWriter.addDocument(document);
+			}
+			indexWriter.commit();
+		}
+	}
+
+	@Test
+	public void persistAndReload() throws IOException {
+		final Path path = Files.createTempDirectory("offheap");
+		try (final OffHeapDirectory directory = new OffHeapDirectory(path)) {
+			addDocuments(directory, 1000);
+		}
+		try (final OffHeapDirectory directory = new OffHeapDirectory(path)) {
+			try (final DirectoryReader reader = DirectoryReader.open(directory)) {
+				Assert.assertEquals(1000, reader.numDocs());
+			}
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.search.query.AbstractQuery;
+import com.qwazr.search.query.BooleanQuery;
+import com.qwazr.search.query.DisjunctionMaxQuery;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class QueryCacheTest {
+
+	public static class CountingQuery extends AbstractQuery<CountingQuery> {
+
+		final public String value;
+		final public boolean cacheable;
+
+		int built;
+
+		CountingQuery(final String value, final boolean cacheable) {
+			super(CountingQuery.class);
+			this.value = value;
+			this.cacheable = cacheable;
+		}
+
+		@Override
+		public boolean isCacheable() {
+			return cacheable;
+		}
+
+		@Override
+		public Query getQuery(final QueryContext queryContext) {
+			built++;
+			return new org.apache.lucene.search.TermQuery(new Term("name", value));
+		}
+
+		@Override
+		protected boolean isEqual(final CountingQuery query) {
+			return value.equals(query.value) && cacheable == query.cacheable;
+		}
+	}
+
+	@Test
+	public void disabled() {
+		Assert.assertNull(QueryCache.of(IndexSettingsDefinition.of().build()));
+		Assert.assertNull(QueryCache.of(IndexSettingsDefinition.of().queryCacheSize(0).build()));
+	}
+
+	@Test
+	public void cacheable() throws Exception {
+		final QueryCache cache = QueryCache.of(IndexSettingsDefinition.of().queryCacheSize(2).build());
+		Assert.assertNotNull(cache);
+		final CountingQuery query = new CountingQuery("a", true);
+		final Query luceneQuery = cache.getQuery(query, null);
+		Assert.assertSame(luceneQuery, cache.getQuery(query, null));
+		Assert.assertSame(luceneQuery, cache.getQuery(new CountingQuery("a", true), null));
+		Assert.assertEquals(1, query.built);
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+
+		// The least recently used query is evicted
+		cache.getQuery(new CountingQuery("b", true), null);
+		cache.getQuery(new CountingQuery("c", true), null);
+		Assert.assertEquals(2, cache.size());
+		cache.getQuery(query, null);
+		Assert.assertEquals(2, query.built);
+
+		// Clearing the cache forces a rebuild
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+		cache.getQuery(query, null);
+		Assert.assertEquals(3, query.built);
+	}
+
+	@Test
+	public void notCacheable() throws Exception {
+		final QueryCache cache = QueryCache.of(IndexSettingsDefinition.of().queryCacheSize(10).build());
+		final CountingQuery query = new CountingQuery("a", false);
+		cache.getQuery(query, null);
+		cache.getQuery(query, null);
+		Assert.assertEquals(2, query.built);
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void booleanQueryChildren() {
+		Assert.assertTrue(new BooleanQuery((List<BooleanQuery.BooleanClause>) null).isCacheable());
+		Assert.assertTrue(new BooleanQuery().isCacheable());
+		Assert.assertTrue(new BooleanQuery(new BooleanQuery.BooleanClause(BooleanQuery.Occur.must,
+				new CountingQuery("a", true))).isCacheable());
+		Assert.assertFalse(new BooleanQuery(new BooleanQuery.BooleanClause(BooleanQuery.Occur.must,
+				new CountingQuery("a", false))).isCacheable());
+		Assert.assertFalse(
+				new BooleanQuery(new BooleanQuery.BooleanClause(BooleanQuery.Occur.must, null)).isCacheable());
+	}
+
+	@Test
+	public void disjunctionMaxQueryChildren() {
+		Assert.assertTrue(new DisjunctionMaxQuery((List<AbstractQuery>) null, null).isCacheable());
+		Assert.assertTrue(new DisjunctionMaxQuery(Collections.emptyList(), null).isCacheable());
+		Assert.assertTrue(new DisjunctionMaxQuery(null, new CountingQuery("a", true)).isCacheable());
+		Assert.assertFalse(new DisjunctionMaxQuery(null, new CountingQuery("a", false)).isCacheable());
+		Assert.assertFalse(new DisjunctionMaxQuery(Collections.<AbstractQuery>singletonList(null), null).isCacheable());
+	}
+}
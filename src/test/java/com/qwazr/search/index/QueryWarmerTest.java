@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.search.query.TermQuery;
+import com.qwazr.utils.FileUtils;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class QueryWarmerTest {
+
+	private static QueryDefinition query(final String term) {
+		return QueryDefinition.of(new TermQuery("name", term)).build();
+	}
+
+	@Test
+	public void disabled() {
+		Assert.assertNull(QueryWarmer.of("test", IndexSettingsDefinition.of().build(), null));
+		Assert.assertNull(QueryWarmer.of("test", IndexSettingsDefinition.of().warmRecentQueries(0).build(), null));
+	}
+
+	@Test
+	public void warmQueriesOnly() {
+		final QueryWarmer warmer =
+				QueryWarmer.of("test", IndexSettingsDefinition.of().warmQueries(query("a")).build(), null);
+		Assert.assertNotNull(warmer);
+		warmer.sample(query("b"));
+		Assert.assertEquals(Collections.singletonList(query("a")), warmer.getQueries());
+	}
+
+	@Test
+	public void recentQueries() {
+		final QueryWarmer warmer = QueryWarmer.of("test",
+				IndexSettingsDefinition.of().warmRecentQueries(2).warmQueries(query("a")).build(), null);
+		Assert.assertNotNull(warmer);
+
+		// Lucene queries are not recorded
+		warmer.sample(QueryDefinition.of(new MatchAllDocsQuery()).build());
+		Assert.assertEquals(Collections.singletonList(query("a")), warmer.getQueries());
+
+		// Duplicates are moved to the head, and the warm queries are not replayed twice
+		warmer.sample(query("a"));
+		warmer.sample(query("b"));
+		warmer.sample(query("a"));
+		Assert.assertEquals(Arrays.asList(query("a"), query("b")), warmer.getQueries());
+
+		// Once the list is full, only one query out of SAMPLE_INTERVAL is recorded
+		int recorded = 0;
+		for (int i = 0; i < QueryWarmer.SAMPLE_INTERVAL * 4; i++) {
+			warmer.sample(query("c" + i));
+			if (warmer.getQueries().contains(query("c" + i)))
+				recorded++;
+		}
+		Assert.assertEquals(4, recorded);
+		Assert.assertEquals(3, warmer.getQueries().size());
+	}
+
+	@Test
+	public void warmQueriesRunWhenTheIndexIsOpened() throws Exception {
+		final Path rootDirectory = Files.createTempDirectory("query-warmer");
+		final ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			IndexManager indexManager = new IndexManager(rootDirectory, executor);
+			indexManager.getService().createUpdateSchema("schema");
+			indexManager.getService()
+					.createUpdateIndex("schema", "index", IndexSettingsDefinition.of()
+							.warmQueries(QueryDefinition.of(new com.qwazr.search.query.MatchAllDocsQuery()).build())
+							.build());
+			indexManager.close();
+
+			// The index is opened again (startup, or reopening after an eviction)
+			indexManager = new IndexManager(rootDirectory, executor);
+			try {
+				final IndexInstanceManager indexInstanceManager =
+						indexManager.get("schema").getIndexManagers().iterator().next();
+				final IndexInstance indexInstance = indexInstanceManager.open();
+				// The first searcher has been warmed before any search
+				Assert.assertTrue(indexInstance.getQueryWarmer().getWarmedQueries() > 0);
+			} finally {
+				indexManager.close();
+			}
+		} finally {
+			executor.shutdown();
+			FileUtils.deleteDirectoryQuietly(rootDirectory);
+		}
+	}
+}
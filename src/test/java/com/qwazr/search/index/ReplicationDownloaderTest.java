@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.index;
+
+import com.qwazr.utils.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.replicator.RevisionFile;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class ReplicationDownloaderTest {
+
+	private final static String SOURCE = "index";
+	private final static String FILE_NAME = "_0.cfs";
+
+	private Path replDownloadPath;
+	private ExecutorService executor;
+	private byte[] content;
+	private Map<String, List<RevisionFile>> sourceFiles;
+	private List<Long> offsets;
+
+	@Before
+	public void setup() throws IOException {
+		replDownloadPath = Files.createTempDirectory("repl-download");
+		executor = Executors.newFixedThreadPool(2);
+		offsets = new CopyOnWriteArrayList<>();
+		try (final Directory directory = new RAMDirectory()) {
+			try (final IndexOutput output = directory.createOutput(FILE_NAME, IOContext.DEFAULT)) {
+				CodecUtil.writeHeader(output, "test", 0);
+				for (int i = 0; i < 10000; i++)
+					output.writeInt(i);
+				CodecUtil.writeFooter(output);
+			}
+			try (final IndexInput input = directory.openInput(FILE_NAME, IOContext.READONCE)) {
+				content = new byte[(int) input.length()];
+				input.readBytes(content, 0, content.length);
+			}
+		}
+		final RevisionFile file = new RevisionFile(FILE_NAME);
+		file.size = content.length;
+		sourceFiles = Collections.singletonMap(SOURCE, Collections.singletonList(file));
+	}
+
+	@After
+	public void cleanup() {
+		executor.shutdown();
+		FileUtils.deleteDirectoryQuietly(replDownloadPath);
+	}
+
+	private Path getPath(final String masterUuid) {
+		return replDownloadPath.resolve(masterUuid).resolve(SOURCE).resolve(FILE_NAME);
+	}
+
+	/**
+	 * Serves the content from the offset, and fails once the limit position is reached
+	 */
+	private InputStream fetch(final byte[] bytes, final long offset, final int limit) {
+		offsets.add(offset);
+		final InputStream input = new ByteArrayInputStream(bytes, (int) offset, bytes.length - (int) offset);
+		if (offset + input.available() <= limit)
+			return input;
+		return new InputStream() {
+
+			private long position = offset;
+
+			@Override
+			public int read() throws IOException {
+				if (position >= limit)
+					throw new IOException("Connection lost");
+				position++;
+				return input.read();
+			}
+		};
+	}
+
+	private void checkDownloaded(final ReplicationDownloader downloader) throws IOException {
+		try (final InputStream input = downloader.open(SOURCE, FILE_NAME)) {
+			Assert.assertNotNull(input);
+			Assert.assertArrayEquals(content, IOUtils.toByteArray(input));
+		}
+		Assert.assertFalse(
+				Files.exists(getPath("master").resolveSibling(FILE_NAME + ReplicationDownloader.PARTIAL_SUFFIX)));
+	}
+
+	private void downloadHalf(final ReplicationDownloader downloader) {
+		try {
+			downloader.download(sourceFiles, null, 2,
+					(source, fileName, offset) -> fetch(content, offset, content.length / 2));
+			Assert.fail("IOException not thrown");
+		} catch (IOException e) {
+			Assert.assertEquals("Connection lost", e.getMessage());
+		}
+	}
+
+	@Test
+	public void resumeAfterFailure() throws IOException {
+		final ReplicationDownloader downloader = new ReplicationDownloader(replDownloadPath, "master", executor);
+		final int half = content.length / 2;
+		final boolean[] failed = { false };
+		downloader.download(sourceFiles, null, 2, (source, fileName, offset) -> {
+			if (failed[0])
+				return fetch(content, offset, content.length);
+			failed[0] = true;
+			return fetch(content, offset, half);
+		});
+		Assert.assertEquals(Arrays.asList(0L, (long) half), offsets);
+		checkDownloaded(downloader);
+	}
+
+	@Test
+	public void resumeFromPreviousSession() throws IOException {
+		downloadHalf(new ReplicationDownloader(replDownloadPath, "master", executor));
+		Assert.assertEquals(content.length / 2, Files.size(getPath("master")));
+		offsets.clear();
+		final ReplicationDownloader downloader = new ReplicationDownloader(replDownloadPath, "master", executor);
+		downloader.download(sourceFiles, null, 2,
+				(source, fileName, offset) -> fetch(content, offset, content.length));
+		Assert.assertEquals(Collections.singletonList((long) content.length / 2), offsets);
+		checkDownloaded(downloader);
+	}
+
+	@Test
+	public void corruptedPartialFileIsDownloadedAgain() throws IOException {
+		downloadHalf(new ReplicationDownloader(replDownloadPath, "master", executor));
+		final Path path = getPath("master");
+		final byte[] partial = Files.readAllBytes(path);
+		partial[partial.length / 2] ^= 0xFF;
+		Files.write(path, partial);
+		offsets.clear();
+		final ReplicationDownloader downloader = new ReplicationDownloader(replDownloadPath, "master", executor);
+		downloader.download(sourceFiles, null, 2,
+				(source, fileName, offset) -> fetch(content, offset, content.length));
+		Assert.assertEquals(Collections.singletonList(0L), offsets);
+		checkDownloaded(downloader);
+	}
+
+	@Test
+	public void partialFileOfAnotherMasterIsRemoved() throws IOException {
+		downloadHalf(new ReplicationDownloader(replDownloadPath, "other", executor));
+		Assert.assertTrue(Files.exists(getPath("other")));
+		offsets.clear();
+		final ReplicationDownloader downloader = new ReplicationDownloader(replDownloadPath, "master", executor);
+		Assert.assertFalse(Files.exists(replDownloadPath.resolve("other")));
+		downloader.download(sourceFiles, null, 2,
+				(source, fileName, offset) -> fetch(content, offset, content.length));
+		Assert.assertEquals(Collections.singletonList(0L), offsets);
+		checkDownloaded(downloader);
+	}
+
+	@Test
+	public void checksumMismatchIsRejected() throws IOException {
+		final byte[] corrupted = content.clone();
+		corrupted[corrupted.length / 3] ^= 0xFF;
+		final ReplicationDownloader downloader = new ReplicationDownloader(replDownloadPath, "master", executor);
+		try {
+			downloader.download(sourceFiles, null, 2,
+					(source, fileName, offset) -> fetch(corrupted, offset, corrupted.length));
+			Assert.fail("IOException not thrown");
+		} catch (IOException e) {
+			// Expected: the footer checksum does not match
+		}
+		Assert.assertEquals(ReplicationDownloader.MAX_ATTEMPTS, offsets.size());
+		Assert.assertNull(downloader.open(SOURCE, FILE_NAME));
+	}
+
+	@Test
+	public void corruptedTransferIsDownloadedAgain() throws IOException {
+		final byte[] corrupted = content.clone();
+		corrupted[corrupted.length / 3] ^= 0xFF;
+		final ReplicationDownloader downloader = new ReplicationDownloader(replDownloadPath, "master", executor);
+		downloader.download(sourceFiles, null, 2,
+				(source, fileName, offset) -> offsets.isEmpty() ?
+						fetch(corrupted, offset, corrupted.length) :
+						fetch(content, offset, content.length));
+		Assert.assertEquals(Arrays.asList(0L, 0L), offsets);
+		checkDownloaded(downloader);
+	}
+
+	@Test
+	public void compressedTransferWithResume() throws IOException {
+		final ReplicationDownloader downloader = new ReplicationDownloader(replDownloadPath, "master", executor);
+		final int half = content.length / 2;
+		// The master deflates the stream starting at the offset, the slave inflates it
+		downloader.download(sourceFiles, null, 2, (source, fileName, offset) -> {
+			final byte[] end = Arrays.copyOf(content, offsets.isEmpty() ? half : content.length);
+			offsets.add(offset);
+			return new InflaterInputStream(new DeflaterInputStream(
+					offset < end.length ? new ByteArrayInputStream(end, (int) offset, end.length - (int) offset) :
+							new ByteArrayInputStream(new byte[0])));
+		});
+		Assert.assertEquals(Arrays.asList(0L, (long) half), offsets);
+		checkDownloaded(downloader);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.replication;
+
+import com.qwazr.search.annotations.AnnotatedIndexService;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.test.AnnotatedRecord;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.replicator.IndexAndTaxonomyRevision;
+import org.apache.lucene.replicator.RevisionFile;
+import org.apache.lucene.replicator.SessionToken;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The second slave replicates from the first slave, not from the master.
+ */
+public class ReplicationCascading extends ReplicationTestManager {
+
+	private final static String SCHEMA = "FilesReplicationCascading";
+	private final static String MASTER = "master";
+	private final static String SLAVE = "slave";
+
+	@Override
+	public AnnotatedIndexService<AnnotatedRecord> getMaster() throws URISyntaxException {
+		return new AnnotatedIndexService<>(service, AnnotatedRecord.class, SCHEMA, MASTER,
+				IndexSettingsDefinition.of().enableTaxonomyIndex(true).build());
+	}
+
+	@Override
+	public List<AnnotatedIndexService<AnnotatedRecord>> getSlaves() throws URISyntaxException {
+		return Arrays.asList(new AnnotatedIndexService<>(service, AnnotatedRecord.class, SCHEMA, SLAVE,
+						IndexSettingsDefinition.of().master(SCHEMA, MASTER).enableTaxonomyIndex(true).build()),
+				new AnnotatedIndexService<>(service, AnnotatedRecord.class, SCHEMA, "slave-of-slave",
+						IndexSettingsDefinition.of().master(SCHEMA, SLAVE).enableTaxonomyIndex(true).build()));
+	}
+
+	@Test
+	public void test() throws IOException, InterruptedException {
+		master.postDocuments(AnnotatedRecord.randomList(1000, count -> count));
+		for (AnnotatedIndexService<AnnotatedRecord> slave : slaves)
+			checkReplicationStatus(slave.replicationCheck());
+		compareMasterAndSlaveRecords(null);
+		checkSlaveStatusEqualsMasterStatus();
+
+		master.postDocuments(AnnotatedRecord.randomList(1000, count -> count + 1000));
+		for (AnnotatedIndexService<AnnotatedRecord> slave : slaves)
+			checkReplicationStatus(slave.replicationCheck());
+		compareMasterAndSlaveRecords(null);
+		checkReplicationLag();
+	}
+
+	/**
+	 * The files of a revision republished by a slave can be obtained until the session is released,
+	 * even if the slave applies a new revision meanwhile.
+	 */
+	@Test
+	public void downstreamSessionSurvivesReplication() throws IOException, InterruptedException {
+		master.postDocuments(AnnotatedRecord.randomList(100, count -> count));
+		checkReplicationStatus(slaves.get(0).replicationCheck());
+
+		final String slaveUuid = service.getIndex(SCHEMA, SLAVE).index_uuid;
+		final SessionToken session;
+		try (final DataInputStream input = new DataInputStream(
+				service.replicationUpdate(SCHEMA, SLAVE, slaveUuid, null, null))) {
+			session = new SessionToken(input);
+		}
+
+		// The slave applies a new revision while the downstream session is open
+		master.postDocuments(AnnotatedRecord.randomList(100, count -> count + 100));
+		checkReplicationStatus(slaves.get(0).replicationCheck());
+
+		final Path slaveDataDirectory = rootDirectory.resolve(SCHEMA).resolve(SLAVE).resolve("data");
+		final List<String> indexFiles = new ArrayList<>();
+		for (Map.Entry<String, List<RevisionFile>> entry : session.sourceFiles.entrySet()) {
+			for (RevisionFile file : entry.getValue()) {
+				try (final InputStream input = service.replicationObtain(SCHEMA, SLAVE, slaveUuid, session.id,
+						entry.getKey(), file.fileName, null, null)) {
+					Assert.assertEquals(file.size, IOUtils.copyLarge(input, new NullOutputStream()));
+				}
+				if (IndexAndTaxonomyRevision.INDEX_SOURCE.equals(entry.getKey()))
+					indexFiles.add(file.fileName);
+			}
+		}
+		Assert.assertTrue(service.replicationRelease(SCHEMA, SLAVE, slaveUuid, session.id));
+
+		// Once released, the files which are not part of the current commit are deleted
+		final String segmentsFile;
+		try (final FSDirectory directory = FSDirectory.open(slaveDataDirectory)) {
+			segmentsFile = SegmentInfos.getLastCommitSegmentsFileName(directory);
+		}
+		for (String indexFile : indexFiles)
+			if (indexFile.startsWith(IndexFileNames.SEGMENTS) && !indexFile.equals(segmentsFile))
+				Assert.assertFalse(Files.exists(slaveDataDirectory.resolve(indexFile)));
+	}
+}
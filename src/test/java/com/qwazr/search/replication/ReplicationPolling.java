@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.replication;
+
+import com.qwazr.search.annotations.AnnotatedIndexService;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.test.AnnotatedRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The slave is kept up to date by the replication poller, without calling replicationCheck.
+ */
+public class ReplicationPolling extends ReplicationTestManager {
+
+	private final static String SCHEMA = "FilesReplicationPolling";
+	private final static String MASTER = "master";
+
+	@Override
+	public AnnotatedIndexService<AnnotatedRecord> getMaster() throws URISyntaxException {
+		return new AnnotatedIndexService<>(service, AnnotatedRecord.class, SCHEMA, MASTER,
+				IndexSettingsDefinition.of().enableTaxonomyIndex(false).build());
+	}
+
+	@Override
+	public List<AnnotatedIndexService<AnnotatedRecord>> getSlaves() throws URISyntaxException {
+		return Arrays.asList(new AnnotatedIndexService<>(service, AnnotatedRecord.class, SCHEMA, "slave",
+				IndexSettingsDefinition.of()
+						.master(SCHEMA, MASTER)
+						.enableTaxonomyIndex(false)
+						.replicationIntervalMs(100L)
+						.replicationWaitMs(5000L)
+						.build()));
+	}
+
+	private void waitForSlave() throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 60000;
+		while (System.currentTimeMillis() < deadline) {
+			if (Objects.equals(master.getIndexStatus().num_docs, slaves.get(0).getIndexStatus().num_docs))
+				return;
+			Thread.sleep(100);
+		}
+		Assert.fail("The slave did not catch up");
+	}
+
+	@Test
+	public void test() throws IOException, InterruptedException {
+		master.postDocuments(AnnotatedRecord.randomList(500, count -> count));
+		waitForSlave();
+		compareMasterAndSlaveRecords(null);
+
+		master.postDocuments(AnnotatedRecord.randomList(500, count -> count + 500));
+		waitForSlave();
+		compareMasterAndSlaveRecords(null);
+		checkReplicationLag();
+	}
+}
@@ -20,6 +20,7 @@ import com.qwazr.search.annotations.AnnotatedIndexService;
 import com.qwazr.search.index.IndexServiceInterface;
 import com.qwazr.search.index.IndexStatus;
 import com.qwazr.search.index.QueryDefinition;
+import com.qwazr.search.index.ReplicationLag;
 import com.qwazr.search.index.ReplicationStatus;
 import com.qwazr.search.query.MatchAllDocsQuery;
 import com.qwazr.utils.CollectionsUtils;
@@ -96,6 +97,21 @@ public abstract class ReplicationTestBase<T> {
 		Assert.assertEquals(FileUtils.byteCountToDisplaySize(replicationStatus.bytes), replicationStatus.size);
 	}
 
+	/**
+	 * Check that the slaves report no lag once they are up to date
+	 */
+	public void checkReplicationLag() {
+		for (AnnotatedIndexService<T> slave : slaves) {
+			final ReplicationLag lag = slave.getIndexStatus().replication_lag;
+			Assert.assertNotNull(lag);
+			Assert.assertNotNull(lag.last_check);
+			Assert.assertNotNull(lag.last_sync);
+			Assert.assertEquals(lag.master_version, lag.local_version);
+			Assert.assertEquals(0L, lag.generations, 0);
+			Assert.assertEquals(0L, lag.seconds, 0);
+		}
+	}
+
 	/**
 	 * Check if everyrecords are identical between master and slaves.
 	 * By default this method check the equality.
@@ -68,6 +68,7 @@ public abstract class ReplicationTestManager extends ReplicationTestBase<Annotat
 		master.postDocuments(AnnotatedRecord.randomList(1000, count -> count + 1000));
 		checkReplicationStatus(slaves.get(0).replicationCheck());
 		compareMasterAndSlaveRecords(null);
+		checkReplicationLag();
 
 	}
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.aggregation.HistogramAggregation;
+import com.qwazr.search.aggregation.StatsAggregation;
+import com.qwazr.search.index.QueryDefinition;
+import com.qwazr.search.index.ResultDefinition;
+import com.qwazr.search.query.MatchAllDocsQuery;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The floating points are stored as raw bits by the NUMERIC doc values fields,
+ * and as sortable bits by the SORTED_NUMERIC ones. Both must be decoded, including the negative values.
+ */
+public class AggregationNumericTest extends AbstractIndexTest.WithIndexRecord.NoTaxonomy {
+
+	private final static double[] VALUES = { -1000.25, -2.5, -0.75, 0, 0.5, 3.25, 999.75 };
+
+	private static double min;
+	private static double max;
+	private static double sum;
+
+	@BeforeClass
+	public static void setup() throws IOException, InterruptedException, URISyntaxException {
+		initIndexService();
+		final List<IndexRecord.NoTaxonomy> documents = new ArrayList<>();
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < VALUES.length; i++) {
+			final double value = VALUES[i];
+			documents.add(new IndexRecord.NoTaxonomy(Integer.toString(i)).doubleDocValue(value)
+					.sortedDoubleDocValue(value)
+					.floatDocValue((float) value)
+					.sortedFloatDocValue((float) value));
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			sum += value;
+		}
+		indexService.postDocuments(documents);
+	}
+
+	private Map<String, Object> search(final String name, final String field) {
+		final ResultDefinition result = indexService.searchQuery(QueryDefinition.of(new MatchAllDocsQuery())
+				.aggregation(name, new StatsAggregation(field))
+				.build());
+		Assert.assertNotNull(result);
+		final Map<String, Object> output = result.getAggregation(name);
+		Assert.assertNotNull(output);
+		return output;
+	}
+
+	private void checkStats(final String field) {
+		final Map<String, Object> output = search("stats", field);
+		Assert.assertEquals(VALUES.length, ((Number) output.get("count")).intValue());
+		Assert.assertEquals(min, ((Number) output.get("min")).doubleValue(), 0);
+		Assert.assertEquals(max, ((Number) output.get("max")).doubleValue(), 0);
+		Assert.assertEquals(sum, ((Number) output.get("sum")).doubleValue(), 0.0001);
+	}
+
+	@Test
+	public void numericDouble() {
+		checkStats("doubleDocValue");
+	}
+
+	@Test
+	public void sortedNumericDouble() {
+		checkStats("sortedDoubleDocValue");
+	}
+
+	@Test
+	public void numericFloat() {
+		checkStats("floatDocValue");
+	}
+
+	@Test
+	public void sortedNumericFloat() {
+		checkStats("sortedFloatDocValue");
+	}
+
+	@Test
+	public void negativeHistogramKeys() {
+		final ResultDefinition result = indexService.searchQuery(QueryDefinition.of(new MatchAllDocsQuery())
+				.aggregation("histogram", new HistogramAggregation("doubleDocValue", 1000))
+				.build());
+		final Map<String, Object> output = result.getAggregation("histogram");
+		final List<Map<String, Object>> buckets = (List<Map<String, Object>>) output.get("buckets");
+		Assert.assertEquals(3, buckets.size());
+		Assert.assertEquals(-2000, ((Number) buckets.get(0).get("key")).doubleValue(), 0);
+		Assert.assertEquals(1, ((Number) buckets.get(0).get("doc_count")).longValue());
+		Assert.assertEquals(-1000, ((Number) buckets.get(1).get("key")).doubleValue(), 0);
+		Assert.assertEquals(2, ((Number) buckets.get(1).get("doc_count")).longValue());
+		Assert.assertEquals(0, ((Number) buckets.get(2).get("key")).doubleValue(), 0);
+		Assert.assertEquals(4, ((Number) buckets.get(2).get("doc_count")).longValue());
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.aggregation.AggregationDefinition;
+import com.qwazr.search.aggregation.CardinalityAggregation;
+import com.qwazr.search.aggregation.DateHistogramAggregation;
+import com.qwazr.search.aggregation.FilterAggregation;
+import com.qwazr.search.aggregation.HistogramAggregation;
+import com.qwazr.search.aggregation.PercentileRanksAggregation;
+import com.qwazr.search.aggregation.PercentilesAggregation;
+import com.qwazr.search.aggregation.StatsAggregation;
+import com.qwazr.search.aggregation.TermsAggregation;
+import com.qwazr.search.index.QueryDefinition;
+import com.qwazr.search.index.ResultDefinition;
+import com.qwazr.search.query.MatchAllDocsQuery;
+import com.qwazr.search.query.TermQuery;
+import com.qwazr.utils.RandomUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class AggregationTest extends AbstractIndexTest.WithIndexRecord.NoTaxonomy {
+
+	// 2017-03-26T00:00:00Z, a daylight saving time switch in Europe
+	private final static long TIMESTAMP = 1490486400000L;
+
+	private static List<IndexRecord.NoTaxonomy> documents;
+	private static Map<String, Integer> categoryCounts;
+	private static Map<String, Double> categorySums;
+	private static Set<Double> distinctValues;
+	private static double sum;
+	private static long oddCount;
+
+	@BeforeClass
+	public static void setup() throws IOException, InterruptedException, URISyntaxException {
+		initIndexService();
+		documents = new ArrayList<>();
+		categoryCounts = new HashMap<>();
+		categorySums = new HashMap<>();
+		distinctValues = new HashSet<>();
+		final int count = RandomUtils.nextInt(50, 100);
+		for (int i = 0; i < count; i++) {
+			final String category = "cat" + RandomUtils.nextInt(0, 5);
+			final double value = RandomUtils.nextInt(0, 1000);
+			final String parity = (i & 1) == 0 ? "even" : "odd";
+			documents.add(new IndexRecord.NoTaxonomy(Integer.toString(i)).sortedDocValue(category)
+					.doubleDocValue(value)
+					.longDocValue(TIMESTAMP + i * 3_600_000L)
+					.stringField(parity));
+			categoryCounts.merge(category, 1, Integer::sum);
+			categorySums.merge(category, value, Double::sum);
+			distinctValues.add(value);
+			sum += value;
+			if ((i & 1) != 0)
+				oddCount++;
+		}
+		indexService.postDocuments(documents);
+	}
+
+	private Map<String, Object> search(final String name, final AggregationDefinition aggregation) {
+		final ResultDefinition result = indexService.searchQuery(
+				QueryDefinition.of(new MatchAllDocsQuery()).aggregation(name, aggregation).build());
+		Assert.assertNotNull(result);
+		Assert.assertEquals(documents.size(), result.total_hits.intValue());
+		final Map<String, Object> output = result.getAggregation(name);
+		Assert.assertNotNull(output);
+		return output;
+	}
+
+	@Test
+	public void terms() {
+		final Map<String, Object> output = search("categories", new TermsAggregation("sortedDocValue", 3));
+		final List<Map<String, Object>> buckets = (List<Map<String, Object>>) output.get("buckets");
+		Assert.assertEquals(Math.min(3, categoryCounts.size()), buckets.size());
+		long previous = Long.MAX_VALUE;
+		long bucketsCount = 0;
+		for (Map<String, Object> bucket : buckets) {
+			final long docCount = ((Number) bucket.get("doc_count")).longValue();
+			Assert.assertEquals(categoryCounts.get(bucket.get("key")).longValue(), docCount);
+			Assert.assertTrue(docCount <= previous);
+			previous = docCount;
+			bucketsCount += docCount;
+		}
+		Assert.assertEquals(documents.size() - bucketsCount, ((Number) output.get("sum_other_doc_count")).longValue());
+	}
+
+	@Test
+	public void stats() {
+		final Map<String, Object> output = search("stats", new StatsAggregation("doubleDocValue"));
+		Assert.assertEquals(documents.size(), ((Number) output.get("count")).intValue());
+		Assert.assertEquals(sum, ((Number) output.get("sum")).doubleValue(), 0.0001);
+		Assert.assertEquals(sum / documents.size(), ((Number) output.get("avg")).doubleValue(), 0.0001);
+	}
+
+	@Test
+	public void termsWithSubAggregation() {
+		final LinkedHashMap<String, AggregationDefinition> subs = new LinkedHashMap<>();
+		subs.put("values", new StatsAggregation("doubleDocValue"));
+		final Map<String, Object> output = search("categories", new TermsAggregation("sortedDocValue", 10, subs));
+		final List<Map<String, Object>> buckets = (List<Map<String, Object>>) output.get("buckets");
+		Assert.assertEquals(categoryCounts.size(), buckets.size());
+		for (Map<String, Object> bucket : buckets) {
+			final Map<String, Object> stats = (Map<String, Object>) bucket.get("values");
+			Assert.assertEquals(categorySums.get(bucket.get("key")), ((Number) stats.get("sum")).doubleValue(),
+					0.0001);
+		}
+	}
+
+	@Test
+	public void filter() {
+		final Map<String, Object> output = search("odd", new FilterAggregation(new TermQuery("stringField", "odd")));
+		Assert.assertEquals(oddCount, ((Number) output.get("doc_count")).longValue());
+	}
+
+	@Test
+	public void cardinality() {
+		Map<String, Object> output = search("categories", new CardinalityAggregation("sortedDocValue"));
+		Assert.assertEquals(categoryCounts.size(), ((Number) output.get("value")).intValue());
+		output = search("values", new CardinalityAggregation("doubleDocValue"));
+		Assert.assertEquals(distinctValues.size(), ((Number) output.get("value")).intValue());
+	}
+
+	@Test
+	public void percentiles() {
+		final double min = distinctValues.stream().mapToDouble(Double::doubleValue).min().getAsDouble();
+		final double max = distinctValues.stream().mapToDouble(Double::doubleValue).max().getAsDouble();
+		Map<String, Object> output = search("percentiles", new PercentilesAggregation("doubleDocValue", 0, 50, 100));
+		Map<String, Object> values = (Map<String, Object>) output.get("values");
+		Assert.assertEquals(min, ((Number) values.get("0.0")).doubleValue(), 0);
+		Assert.assertEquals(max, ((Number) values.get("100.0")).doubleValue(), 0);
+		final double median = ((Number) values.get("50.0")).doubleValue();
+		Assert.assertTrue(median >= min && median <= max);
+		output = search("ranks", new PercentileRanksAggregation("doubleDocValue", max));
+		values = (Map<String, Object>) output.get("values");
+		Assert.assertEquals(100, ((Number) values.get(Double.toString(max))).doubleValue(), 0);
+	}
+
+	@Test
+	public void termsSizeOutOfRange() {
+		for (int size : new int[] { 0, -1 }) {
+			try {
+				new TermsAggregation("sortedDocValue", size).getSizeValue();
+				Assert.fail("IllegalArgumentException not thrown: " + size);
+			} catch (IllegalArgumentException e) {
+				Assert.assertTrue(e.getMessage().contains(Integer.toString(size)));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void percentilesCompressionOutOfRange() {
+		new PercentilesAggregation("doubleDocValue", new double[] { 50 }, 1e9).getCompressionValue();
+	}
+
+	private long sumDocCounts(final List<Map<String, Object>> buckets) {
+		long count = 0;
+		for (Map<String, Object> bucket : buckets)
+			count += ((Number) bucket.get("doc_count")).longValue();
+		return count;
+	}
+
+	@Test
+	public void histogram() {
+		final Map<String, Object> output = search("histogram", new HistogramAggregation("doubleDocValue", 100));
+		final List<Map<String, Object>> buckets = (List<Map<String, Object>>) output.get("buckets");
+		Assert.assertEquals(documents.size(), sumDocCounts(buckets));
+		final double min = distinctValues.stream().mapToDouble(Double::doubleValue).min().getAsDouble();
+		final double max = distinctValues.stream().mapToDouble(Double::doubleValue).max().getAsDouble();
+		Assert.assertEquals((int) (Math.floor(max / 100) - Math.floor(min / 100)) + 1, buckets.size());
+		double previousKey = Double.NEGATIVE_INFINITY;
+		for (Map<String, Object> bucket : buckets) {
+			final double key = ((Number) bucket.get("key")).doubleValue();
+			Assert.assertTrue(key > previousKey);
+			previousKey = key;
+		}
+	}
+
+	@Test
+	public void dateHistogram() {
+		Map<String, Object> output = search("hours",
+				new DateHistogramAggregation("longDocValue", DateHistogramAggregation.CalendarInterval.hour,
+						"Europe/Paris"));
+		List<Map<String, Object>> buckets = (List<Map<String, Object>>) output.get("buckets");
+		Assert.assertEquals(documents.size(), buckets.size());
+		Assert.assertEquals(documents.size(), sumDocCounts(buckets));
+		Assert.assertEquals(TIMESTAMP, ((Number) buckets.get(0).get("key")).longValue());
+		// The documents start the day Europe/Paris switches to summer time: no bucket for the skipped hour
+		long previousKey = Long.MIN_VALUE;
+		for (Map<String, Object> bucket : buckets) {
+			final long key = ((Number) bucket.get("key")).longValue();
+			Assert.assertTrue(key > previousKey);
+			previousKey = key;
+		}
+		output = search("days", new DateHistogramAggregation("longDocValue", "1d"));
+		buckets = (List<Map<String, Object>>) output.get("buckets");
+		Assert.assertEquals((documents.size() - 1) / 24 + 1, buckets.size());
+		Assert.assertEquals(documents.size(), sumDocCounts(buckets));
+	}
+}
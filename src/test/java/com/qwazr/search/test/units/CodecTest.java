@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.annotations.AnnotatedIndexService;
+import com.qwazr.search.annotations.Index;
+import com.qwazr.search.field.CustomFieldDefinition;
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.index.QueryDefinition;
+import com.qwazr.search.index.ResultDefinition;
+import com.qwazr.search.query.TermQuery;
+import com.qwazr.server.ServerException;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+public class CodecTest extends AbstractIndexTest {
+
+	private static AnnotatedIndexService<IndexRecord.NoTaxonomy> service;
+
+	@BeforeClass
+	public static void setup() throws URISyntaxException {
+		initIndexManager();
+		final String schemaName = IndexRecord.NoTaxonomy.class.getAnnotation(Index.class).schema();
+		final IndexSettingsDefinition settings = IndexSettingsDefinition.of()
+				.enableTaxonomyIndex(false)
+				.storedFieldsMode(IndexSettingsDefinition.StoredFieldsMode.BEST_COMPRESSION)
+				.build();
+		service = new AnnotatedIndexService<>(indexManager.getService(), IndexRecord.NoTaxonomy.class, schemaName,
+				"Codec", settings);
+		service.createUpdateSchema();
+		service.createUpdateIndex();
+		service.createUpdateFields();
+	}
+
+	@Test
+	public void perFieldFormats() throws IOException, InterruptedException {
+		service.setField(FieldDefinition.ID_FIELD, CustomFieldDefinition.of()
+				.template(FieldDefinition.Template.StringField)
+				.stored(true)
+				.postingsFormat("BloomFilter")
+				.build());
+		service.setField("sortedDocValue", CustomFieldDefinition.of()
+				.template(FieldDefinition.Template.SortedDocValuesField)
+				.docValuesFormat("Memory")
+				.build());
+		for (int i = 0; i < 20; i++)
+			service.postDocument(new IndexRecord.NoTaxonomy(Integer.toString(i)).textField("text " + i)
+					.sortedDocValue("value " + i));
+		final ResultDefinition.WithObject<IndexRecord.NoTaxonomy> result = service.searchQuery(
+				QueryDefinition.of(new TermQuery(FieldDefinition.ID_FIELD, "5")).returnedField("*").build());
+		Assert.assertEquals(Long.valueOf(1), result.total_hits);
+		Assert.assertEquals("value 5", result.documents.get(0).record.sortedDocValue);
+	}
+
+	@Test
+	public void unknownFormat() {
+		try {
+			service.setField("unknown", CustomFieldDefinition.of()
+					.template(FieldDefinition.Template.StringField)
+					.postingsFormat("NotAFormat")
+					.build());
+			Assert.fail("ServerException not thrown");
+		} catch (WebApplicationException e) {
+			Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), e.getResponse().getStatus());
+		} catch (ServerException e) {
+			Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.index.IndexStatus;
+import com.qwazr.search.index.MergeStatus;
+import com.qwazr.server.ServerException;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+public class CompactionTest extends AbstractIndexTest.WithIndexRecord.NoTaxonomy {
+
+	@BeforeClass
+	public static void setup() throws IOException, URISyntaxException {
+		initIndexService();
+	}
+
+	private static void postDocuments(final String text) throws IOException, InterruptedException {
+		// One commit per document: one segment per document
+		for (int i = 0; i < 20; i++)
+			indexService.postDocument(new IndexRecord.NoTaxonomy(Integer.toString(i)).textField(text + " " + i));
+	}
+
+	private static MergeStatus waitForCompaction() throws InterruptedException {
+		MergeStatus status = indexService.getCompaction();
+		final long deadline = System.currentTimeMillis() + 60000;
+		while ("running".equals(status.state) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+			status = indexService.getCompaction();
+		}
+		return status;
+	}
+
+	@Test
+	public void forceMerge() throws IOException, InterruptedException {
+		postDocuments("first");
+		postDocuments("second");
+
+		final MergeStatus started = indexService.startCompaction("force_merge", 1);
+		Assert.assertNotNull(started.start);
+		Assert.assertEquals("force_merge", started.type);
+		Assert.assertEquals(Integer.valueOf(1), started.max_segments);
+
+		final MergeStatus status = waitForCompaction();
+		Assert.assertEquals("done", status.state);
+		Assert.assertNotNull(status.end);
+		Assert.assertEquals(Integer.valueOf(0), status.deleted_docs_after);
+
+		final IndexStatus indexStatus = indexService.getIndexStatus();
+		Assert.assertEquals(Integer.valueOf(1), indexStatus.segment_count);
+		Assert.assertEquals(Long.valueOf(20), indexStatus.num_docs);
+	}
+
+	@Test
+	public void unknownType() {
+		try {
+			indexService.startCompaction("unknown", null);
+			Assert.fail("ServerException not thrown");
+		} catch (WebApplicationException e) {
+			Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), e.getResponse().getStatus());
+		} catch (ServerException e) {
+			Assert.assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+		}
+	}
+}
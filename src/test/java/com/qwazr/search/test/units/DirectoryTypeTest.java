@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.annotations.AnnotatedIndexService;
+import com.qwazr.search.annotations.Index;
+import com.qwazr.search.index.IndexSettingsDefinition;
+import com.qwazr.search.index.IndexStatus;
+import com.qwazr.search.index.QueryDefinition;
+import com.qwazr.search.query.MatchAllDocsQuery;
+import org.apache.lucene.store.FileSwitchDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+public class DirectoryTypeTest extends AbstractIndexTest {
+
+	@BeforeClass
+	public static void setup() {
+		initIndexManager();
+	}
+
+	private void checkDirectory(final IndexSettingsDefinition.Builder settings, final Class<?> directoryClass)
+			throws URISyntaxException, IOException, InterruptedException {
+		checkDirectory(settings, directoryClass.getName());
+	}
+
+	private void checkDirectory(final IndexSettingsDefinition.Builder settings, final String directoryClass)
+			throws URISyntaxException, IOException, InterruptedException {
+		final String schemaName = IndexRecord.NoTaxonomy.class.getAnnotation(Index.class).schema();
+		final IndexSettingsDefinition indexSettings =
+				settings.enableTaxonomyIndex(false).nrtCachingDirectoryMaxCachedMB(0d).build();
+		final AnnotatedIndexService<IndexRecord.NoTaxonomy> service =
+				new AnnotatedIndexService<>(indexManager.getService(), IndexRecord.NoTaxonomy.class, schemaName,
+						indexSettings.directoryType.name(), indexSettings);
+		service.createUpdateSchema();
+		service.createUpdateIndex();
+		service.createUpdateFields();
+		for (int i = 0; i < 20; i++)
+			service.postDocument(new IndexRecord.NoTaxonomy(Integer.toString(i)).textField("text " + i));
+		final IndexStatus status = service.getIndexStatus();
+		Assert.assertEquals(directoryClass, status.directory_class);
+		Assert.assertEquals(Long.valueOf(20), status.num_docs);
+		Assert.assertEquals(Long.valueOf(20),
+				service.searchQuery(QueryDefinition.of(new MatchAllDocsQuery()).build()).total_hits);
+	}
+
+	@Test
+	public void ramDirectory() throws URISyntaxException, IOException, InterruptedException {
+		checkDirectory(IndexSettingsDefinition.of().type(IndexSettingsDefinition.Type.RAMDirectory),
+				RAMDirectory.class);
+	}
+
+	@Test
+	public void mmapDirectory() throws URISyntaxException, IOException, InterruptedException {
+		checkDirectory(IndexSettingsDefinition.of()
+				.type(IndexSettingsDefinition.Type.MMapDirectory)
+				.mmapPreload(true)
+				.mmapUnmap(true), MMapDirectory.class);
+	}
+
+	@Test
+	public void niofsDirectory() throws URISyntaxException, IOException, InterruptedException {
+		checkDirectory(IndexSettingsDefinition.of().type(IndexSettingsDefinition.Type.NIOFSDirectory),
+				NIOFSDirectory.class);
+	}
+
+	@Test
+	public void fileSwitchDirectory() throws URISyntaxException, IOException, InterruptedException {
+		checkDirectory(IndexSettingsDefinition.of()
+				.type(IndexSettingsDefinition.Type.FileSwitchDirectory)
+				.mmapExtensions("dvd", "dvm", "doc", "tim", "tip"), FileSwitchDirectory.class);
+	}
+
+	@Test
+	public void offHeapDirectory() throws URISyntaxException, IOException, InterruptedException {
+		checkDirectory(IndexSettingsDefinition.of()
+				.type(IndexSettingsDefinition.Type.OffHeapDirectory)
+				.offheapPersist(true), "com.qwazr.search.index.OffHeapDirectory");
+	}
+}
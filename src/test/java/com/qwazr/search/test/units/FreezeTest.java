@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexStatus;
+import com.qwazr.search.index.QueryDefinition;
+import com.qwazr.search.query.TermQuery;
+import com.qwazr.server.ServerException;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+public class FreezeTest extends AbstractIndexTest.WithIndexRecord.NoTaxonomy {
+
+	@BeforeClass
+	public static void setup() throws IOException, URISyntaxException {
+		initIndexService();
+	}
+
+	private void checkId(final String id) {
+		checkQuery(QueryDefinition.of(new TermQuery(FieldDefinition.ID_FIELD, id)).build());
+	}
+
+	@Test
+	public void freezeAndUnfreeze() throws IOException, InterruptedException {
+		// One commit per document: one segment per document
+		for (int i = 0; i < 10; i++)
+			indexService.postDocument(getNewRecord(Integer.toString(i)).textField("frozen " + i));
+
+		final IndexStatus frozenStatus = indexService.freezeIndex();
+		Assert.assertEquals(Boolean.TRUE, frozenStatus.frozen);
+		Assert.assertEquals(Integer.valueOf(1), frozenStatus.segment_count);
+		Assert.assertEquals(Long.valueOf(10), frozenStatus.num_docs);
+		Assert.assertNull(frozenStatus.ram_buffer_size_mb);
+		Assert.assertNull(frozenStatus.directory_cached_files);
+
+		// Still searchable
+		checkId("5");
+
+		// But not writable
+		try {
+			indexService.postDocument(getNewRecord("10").textField("frozen 10"));
+			Assert.fail("ServerException not thrown");
+		} catch (WebApplicationException e) {
+			Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), e.getResponse().getStatus());
+		} catch (ServerException e) {
+			Assert.assertEquals(Response.Status.NOT_ACCEPTABLE.getStatusCode(), e.getStatusCode());
+		}
+
+		// Freezing twice is harmless
+		Assert.assertEquals(Boolean.TRUE, indexService.freezeIndex().frozen);
+
+		final IndexStatus status = indexService.unfreezeIndex();
+		Assert.assertNull(status.frozen);
+		Assert.assertNotNull(status.ram_buffer_size_mb);
+
+		indexService.postDocument(getNewRecord("10").textField("frozen 10"));
+		Assert.assertEquals(Long.valueOf(11), indexService.getIndexStatus().num_docs);
+		checkId("10");
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.index.BackupStatus;
+import com.qwazr.search.index.SchemaSettingsDefinition;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SortedMap;
+
+public class IncrementalBackupTest extends AbstractIndexTest.WithIndexRecord.NoTaxonomy {
+
+	private static Path backupPath;
+
+	@BeforeClass
+	public static void setup() throws IOException, URISyntaxException {
+		initIndexService();
+		backupPath = Files.createTempDirectory("incremental_backup");
+		indexManager.getService()
+				.createUpdateSchema(indexService.getSchemaName(),
+						SchemaSettingsDefinition.of().backupDirectoryPath(backupPath.toFile().getAbsolutePath()).build());
+		for (int i = 0; i < 100; i++)
+			indexService.postDocument(new IndexRecord.NoTaxonomy(Integer.toString(i)).textField("text " + i));
+	}
+
+	private BackupStatus getStatus(final SortedMap<String, SortedMap<String, BackupStatus>> results) {
+		Assert.assertNotNull(results);
+		final SortedMap<String, BackupStatus> schemaResults = results.get(indexService.getSchemaName());
+		Assert.assertNotNull(schemaResults);
+		final BackupStatus status = schemaResults.get(indexService.getIndexName());
+		Assert.assertNotNull(status);
+		return status;
+	}
+
+	private BackupStatus getBackup(final String backupName) {
+		final SortedMap<String, SortedMap<String, SortedMap<String, BackupStatus>>> backups =
+				indexService.getBackups(backupName, false);
+		Assert.assertNotNull(backups);
+		return getStatus(backups.get(indexService.getSchemaName()).get(backupName));
+	}
+
+	@Test
+	public void incremental() throws IOException {
+
+		// The first backup copies every file
+		final BackupStatus first = getStatus(indexService.doBackup("first"));
+		Assert.assertNotNull(first.progress);
+		Assert.assertEquals("done", first.progress.state);
+		Assert.assertEquals(first.progress.total_files, first.progress.copied_files);
+		Assert.assertEquals(Integer.valueOf(0), first.progress.linked_files);
+
+		// Nothing changed, every file is shared with the first backup
+		final BackupStatus second = getStatus(indexService.doBackup("second"));
+		Assert.assertEquals(first.progress.total_files, second.progress.linked_files);
+		Assert.assertEquals(Long.valueOf(0), second.progress.copied_bytes);
+
+		// Only the new segment is copied
+		indexService.postDocument(new IndexRecord.NoTaxonomy("new").textField("new text"));
+		final BackupStatus third = getStatus(indexService.doBackup("third"));
+		Assert.assertTrue(third.progress.linked_files > 0);
+		Assert.assertTrue(third.progress.copied_files > 0);
+		Assert.assertTrue(third.progress.copied_files < third.progress.total_files);
+
+		Assert.assertTrue(Files.exists(backupPath.resolve(indexService.getSchemaName())
+				.resolve("third")
+				.resolve(indexService.getIndexName())
+				.resolve("backup_manifest.json")));
+	}
+
+	@Test
+	public void async() throws InterruptedException {
+		final BackupStatus status = getStatus(indexService.doBackup("async", true));
+		Assert.assertNotNull(status.progress);
+		BackupStatus current = getBackup("async");
+		final long deadline = System.currentTimeMillis() + 60000;
+		while (current.progress != null && "running".equals(current.progress.state) &&
+				System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+			current = getBackup("async");
+		}
+		Assert.assertNull(current.progress);
+		Assert.assertNotNull(current.files_count);
+		Assert.assertTrue(current.files_count > 0);
+	}
+}
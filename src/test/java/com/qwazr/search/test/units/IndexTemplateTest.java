@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.field.CustomFieldDefinition;
+import com.qwazr.search.field.FieldDefinition;
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexTemplateDefinition;
+import com.qwazr.search.index.IndexTemplateStatus;
+import com.qwazr.search.index.PostDefinition;
+import com.qwazr.search.index.QueryDefinition;
+import com.qwazr.search.index.ResultDefinition;
+import com.qwazr.search.query.AbstractQuery;
+import com.qwazr.search.query.BooleanQuery;
+import com.qwazr.search.query.LongRangeQuery;
+import com.qwazr.search.query.MatchAllDocsQuery;
+import com.qwazr.search.query.TermQuery;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class IndexTemplateTest extends AbstractIndexTest {
+
+	private final static String SCHEMA_NAME = "template_schema";
+	private final static String TEMPLATE_NAME = "logs";
+
+	private static IndexServiceInterface service;
+
+	@BeforeClass
+	public static void setup() {
+		initIndexManager();
+		service = indexManager.getService();
+		service.createUpdateSchema(SCHEMA_NAME);
+		service.setTemplate(SCHEMA_NAME, TEMPLATE_NAME, IndexTemplateDefinition.of()
+				.timestampField("timestamp")
+				.maxDocs(10L)
+				.field(FieldDefinition.ID_FIELD, CustomFieldDefinition.of()
+						.template(FieldDefinition.Template.StringField)
+						.stored(true)
+						.build())
+				.field("timestamp", CustomFieldDefinition.of().template(FieldDefinition.Template.LongPoint).build())
+				.build());
+	}
+
+	private static int postDocuments(final long from, final long to) {
+		final List<Map<String, Object>> documents = new ArrayList<>();
+		for (long timestamp = from; timestamp < to; timestamp++) {
+			final Map<String, Object> document = new HashMap<>();
+			document.put(FieldDefinition.ID_FIELD, Long.toString(timestamp));
+			document.put("timestamp", timestamp);
+			documents.add(document);
+		}
+		return service.postTemplateDocuments(SCHEMA_NAME, TEMPLATE_NAME, PostDefinition.of(documents, null));
+	}
+
+	private static long search(final AbstractQuery query) {
+		final ResultDefinition.WithMap result =
+				service.searchTemplate(SCHEMA_NAME, TEMPLATE_NAME, QueryDefinition.of(query).build());
+		Assert.assertNotNull(result);
+		return result.total_hits;
+	}
+
+	@Test
+	public void rolloverAndRouting() {
+		Assert.assertEquals(10, postDocuments(0, 10));
+		// The first partition is full: the next documents go to a new partition
+		Assert.assertEquals(10, postDocuments(100, 110));
+
+		IndexTemplateStatus status = service.getTemplate(SCHEMA_NAME, TEMPLATE_NAME);
+		Assert.assertEquals(2, status.partitions.size());
+		Assert.assertEquals(Long.valueOf(0), status.partitions.get(0).min_timestamp);
+		Assert.assertEquals(Long.valueOf(9), status.partitions.get(0).max_timestamp);
+		Assert.assertEquals(Long.valueOf(100), status.partitions.get(1).min_timestamp);
+		Assert.assertEquals(Long.valueOf(109), status.partitions.get(1).max_timestamp);
+		Assert.assertEquals(status.partitions.get(1).name, status.current_partition);
+		Assert.assertTrue(service.getIndexes(SCHEMA_NAME).contains(status.current_partition));
+
+		Assert.assertEquals(20, search(new MatchAllDocsQuery()));
+		Assert.assertEquals(10, search(new LongRangeQuery("timestamp", 100L, 200L)));
+		Assert.assertEquals(10, search(new LongRangeQuery("timestamp", 5L, 104L)));
+		Assert.assertEquals(0, search(new LongRangeQuery("timestamp", 50L, 60L)));
+		Assert.assertEquals(1, search(new BooleanQuery(
+				new BooleanQuery.BooleanClause(BooleanQuery.Occur.filter, new LongRangeQuery("timestamp", 0L, 50L)),
+				new BooleanQuery.BooleanClause(BooleanQuery.Occur.must,
+						new TermQuery(FieldDefinition.ID_FIELD, "3")))));
+
+		// A forced rollover creates an empty partition, which is skipped by the searches
+		status = service.rolloverTemplate(SCHEMA_NAME, TEMPLATE_NAME);
+		Assert.assertEquals(3, status.partitions.size());
+		Assert.assertNull(status.partitions.get(2).min_timestamp);
+		Assert.assertEquals(20, search(new MatchAllDocsQuery()));
+
+		Assert.assertTrue(service.getTemplates(SCHEMA_NAME).containsKey(TEMPLATE_NAME));
+		Assert.assertTrue(service.deleteTemplate(SCHEMA_NAME, TEMPLATE_NAME));
+		Assert.assertFalse(service.getTemplates(SCHEMA_NAME).containsKey(TEMPLATE_NAME));
+		// The partitions are kept as regular indexes
+		Assert.assertTrue(service.getIndexes(SCHEMA_NAME).contains(status.current_partition));
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.index.OnlineCheckStatus;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+public class OnlineCheckTest extends AbstractIndexTest.WithIndexRecord.WithTaxonomy {
+
+	@BeforeClass
+	public static void setup() throws IOException, URISyntaxException {
+		initIndexService();
+		for (int i = 0; i < 100; i++)
+			indexService.postDocument(new IndexRecord.WithTaxonomy(Integer.toString(i)).textField("text " + i));
+	}
+
+	@Test
+	public void check() throws InterruptedException {
+		final OnlineCheckStatus started = indexService.startOnlineCheck(null);
+		Assert.assertNotNull(started);
+		Assert.assertNotNull(started.start);
+
+		// The index keeps serving while the check is running
+		indexService.postDocument(new IndexRecord.WithTaxonomy("during").textField("during the check"));
+
+		OnlineCheckStatus status = indexService.getOnlineCheck();
+		final long deadline = System.currentTimeMillis() + 60000;
+		while ("running".equals(status.state) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+			status = indexService.getOnlineCheck();
+		}
+		Assert.assertEquals("done", status.state);
+		Assert.assertEquals(Boolean.TRUE, status.clean);
+		Assert.assertNotNull(status.version);
+		Assert.assertNotNull(status.end);
+		Assert.assertNotNull(status.data);
+		Assert.assertTrue(status.data.clean);
+		Assert.assertTrue(status.data.numSegments > 0);
+		Assert.assertNotNull(status.taxonomy);
+		Assert.assertTrue(status.taxonomy.clean);
+		Assert.assertTrue(status.checked_bytes > 0);
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.index.IndexReadinessStatus;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+public class ReadinessTest extends AbstractIndexTest.WithIndexRecord.NoTaxonomy {
+
+	@BeforeClass
+	public static void setup() throws IOException, URISyntaxException {
+		initIndexService();
+	}
+
+	private static IndexReadinessStatus.State getState(final IndexReadinessStatus status) {
+		return status.indexes.get(indexService.getSchemaName()).get(indexService.getIndexName());
+	}
+
+	@Test
+	public void lazyOpening() {
+		final IndexReadinessStatus status = indexManager.getService().getReadiness();
+		Assert.assertTrue(status.ready);
+		Assert.assertEquals(IndexReadinessStatus.State.ready, getState(status));
+	}
+
+	@Test
+	public void eagerOpening() throws InterruptedException {
+		indexManager.openIndexes(2);
+		IndexReadinessStatus status = indexManager.getService().getReadiness();
+		final long deadline = System.currentTimeMillis() + 60000;
+		while (!status.ready && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+			status = indexManager.getService().getReadiness();
+		}
+		Assert.assertTrue(status.ready);
+		Assert.assertEquals(Integer.valueOf(0), status.pending_indexes);
+		Assert.assertEquals(IndexReadinessStatus.State.ready, getState(status));
+		// The probe does not fail once the node is ready
+		Assert.assertTrue(indexManager.getService().getReadiness(true).ready);
+	}
+}
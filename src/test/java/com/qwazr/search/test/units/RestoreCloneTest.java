@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015-2017 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.search.test.units;
+
+import com.qwazr.search.index.IndexServiceInterface;
+import com.qwazr.search.index.IndexStatus;
+import com.qwazr.search.index.SchemaSettingsDefinition;
+import com.qwazr.server.ServerException;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class RestoreCloneTest extends AbstractIndexTest.WithIndexRecord.NoTaxonomy {
+
+	private static IndexServiceInterface service;
+	private static String schemaName;
+
+	@BeforeClass
+	public static void setup() throws IOException, URISyntaxException {
+		initIndexService();
+		service = indexManager.getService();
+		schemaName = indexService.getSchemaName();
+		final Path backupPath = Files.createTempDirectory("restore_backup");
+		service.createUpdateSchema(schemaName,
+				SchemaSettingsDefinition.of().backupDirectoryPath(backupPath.toFile().getAbsolutePath()).build());
+		for (int i = 0; i < 50; i++)
+			indexService.postDocument(new IndexRecord.NoTaxonomy(Integer.toString(i)).textField("text " + i));
+	}
+
+	private static void checkConflict(final Runnable runnable) {
+		try {
+			runnable.run();
+			Assert.fail("ServerException not thrown");
+		} catch (WebApplicationException e) {
+			Assert.assertEquals(Response.Status.CONFLICT.getStatusCode(), e.getResponse().getStatus());
+		} catch (ServerException e) {
+			Assert.assertEquals(Response.Status.CONFLICT.getStatusCode(), e.getStatusCode());
+		}
+	}
+
+	@Test
+	public void restore() {
+		indexService.doBackup("restore");
+		// New documents are not part of the backup
+		indexService.postDocument(new IndexRecord.NoTaxonomy("after").textField("after backup"));
+
+		final IndexStatus status =
+				service.restoreIndex(schemaName, "restored", "restore", indexService.getIndexName());
+		Assert.assertNotNull(status);
+		Assert.assertEquals(Long.valueOf(50), status.num_docs);
+		Assert.assertEquals(service.getFields(schemaName, indexService.getIndexName()),
+				service.getFields(schemaName, "restored"));
+
+		checkConflict(() -> service.restoreIndex(schemaName, "restored", "restore", indexService.getIndexName()));
+	}
+
+	@Test
+	public void cloneIndex() {
+		final IndexStatus source = indexService.getIndexStatus();
+		final IndexStatus status = indexService.cloneIndex("cloned");
+		Assert.assertNotNull(status);
+		Assert.assertEquals(source.num_docs, status.num_docs);
+		Assert.assertEquals(service.getFields(schemaName, indexService.getIndexName()),
+				service.getFields(schemaName, "cloned"));
+		checkConflict(() -> indexService.cloneIndex("cloned"));
+	}
+}